@@ -0,0 +1,59 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * `ss`/netlink 대신 fixture stream 을 사용한 {@link SessionCollector#collectSession()} 전체 비용
+ * <pre>
+ * ss      : 합성 `ss` 출력 파일을 {@link SsSessionSource#collect(InputStream, java.util.function.Consumer)} 로 재생
+ * netlink : src/test/resources/netlink/sock_diag_dump.bin 을 lineCount 개 메시지로 늘린 dump 재생 ({@link NetlinkDumpFixture})
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class CollectSessionBenchmark {
+    private static final Path NETLINK_FIXTURE = Paths.get("src/test/resources/netlink/sock_diag_dump.bin");
+
+    @Param({"ss", "netlink"})
+    public String source;
+
+    @Param({"1000", "100000", "500000"})
+    public int lineCount;
+
+    private SessionCollector sessionCollector;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SessionSource sessionSource;
+        if (source.equals("netlink")) {
+            sessionSource = NetlinkSessionSource.replay(NetlinkDumpFixture.write(NETLINK_FIXTURE, lineCount), true);
+        } else {
+            Path fixture = SsOutputFixture.write(SsOutputFixture.lines(lineCount, 42));
+            SsSessionSource ssSessionSource = new SsSessionSource();
+            sessionSource = consumer -> {
+                try (InputStream inputStream = Files.newInputStream(fixture)) {
+                    ssSessionSource.collect(inputStream, consumer);
+                }
+            };
+        }
+        sessionCollector = new SessionCollector(sessionSource);
+        sessionCollector.collectSession();
+    }
+
+    @Benchmark
+    public PayloadState.StateBundle collectSession() {
+        return sessionCollector.collectSession();
+    }
+}
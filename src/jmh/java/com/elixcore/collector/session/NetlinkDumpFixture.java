@@ -0,0 +1,105 @@
+package com.elixcore.collector.session;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * benchmark 용 합성 sock_diag dump.
+ * 캡처한 dump(tcp4, tcp6, udp4, udp6 순서)의 메시지를 template 으로 count 개까지 복제하고,
+ * 복제본마다 local 주소의 마지막 4 byte 와 inode 를 바꿔 서로 다른 세션이 되게 한다. (tcp_info 등 attribute 는 그대로)
+ */
+final class NetlinkDumpFixture {
+    /* nlmsghdr 뒤 inet_diag_msg 의 sockid.src, inode offset */
+    private static final int SRC_OFFSET   = InetDiagDecoder.NLMSG_HDRLEN + 8;
+    private static final int INODE_OFFSET = InetDiagDecoder.NLMSG_HDRLEN + 68;
+
+    private NetlinkDumpFixture() {
+    }
+
+    static Path write(Path capture,
+                      int count) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(capture))
+                                      .order(ByteOrder.nativeOrder());
+        /* dump 별 메시지와 종료(NLMSG_DONE) 메시지 */
+        List<List<byte[]>> dumps = new ArrayList<>();
+        List<byte[]> doneMessages = new ArrayList<>();
+        List<byte[]> messages = new ArrayList<>();
+        int templates = 0;
+        while (buffer.remaining() >= InetDiagDecoder.NLMSG_HDRLEN) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            int type = buffer.getShort(start + 4) & 0xffff;
+            byte[] message = new byte[Math.min((length + 3) & ~3, buffer.remaining())];
+            buffer.get(message);
+            if (type == InetDiagDecoder.NLMSG_DONE) {
+                dumps.add(messages);
+                doneMessages.add(message);
+                messages = new ArrayList<>();
+            } else if (type == InetDiagDecoder.SOCK_DIAG_BY_FAMILY) {
+                messages.add(message);
+                templates++;
+            }
+        }
+        if (templates == 0) {
+            throw new IOException("no inet_diag message in " + capture);
+        }
+
+        /* template 을 원래 순서대로 돌며 복제 */
+        List<List<byte[]>> scaled = new ArrayList<>();
+        for (int d = 0; d < dumps.size(); d++) {
+            scaled.add(new ArrayList<>());
+        }
+        int copy = 0;
+        while (copy < count) {
+            for (int d = 0; d < dumps.size() && copy < count; d++) {
+                for (byte[] template : dumps.get(d)) {
+                    if (copy >= count) {
+                        break;
+                    }
+                    scaled.get(d)
+                          .add(rewrite(template, copy++));
+                }
+            }
+        }
+
+        Path path = Files.createTempFile("sock-diag-fixture", ".bin");
+        path.toFile()
+            .deleteOnExit();
+        int size = 0;
+        for (int d = 0; d < scaled.size(); d++) {
+            for (byte[] message : scaled.get(d)) {
+                size += message.length;
+            }
+            size += doneMessages.get(d).length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        for (int d = 0; d < scaled.size(); d++) {
+            for (byte[] message : scaled.get(d)) {
+                out.put(message);
+            }
+            out.put(doneMessages.get(d));
+        }
+        return Files.write(path, out.array());
+    }
+
+    private static byte[] rewrite(byte[] template,
+                                  int copy) {
+        ByteBuffer message = ByteBuffer.wrap(template.clone())
+                                       .order(ByteOrder.nativeOrder());
+        boolean ipv6 = (message.get(InetDiagDecoder.NLMSG_HDRLEN) & 0xff) == InetDiagDecoder.AF_INET6;
+        /* ipv4 : 10.x.y.z, ipv6 : 마지막 4 byte (network order) */
+        int address = ipv6 ? copy + 1 : 0x0a000000 | ((copy + 1) & 0xffffff);
+        message.order(ByteOrder.BIG_ENDIAN)
+               .putInt(SRC_OFFSET + (ipv6 ? 12 : 0), address)
+               .order(ByteOrder.nativeOrder());
+        if (message.getInt(INODE_OFFSET) != 0) {
+            message.putInt(INODE_OFFSET, 100000 + copy);
+        }
+        return message.array();
+    }
+}
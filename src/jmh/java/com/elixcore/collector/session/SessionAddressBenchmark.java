@@ -0,0 +1,41 @@
+package com.elixcore.collector.session;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SessionAddress#findMatch(String)} 주소 형태별 비용
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionAddressBenchmark {
+
+    @Param({
+            "255.255.255.255",
+            "12.3.45.5:44832",
+            "0.0.0.0:*",
+            "12.3.45.5%lo:44832",
+            "ff06:0:0:0:0:0:0:c3",
+            "ff06:0:0:0:0:0:0:c3:32312",
+            "[ff06:0:0:0:0:0:0:c3]:32312",
+            "ff32::43:f3",
+            "[ff06::c3]:32323",
+            "[fe80::1]%eth0:546",
+            "::FFFF:172.16.0.15",
+            "[::FFFF:172.16.0.15]",
+            "::FFFF:172.16.0.15:33231",
+            "[::ffff:172.16.0.15]:54946",
+            "*"
+    })
+    public String address;
+
+    @Benchmark
+    public SessionAddress findMatch() {
+        return SessionAddress.findMatch(address);
+    }
+}
@@ -0,0 +1,47 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 합성 `ss` 출력 1k/100k/500k 줄에 대한 파싱(+delta)과 protobuf 변환 비용
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class SessionParsingBenchmark {
+
+    @Param({"1000", "100000", "500000"})
+    public int lineCount;
+
+    private SessionCollector           sessionCollector;
+    private Queue<String>              lineQ;
+    private List<SessionCollectedData> sessionCollectedDataList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionCollector = new SessionCollector(consumer -> {
+        });
+        lineQ            = new ConcurrentLinkedQueue<>(SsOutputFixture.lines(lineCount, 42));
+        /* listen port 등록 및 delta table 채우기 */
+        sessionCollectedDataList = sessionCollector.tcpSessionParsing(lineQ);
+    }
+
+    @Benchmark
+    public List<SessionCollectedData> tcpSessionParsing() {
+        return sessionCollector.tcpSessionParsing(lineQ);
+    }
+
+    @Benchmark
+    public List<PayloadState.SessionProcess> convertTcpSession() {
+        return sessionCollector.convertTcpSession(sessionCollectedDataList);
+    }
+}
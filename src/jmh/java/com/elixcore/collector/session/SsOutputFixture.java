@@ -0,0 +1,76 @@
+package com.elixcore.collector.session;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * benchmark 용 합성 `ss -tuaeiOpnH` 출력.
+ * 상태 비율은 운영 서버와 비슷하게 ESTAB 위주, 일부 LISTEN/TIME-WAIT/UDP 로 구성한다.
+ */
+final class SsOutputFixture {
+    private static final String[] CLOSING_STATES = {"SYN-SENT", "SYN-RECV", "FIN-WAIT-1", "FIN-WAIT-2", "CLOSE-WAIT", "LAST-ACK", "CLOSING"};
+
+    private SsOutputFixture() {
+    }
+
+    static List<String> lines(int count,
+                              long seed) {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>(count);
+        int processCount = Math.max(1, count / 50);
+        for (int i = 0; i < count; i++) {
+            int pid = 1000 + random.nextInt(processCount);
+            int kind = random.nextInt(100);
+            if (kind < 2) {
+                lines.add(String.format("tcp   LISTEN 0      4096   %s   %s users:((\"svc-%d\",pid=%d,fd=%d)) ino:%d sk:%x cubic rto:1000 mss:536 cwnd:10",
+                                        address(random, true), random.nextBoolean() ? "0.0.0.0:*" : "[::]:*", pid, pid, 3 + random.nextInt(100), 100000 + i, i));
+            } else if (kind < 5) {
+                lines.add(String.format("udp   UNCONN 0      0      %s   0.0.0.0:* users:((\"svc-%d\",pid=%d,fd=%d))",
+                                        address(random, true), pid, pid, 3 + random.nextInt(100)));
+            } else if (kind < 15) {
+                lines.add(String.format("tcp   TIME-WAIT 0      0      %s   %s",
+                                        address(random, false), address(random, false)));
+            } else if (kind < 20) {
+                lines.add(String.format("tcp   %s 0      0      %s   %s users:((\"svc-%d\",pid=%d,fd=%d)) cubic rto:200 rtt:1/0.5 mss:1448 cwnd:10 bytes_sent:%d segs_out:3 segs_in:2",
+                                        CLOSING_STATES[random.nextInt(CLOSING_STATES.length)], address(random, false), address(random, false), pid, pid,
+                                        3 + random.nextInt(1000), random.nextInt(100000)));
+            } else {
+                long bytesSent = random.nextLong() & 0xffffffffffL;
+                lines.add(String.format("tcp   ESTAB 0      0      %s   %s users:((\"svc-%d\",pid=%d,fd=%d)) ino:%d sk:%x cubic wscale:7,7 rto:204 rtt:%d.%03d/%d.5 ato:40 mss:1448 pmtu:1500 "
+                                        + "rcvmss:536 advmss:1448 cwnd:%d ssthresh:20 bytes_sent:%d bytes_retrans:10 bytes_acked:%d bytes_received:%d segs_out:%d segs_in:%d "
+                                        + "data_segs_out:5 data_segs_in:3 send 231.7Mbps lastsnd:4 lastrcv:4 lastack:4 pacing_rate 463.4Mbps delivery_rate %d.%dMbps "
+                                        + "delivered:6 app_limited busy:20ms retrans:0/%d rcv_space:14480 rcv_ssthresh:64088 minrtt:0.1",
+                                        address(random, false), address(random, false), pid, pid, 3 + random.nextInt(1000), 100000 + i, i,
+                                        random.nextInt(300), random.nextInt(1000), random.nextInt(100), random.nextInt(100),
+                                        bytesSent, bytesSent, random.nextLong() & 0xffffffffL, random.nextInt(1 << 30), random.nextInt(1 << 30),
+                                        random.nextInt(1000), random.nextInt(10), random.nextInt(50)));
+            }
+        }
+        return lines;
+    }
+
+    static Path write(List<String> lines) throws IOException {
+        Path path = Files.createTempFile("ss-fixture", ".txt");
+        path.toFile()
+            .deleteOnExit();
+        return Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+
+    private static String address(Random random,
+                                  boolean listen) {
+        int port = listen ? 1 + random.nextInt(10000) : 1024 + random.nextInt(64000);
+        switch (random.nextInt(4)) {
+            case 0:
+                return String.format("[2001:db8::%x]:%d", random.nextInt(65536), port);
+            case 1:
+                return String.format("[::ffff:10.0.%d.%d]:%d", random.nextInt(256), random.nextInt(256), port);
+            default:
+                return String.format("10.%d.%d.%d:%d", random.nextInt(256), random.nextInt(256), random.nextInt(256), port);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import com.google.protobuf.Any;
+import reactor.core.Disposable;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.CRC32;
+
+/**
+ * {@link SsRecorder} 기록/{@link SsReplay} 재생/{@link SsOutputGenerator} 합성 출력으로 수집 주기를 반복하며 소요 시간, heap, bundle digest 를 출력한다.
+ * (jmh source set 의 classpath 로 실행)
+ * <pre>
+ * record    file cycles intervalMs              : 실제 `ss` 출력을 기록하며 수집 (해제 이벤트 포함)
+ * replay    file [speed]                        : 기록을 재생하며 수집 (speed 0 : 대기 없이, 기본 1)
+ * generate  file sessions churn cycles [seed]   : 합성 출력을 기록 파일로 저장
+ * synthetic sessions churn cycles [seed]        : 합성 출력으로 바로 수집
+ * </pre>
+ * digest 는 bundle data 의 CRC32 (collect_time 제외) 로, 같은 입력이면 버전 간 출력 비교에 사용할 수 있다.
+ * (해제 이벤트를 함께 재생하면 이벤트가 반영되는 주기가 시각에 따라 달라질 수 있음)
+ */
+public final class SsReplayMain {
+
+    private SsReplayMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "";
+        switch (mode) {
+            case "record":
+                record(Paths.get(args[1]), Integer.parseInt(args[2]), Long.parseLong(args[3]));
+                break;
+            case "replay":
+                try (SsReplay replay = new SsReplay(Paths.get(args[1]), args.length > 2 ? Double.parseDouble(args[2]) : 1, false)) {
+                    SessionRealtime realtime = null;
+                    if (replay.hasNext(SessionRealtime.EVENT_COMMAND)) {
+                        realtime = new SessionRealtime();
+                        realtime.setPlayer(replay);
+                    }
+                    run(replay, realtime, Integer.MAX_VALUE, 0);
+                }
+                break;
+            case "generate":
+                generate(Paths.get(args[1]), Integer.parseInt(args[2]), Double.parseDouble(args[3]), Integer.parseInt(args[4]),
+                         args.length > 5 ? Long.parseLong(args[5]) : 0);
+                break;
+            case "synthetic":
+                run(new SsOutputGenerator(Integer.parseInt(args[1]), Double.parseDouble(args[2]), args.length > 4 ? Long.parseLong(args[4]) : 0),
+                    null, Integer.parseInt(args[3]), 0);
+                break;
+            default:
+                System.out.println("usage : record file cycles intervalMs | replay file [speed] | generate file sessions churn cycles [seed]"
+                                   + " | synthetic sessions churn cycles [seed]");
+        }
+    }
+
+    private static void record(Path path,
+                               int cycles,
+                               long intervalMillis) throws Exception {
+        try (SsRecorder recorder = new SsRecorder(path)) {
+            SessionRealtime realtime = new SessionRealtime();
+            realtime.setRecorder(recorder);
+            SsSessionSource source = new SsSessionSource();
+            source.setRecorder(recorder);
+            run(source, realtime, cycles, intervalMillis);
+        }
+    }
+
+    private static void generate(Path path,
+                                 int sessions,
+                                 double churn,
+                                 int cycles,
+                                 long seed) throws IOException {
+        SsOutputGenerator generator = new SsOutputGenerator(sessions, churn, seed);
+        try (SsRecorder recorder = new SsRecorder(path)) {
+            for (int i = 0; i < cycles; i++) {
+                for (String command : new String[]{SsSessionSource.SESSION_COMMAND, SessionRealtime.EVENT_COMMAND}) {
+                    try (SsRecorder.Run run = recorder.begin(command)) {
+                        generator.play(command, line -> {
+                            run.line(line);
+                            return true;
+                        });
+                    }
+                }
+            }
+        }
+        System.out.println(path + " : " + cycles + " cycles, " + Files.size(path) + " bytes");
+    }
+
+    private static void run(SsOutputPlayer player,
+                            SessionRealtime realtime,
+                            int cycles,
+                            long intervalMillis) throws Exception {
+        SsSessionSource source = new SsSessionSource();
+        source.setPlayer(player);
+        run(source, realtime, cycles, intervalMillis);
+    }
+
+    /**
+     * source 가 기록 재생이면 남은 run 이 없을 때 끝낸다.
+     */
+    private static void run(SsSessionSource source,
+                            SessionRealtime realtime,
+                            int cycles,
+                            long intervalMillis) throws Exception {
+        SsReplay replay = source.getPlayer() instanceof SsReplay ? (SsReplay) source.getPlayer() : null;
+        SessionCollector collector = new SessionCollector(source, null);
+        Disposable events = realtime != null ? collector.attachRealtime(realtime) : null;
+        try {
+            for (int i = 0; i < cycles; i++) {
+                if (replay != null && !replay.hasNext(SsSessionSource.SESSION_COMMAND)) {
+                    break;
+                }
+                if (i > 0 && intervalMillis > 0) {
+                    Thread.sleep(intervalMillis);
+                }
+                long start = System.nanoTime();
+                PayloadState.StateBundle bundle = collector.collectSession();
+                printCycle(i, collector, bundle, System.nanoTime() - start);
+            }
+        } finally {
+            if (events != null) {
+                events.dispose();
+            }
+        }
+    }
+
+    private static void printCycle(int cycle,
+                                   SessionCollector collector,
+                                   PayloadState.StateBundle bundle,
+                                   long elapsed) {
+        CRC32 digest = new CRC32();
+        for (Any data : bundle.getDataList()) {
+            digest.update(data.toByteArray());
+        }
+        long sessions = collector.getMetrics()
+                                 .getStateSessions()
+                                 .values()
+                                 .stream()
+                                 .mapToLong(Long::longValue)
+                                 .sum();
+        System.gc();
+        long heap = ManagementFactory.getMemoryMXBean()
+                                     .getHeapMemoryUsage()
+                                     .getUsed();
+        System.out.printf("cycle=%d sessions=%d collect=%.1fms bundle=%dB heap=%dMB digest=%08x%n",
+                          cycle, sessions, elapsed / 1e6, bundle.getSerializedSize(), heap >> 20, digest.getValue());
+    }
+}
@@ -0,0 +1,61 @@
+package com.elixcore.collector.session;
+
+/**
+ * {@link PackedAddress} intern cache.
+ * <p>
+ * 한 호스트의 local 주소와 주요 peer 는 수백 개 수준이므로 같은 주소의 세션은 같은 인스턴스를 공유한다.
+ * 크기가 고정된 direct-mapped 배열로, 충돌하면 이전 항목을 덮어쓴다. (최대 {@link #CAPACITY} 개씩 유지, lock 없음)
+ * `ss` 표기 문자열 기준 table 과 packing 값 기준 table(netlink, /proc/net)을 따로 둔다.
+ * 같은 주소라도 `ss` 표기가 다르면(ex. *, 0:0:0:0:0:0:0:1) 원문을 보존해야 하기 때문이다.
+ * 표기 문자열을 lazy 로 만드는 것은 packing 값 기준 table 의 항목뿐이다. (배열 slot 은 volatile 이 아니므로 원문은 final 필드로 전달)
+ */
+final class AddressTable {
+    static final         int             CAPACITY   = 1 << 14;
+    private static final int             MASK       = CAPACITY - 1;
+    private static final PackedAddress[] textTable  = new PackedAddress[CAPACITY];
+    private static final PackedAddress[] valueTable = new PackedAddress[CAPACITY];
+
+    private AddressTable() {
+    }
+
+    /**
+     * line 의 [from, to) 구간 표기의 주소. 캐시에 있으면 문자열을 만들지 않는다.
+     */
+    static PackedAddress intern(String line,
+                                int from,
+                                int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + line.charAt(i);
+        }
+        int slot = mix(hash) & MASK;
+        PackedAddress cached = textTable[slot];
+        if (cached != null && cached.textEquals(line, from, to)) {
+            return cached;
+        }
+        String text = from == 0 && to == line.length() ? line : line.substring(from, to);
+        PackedAddress address = new PackedAddress(SessionKey.pack(text, true), SessionKey.pack(text, false), text);
+        textTable[slot] = address;
+        return address;
+    }
+
+    /**
+     * packing 값의 주소. 표기 문자열은 필요할 때 만든다.
+     */
+    static PackedAddress intern(long high,
+                                long low) {
+        int slot = (int) SessionKey.hash(high, low, 0, 0, 0) & MASK;
+        PackedAddress cached = valueTable[slot];
+        if (cached != null && cached.getHigh() == high && cached.getLow() == low) {
+            return cached;
+        }
+        PackedAddress address = new PackedAddress(high, low, null);
+        valueTable[slot] = address;
+        return address;
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,22 @@
+package com.elixcore.collector.session;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * {@link HeavyHitterTracker} 가 추적하는 (pid, peer 주소, peer port) 의 감쇠 누적 byte.
+ * <p>
+ * bytes 는 실제 값 이상이며 실제 값은 bytes - error 이상이다. (Space-Saving 추정 범위)
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class HeavyHitter {
+    private final int            pid; /* 0 : peer 단위 집계 */
+    private final SessionAddress peer;
+    private final double         bytes; /* rx + tx */
+    private final double         rxByte;
+    private final double         txByte;
+    private final double         error;
+}
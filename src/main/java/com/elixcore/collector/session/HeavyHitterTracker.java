@@ -0,0 +1,356 @@
+package com.elixcore.collector.session;
+
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 수집 주기마다의 세션 delta(byte)로 상위 (pid, peer 주소, peer port) 를 추적한다. (Space-Saving)
+ * <p>
+ * 항목 수는 capacity 로 고정되며 모든 상태는 primitive 배열에 둔다. 추적 중이 아닌 key 가 들어오면 가장 작은 항목을 대체하고,
+ * 대체된 값을 error 로 기록한다. 누적 byte 는 주기마다 exp(-경과 시간 / window) 로 감쇠하므로 최근 window 의 양에 가깝다.
+ * <p>
+ * 갱신은 delta 를 계산하는 수집 스레드 하나에서만 한다. ({@link #beginCycle(long)} -> {@link #add(SessionCollectedData)} -> {@link #publish()})
+ * 조회({@link #top(int)} 등)는 publish 시점의 snapshot 을 읽으므로 lock 없이 다른 스레드에서 호출할 수 있다.
+ */
+public class HeavyHitterTracker {
+    public static final  String STRUCT_TYPE      = "heavy_hitter";
+    private static final int    DEFAULT_CAPACITY = 256;
+    private static final long   DEFAULT_WINDOW   = Duration.ofMinutes(5)
+                                                           .toNanos();
+
+    private final    int               capacity;
+    private final    long              window;
+    private          int               emitTop;
+    /*항목 (slot)*/
+    private final    long[]            peerHigh;
+    private final    long[]            peerLow;
+    private final    long[]            meta; /* pid(32) | peer port(16) */
+    private final    double[]          count;
+    private final    double[]          error;
+    private final    double[]          rxByte;
+    private final    double[]          txByte;
+    private          int               size;
+    /*count 최소 heap (slot 번호), heapIndex[slot] : heap 위치*/
+    private final    int[]             heap;
+    private final    int[]             heapIndex;
+    /*key -> slot (open addressing, -1 : 빈 칸)*/
+    private final    int[]             index;
+    private final    int               indexMask;
+    private          long              lastCycle;
+    private volatile List<HeavyHitter> snapshot = Collections.emptyList();
+
+    /**
+     * 256 개, 5분
+     */
+    public HeavyHitterTracker() {
+        this(DEFAULT_CAPACITY, Duration.ofNanos(DEFAULT_WINDOW));
+    }
+
+    /**
+     * @param capacity 추적 항목 수. 상위 N 을 조회하려면 N 의 몇 배로 둔다.
+     * @param window   감쇠 시정수 (이 시간 전의 byte 는 1/e 로 반영)
+     */
+    public HeavyHitterTracker(int capacity,
+                              Duration window) {
+        this.capacity  = Math.max(1, capacity);
+        this.window    = Math.max(1, window.toNanos());
+        this.peerHigh  = new long[this.capacity];
+        this.peerLow   = new long[this.capacity];
+        this.meta      = new long[this.capacity];
+        this.count     = new double[this.capacity];
+        this.error     = new double[this.capacity];
+        this.rxByte    = new double[this.capacity];
+        this.txByte    = new double[this.capacity];
+        this.heap      = new int[this.capacity];
+        this.heapIndex = new int[this.capacity];
+        this.index     = new int[Integer.highestOneBit(this.capacity * 2 - 1) << 1];
+        this.indexMask = index.length - 1;
+        Arrays.fill(index, -1);
+    }
+
+    /**
+     * 0 보다 크면 {@link SessionCollector} 가 bundle data 에 상위 emitTop 개를 붙인다. (type : heavy_hitter)
+     */
+    public void setEmitTop(int emitTop) {
+        this.emitTop = Math.max(0, emitTop);
+    }
+
+    public int getEmitTop() {
+        return emitTop;
+    }
+
+    /**
+     * 이전 주기 이후 경과 시간만큼 누적 값을 감쇠한다. (모든 항목에 같은 비율이므로 heap 순서는 유지됨)
+     *
+     * @param now {@link System#nanoTime()}
+     */
+    public void beginCycle(long now) {
+        if (lastCycle != 0 && now > lastCycle) {
+            double decay = Math.exp(-(double) (now - lastCycle) / window);
+            for (int slot = 0; slot < size; slot++) {
+                count[slot]  *= decay;
+                error[slot]  *= decay;
+                rxByte[slot] *= decay;
+                txByte[slot] *= decay;
+            }
+        }
+        lastCycle = now;
+    }
+
+    /**
+     * session 의 delta byte 를 더한다. (LISTEN/UNCONN, delta 가 없는 세션 제외)
+     */
+    public void add(SessionCollectedData session) {
+        long rx = session.getRxByte();
+        long tx = session.getTxByte();
+        if (rx + tx <= 0 || session.isListen()) {
+            return;
+        }
+        long k0 = SessionKey.high(session.getPeer());
+        long k1 = SessionKey.low(session.getPeer());
+        long k2 = key(session.getPid() != null ? session.getPid() : 0, SessionKey.peerPort(SessionKey.meta(session)));
+        this.add(k0, k1, k2, rx, tx);
+    }
+
+    private void add(long k0,
+                     long k1,
+                     long k2,
+                     long rx,
+                     long tx) {
+        int position = this.find(k0, k1, k2);
+        int slot = index[position];
+        if (slot < 0) {
+            if (size < capacity) {
+                slot = size++;
+                heap[slot]      = slot;
+                heapIndex[slot] = slot;
+                count[slot]     = 0;
+                error[slot]     = 0;
+            } else {
+                /* 가장 작은 항목을 대체 */
+                slot = heap[0];
+                this.unindex(slot);
+                position    = this.find(k0, k1, k2);
+                error[slot] = count[slot];
+            }
+            peerHigh[slot]  = k0;
+            peerLow[slot]   = k1;
+            meta[slot]      = k2;
+            rxByte[slot]    = 0;
+            txByte[slot]    = 0;
+            index[position] = slot;
+        }
+        count[slot]  += rx + tx;
+        rxByte[slot] += rx;
+        txByte[slot] += tx;
+        /* 새로 추가된 항목(heap 끝)은 부모보다 작을 수 있음 */
+        this.siftDown(this.siftUp(heapIndex[slot]));
+    }
+
+    /**
+     * 현재 항목을 조회용 snapshot 으로 만든다. (bytes 내림차순)
+     */
+    public void publish() {
+        List<HeavyHitter> hitters = new ArrayList<>(size);
+        for (int slot = 0; slot < size; slot++) {
+            int pid = (int) (meta[slot] >>> 16);
+            int port = (int) (meta[slot] & 0xffff);
+            hitters.add(new HeavyHitter(pid, SessionKey.address(peerHigh[slot], peerLow[slot], port), count[slot], rxByte[slot], txByte[slot], error[slot]));
+        }
+        hitters.sort((a, b) -> Double.compare(b.getBytes(), a.getBytes()));
+        snapshot = Collections.unmodifiableList(hitters);
+    }
+
+    /**
+     * 상위 n 개 (pid, peer 주소, peer port)
+     */
+    public List<HeavyHitter> top(int n) {
+        List<HeavyHitter> hitters = snapshot;
+        return hitters.subList(0, Math.min(Math.max(0, n), hitters.size()));
+    }
+
+    /**
+     * 상위 n 개 peer 주소. 추적 중인 항목을 주소별로 합친 값이므로 추적에서 밀려난 작은 연결은 포함되지 않는다. (pid 0, port 0)
+     */
+    public List<HeavyHitter> topPeers(int n) {
+        Map<String, double[]> peerMap = new LinkedHashMap<>();
+        for (HeavyHitter hitter : snapshot) {
+            double[] sums = peerMap.computeIfAbsent(hitter.getPeer()
+                                                          .getAddress(), address -> new double[4]);
+            sums[0] += hitter.getBytes();
+            sums[1] += hitter.getRxByte();
+            sums[2] += hitter.getTxByte();
+            sums[3] += hitter.getError();
+        }
+        List<HeavyHitter> peers = new ArrayList<>(peerMap.size());
+        peerMap.forEach((address, sums) -> peers.add(new HeavyHitter(0, new SessionAddress(address, 0, 0), sums[0], sums[1], sums[2], sums[3])));
+        peers.sort((a, b) -> Double.compare(b.getBytes(), a.getBytes()));
+        return peers.subList(0, Math.min(Math.max(0, n), peers.size()));
+    }
+
+    /**
+     * bundle data 용 Struct
+     * <pre>
+     * type : heavy_hitter, window(s), entries : [{pid, address, port, bytes, rx_byte, tx_byte, error}]
+     * </pre>
+     */
+    public Struct toStruct(int n) {
+        ListValue.Builder entries = ListValue.newBuilder();
+        for (HeavyHitter hitter : this.top(n)) {
+            Integer port = hitter.getPeer()
+                                 .getPort();
+            entries.addValues(Value.newBuilder()
+                                   .setStructValue(Struct.newBuilder()
+                                                         .putFields("pid", number(hitter.getPid()))
+                                                         .putFields("address", Value.newBuilder()
+                                                                                    .setStringValue(hitter.getPeer()
+                                                                                                          .getAddress())
+                                                                                    .build())
+                                                         .putFields("port", number(port != null ? port : 0))
+                                                         .putFields("bytes", number(Math.round(hitter.getBytes())))
+                                                         .putFields("rx_byte", number(Math.round(hitter.getRxByte())))
+                                                         .putFields("tx_byte", number(Math.round(hitter.getTxByte())))
+                                                         .putFields("error", number(Math.round(hitter.getError())))));
+        }
+        return Struct.newBuilder()
+                     .putFields("type", Value.newBuilder()
+                                             .setStringValue(STRUCT_TYPE)
+                                             .build())
+                     .putFields("window", number(window / 1_000_000_000L))
+                     .putFields("entries", Value.newBuilder()
+                                                .setListValue(entries)
+                                                .build())
+                     .build();
+    }
+
+    /**
+     * heap 순서, heapIndex, index 가 서로 맞는지 확인한다. (테스트용)
+     *
+     * @throws IllegalStateException 어긋난 위치
+     */
+    void checkConsistency() {
+        for (int i = 0; i < size; i++) {
+            if (heapIndex[heap[i]] != i) {
+                throw new IllegalStateException("heapIndex " + heap[i] + " != " + i);
+            }
+            if (i > 0 && count[heap[(i - 1) / 2]] > count[heap[i]]) {
+                throw new IllegalStateException("heap order at " + i);
+            }
+            int position = this.find(peerHigh[heap[i]], peerLow[heap[i]], meta[heap[i]]);
+            if (index[position] != heap[i]) {
+                throw new IllegalStateException("slot " + heap[i] + " not indexed");
+            }
+        }
+        int indexed = 0;
+        for (int slot : index) {
+            if (slot >= 0) {
+                indexed++;
+            }
+        }
+        if (indexed != size) {
+            throw new IllegalStateException("index size " + indexed + " != " + size);
+        }
+    }
+
+    private static long key(int pid,
+                            int port) {
+        return ((pid & 0xffffffffL) << 16) | (port & 0xffff);
+    }
+
+    /**
+     * @return key 가 있는 index 위치, 없으면 넣을 빈 칸
+     */
+    private int find(long k0,
+                     long k1,
+                     long k2) {
+        int position = (int) SessionKey.hash(k0, k1, k2, 0, 0) & indexMask;
+        while (index[position] >= 0) {
+            int slot = index[position];
+            if (peerHigh[slot] == k0 && peerLow[slot] == k1 && meta[slot] == k2) {
+                return position;
+            }
+            position = (position + 1) & indexMask;
+        }
+        return position;
+    }
+
+    /**
+     * slot 의 key 를 index 에서 제거한다. (backward shift deletion)
+     */
+    private void unindex(int slot) {
+        int hole = this.find(peerHigh[slot], peerLow[slot], meta[slot]);
+        index[hole] = -1;
+        int position = hole;
+        while (true) {
+            position = (position + 1) & indexMask;
+            int moving = index[position];
+            if (moving < 0) {
+                return;
+            }
+            int home = (int) SessionKey.hash(peerHigh[moving], peerLow[moving], meta[moving], 0, 0) & indexMask;
+            boolean movable = hole <= position ? (home <= hole || home > position) : (home <= hole && home > position);
+            if (movable) {
+                index[hole]     = moving;
+                index[position] = -1;
+                hole            = position;
+            }
+        }
+    }
+
+    /**
+     * @return 이동한 heap 위치
+     */
+    private int siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (count[heap[parent]] <= count[heap[i]]) {
+                break;
+            }
+            this.swap(i, parent);
+            i = parent;
+        }
+        return i;
+    }
+
+    /**
+     * count 가 커진 heap 위치 i 를 아래로 내린다.
+     */
+    private void siftDown(int i) {
+        while (true) {
+            int left = i * 2 + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && count[heap[left + 1]] < count[heap[left]] ? left + 1 : left;
+            if (count[heap[i]] <= count[heap[smallest]]) {
+                return;
+            }
+            this.swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i,
+                      int j) {
+        int slot = heap[i];
+        heap[i]            = heap[j];
+        heap[j]            = slot;
+        heapIndex[heap[i]] = i;
+        heapIndex[heap[j]] = j;
+    }
+
+    private static Value number(long value) {
+        return Value.newBuilder()
+                    .setNumberValue(value)
+                    .build();
+    }
+}
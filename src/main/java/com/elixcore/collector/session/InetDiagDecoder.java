@@ -0,0 +1,248 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * SOCK_DIAG_BY_FAMILY 응답(inet_diag_msg + INET_DIAG_INFO tcp_info) 디코더
+ */
+final class InetDiagDecoder {
+    static final         int NLMSG_HDRLEN        = 16;
+    static final         int NLMSG_ERROR         = 2;
+    static final         int NLMSG_DONE          = 3;
+    static final         int SOCK_DIAG_BY_FAMILY = 20;
+    static final         int INET_DIAG_INFO      = 2;
+    static final         int AF_INET             = 2;
+    static final         int AF_INET6            = 10;
+    static final         int IPPROTO_TCP         = 6;
+    static final         int IPPROTO_UDP         = 17;
+    /**
+     * inet_diag_msg (family, state, timer, retrans, sockid[48], expires, rqueue, wqueue, uid, inode)
+     */
+    private static final int INET_DIAG_MSG_LEN   = 72;
+    /*tcp_info offset*/
+    private static final int TCPI_RTT            = 68;
+    private static final int TCPI_RTTVAR         = 72;
+    private static final int TCPI_SND_CWND       = 80;
+    private static final int TCPI_TOTAL_RETRANS  = 100;
+    private static final int TCPI_BYTES_RECEIVED = 128;
+    private static final int TCPI_SEGS_OUT       = 136;
+    private static final int TCPI_SEGS_IN        = 140;
+    private static final int TCPI_DELIVERY_RATE  = 160;
+    private static final int TCPI_BYTES_SENT     = 200;
+
+    private InetDiagDecoder() {
+    }
+
+    /**
+     * inet_diag_req_v2 dump 요청 메시지를 buffer 에 쓴다.
+     */
+    static void writeRequest(ByteBuffer buffer,
+                             int family,
+                             int ipProtocol,
+                             int sequence) {
+        writeRequest(buffer, family, ipProtocol, sequence, 0xffffffff);
+    }
+
+    /**
+     * @param states 받을 상태 bitmask (1 << tcp_states.h 값)
+     */
+    static void writeRequest(ByteBuffer buffer,
+                             int family,
+                             int ipProtocol,
+                             int sequence,
+                             int states) {
+        buffer.clear();
+        /*nlmsghdr*/
+        buffer.putInt(NLMSG_HDRLEN + 56);
+        buffer.putShort((short) SOCK_DIAG_BY_FAMILY);
+        buffer.putShort((short) 0x301); /* NLM_F_REQUEST | NLM_F_DUMP */
+        buffer.putInt(sequence);
+        buffer.putInt(0);
+        /*inet_diag_req_v2*/
+        buffer.put((byte) family);
+        buffer.put((byte) ipProtocol);
+        buffer.put((byte) (1 << (INET_DIAG_INFO - 1)));
+        buffer.put((byte) 0);
+        buffer.putInt(states);
+        for (int i = 0; i < 48; i++) {
+            buffer.put((byte) 0);
+        }
+        buffer.flip();
+    }
+
+    /**
+     * buffer(읽기 모드)에 있는 완전한 netlink 메시지를 디코딩한다. 잘린 메시지는 buffer 에 남겨둔다.
+     *
+     * @return NLMSG_DONE 수신 여부
+     */
+    static boolean decode(ByteBuffer buffer,
+                          int protocol,
+                          SocketInodeIndex inodeIndex,
+                          Consumer<SessionCollectedData> consumer) throws IOException {
+        while (buffer.remaining() >= NLMSG_HDRLEN) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            int type = buffer.getShort(start + 4) & 0xffff;
+            if (length < NLMSG_HDRLEN) {
+                throw new IOException("invalid netlink message length : " + length);
+            }
+            if (buffer.remaining() < length) {
+                break;
+            }
+            buffer.position(Math.min(start + align(length), buffer.limit()));
+
+            switch (type) {
+                case NLMSG_DONE:
+                    return true;
+                case NLMSG_ERROR:
+                    throw new IOException("netlink error : " + buffer.getInt(start + NLMSG_HDRLEN));
+                case SOCK_DIAG_BY_FAMILY:
+                    if (length >= NLMSG_HDRLEN + INET_DIAG_MSG_LEN) {
+                        consumer.accept(decodeMessage(buffer, start + NLMSG_HDRLEN, start + length, protocol, inodeIndex));
+                    }
+                    break;
+            }
+        }
+        return false;
+    }
+
+    private static SessionCollectedData decodeMessage(ByteBuffer buffer,
+                                                      int offset,
+                                                      int end,
+                                                      int protocol,
+                                                      SocketInodeIndex inodeIndex) {
+        SessionCollectedData sessionCollectedData = new SessionCollectedData(protocol);
+        int family = buffer.get(offset) & 0xff;
+        int state = buffer.get(offset + 1) & 0xff;
+        int localPort = readPort(buffer, offset + 4);
+        int peerPort = readPort(buffer, offset + 6);
+        long inode = buffer.getInt(offset + 68) & 0xffffffffL;
+
+        sessionCollectedData.setState(toState(state));
+        sessionCollectedData.setLocal(toAddress(buffer, offset + 8, family, localPort));
+        sessionCollectedData.setPeer(toAddress(buffer, offset + 24, family, peerPort));
+        sessionCollectedData.setInode(inode);
+        if (inodeIndex != null) {
+            inodeIndex.attribute(inode, sessionCollectedData);
+        } else {
+            sessionCollectedData.setPid(0);
+        }
+
+        /*rtattr*/
+        int attr = offset + INET_DIAG_MSG_LEN;
+        while (attr + 4 <= end) {
+            int attrLength = buffer.getShort(attr) & 0xffff;
+            int attrType = buffer.getShort(attr + 2) & 0xffff;
+            if (attrLength < 4 || attr + attrLength > end) {
+                break;
+            }
+            if (attrType == INET_DIAG_INFO && protocol == 1) {
+                readTcpInfo(buffer, attr + 4, attrLength - 4, sessionCollectedData);
+            }
+            attr += align(attrLength);
+        }
+        return sessionCollectedData;
+    }
+
+    private static void readTcpInfo(ByteBuffer buffer,
+                                    int offset,
+                                    int length,
+                                    SessionCollectedData sessionCollectedData) {
+        if (length >= TCPI_TOTAL_RETRANS + 4) {
+            sessionCollectedData.setRtt(buffer.getInt(offset + TCPI_RTT) & 0xffffffffL);
+            sessionCollectedData.setRttVar(buffer.getInt(offset + TCPI_RTTVAR) & 0xffffffffL);
+            sessionCollectedData.setCwnd(buffer.getInt(offset + TCPI_SND_CWND) & 0xffffffffL);
+            sessionCollectedData.setRetrans(buffer.getInt(offset + TCPI_TOTAL_RETRANS) & 0xffffffffL);
+        }
+        if (length >= TCPI_BYTES_RECEIVED + 8) {
+            sessionCollectedData.setRxByte(buffer.getLong(offset + TCPI_BYTES_RECEIVED));
+        }
+        if (length >= TCPI_SEGS_IN + 4) {
+            sessionCollectedData.setTxPacket(buffer.getInt(offset + TCPI_SEGS_OUT) & 0xffffffffL);
+            sessionCollectedData.setRxPacket(buffer.getInt(offset + TCPI_SEGS_IN) & 0xffffffffL);
+        }
+        if (length >= TCPI_DELIVERY_RATE + 8) {
+            /* bytes/s -> bps (ss 출력 단위) */
+            sessionCollectedData.setDeliveryRate(buffer.getLong(offset + TCPI_DELIVERY_RATE) * 8);
+        }
+        if (length >= TCPI_BYTES_SENT + 8) {
+            sessionCollectedData.setTxByte(buffer.getLong(offset + TCPI_BYTES_SENT));
+        }
+    }
+
+    /**
+     * `ss` 출력을 {@link SessionAddress#findMatch(String)} 로 파싱한 결과와 같은 형태로 만든다.
+     * (v4-mapped-v6 는 v4 주소, type 2) 주소 문자열은 필요할 때 만든다.
+     */
+    static SessionAddress toAddress(ByteBuffer buffer,
+                                    int offset,
+                                    int family,
+                                    int port) {
+        if (family == AF_INET) {
+            return SessionAddress.of(0, (0xffffL << 32) | (readLong(buffer, offset, 4) & 0xffffffffL), port, 0);
+        }
+        long high = readLong(buffer, offset, 8);
+        long low = readLong(buffer, offset + 8, 8);
+        boolean mapped = high == 0 && (low >>> 32) == 0xffff;
+        return SessionAddress.of(high, low, port, mapped ? 2 : 1);
+    }
+
+    /**
+     * network byte order (buffer 의 order 와 무관)
+     */
+    private static long readLong(ByteBuffer buffer,
+                                 int offset,
+                                 int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (buffer.get(offset + i) & 0xff);
+        }
+        return value;
+    }
+
+    private static int readPort(ByteBuffer buffer,
+                                int offset) {
+        return ((buffer.get(offset) & 0xff) << 8) | (buffer.get(offset + 1) & 0xff);
+    }
+
+    /**
+     * include/net/tcp_states.h
+     */
+    static PayloadState.SessionState toState(int state) {
+        switch (state) {
+            case 1:
+                return PayloadState.SessionState.ESTABLISHED;
+            case 2:
+                return PayloadState.SessionState.SYN_SENT;
+            case 3:
+            case 12: /* TCP_NEW_SYN_RECV */
+                return PayloadState.SessionState.SYN_RECV;
+            case 4:
+                return PayloadState.SessionState.FIN_WAIT_1;
+            case 5:
+                return PayloadState.SessionState.FIN_WAIT_2;
+            case 6:
+                return PayloadState.SessionState.TIME_WAIT;
+            case 7: /* ss 는 TCP_CLOSE 를 UNCONN 으로 출력 */
+                return PayloadState.SessionState.UNCONN;
+            case 8:
+                return PayloadState.SessionState.CLOSE_WAIT;
+            case 9:
+                return PayloadState.SessionState.LAST_ACK;
+            case 10:
+                return PayloadState.SessionState.LISTEN;
+            case 11:
+                return PayloadState.SessionState.CLOSING;
+            default:
+                return PayloadState.SessionState.UNRECOGNIZED;
+        }
+    }
+
+    private static int align(int length) {
+        return (length + 3) & ~3;
+    }
+}
@@ -0,0 +1,64 @@
+package com.elixcore.collector.session;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * lock-free 지연시간 histogram (ns).
+ * bucket i 는 [2^(i-1), 2^i) 구간이며, percentile 은 해당 bucket 의 상한으로 근사한다.
+ */
+public final class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder       count   = new LongAdder();
+    private final LongAdder       sum     = new LongAdder();
+    private final LongAccumulator max     = new LongAccumulator(Math::max, 0);
+    private volatile long         last;
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value)));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+        last = value;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getLast() {
+        return last;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    /**
+     * @param quantile 0.0 ~ 1.0
+     */
+    public long getPercentile(double quantile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(n * Math.min(1.0, Math.max(0.0, quantile)));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(i == 0 ? 0 : 1L << Math.min(i, 62), max.get());
+            }
+        }
+        return max.get();
+    }
+}
@@ -0,0 +1,368 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.collector.EndpointCollector;
+import com.elixcore.lib.protocol.message.ElixcoreProtocol;
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import com.google.protobuf.Any;
+import com.google.protobuf.GeneratedMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 모든 network namespace 의 세션을 수집한다. (컨테이너 등 host 밖의 namespace 포함)
+ * <p>
+ * /proc/[pid]/ns/net 링크의 inode 로 namespace 를 구분하고, namespace 마다 {@link SessionCollector} 를 두어
+ * 세션 테이블(delta), listen port 를 따로 유지한다. 각 namespace 는 동시에 수집하므로(JDK 21+ 는 virtual thread,
+ * 그 이전은 크기가 제한된 pool) 한 주기의 소요 시간은 namespace 수의 합이 아니라 가장 느린 namespace 에 가깝다.
+ * <p>
+ * 기본 구성은 host namespace 는 {@link SessionCollector#SessionCollector()} 와 같은 소스(netlink 등),
+ * 나머지는 /proc/[pid]/net 을 읽는 {@link ProcNetSessionSource} 이다. (setns 없이 읽을 수 있으나 byte/packet 카운터는 없음)
+ * inode -> pid 색인은 host 를 포함한 모든 namespace 가 공유하고 주기마다 한 번 갱신한다.
+ * 카운터가 필요하면 collectorFactory 에서 {@link #nsenterSessionSource(NetNamespace)} 등을 사용한다.
+ * <p>
+ * bundle data 는 namespace 별로 {@link NetNamespace#STRUCT_TYPE} Struct 뒤에 해당 namespace 의 data 가 count 개 이어진다.
+ * namespace 를 대표하는 pid 가 종료되면 다른 pid 로 collector 를 새로 만든다. (해당 namespace 는 다음 주기가 keyframe 과 같음)
+ * 사라지거나 다시 만든 namespace 의 collector 는 {@link SessionCollector#close()} 로 닫는다.
+ * <p>
+ * 제한 시간({@link #setTimeout(long)})을 넘긴 namespace 의 수집은 interrupt 로 취소된다.
+ * <ul>
+ *     <li>`ss` : 출력 읽기는 interrupt 로 깨지 않으므로 출력이 끝나거나 {@link SsProcess} 의 watchdog 이 종료시킬 때까지 진행하고,
+ *     종료 대기(waitFor)가 IOException 으로 끝난다. (프로세스는 종료시킴)</li>
+ *     <li>/proc/[pid]/net : FileChannel 읽기가 ClosedByInterruptException (IOException)</li>
+ *     <li>netlink : recv 는 interrupt 로 깨지 않으므로 dump 를 끝까지 읽는다.</li>
+ *     <li>소스가 실패한 주기는 세션을 종료로 보지 않고 테이블을 그대로 둔다. 소스를 다 읽은 뒤라면 주기는 끝까지 진행되고 bundle 만 버려진다.</li>
+ *     <li>버려진 bundle 의 delta 를 메우기 위해 해당 namespace 는 다음 주기를 keyframe 으로 보낸다. ({@link SessionCollector#requestKeyframe()})</li>
+ *     <li>취소된 수집이 아직 끝나지 않았으면 다음 주기의 해당 namespace 는 기다리지 않고 busy 로 표시한다.</li>
+ * </ul>
+ */
+@Slf4j
+public class NamespaceSessionCollector extends EndpointCollector implements Closeable {
+    private static final String                                   NET_LINK_PREFIX = "net:[";
+    private static final long                                     DEFAULT_TIMEOUT = 30_000;
+    private final        Path                                     procRoot;
+    private final        SocketInodeIndex                         inodeIndex;
+    private final        Function<NetNamespace, SessionCollector> collectorFactory;
+    private final        boolean                                  sharedIndex; /* 기본 구성 : 공유 색인을 주기마다 한 번 갱신 */
+    private final        ExecutorService                          executor;
+    private final        Map<Long, NamespaceCollector>            collectorMap    = new HashMap<>();
+    private volatile     long                                     timeoutMillis   = DEFAULT_TIMEOUT;
+    private volatile     boolean                                  closed;
+
+    public NamespaceSessionCollector() {
+        this(Paths.get("/proc"), null, defaultParallelism());
+    }
+
+    /**
+     * @param procRoot         테스트 시 가짜 procfs 디렉터리 ([pid]/ns/net 링크, [pid]/net/tcp, [pid]/fd/* 구조)
+     * @param collectorFactory null 이면 기본 구성 (host : netlink 등 기본 소스, 그 외 : /proc/[pid]/net)
+     * @param maxThreads       virtual thread 를 사용할 수 없을 때의 pool 크기
+     */
+    public NamespaceSessionCollector(Path procRoot,
+                                     Function<NetNamespace, SessionCollector> collectorFactory,
+                                     int maxThreads) {
+        this.procRoot         = procRoot;
+        this.inodeIndex       = new SocketInodeIndex(procRoot);
+        this.collectorFactory = collectorFactory != null ? collectorFactory : this::defaultCollector;
+        this.sharedIndex      = collectorFactory == null;
+        this.executor         = newExecutor(maxThreads);
+    }
+
+    /**
+     * namespace 안에서 `ss` 를 실행하는 소스. (nsenter, CAP_SYS_ADMIN 필요)
+     */
+    public static SessionSource nsenterSessionSource(NetNamespace namespace) {
+        return new SsSessionSource("nsenter --net=/proc/" + namespace.getPid() + "/ns/net " + SsSessionSource.SESSION_COMMAND,
+                                   SessionCollectedData.PROTOCOL_TCP);
+    }
+
+    /**
+     * namespace 하나의 수집 제한 시간. 넘은 namespace 는 이번 bundle 에서 error 로 표시한다.
+     */
+    public void setTimeout(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * {@link #close()} 이후에는 빈 bundle 을 반환한다.
+     */
+    public synchronized PayloadState.StateBundle collectSession() {
+        long now = System.currentTimeMillis();
+        if (closed) {
+            return PayloadState.StateBundle.newBuilder()
+                                           .setCollectTime(now)
+                                           .build();
+        }
+        List<NamespaceCollector> namespaceCollectors = this.refresh();
+        if (sharedIndex) {
+            inodeIndex.refresh();
+        }
+
+        List<Callable<PayloadState.StateBundle>> tasks = new ArrayList<>(namespaceCollectors.size());
+        for (NamespaceCollector namespaceCollector : namespaceCollectors) {
+            /* 제한 시간을 넘겨 아직 진행 중인 collector 는 기다리지 않고 null */
+            tasks.add(namespaceCollector.collector::tryCollectSession);
+        }
+        List<Future<PayloadState.StateBundle>> futures;
+        try {
+            futures = executor.invokeAll(tasks, timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            futures = new ArrayList<>();
+        } catch (RejectedExecutionException e) {
+            /* 수집 중 close */
+            futures = new ArrayList<>();
+        }
+
+        PayloadState.StateBundle.Builder sessionBundleBuilder = PayloadState.StateBundle.newBuilder();
+        sessionBundleBuilder.setCollectTime(now);
+        for (int i = 0; i < futures.size(); i++) {
+            NetNamespace namespace = namespaceCollectors.get(i).namespace;
+            try {
+                PayloadState.StateBundle bundle = futures.get(i)
+                                                         .get();
+                if (bundle == null) {
+                    log.warn("net namespace {} previous collect still running", namespace.getInode());
+                    sessionBundleBuilder.addData(Any.pack(namespace.toStruct(0, "busy")));
+                    continue;
+                }
+                sessionBundleBuilder.addData(Any.pack(namespace.toStruct(bundle.getDataCount(), null)));
+                sessionBundleBuilder.addAllData(bundle.getDataList());
+            } catch (CancellationException e) {
+                log.warn("net namespace {} collect timeout ({} ms)", namespace.getInode(), timeoutMillis);
+                namespaceCollectors.get(i).collector.requestKeyframe();
+                sessionBundleBuilder.addData(Any.pack(namespace.toStruct(0, "timeout")));
+            } catch (ExecutionException | InterruptedException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.warn("net namespace {} collect fail : {}", namespace.getInode(), cause.getMessage());
+                sessionBundleBuilder.addData(Any.pack(namespace.toStruct(0, String.valueOf(cause.getMessage()))));
+            }
+        }
+        log.debug("net namespace count : {}", namespaceCollectors.size());
+        return sessionBundleBuilder.build();
+    }
+
+    /**
+     * 현재 namespace 목록. (host namespace 가 처음)
+     */
+    public synchronized List<NetNamespace> namespaces() {
+        return namespaces(this.scan(null));
+    }
+
+    /**
+     * 수집 thread 를 interrupt 로 중단하고 모든 namespace 의 collector 를 닫는다.
+     * 진행 중인 {@link #collectSession()} 은 남은 제한 시간 안에 끝난다.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        synchronized (this) {
+            for (NamespaceCollector namespaceCollector : collectorMap.values()) {
+                namespaceCollector.collector.close();
+            }
+            collectorMap.clear();
+        }
+    }
+
+    /**
+     * 현재 collector 수 (테스트에서 사라진 namespace 정리 확인용)
+     */
+    synchronized int collectorCount() {
+        return collectorMap.size();
+    }
+
+    /**
+     * namespace 목록을 다시 읽고 collector 를 맞춘다. (사라진 namespace 제거, 대표 pid 가 종료된 namespace 는 재생성)
+     */
+    private List<NamespaceCollector> refresh() {
+        Set<Long> confirmed = new HashSet<>();
+        Map<Long, NetNamespace> namespaceMap = this.scan(confirmed);
+        for (Iterator<NamespaceCollector> iterator = collectorMap.values()
+                                                                 .iterator(); iterator.hasNext(); ) {
+            NamespaceCollector namespaceCollector = iterator.next();
+            if (!namespaceMap.containsKey(namespaceCollector.namespace.getInode())) {
+                iterator.remove();
+                this.release(namespaceCollector);
+            }
+        }
+
+        List<NamespaceCollector> namespaceCollectors = new ArrayList<>(namespaceMap.size());
+        for (NetNamespace namespace : namespaces(namespaceMap)) {
+            NamespaceCollector namespaceCollector = collectorMap.get(namespace.getInode());
+            if (namespaceCollector == null || !confirmed.contains(namespace.getInode())) {
+                if (namespaceCollector != null) {
+                    this.release(namespaceCollector);
+                }
+                namespaceCollector = new NamespaceCollector(namespace, collectorFactory.apply(namespace));
+                collectorMap.put(namespace.getInode(), namespaceCollector);
+            }
+            namespaceCollectors.add(namespaceCollector);
+        }
+        return namespaceCollectors;
+    }
+
+    /**
+     * 제한 시간을 넘겨 아직 진행 중인 수집은 이미 취소(interrupt)되었으므로 기다리지 않는다.
+     */
+    private void release(NamespaceCollector namespaceCollector) {
+        log.debug("net namespace {} (pid {}) collector closed", namespaceCollector.namespace.getInode(), namespaceCollector.namespace.getPid());
+        namespaceCollector.collector.close();
+    }
+
+    private static List<NetNamespace> namespaces(Map<Long, NetNamespace> namespaceMap) {
+        List<NetNamespace> namespaces = new ArrayList<>(namespaceMap.values());
+        namespaces.sort((a, b) -> a.isHost() != b.isHost() ? (a.isHost() ? -1 : 1) : Integer.compare(a.getPid(), b.getPid()));
+        return namespaces;
+    }
+
+    /**
+     * @param confirmed null 이 아니면 기존 collector 의 대표 pid 가 아직 같은 namespace 에 있는 namespace inode 를 담는다
+     * @return inode -> namespace (대표 pid 는 가장 작은 pid)
+     */
+    private Map<Long, NetNamespace> scan(Set<Long> confirmed) {
+        long hostInode = this.hostInode();
+        Map<Long, NetNamespace> namespaceMap = new HashMap<>();
+        try (DirectoryStream<Path> pidDirs = Files.newDirectoryStream(procRoot)) {
+            for (Path pidDir : pidDirs) {
+                int pid = SocketInodeIndex.parsePid(pidDir.getFileName()
+                                                          .toString());
+                if (pid <= 0) {
+                    continue;
+                }
+                long inode = namespaceInode(pidDir);
+                if (inode <= 0) {
+                    /* 종료된 프로세스, kernel thread 또는 권한 없음 */
+                    continue;
+                }
+                NetNamespace namespace = namespaceMap.get(inode);
+                if (namespace == null || pid < namespace.getPid()) {
+                    namespaceMap.put(inode, new NetNamespace(inode, pid, inode == hostInode));
+                }
+                if (confirmed != null) {
+                    NamespaceCollector namespaceCollector = collectorMap.get(inode);
+                    if (namespaceCollector != null && namespaceCollector.namespace.getPid() == pid) {
+                        confirmed.add(inode);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.debug("proc scan fail : {}", e.getMessage());
+        }
+        if (confirmed != null) {
+            /* 대표 pid 가 살아 있으면 더 작은 pid 가 생겨도 기존 collector 유지 */
+            for (Long inode : confirmed) {
+                namespaceMap.put(inode, collectorMap.get(inode).namespace);
+            }
+        }
+        return namespaceMap;
+    }
+
+    /**
+     * 수집 프로세스 자신(self)의 namespace, 없으면 pid 1 의 namespace
+     */
+    private long hostInode() {
+        long inode = namespaceInode(procRoot.resolve("self"));
+        return inode > 0 ? inode : namespaceInode(procRoot.resolve("1"));
+    }
+
+    /**
+     * @return /proc/[pid]/ns/net -> net:[4026531992] 의 inode, 읽을 수 없으면 0
+     */
+    static long namespaceInode(Path pidDir) {
+        String link;
+        try {
+            link = Files.readSymbolicLink(pidDir.resolve("ns/net"))
+                        .toString();
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            return 0;
+        }
+        if (!link.startsWith(NET_LINK_PREFIX) || !link.endsWith("]")) {
+            return 0;
+        }
+        long inode = 0;
+        for (int i = NET_LINK_PREFIX.length(); i < link.length() - 1; i++) {
+            char c = link.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            inode = inode * 10 + (c - '0');
+        }
+        return inode;
+    }
+
+    private SessionCollector defaultCollector(NetNamespace namespace) {
+        if (namespace.isHost()) {
+            /* 공유 색인은 collectSession 에서 주기마다 한 번 갱신 */
+            return new SessionCollector(procRoot, inodeIndex);
+        }
+        /* host 의 `ss` 로 대체하면 다른 namespace 의 세션이 섞이므로 fallback 없음 */
+        return new SessionCollector(new ProcNetSessionSource(procRoot.resolve(Integer.toString(namespace.getPid())), inodeIndex, true), null);
+    }
+
+    private static int defaultParallelism() {
+        return Math.max(4, Runtime.getRuntime()
+                                  .availableProcessors() * 2);
+    }
+
+    /**
+     * JDK 21+ 는 virtual thread (Java 8 target 이므로 reflection 으로 생성), 그 외는 daemon thread pool
+     */
+    private static ExecutorService newExecutor(int maxThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                                                    .invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newFixedThreadPool(Math.max(1, maxThreads), runnable -> {
+                Thread thread = new Thread(runnable, "session-netns-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public GeneratedMessage collect() {
+        return collectSession();
+    }
+
+    @Override
+    public ElixcoreProtocol.DataType getDataType() {
+        return ElixcoreProtocol.DataType.SESSION;
+    }
+
+    private static class NamespaceCollector {
+        private final NetNamespace     namespace;
+        private final SessionCollector collector;
+
+        private NamespaceCollector(NetNamespace namespace,
+                                   SessionCollector collector) {
+            this.namespace = namespace;
+            this.collector = collector;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.elixcore.collector.session;
+
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * network namespace. (/proc/[pid]/ns/net 링크의 inode 로 구분)
+ */
+@Data
+@AllArgsConstructor
+public class NetNamespace {
+    public static final String  STRUCT_TYPE = "net_namespace";
+    private final       long    inode; /* net:[inode] */
+    private final       int     pid; /* namespace 에 속한 프로세스 중 가장 작은 pid (/proc/[pid]/net 으로 접근) */
+    private final       boolean host;
+
+    /**
+     * bundle data 에서 이 namespace 의 data 앞에 붙는 Struct
+     * <pre>
+     * type : net_namespace, inode, pid, host, count(뒤따르는 이 namespace 의 data 수), error(수집 실패 시)
+     * </pre>
+     */
+    public Struct toStruct(int count,
+                           String error) {
+        Struct.Builder builder = Struct.newBuilder()
+                                       .putFields("type", Value.newBuilder()
+                                                               .setStringValue(STRUCT_TYPE)
+                                                               .build())
+                                       .putFields("inode", number(inode))
+                                       .putFields("pid", number(pid))
+                                       .putFields("host", Value.newBuilder()
+                                                               .setBoolValue(host)
+                                                               .build())
+                                       .putFields("count", number(count));
+        if (error != null) {
+            builder.putFields("error", Value.newBuilder()
+                                            .setStringValue(error)
+                                            .build());
+        }
+        return builder.build();
+    }
+
+    private static Value number(long value) {
+        return Value.newBuilder()
+                    .setNumberValue(value)
+                    .build();
+    }
+}
@@ -0,0 +1,209 @@
+package com.elixcore.collector.session;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+import static com.elixcore.collector.session.InetDiagDecoder.*;
+
+/**
+ * NETLINK_SOCK_DIAG(inet_diag) 로 소켓 목록을 직접 읽는 세션 소스.
+ * `ss` 프로세스 실행과 텍스트 파싱 없이 {@link SessionCollectedData} 를 만든다.
+ * <p>
+ * dump 순서 : TCP(v4, v6) -> UDP(v4, v6)
+ */
+public class NetlinkSessionSource implements SessionSource {
+    private static final int                     RECEIVE_BUFFER_SIZE = 64 * 1024;
+    private final        TransportFactory        transportFactory;
+    private final        SocketInodeIndex        inodeIndex;
+    private final        boolean                 includeUdp;
+    private final        boolean                 refreshIndex; /* false : 공유 색인은 소유자가 갱신 */
+    private final        ByteBuffer              requestBuffer       = ByteBuffer.allocateDirect(NLMSG_HDRLEN + 56)
+                                                                                 .order(ByteOrder.nativeOrder());
+    private final        ByteBuffer              receiveBuffer       = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE)
+                                                                                 .order(ByteOrder.nativeOrder());
+    private              int                     sequence;
+    private volatile     int                     stateMask           = 0xffffffff;
+    private              long                    receiveNanos;
+    private              long                    decodeNanos;
+    private              long                    records;
+    private volatile     SessionCollectorMetrics metrics;
+
+    public NetlinkSessionSource() {
+        this(true);
+    }
+
+    public NetlinkSessionSource(boolean includeUdp) {
+        this(SocketTransport::new, new SocketInodeIndex(), includeUdp, true);
+    }
+
+    /**
+     * 다른 소스와 inode -> pid 색인을 공유하는 경우. 색인 갱신({@link SocketInodeIndex#refresh()})은 소유자가 한다.
+     */
+    public NetlinkSessionSource(SocketInodeIndex inodeIndex,
+                                boolean includeUdp) {
+        this(SocketTransport::new, inodeIndex, includeUdp, false);
+    }
+
+    NetlinkSessionSource(TransportFactory transportFactory,
+                         SocketInodeIndex inodeIndex,
+                         boolean includeUdp,
+                         boolean refreshIndex) {
+        this.transportFactory = transportFactory;
+        this.inodeIndex       = inodeIndex;
+        this.includeUdp       = includeUdp;
+        this.refreshIndex     = refreshIndex;
+    }
+
+    /**
+     * 캡처된 netlink 응답 파일(dump 순서대로 이어붙인 datagram)을 읽는 소스. root 권한 없이 파서 검증용.
+     */
+    public static NetlinkSessionSource replay(Path dumpFile,
+                                              boolean includeUdp) {
+        return new NetlinkSessionSource(() -> new ChannelTransport(FileChannel.open(dumpFile, StandardOpenOption.READ)), null, includeUdp, false);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        try {
+            return NetlinkSocket.isSupported();
+        } catch (Throwable e) {
+            /* jna 미포함 또는 netlink 미지원 */
+            return false;
+        }
+    }
+
+    @Override
+    public void setMetrics(SessionCollectorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 상태 조건을 inet_diag 요청의 상태 bitmask 로 보낸다. (kernel 에서 제외)
+     */
+    @Override
+    public void setFilter(SessionFilter filter) {
+        this.stateMask = filter != null ? filter.kernelStateMask() : 0xffffffff;
+    }
+
+    @Override
+    public synchronized void collect(Consumer<SessionCollectedData> consumer) throws IOException {
+        long execStart = System.nanoTime();
+        if (refreshIndex && inodeIndex != null) {
+            inodeIndex.refresh();
+        }
+        receiveBuffer.clear();
+        receiveNanos = 0;
+        decodeNanos  = 0;
+        records      = 0;
+        Consumer<SessionCollectedData> counting = session -> {
+            records++;
+            consumer.accept(session);
+        };
+        try (Transport transport = transportFactory.open()) {
+            long execNanos = System.nanoTime() - execStart;
+            dump(transport, AF_INET, IPPROTO_TCP, 1, counting);
+            dump(transport, AF_INET6, IPPROTO_TCP, 1, counting);
+            if (includeUdp) {
+                dump(transport, AF_INET, IPPROTO_UDP, 2, counting);
+                dump(transport, AF_INET6, IPPROTO_UDP, 2, counting);
+            }
+            SessionCollectorMetrics collectorMetrics = metrics;
+            if (collectorMetrics != null) {
+                collectorMetrics.record(SessionCollectorMetrics.Stage.EXEC, execNanos);
+                collectorMetrics.record(SessionCollectorMetrics.Stage.READ, receiveNanos);
+                collectorMetrics.record(SessionCollectorMetrics.Stage.PARSE, decodeNanos);
+                collectorMetrics.addRecordsRead(records);
+            }
+        }
+    }
+
+    private void dump(Transport transport,
+                      int family,
+                      int ipProtocol,
+                      int protocol,
+                      Consumer<SessionCollectedData> consumer) throws IOException {
+        writeRequest(requestBuffer, family, ipProtocol, ++sequence, stateMask);
+        transport.request(requestBuffer);
+        while (true) {
+            long decodeStart = System.nanoTime();
+            receiveBuffer.flip();
+            boolean done = decode(receiveBuffer, protocol, inodeIndex, consumer);
+            receiveBuffer.compact();
+            /* consumer(그룹핑) 시간 포함 */
+            decodeNanos += System.nanoTime() - decodeStart;
+            if (done) {
+                return;
+            }
+            if (!receiveBuffer.hasRemaining()) {
+                throw new IOException("netlink message larger than receive buffer");
+            }
+            long receiveStart = System.nanoTime();
+            int received = transport.receive(receiveBuffer);
+            receiveNanos += System.nanoTime() - receiveStart;
+            if (received < 0) {
+                throw new IOException("netlink dump closed before NLMSG_DONE");
+            }
+        }
+    }
+
+    interface Transport extends Closeable {
+        void request(ByteBuffer request) throws IOException;
+
+        int receive(ByteBuffer buffer) throws IOException;
+    }
+
+    interface TransportFactory {
+        Transport open() throws IOException;
+    }
+
+    static class SocketTransport implements Transport {
+        private final NetlinkSocket socket = new NetlinkSocket();
+
+        SocketTransport() throws IOException {
+        }
+
+        @Override
+        public void request(ByteBuffer request) throws IOException {
+            socket.send(request);
+        }
+
+        @Override
+        public int receive(ByteBuffer buffer) throws IOException {
+            return socket.receive(buffer);
+        }
+
+        @Override
+        public void close() {
+            socket.close();
+        }
+    }
+
+    static class ChannelTransport implements Transport {
+        private final FileChannel channel;
+
+        ChannelTransport(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void request(ByteBuffer request) {
+            /* 캡처 파일은 요청 순서대로 기록되어 있음 */
+        }
+
+        @Override
+        public int receive(ByteBuffer buffer) throws IOException {
+            return channel.read(buffer);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
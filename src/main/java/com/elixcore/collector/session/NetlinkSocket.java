@@ -0,0 +1,92 @@
+package com.elixcore.collector.session;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * NETLINK_SOCK_DIAG raw socket (libc 직접 호출)
+ */
+final class NetlinkSocket implements Closeable {
+    static final  int AF_NETLINK        = 16;
+    static final  int SOCK_RAW          = 3;
+    static final  int SOCK_CLOEXEC      = 0x80000;
+    static final  int NETLINK_SOCK_DIAG = 4;
+    private final int fd;
+
+    NetlinkSocket() throws IOException {
+        this.fd = LibC.INSTANCE.socket(AF_NETLINK, SOCK_RAW | SOCK_CLOEXEC, NETLINK_SOCK_DIAG);
+        if (fd < 0) {
+            throw new IOException("netlink socket open fail, errno : " + Native.getLastError());
+        }
+    }
+
+    static boolean isSupported() {
+        try {
+            try (NetlinkSocket ignored = new NetlinkSocket()) {
+                return true;
+            }
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * buffer 의 position ~ limit 구간을 kernel 로 전송한다.
+     */
+    void send(ByteBuffer buffer) throws IOException {
+        Pointer pointer = Native.getDirectBufferPointer(buffer)
+                                .share(buffer.position());
+        long sent = LibC.INSTANCE.send(fd, pointer, new NativeLong(buffer.remaining()), 0)
+                                 .longValue();
+        if (sent < 0) {
+            throw new IOException("netlink send fail, errno : " + Native.getLastError());
+        }
+        buffer.position(buffer.position() + (int) sent);
+    }
+
+    /**
+     * datagram 하나를 buffer 의 position 위치에 읽는다.
+     */
+    int receive(ByteBuffer buffer) throws IOException {
+        Pointer pointer = Native.getDirectBufferPointer(buffer)
+                                .share(buffer.position());
+        long read = LibC.INSTANCE.recv(fd, pointer, new NativeLong(buffer.remaining()), 0)
+                                 .longValue();
+        if (read < 0) {
+            throw new IOException("netlink recv fail, errno : " + Native.getLastError());
+        }
+        buffer.position(buffer.position() + (int) read);
+        return (int) read;
+    }
+
+    @Override
+    public void close() {
+        LibC.INSTANCE.close(fd);
+    }
+
+    interface LibC extends Library {
+        LibC INSTANCE = Native.load("c", LibC.class);
+
+        int socket(int domain,
+                   int type,
+                   int protocol);
+
+        NativeLong send(int fd,
+                        Pointer buffer,
+                        NativeLong length,
+                        int flags);
+
+        NativeLong recv(int fd,
+                        Pointer buffer,
+                        NativeLong length,
+                        int flags);
+
+        int close(int fd);
+    }
+}
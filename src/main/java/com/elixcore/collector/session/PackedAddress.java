@@ -0,0 +1,138 @@
+package com.elixcore.collector.session;
+
+/**
+ * 128bit 로 packing 한 주소와 표기 문자열. {@link AddressTable} 에서 공유하는 불변 값이다.
+ * <p>
+ * IPv4 는 ::ffff:a.b.c.d 로 저장한다. ({@link SessionKey#pack(String, boolean)} 와 같은 값)
+ * 표기 문자열은 `ss` 출력에서 만든 경우 원문 그대로이고, netlink / /proc/net 에서 만든 경우 처음 필요할 때 만든다.
+ * (IPv4, v4-mapped 는 a.b.c.d, 나머지는 RFC 5952 형식)
+ * <p>
+ * 원문은 final 이므로 lock 없이 공유된 인스턴스에서도 항상 보인다. 원문이 있는 주소는 다시 만들지 않으므로
+ * *, 0:0:0:0:0:0:0:1 같은 표기가 ::, ::1 로 바뀌지 않는다.
+ */
+final class PackedAddress {
+    private final long   high;
+    private final long   low;
+    private final String original; /* `ss` 표기 원문, packing 값에서 만든 경우 null */
+    private       String formatted; /* original 이 없을 때만 lazy (경쟁 시 같은 값을 여러 번 만들 수 있음) */
+
+    /**
+     * @param original `ss` 표기 원문. null 이면 packing 값으로 표기를 만든다.
+     */
+    PackedAddress(long high,
+                  long low,
+                  String original) {
+        this.high     = high;
+        this.low      = low;
+        this.original = original;
+    }
+
+    long getHigh() {
+        return high;
+    }
+
+    long getLow() {
+        return low;
+    }
+
+    boolean isV4Mapped() {
+        return high == 0 && (low >>> 32) == 0xffff;
+    }
+
+    String text() {
+        if (original != null) {
+            return original;
+        }
+        String text = formatted;
+        if (text == null) {
+            text      = isV4Mapped() ? formatIpv4(low) : formatIpv6(high, low);
+            formatted = text;
+        }
+        return text;
+    }
+
+    /**
+     * text 가 line 의 [from, to) 구간과 같은지 (substring 없이 비교)
+     */
+    boolean textEquals(String line,
+                       int from,
+                       int to) {
+        String text = text();
+        return text.length() == to - from && text.regionMatches(0, line, from, to - from);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PackedAddress)) {
+            return false;
+        }
+        PackedAddress other = (PackedAddress) o;
+        return high == other.high && low == other.low && text().equals(other.text());
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high * 31 + low);
+    }
+
+    @Override
+    public String toString() {
+        return text();
+    }
+
+    private static String formatIpv4(long low) {
+        StringBuilder builder = new StringBuilder(15);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            if (shift < 24) {
+                builder.append('.');
+            }
+            builder.append((low >>> shift) & 0xff);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * RFC 5952 형식 (inet_ntop 와 동일하게 가장 긴 0 구간을 :: 로 축약)
+     */
+    private static String formatIpv6(long high,
+                                     long low) {
+        int[] words = new int[8];
+        for (int i = 0; i < 4; i++) {
+            words[i]     = (int) ((high >>> (48 - i * 16)) & 0xffff);
+            words[i + 4] = (int) ((low >>> (48 - i * 16)) & 0xffff);
+        }
+        int zeroStart = -1;
+        int zeroLength = 0;
+        for (int i = 0; i < 8; ) {
+            if (words[i] != 0) {
+                i++;
+                continue;
+            }
+            int j = i;
+            while (j < 8 && words[j] == 0) {
+                j++;
+            }
+            if (j - i > zeroLength && j - i >= 2) {
+                zeroStart  = i;
+                zeroLength = j - i;
+            }
+            i = j;
+        }
+        StringBuilder builder = new StringBuilder(39);
+        for (int i = 0; i < 8; i++) {
+            if (i == zeroStart) {
+                builder.append("::");
+                i += zeroLength - 1;
+                continue;
+            }
+            if (builder.length() > 0 && builder.charAt(builder.length() - 1) != ':') {
+                builder.append(':');
+            }
+            builder.append(Integer.toHexString(words[i]));
+        }
+        return builder.toString();
+    }
+}
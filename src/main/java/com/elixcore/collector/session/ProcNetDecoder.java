@@ -0,0 +1,145 @@
+package com.elixcore.collector.session;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * /proc/net/{tcp,tcp6,udp,udp6} 한 줄을 {@link SessionCollectedData} 로 변환한다.
+ * <p>
+ * 고정 형식이므로 byte 단위로 공백 구분 컬럼만 훑는다. (String 생성 없음)
+ * 주소는 host byte order 의 32bit word 를 hex 로 출력한 값이다.
+ * <pre>
+ *   sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode
+ *    0: 0100007F:0CEA 00000000:0000 0A 00000000:00000000 00:00000000 00000000     0        0 17581 1 ...
+ * </pre>
+ * 카운터(byte/packet) 정보는 없으므로 0 으로 둔다.
+ */
+final class ProcNetDecoder {
+    private static final int COLUMN_LOCAL = 1;
+    private static final int COLUMN_PEER  = 2;
+    private static final int COLUMN_STATE = 3;
+    private static final int COLUMN_INODE = 9;
+
+    private ProcNetDecoder() {
+    }
+
+    /**
+     * @param addressBuffer 16 byte 이상, 호출 스레드 전용
+     * @return 헤더 등 형식이 맞지 않는 줄은 null
+     */
+    static SessionCollectedData decodeLine(ByteBuffer buffer,
+                                           int from,
+                                           int to,
+                                           int family,
+                                           int protocol,
+                                           SocketInodeIndex inodeIndex,
+                                           ByteBuffer addressBuffer) {
+        SessionCollectedData sessionCollectedData = new SessionCollectedData(protocol);
+        int column = 0;
+        int i = from;
+        while (column <= COLUMN_INODE) {
+            while (i < to && isSpace(buffer.get(i))) {
+                i++;
+            }
+            if (i >= to) {
+                return null;
+            }
+            int start = i;
+            while (i < to && !isSpace(buffer.get(i))) {
+                i++;
+            }
+            switch (column) {
+                case COLUMN_LOCAL:
+                case COLUMN_PEER: {
+                    SessionAddress address = toAddress(buffer, start, i, family, addressBuffer);
+                    if (address == null) {
+                        return null;
+                    }
+                    if (column == COLUMN_LOCAL) {
+                        sessionCollectedData.setLocal(address);
+                    } else {
+                        sessionCollectedData.setPeer(address);
+                    }
+                    break;
+                }
+                case COLUMN_STATE: {
+                    long state = parseHex(buffer, start, i);
+                    if (state < 0) {
+                        return null;
+                    }
+                    sessionCollectedData.setState(InetDiagDecoder.toState((int) state));
+                    break;
+                }
+                case COLUMN_INODE: {
+                    long inode = 0;
+                    for (int j = start; j < i; j++) {
+                        byte c = buffer.get(j);
+                        if (c < '0' || c > '9') {
+                            return null;
+                        }
+                        inode = inode * 10 + (c - '0');
+                    }
+                    sessionCollectedData.setInode(inode);
+                    if (inodeIndex != null) {
+                        inodeIndex.attribute(inode, sessionCollectedData);
+                    } else {
+                        sessionCollectedData.setPid(0);
+                    }
+                    break;
+                }
+            }
+            column++;
+        }
+        return sessionCollectedData;
+    }
+
+    /**
+     * 0100007F:0CEA (v4) / 32자리 hex:port (v6)
+     */
+    private static SessionAddress toAddress(ByteBuffer buffer,
+                                            int from,
+                                            int to,
+                                            int family,
+                                            ByteBuffer addressBuffer) {
+        int words = family == InetDiagDecoder.AF_INET ? 1 : 4;
+        int colon = from + words * 8;
+        if (colon >= to || buffer.get(colon) != ':') {
+            return null;
+        }
+        addressBuffer.clear();
+        addressBuffer.order(ByteOrder.nativeOrder());
+        for (int w = 0; w < words; w++) {
+            long word = parseHex(buffer, from + w * 8, from + w * 8 + 8);
+            if (word < 0) {
+                return null;
+            }
+            addressBuffer.putInt((int) word);
+        }
+        long port = parseHex(buffer, colon + 1, to);
+        if (port < 0) {
+            return null;
+        }
+        return InetDiagDecoder.toAddress(addressBuffer, 0, family, (int) port);
+    }
+
+    private static long parseHex(ByteBuffer buffer,
+                                 int from,
+                                 int to) {
+        if (from >= to) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Character.digit(buffer.get(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t';
+    }
+}
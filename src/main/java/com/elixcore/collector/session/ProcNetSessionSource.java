@@ -0,0 +1,156 @@
+package com.elixcore.collector.session;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+import static com.elixcore.collector.session.InetDiagDecoder.AF_INET;
+import static com.elixcore.collector.session.InetDiagDecoder.AF_INET6;
+
+/**
+ * /proc/net/{tcp,tcp6,udp,udp6} 를 읽는 세션 소스. (`ss` 없이, 프로세스 실행 없이 동작)
+ * <p>
+ * procfs 파일은 mmap 할 수 없으므로 재사용하는 direct buffer 로 크게 읽고 줄 단위로 {@link ProcNetDecoder} 에 넘긴다.
+ * pid 는 {@link SocketInodeIndex} 로 inode 를 조회해 채운다.
+ * /proc/net 에는 byte/packet 카운터가 없으므로 usage 는 0 이다. (상태, 주소, pid 만 제공)
+ */
+public class ProcNetSessionSource implements SessionSource {
+    private static final int                     READ_BUFFER_SIZE = 256 * 1024;
+    private final        Path                    procRoot;
+    private final        SocketInodeIndex        inodeIndex;
+    private final        boolean                 includeUdp;
+    private final        boolean                 refreshIndex; /* false : 공유 색인은 소유자가 갱신 */
+    private final        ByteBuffer              readBuffer       = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final        ByteBuffer              addressBuffer    = ByteBuffer.allocate(16);
+    private volatile     SessionCollectorMetrics metrics;
+
+    public ProcNetSessionSource() {
+        this(Paths.get("/proc"), true);
+    }
+
+    /**
+     * @param procRoot 테스트 시 가짜 procfs 디렉터리 (net/tcp, [pid]/fd/* 구조)
+     */
+    public ProcNetSessionSource(Path procRoot,
+                                boolean includeUdp) {
+        this.procRoot     = procRoot;
+        this.inodeIndex   = new SocketInodeIndex(procRoot);
+        this.includeUdp   = includeUdp;
+        this.refreshIndex = true;
+    }
+
+    /**
+     * 다른 network namespace 의 소켓 목록 (/proc/[pid]/net/tcp ...) 을 읽는다.
+     * socket inode 는 namespace 와 무관하게 유일하므로 pid 는 여러 소스가 공유하는 색인으로 찾으며, 색인 갱신은 호출 측이 한다.
+     *
+     * @param netRoot    net/tcp 등을 포함하는 디렉터리 (/proc/[pid])
+     * @param inodeIndex 공유 색인 (collect 전에 {@link SocketInodeIndex#refresh()} 된 상태)
+     */
+    public ProcNetSessionSource(Path netRoot,
+                                SocketInodeIndex inodeIndex,
+                                boolean includeUdp) {
+        this.procRoot     = netRoot;
+        this.inodeIndex   = inodeIndex;
+        this.includeUdp   = includeUdp;
+        this.refreshIndex = false;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return Files.isReadable(procRoot.resolve("net/tcp"));
+    }
+
+    @Override
+    public void setMetrics(SessionCollectorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public synchronized void collect(Consumer<SessionCollectedData> consumer) throws IOException {
+        long execStart = System.nanoTime();
+        if (refreshIndex) {
+            inodeIndex.refresh();
+        }
+        long execNanos = System.nanoTime() - execStart;
+
+        long readStart = System.nanoTime();
+        long records = this.read("net/tcp", AF_INET, SessionCollectedData.PROTOCOL_TCP, consumer)
+                + this.read("net/tcp6", AF_INET6, SessionCollectedData.PROTOCOL_TCP, consumer);
+        if (includeUdp) {
+            records += this.read("net/udp", AF_INET, SessionCollectedData.PROTOCOL_UDP, consumer)
+                    + this.read("net/udp6", AF_INET6, SessionCollectedData.PROTOCOL_UDP, consumer);
+        }
+        SessionCollectorMetrics collectorMetrics = metrics;
+        if (collectorMetrics != null) {
+            collectorMetrics.record(SessionCollectorMetrics.Stage.EXEC, execNanos);
+            /* 읽기와 파싱이 섞여 있으므로 READ 에 함께 기록 */
+            collectorMetrics.record(SessionCollectorMetrics.Stage.READ, System.nanoTime() - readStart);
+            collectorMetrics.addRecordsRead(records);
+        }
+    }
+
+    /**
+     * @return 읽은 줄 수 (헤더 제외)
+     */
+    private long read(String name,
+                      int family,
+                      int protocol,
+                      Consumer<SessionCollectedData> consumer) throws IOException {
+        Path path = procRoot.resolve(name);
+        if (!Files.exists(path)) {
+            /* ipv6 비활성화 등 */
+            return 0;
+        }
+        long records = 0;
+        boolean header = true;
+        readBuffer.clear();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            boolean eof = false;
+            while (!eof) {
+                eof = channel.read(readBuffer) < 0;
+                readBuffer.flip();
+                int lineStart = readBuffer.position();
+                int limit = readBuffer.limit();
+                for (int i = lineStart; i < limit; i++) {
+                    if (readBuffer.get(i) != '\n') {
+                        continue;
+                    }
+                    if (header) {
+                        header = false;
+                    } else {
+                        records++;
+                        this.decode(lineStart, i, family, protocol, consumer);
+                    }
+                    lineStart = i + 1;
+                }
+                if (eof && lineStart < limit && !header) {
+                    records++;
+                    this.decode(lineStart, limit, family, protocol, consumer);
+                    lineStart = limit;
+                }
+                readBuffer.position(lineStart);
+                readBuffer.compact();
+                if (!eof && !readBuffer.hasRemaining()) {
+                    throw new IOException(name + " line larger than read buffer");
+                }
+            }
+        }
+        return records;
+    }
+
+    private void decode(int from,
+                        int to,
+                        int family,
+                        int protocol,
+                        Consumer<SessionCollectedData> consumer) {
+        SessionCollectedData sessionCollectedData = ProcNetDecoder.decodeLine(readBuffer, from, to, family, protocol, inodeIndex, addressBuffer);
+        if (sessionCollectedData != null) {
+            consumer.accept(sessionCollectedData);
+        }
+    }
+}
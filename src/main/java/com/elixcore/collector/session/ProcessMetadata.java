@@ -0,0 +1,41 @@
+package com.elixcore.collector.session;
+
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * pid 의 프로세스 정보. (pid + startTime 으로 같은 프로세스인지 판단)
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ProcessMetadata {
+    private final int    pid;
+    private final long   startTime; /* /proc/[pid]/stat 22번째 값 (boot 이후 clock tick), 알 수 없으면 0 */
+    private final String comm;
+    private final String cmdline; /* 인자 구분 NUL 을 공백으로 변환, 알 수 없으면 "" */
+    private final String cgroup; /* cgroup v2 경로 (v1 은 첫 번째 항목), 알 수 없으면 "" */
+
+    public Struct toStruct() {
+        return Struct.newBuilder()
+                     .putFields("pid", Value.newBuilder()
+                                            .setNumberValue(pid)
+                                            .build())
+                     .putFields("start_time", Value.newBuilder()
+                                                   .setNumberValue(startTime)
+                                                   .build())
+                     .putFields("comm", stringValue(comm))
+                     .putFields("cmdline", stringValue(cmdline))
+                     .putFields("cgroup", stringValue(cgroup))
+                     .build();
+    }
+
+    private static Value stringValue(String value) {
+        return Value.newBuilder()
+                    .setStringValue(value != null ? value : "")
+                    .build();
+    }
+}
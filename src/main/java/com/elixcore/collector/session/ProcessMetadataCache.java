@@ -0,0 +1,302 @@
+package com.elixcore.collector.session;
+
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * pid -> {@link ProcessMetadata} cache. (LRU, 최대 maxEntries 개)
+ * <p>
+ * cmdline, cgroup 은 pid 가 처음 보이거나 재사용된 경우에만 /proc 에서 읽는다.
+ * 재사용 여부는 /proc/[pid]/stat 의 시작 시각으로 판단하며, 항목마다 validateInterval 에 한 번만 확인한다.
+ * (그 사이 재사용된 pid 는 다음 확인 시점까지 이전 정보로 남을 수 있음)
+ * <p>
+ * 새로 읽은 항목은 {@link #resolve(Map, boolean)} 에서 한 번만 전달되므로,
+ * 수신 측은 pid + start_time 으로 정보를 보관해 두고 재사용하면 된다.
+ */
+public class ProcessMetadataCache {
+    public static final  String                   STRUCT_TYPE               = "process_metadata";
+    private static final int                      DEFAULT_MAX_ENTRIES       = 8192;
+    private static final long                     DEFAULT_VALIDATE_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+    private static final int                      MAX_CMDLINE_LENGTH        = 4096;
+    private final        Path                     procRoot;
+    private final        long                     validateInterval;
+    private final        Map<Integer, CacheEntry> entryMap;
+    private final        LongSupplier             nanoClock;
+
+    public ProcessMetadataCache() {
+        this(Paths.get("/proc"), DEFAULT_MAX_ENTRIES, DEFAULT_VALIDATE_INTERVAL);
+    }
+
+    /**
+     * @param validateInterval pid 재사용 확인 주기 (ns)
+     */
+    public ProcessMetadataCache(Path procRoot,
+                                int maxEntries,
+                                long validateInterval) {
+        this(procRoot, maxEntries, validateInterval, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock validateInterval 비교용 시각 (테스트에서 바꿔 넣는다)
+     */
+    ProcessMetadataCache(Path procRoot,
+                         int maxEntries,
+                         long validateInterval,
+                         LongSupplier nanoClock) {
+        this.procRoot         = procRoot;
+        this.nanoClock        = nanoClock;
+        this.validateInterval = validateInterval;
+        this.entryMap         = new LinkedHashMap<Integer, CacheEntry>(Math.min(maxEntries, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CacheEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param comm /proc 을 읽을 수 없을 때 사용할 이름 (`ss` users 의 comm, 없으면 null)
+     * @return 프로세스가 없으면 null
+     */
+    public synchronized ProcessMetadata get(int pid,
+                                            String comm) {
+        CacheEntry entry = this.lookup(pid, () -> comm);
+        return entry != null ? entry.metadata : null;
+    }
+
+    /**
+     * pid 별 세션 목록과 공유 소켓 owners 의 pid 정보를 찾는다. /proc 에서 보이지 않는 pid 는 owners 의 comm 만 채운다.
+     *
+     * @param all false 이면 새로 읽은(처음 보이거나 재사용된) pid 만, true 이면 전체
+     */
+    public synchronized List<ProcessMetadata> resolve(Map<Integer, List<SessionCollectedData>> pidSessionMap,
+                                                      boolean all) {
+        List<ProcessMetadata> metadataList = new ArrayList<>();
+        Set<Integer> visited = new HashSet<>(pidSessionMap.size() * 2);
+        for (Map.Entry<Integer, List<SessionCollectedData>> pidSessions : pidSessionMap.entrySet()) {
+            Integer pid = pidSessions.getKey();
+            if (pid != null) {
+                this.resolve(pid, () -> ownerComm(pid, pidSessions.getValue()), all, visited, metadataList);
+            }
+            for (SessionCollectedData session : pidSessions.getValue()) {
+                if (!session.isShared()) {
+                    continue;
+                }
+                for (SessionOwner owner : session.getOwners()) {
+                    this.resolve(owner.getPid(), owner::getComm, all, visited, metadataList);
+                }
+            }
+        }
+        return metadataList;
+    }
+
+    private void resolve(int pid,
+                         Supplier<String> commSupplier,
+                         boolean all,
+                         Set<Integer> visited,
+                         List<ProcessMetadata> metadataList) {
+        if (pid <= 0 || !visited.add(pid)) {
+            return;
+        }
+        CacheEntry entry = this.lookup(pid, commSupplier);
+        if (entry == null || (entry.reported && !all)) {
+            return;
+        }
+        entry.reported = true;
+        metadataList.add(entry.metadata);
+    }
+
+    public synchronized int size() {
+        return entryMap.size();
+    }
+
+    /**
+     * bundle data 용 Struct (type : process_metadata, processes : [...])
+     */
+    public static Struct toStruct(List<ProcessMetadata> metadataList) {
+        ListValue.Builder processes = ListValue.newBuilder();
+        for (ProcessMetadata metadata : metadataList) {
+            processes.addValues(Value.newBuilder()
+                                     .setStructValue(metadata.toStruct())
+                                     .build());
+        }
+        return Struct.newBuilder()
+                     .putFields("type", Value.newBuilder()
+                                             .setStringValue(STRUCT_TYPE)
+                                             .build())
+                     .putFields("processes", Value.newBuilder()
+                                                  .setListValue(processes)
+                                                  .build())
+                     .build();
+    }
+
+    private CacheEntry lookup(int pid,
+                              Supplier<String> commSupplier) {
+        long now = nanoClock.getAsLong();
+        CacheEntry entry = entryMap.get(pid);
+        if (entry != null && now - entry.validated < validateInterval) {
+            return entry;
+        }
+        Path pidDir = procRoot.resolve(Integer.toString(pid));
+        String stat = read(pidDir.resolve("stat"));
+        if (stat == null) {
+            /* 다른 pid namespace 등 /proc 에서 보이지 않는 프로세스는 comm 만 */
+            if (entry != null && entry.metadata.getStartTime() == 0) {
+                entry.validated = now;
+                return entry;
+            }
+            String comm = commSupplier.get();
+            if (comm == null) {
+                /* 종료된 프로세스 */
+                entryMap.remove(pid);
+                return null;
+            }
+            entry = new CacheEntry(new ProcessMetadata(pid, 0, comm, "", ""), now);
+            entryMap.put(pid, entry);
+            return entry;
+        }
+        long startTime = startTime(stat);
+        if (entry != null && entry.metadata.getStartTime() == startTime) {
+            entry.validated = now;
+            return entry;
+        }
+        int commStart = stat.indexOf('(');
+        int commEnd = stat.lastIndexOf(')');
+        String statComm = commStart >= 0 && commEnd > commStart ? stat.substring(commStart + 1, commEnd) : commSupplier.get();
+        entry = new CacheEntry(new ProcessMetadata(pid, startTime, statComm, cmdline(pidDir), cgroup(pidDir)), now);
+        entryMap.put(pid, entry);
+        return entry;
+    }
+
+    private static String ownerComm(int pid,
+                                    List<SessionCollectedData> sessionList) {
+        for (SessionCollectedData session : sessionList) {
+            if (session.getOwners() == null) {
+                continue;
+            }
+            for (SessionOwner owner : session.getOwners()) {
+                if (owner.getPid() == pid && owner.getComm() != null) {
+                    return owner.getComm();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * comm 에 공백/괄호가 있을 수 있으므로 마지막 ')' 이후부터 센다. (state 가 3번째 값)
+     */
+    static long startTime(String stat) {
+        int i = stat.lastIndexOf(')');
+        if (i < 0) {
+            return 0;
+        }
+        int field = 2;
+        int length = stat.length();
+        i++;
+        while (i < length) {
+            while (i < length && stat.charAt(i) == ' ') {
+                i++;
+            }
+            field++;
+            int start = i;
+            while (i < length && stat.charAt(i) != ' ') {
+                i++;
+            }
+            if (field == 22) {
+                long value = 0;
+                for (int j = start; j < i; j++) {
+                    char c = stat.charAt(j);
+                    if (c < '0' || c > '9') {
+                        return 0;
+                    }
+                    value = value * 10 + (c - '0');
+                }
+                return value;
+            }
+        }
+        return 0;
+    }
+
+    private static String cmdline(Path pidDir) {
+        byte[] bytes = readBytes(pidDir.resolve("cmdline"));
+        if (bytes == null) {
+            return "";
+        }
+        int length = Math.min(bytes.length, MAX_CMDLINE_LENGTH);
+        while (length > 0 && bytes[length - 1] == 0) {
+            length--;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == 0) {
+                bytes[i] = ' ';
+            }
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 0::/system.slice/docker-abc.scope (v2) 우선, 없으면 첫 번째 항목의 경로
+     */
+    private static String cgroup(Path pidDir) {
+        String cgroup = read(pidDir.resolve("cgroup"));
+        if (cgroup == null) {
+            return "";
+        }
+        String first = null;
+        for (String line : cgroup.split("\n")) {
+            int pathStart = line.indexOf(':', line.indexOf(':') + 1);
+            if (pathStart < 0) {
+                continue;
+            }
+            if (line.startsWith("0::")) {
+                return line.substring(pathStart + 1);
+            }
+            if (first == null) {
+                first = line.substring(pathStart + 1);
+            }
+        }
+        return first != null ? first : "";
+    }
+
+    private static String read(Path path) {
+        byte[] bytes = readBytes(path);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    private static byte[] readBytes(Path path) {
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static class CacheEntry {
+        private final ProcessMetadata metadata;
+        private       long            validated;
+        private       boolean         reported;
+
+        private CacheEntry(ProcessMetadata metadata,
+                           long validated) {
+            this.metadata  = metadata;
+            this.validated = validated;
+        }
+    }
+}
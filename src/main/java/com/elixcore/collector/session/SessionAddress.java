@@ -3,232 +3,407 @@ package com.elixcore.collector.session;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import static com.elixcore.collector.session.SessionAddress.PatternName.*;
 
+/**
+ * `ss` 주소 표기 파싱 결과.
+ * <p>
+ * 주소는 {@link AddressTable} 에서 공유하는 {@link PackedAddress}(128bit + 표기 문자열)로, port 와 type 은 primitive 로 보관한다.
+ * 표기 문자열은 `ss` 출력의 원문과 같고, netlink / /proc/net 에서 만든 주소는 {@link #getAddress()} 를 처음 호출할 때 만든다.
+ * <p>
+ * 지원 형태 (ex)
+ * <pre>
+ * IPV4                        : 255.255.255.255, *
+ * IPV4_PORT                   : 12.3.45.5:44832, 0.0.0.0:*
+ * IPV4_LOOPBACK_PORT          : 12.3.45.5%lo:44832 (%lo 외의 %iface 도 동일하게 처리)
+ * IPV6                        : ff06:0:0:0:0:0:0:c3
+ * IPV6_PORT                   : ff06:0:0:0:0:0:0:c3:32312
+ * IPV6_BRACKET_PORT           : [ff06:0:0:0:0:0:0:c3]:32312
+ * IPV6_SIMPLE                 : ff32::43:f3, ::FFFF, ::, *
+ * IPV6_SIMPLE_BRACKET_PORT    : [ff06::c3]:32323, [fe80::1]%eth0:546
+ * IPV4_MAPPED_V6              : ::FFFF:172.16.0.15
+ * IPV4_MAPPED_V6_BRACKET      : [::FFFF:172.16.0.15]
+ * IPV4_MAPPED_V6_PORT         : ::FFFF:172.16.0.15:33231
+ * IPV4_MAPPED_V6_BRACKET_PORT : [::ffff:172.16.0.15]:54946
+ * </pre>
+ * IPV6, IPV6_PORT, IPV6_BRACKET_PORT 의 hex 는 소문자만, IPV6_SIMPLE 계열은 대소문자 모두 허용한다.
+ * port 는 1~5 자리 숫자 또는 * (0)
+ */
 @Slf4j
-@Getter
-@Setter
 @EqualsAndHashCode(callSuper = false)
 @NoArgsConstructor
-@AllArgsConstructor
-@Builder
 public class SessionAddress {
+    private static final byte          NO_TYPE = -1;
+    private static final int           NO_PORT = Integer.MIN_VALUE;
+    private              PackedAddress packed;
+    private              int           port    = NO_PORT; /* NO_PORT : 없음 (null) */
+    private              byte          type    = NO_TYPE; /* NO_TYPE : 없음 (null) */
+
+    @Builder
+    public SessionAddress(String address,
+                          Integer port,
+                          Integer type) {
+        this.packed = address != null ? AddressTable.intern(address, 0, address.length()) : null;
+        this.setPort(port);
+        this.setType(type);
+    }
+
+    private SessionAddress(PackedAddress packed,
+                           int port,
+                           int type) {
+        this.packed = packed;
+        this.port   = port;
+        this.type   = (byte) type;
+    }
 
     /**
-     * ex : 32313
-     */
-    private static final String                    portNumberRegex              = "(?<port>\\d{1,5}|\\*)";
-    /**
-     * ex : %lo
-     */
-    private static final String                    loopbackRegex                = "(?<lo>%lo)";
-    /**
-     * ex :
-     * ff06:0:0:0:0:0:0:c3,
-     * ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff
-     */
-    private static final String                    ipv6Regex                    = "([0-9a-f]{1,4}:){7}([0-9a-f]){1,4}";
-    private static final String                    ipv6AddressRegex             = String.format("(?<address>%s)", ipv6Regex);
-    /**
-     * ex :
-     * ff06:0:0:0:0:0:0:c3:32312,
-     * ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff:32123
-     */
-    private static final String                    ipv6PortRegex                = String.format("%s:%s", ipv6AddressRegex, portNumberRegex);
-    /**
-     * ex :
-     * [ff06:0:0:0:0:0:0:c3]:32312,
-     * [ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff]:32123
-     */
-    private static final String                    ipv6BracketPortRegex         = String.format("\\[%s]:%s", ipv6AddressRegex, portNumberRegex);
-    /**
-     * ex :
-     * ff32::43:f3
-     * f:ff::f:0
-     * ff06::c3
-     * ::FFFF
-     */
-    private static final String
-                                                   ipv6SimpleRegex
-                                                                                = "((?:[0-9A-Fa-f]{1,4}(?::[0-9A-Fa-f]{1,4})*)?)::((?:[0-9A-Fa-f]{1,4}(?::[0-9A-Fa-f]{1,4})*)?)|\\*|::";
-    private static final String                    ipv6SimpleAddressRegex       = String.format("(?<address>%s)", ipv6SimpleRegex);
-//    /**
-//     * ex :
-//     * ff32::43:f3:32323
-//     * f:ff::f:0:32323
-//     * ff06::c3:32323
-//     * ::FFFF:32323
-//     */
-//    private static final String                    ipv6SimplePortRegex          = "%s:%s".formatted(ipv6SimpleRegex, portNumberRegex);
-    /**
-     * ex :
-     * [ff32::43:f3]:32323
-     * [f:ff::f:0]:32323
-     * [ff06::c3]:32323
-     * [::FFFF]:32323
-     */
-    private static final String                    ipv6SimpleBracketPortRegex   = String.format("\\[%s]:%s", ipv6SimpleAddressRegex, portNumberRegex);
-    /**
-     * ex : 255.255.255.255
-     */
-    private static final String
-                                                   ipv4Regex
-                                                                                = "((25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9][0-9]|[0-9])(\\.(?!$)|$)){3}(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9][0-9]|[0-9])|\\*";
-    private static final String                    ipv4AddressRegex             = String.format("(?<address>%s)", ipv4Regex);
-    /**
-     * ex : 12.3.45.5:44832
-     */
-    private static final String                    ipv4PortRegex                = String.format("%s:%s", ipv4AddressRegex, portNumberRegex);
-    /**
-     * ex : 12.3.45.5%lo:44832
+     * packing 값의 주소 (netlink, /proc/net). 표기 문자열은 필요할 때 만든다.
+     *
+     * @param type 0 : IPv4, 1 : IPv6, 2 : v4-mapped
      */
-    private static final String                    ipv4LoopbackPortRegex        = String.format("%s%s:%s", ipv4AddressRegex, loopbackRegex, portNumberRegex);
+    static SessionAddress of(long high,
+                             long low,
+                             int port,
+                             int type) {
+        return new SessionAddress(AddressTable.intern(high, low), port, type);
+    }
+
+    public String getAddress() {
+        return packed != null ? packed.text() : null;
+    }
+
+    public void setAddress(String address) {
+        this.packed = address != null ? AddressTable.intern(address, 0, address.length()) : null;
+    }
+
+    public Integer getPort() {
+        return port != NO_PORT ? port : null;
+    }
+
+    public void setPort(Integer port) {
+        this.port = port != null ? port : NO_PORT;
+    }
+
+    public boolean hasPort() {
+        return port != NO_PORT;
+    }
+
     /**
-     * ex : ::FFFF:172.16.0.15
+     * port 가 없으면 0
      */
-    private static final String                    ipv4MappedV6Regex            = String.format("(?<address>(%s):(?<ipv4>%s))", ipv6SimpleRegex, ipv4Regex);
+    public int getPortValue() {
+        return port != NO_PORT ? port : 0;
+    }
+
+    public Integer getType() {
+        return type != NO_TYPE ? (int) type : null;
+    }
+
+    public void setType(Integer type) {
+        this.type = type != null ? type.byteValue() : NO_TYPE;
+    }
+
     /**
-     * ex : [::FFFF:172.16.0.15]
+     * 128bit 주소의 상위 64bit ({@link SessionKey#pack(String, boolean)} 와 같은 값, 주소가 없으면 0)
      */
-    private static final String                    ipv4MappedV6BracketRegex     = String.format("\\[%s]", ipv4MappedV6Regex);
+    long getHigh() {
+        return packed != null ? packed.getHigh() : 0;
+    }
+
+    long getLow() {
+        return packed != null ? packed.getLow() : 0;
+    }
+
     /**
-     * ex : ::FFFF:172.16.0.15:33231
+     * 문자열을 한 번 훑어 구분자(대괄호, %, 마지막 두 개의 :) 위치를 찾고, 해당 구간만 검사해 형태를 판정한다.
      */
-    private static final String                    ipv4MappedV6BracketPortRegex = String.format("%s:%s", ipv4MappedV6BracketRegex, portNumberRegex);
+    public static SessionAddress findMatch(String address) {
+        return findMatch(address, 0, address.length());
+    }
+
     /**
-     * ex : [::ffff:172.16.0.15]:54946
+     * line 의 [from, to) 구간을 주소로 파싱한다. (토큰 substring 없이 사용)
      */
-    private static final String                    ipv4MappedV6PortRegex        = String.format("%s:%s", ipv4MappedV6Regex, portNumberRegex);
-    private static final Map<PatternName, Pattern> addressPatternMap            = new LinkedHashMap<>();
+    public static SessionAddress findMatch(String line,
+                                           int from,
+                                           int to) {
+        SessionAddress sessionAddress = to > from && line.charAt(from) == '['
+                                        ? matchBracket(line, from, to)
+                                        : matchPlain(line, from, to);
+        if (sessionAddress == null && log.isDebugEnabled()) {
+            log.debug("ADDRESS {} not matched", line.substring(from, to));
+        }
+        return sessionAddress;
+    }
 
-    static {
-        Pattern P_IPV4_MAPPED_V6_BRACKET = Pattern.compile(toOnlyRegex(ipv4MappedV6BracketRegex));
-//        System.out.println("P_IPV4_MAPPED_V6_BRACKET : " + toOnlyRegex(ipv4MappedV6BracketRegex));
-        Pattern P_IPV4_MAPPED_V6 = Pattern.compile(toOnlyRegex(ipv4MappedV6Regex));
-//        System.out.println("P_IPV4_MAPPED_V6 : " + toOnlyRegex(ipv4MappedV6Regex));
-        Pattern P_IPV4_MAPPED_V6_BRACKET_PORT = Pattern.compile(toOnlyRegex(ipv4MappedV6BracketPortRegex));
-//        System.out.println("P_IPV4_MAPPED_V6_BRACKET_PORT : " + toOnlyRegex(ipv4MappedV6BracketPortRegex));
-        Pattern P_IPV4_MAPPED_V6_PORT = Pattern.compile(toOnlyRegex(ipv4MappedV6PortRegex));
-//        System.out.println("P_IPV4_MAPPED_V6_PORT : " + toOnlyRegex(ipv4MappedV6PortRegex));
-        Pattern P_IPV4_PORT = Pattern.compile(toOnlyRegex(ipv4PortRegex));
-//        System.out.println("P_IPV4_PORT : " + toOnlyRegex(ipv4PortRegex));
-        Pattern P_IPV4 = Pattern.compile(toOnlyRegex(ipv4AddressRegex));
-//        System.out.println("P_IPV4 : " + toOnlyRegex(ipv4AddressRegex));
-        Pattern P_IPV6 = Pattern.compile(toOnlyRegex(ipv6AddressRegex));
-//        System.out.println("P_IPV6 : " + toOnlyRegex(ipv6AddressRegex));
-        Pattern P_IPV6_SIMPLE = Pattern.compile(toOnlyRegex(ipv6SimpleAddressRegex));
-//        System.out.println("P_IPV6_SIMPLE : " + toOnlyRegex(ipv6SimpleAddressRegex));
-        Pattern P_IPV4_LOOPBACK_LESSON_PORT = Pattern.compile(toOnlyRegex(ipv4LoopbackPortRegex));
-//        System.out.println("P_IPV4_LOOPBACK_LESSON_PORT : " + toOnlyRegex(ipv4LoopbackPortRegex));
+    private static SessionAddress matchPlain(String s,
+                                             int from,
+                                             int to) {
+        int percent = -1;
+        int lastColon = -1;
+        int prevColon = -1;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == ':') {
+                prevColon = lastColon;
+                lastColon = i;
+            } else if (c == '%' && percent < 0) {
+                percent = i;
+            }
+        }
 
-        Pattern P_IPV6_PORT = Pattern.compile(toOnlyRegex(ipv6PortRegex));
-//        System.out.println("P_IPV6_PORT : " + toOnlyRegex(ipv6PortRegex));
-        Pattern P_IPV6_BRACKET_PORT = Pattern.compile(toOnlyRegex(ipv6BracketPortRegex));
-//        System.out.println("P_IPV6_BRACKET_PORT : " + toOnlyRegex(ipv6BracketPortRegex));
-        Pattern P_IPV6_SIMPLE_BRACKET_PORT = Pattern.compile(toOnlyRegex(ipv6SimpleBracketPortRegex));
-//        System.out.println("P_IPV6_SIMPLE_BRACKET_PORT : " + toOnlyRegex(ipv6SimpleBracketPortRegex));
+        if (percent >= 0) {
+            /* 12.3.45.5%lo:44832 */
+            if (prevColon < 0 && lastColon > percent + 1 && isIpv4(s, from, percent) && isPort(s, lastColon + 1, to)) {
+                return build(IPV4_LOOPBACK_PORT, s, from, percent, lastColon + 1, to);
+            }
+            return null;
+        }
+        if (lastColon < 0) {
+            /* '*' 는 IPV6_SIMPLE 이 먼저 */
+            if (isSimpleIpv6(s, from, to)) {
+                return build(IPV6_SIMPLE, s, from, to, -1, to);
+            }
+            if (isIpv4(s, from, to)) {
+                return build(IPV4, s, from, to, -1, to);
+            }
+            return null;
+        }
+        /* '*:*' 는 IPV4_MAPPED_V6 이 먼저 */
+        if (isIpv4(s, lastColon + 1, to) && isSimpleIpv6(s, from, lastColon)) {
+            return build(IPV4_MAPPED_V6, s, lastColon + 1, to, -1, to);
+        }
+        if (prevColon >= 0 && isPort(s, lastColon + 1, to) && isIpv4(s, prevColon + 1, lastColon) && isSimpleIpv6(s, from, prevColon)) {
+            return build(IPV4_MAPPED_V6_PORT, s, prevColon + 1, lastColon, lastColon + 1, to);
+        }
+        if (prevColon < 0 && isIpv4(s, from, lastColon) && isPort(s, lastColon + 1, to)) {
+            return build(IPV4_PORT, s, from, lastColon, lastColon + 1, to);
+        }
+        if (isSimpleIpv6(s, from, to)) {
+            return build(IPV6_SIMPLE, s, from, to, -1, to);
+        }
+        if (isIpv6(s, from, to)) {
+            return build(IPV6, s, from, to, -1, to);
+        }
+        if (isIpv6(s, from, lastColon) && isPort(s, lastColon + 1, to)) {
+            return build(IPV6_PORT, s, from, lastColon, lastColon + 1, to);
+        }
+        return null;
+    }
 
-        // 순서대로 검사
-        addressPatternMap.put(IPV4_MAPPED_V6_BRACKET, P_IPV4_MAPPED_V6_BRACKET);
-        addressPatternMap.put(IPV6_BRACKET_PORT, P_IPV6_BRACKET_PORT);
-        addressPatternMap.put(IPV4_MAPPED_V6, P_IPV4_MAPPED_V6);
-        addressPatternMap.put(IPV4_MAPPED_V6_BRACKET_PORT, P_IPV4_MAPPED_V6_BRACKET_PORT);
-        addressPatternMap.put(IPV4_MAPPED_V6_PORT, P_IPV4_MAPPED_V6_PORT);
-        addressPatternMap.put(IPV4_PORT, P_IPV4_PORT);
-        addressPatternMap.put(IPV6_SIMPLE, P_IPV6_SIMPLE);
-        addressPatternMap.put(IPV6, P_IPV6);
-        addressPatternMap.put(IPV4, P_IPV4);
-        addressPatternMap.put(IPV4_LOOPBACK_PORT, P_IPV4_LOOPBACK_LESSON_PORT);
-        addressPatternMap.put(IPV6_PORT, P_IPV6_PORT);
-        addressPatternMap.put(IPV6_SIMPLE_BRACKET_PORT, P_IPV6_SIMPLE_BRACKET_PORT);
+    private static SessionAddress matchBracket(String s,
+                                               int from,
+                                               int to) {
+        int close = s.indexOf(']', from);
+        if (close < 0 || close >= to) {
+            return null;
+        }
+        int innerColon = s.lastIndexOf(':', close);
+        if (close == to - 1) {
+            /* [::FFFF:172.16.0.15] */
+            if (innerColon > from && isIpv4(s, innerColon + 1, close) && isSimpleIpv6(s, from + 1, innerColon)) {
+                return build(IPV4_MAPPED_V6_BRACKET, s, innerColon + 1, close, -1, to);
+            }
+            return null;
+        }
 
+        /* ]:port 또는 ]%iface:port */
+        int portColon = close + 1;
+        if (s.charAt(portColon) == '%') {
+            portColon = s.indexOf(':', close);
+            if (portColon < close + 3 || portColon >= to) {
+                return null;
+            }
+        } else if (s.charAt(portColon) != ':') {
+            return null;
+        }
+        if (!isPort(s, portColon + 1, to)) {
+            return null;
+        }
+        if (isIpv6(s, from + 1, close)) {
+            return build(IPV6_BRACKET_PORT, s, from + 1, close, portColon + 1, to);
+        }
+        if (innerColon > from && isIpv4(s, innerColon + 1, close) && isSimpleIpv6(s, from + 1, innerColon)) {
+            return build(IPV4_MAPPED_V6_BRACKET_PORT, s, innerColon + 1, close, portColon + 1, to);
+        }
+        if (isSimpleIpv6(s, from + 1, close)) {
+            return build(IPV6_SIMPLE_BRACKET_PORT, s, from + 1, close, portColon + 1, to);
+        }
+        return null;
     }
 
-    private String  address;
-    private Integer port;
-    private Integer type;
-
-    //    private String  peerAddress;
-//    private String  peerPort;
-//    private Integer listenType;
-//    private Integer pid;
-//    private String  processName;
-//    @Setter
-//    private String  processFullCommand;
+    private static SessionAddress build(PatternName pattern,
+                                        String s,
+                                        int addressFrom,
+                                        int addressTo,
+                                        int portFrom,
+                                        int portTo) {
+        PackedAddress address = AddressTable.intern(s, addressFrom, addressTo);
+        int port = NO_PORT;
+        /* SET PORT */
+        switch (pattern) {
+            case IPV4_PORT:
+            case IPV6_SIMPLE_BRACKET_PORT:
+            case IPV6_BRACKET_PORT:
+            case IPV4_MAPPED_V6_PORT:
+            case IPV4_MAPPED_V6_BRACKET_PORT:
+            case IPV4_LOOPBACK_PORT:
+                port = s.charAt(portFrom) == '*' ? 0 : parsePort(s, portFrom, portTo);
+                break;
+        }
+        /* SET Type */
+        int type = NO_TYPE;
+        switch (pattern) {
+            case IPV4:
+            case IPV4_PORT:
+            case IPV4_LOOPBACK_PORT:
+                type = 0;
+                break;
+            case IPV6:
+            case IPV6_SIMPLE:
+            case IPV4_MAPPED_V6_BRACKET:
+                type = 1;
+                break;
+            case IPV4_MAPPED_V6_BRACKET_PORT:
+            case IPV4_MAPPED_V6_PORT:
+            case IPV4_MAPPED_V6:
+                type = 2;
+                break;
+        }
+        return new SessionAddress(address, port, type);
+    }
 
-    private static String toOnlyRegex(String regex) {
-        return String.format("^%s$", regex);
+    /**
+     * 0~255 (앞자리 0 불가) 4개 또는 *
+     */
+    private static boolean isIpv4(String s,
+                                  int from,
+                                  int to) {
+        if (to - from == 1 && s.charAt(from) == '*') {
+            return true;
+        }
+        int octets = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                if (digits == 0 || ++octets > 3) {
+                    return false;
+                }
+                digits = 0;
+                value  = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (digits > 0 && value == 0) {
+                    return false;
+                }
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        return octets == 3 && digits > 0;
     }
 
-    public static SessionAddress findMatch(String address) {
-        return addressPatternMap
-            .entrySet()
-            .stream()
-            .map(entry -> {
-                PatternName patternName = entry.getKey();
-                Pattern value = entry.getValue();
-                Matcher matcher = value.matcher(address);
-                return new FindPattern(patternName, matcher);
-            })
-            .filter(findPattern -> findPattern.matcher.find())
-            .findAny()
-            .map(findPattern -> {
-                SessionAddressBuilder builder = SessionAddress.builder();
-                Matcher matcher = findPattern.matcher;
-                PatternName pattern = findPattern.patternName;
-                switch (pattern) {
-                    case IPV4_MAPPED_V6:
-                    case IPV4_MAPPED_V6_BRACKET:
-                    case IPV4_MAPPED_V6_PORT:
-                    case IPV4_MAPPED_V6_BRACKET_PORT:
-                        builder.address(matcher.group("ipv4"));
-                        break;
-                    default:
-                        builder.address(matcher.group("address"));
-                        break;
+    /**
+     * 소문자 hex 1~4 자리 8 그룹
+     */
+    private static boolean isIpv6(String s,
+                                  int from,
+                                  int to) {
+        int groups = 0;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == ':') {
+                if (digits == 0 || ++groups > 7) {
+                    return false;
+                }
+                digits = 0;
+            } else if ((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f')) {
+                if (++digits > 4) {
+                    return false;
                 }
-                /* SET PORT */
-                switch (pattern) {
-                    case IPV4_PORT:
-                    case IPV6_SIMPLE_BRACKET_PORT:
-                    case IPV6_BRACKET_PORT:
-                    case IPV4_MAPPED_V6_PORT:
-                    case IPV4_MAPPED_V6_BRACKET_PORT:
-                    case IPV4_LOOPBACK_PORT:
-                        builder.port(matcher
-                                         .group("port")
-                                         .equals("*") ? 0 : Integer.parseInt(matcher.group("port")));
-                        break;
+            } else {
+                return false;
+            }
+        }
+        return groups == 7 && digits > 0;
+    }
+
+    /**
+     * [hex(:hex)*]::[hex(:hex)*] 또는 *
+     */
+    private static boolean isSimpleIpv6(String s,
+                                        int from,
+                                        int to) {
+        if (to - from == 1 && s.charAt(from) == '*') {
+            return true;
+        }
+        int doubleColon = s.indexOf("::", from);
+        if (doubleColon < 0 || doubleColon + 2 > to) {
+            return false;
+        }
+        return isHexGroups(s, from, doubleColon) && isHexGroups(s, doubleColon + 2, to);
+    }
+
+    private static boolean isHexGroups(String s,
+                                       int from,
+                                       int to) {
+        if (from == to) {
+            return true;
+        }
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == ':') {
+                if (digits == 0) {
+                    return false;
                 }
-                /* SET Type */
-                switch (pattern) {
-                    case IPV4:
-                    case IPV4_PORT:
-                    case IPV4_LOOPBACK_PORT:
-                        builder.type(0);
-                    case IPV6:
-                    case IPV6_SIMPLE:
-                    case IPV4_MAPPED_V6_BRACKET:
-                        builder.type(1);
-                        break;
-                    case IPV4_MAPPED_V6_BRACKET_PORT:
-                    case IPV4_MAPPED_V6_PORT:
-                    case IPV4_MAPPED_V6:
-                        builder.type(2);
-                        break;
+                digits = 0;
+            } else if ((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')) {
+                if (++digits > 4) {
+                    return false;
                 }
+            } else {
+                return false;
+            }
+        }
+        return digits > 0;
+    }
 
-                return builder.build();
-            })
-            .orElseGet(() -> {
-                log.debug("ADDRESS {} not matched", address);
-                return null;
-            });
+    /**
+     * 숫자 1~5 자리 또는 *
+     */
+    private static boolean isPort(String s,
+                                  int from,
+                                  int to) {
+        if (to - from == 1 && s.charAt(from) == '*') {
+            return true;
+        }
+        if (to <= from || to - from > 5) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parsePort(String s,
+                                 int from,
+                                 int to) {
+        int port = 0;
+        for (int i = from; i < to; i++) {
+            port = port * 10 + (s.charAt(i) - '0');
+        }
+        return port;
     }
 
     public enum PatternName {
@@ -246,20 +421,8 @@ public class SessionAddress {
         IPV4_LOOPBACK_PORT,
     }
 
-    @Data
-    @NoArgsConstructor
-    @AllArgsConstructor
-    static class FindPattern {
-        PatternName patternName;
-        Matcher     matcher;
-    }
-
     @Override
     public String toString() {
-        return String.format("%s:%s", address, port);
+        return getAddress() + ":" + getPort();
     }
 }
-
-//\\[[^\\[]*\\]
-
-//\\[::[f,F]{4}:(([0-9]|[1-9]0-9]|1[0-9][0-9]|2[0-4][0-9]|25[0-5])(\.(?!$)|$)){4}\\]
\ No newline at end of file
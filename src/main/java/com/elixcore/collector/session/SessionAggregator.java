@@ -0,0 +1,264 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 사용량이 없는 대량 상태(TIME_WAIT, SYN_RECV 등)의 세션을 소켓 단위 대신
+ * (pid, protocol, local port, state, remote prefix) 별 개수와 상위 remote peer 로 접는다.
+ * <p>
+ * 메모리와 전송 크기는 소켓 수가 아니라 서로 다른 흐름 수에 비례한다.
+ * key 마다 peer 는 최대 {@link #MAX_TRACKED_PEERS} 개까지 세고, 이후 새 peer 는 합계에만 포함한다.
+ * key 수가 maxAggregates 에 도달하면 새 key 는 상태별 overflow key (pid 0, local port 0, remote prefix ::/0) 에 더한다.
+ * LISTEN/UNCONN 세션은 접지 않는다. (in/out 방향 판별용)
+ * <p>
+ * 한 주기 동안 한 스레드에서 {@link #beginCycle()} -> {@link #add(SessionCollectedData)} -> {@link #toStruct()} 순서로 사용한다.
+ */
+public class SessionAggregator {
+    public static final  String STRUCT_TYPE            = "session_aggregate";
+    private static final int    MAX_TRACKED_PEERS      = 64;
+    private static final int    DEFAULT_MAX_AGGREGATES = 10_000;
+
+    private final Set<PayloadState.SessionState> states;
+    private final int                            ipv4PrefixLength;
+    private final int                            ipv6PrefixLength;
+    private final int                            topN;
+    private final Map<AggregateKey, Aggregate>   aggregateMap  = new LinkedHashMap<>();
+    private final long[]                         stateSessions = new long[PayloadState.SessionState.values().length];
+    private       int                            maxAggregates = DEFAULT_MAX_AGGREGATES;
+
+    /**
+     * TIME_WAIT, SYN_RECV 를 /24, /64 단위로, 상위 peer 5개
+     */
+    public SessionAggregator() {
+        this(EnumSet.of(PayloadState.SessionState.TIME_WAIT, PayloadState.SessionState.SYN_RECV), 24, 64, 5);
+    }
+
+    public SessionAggregator(Set<PayloadState.SessionState> states,
+                             int ipv4PrefixLength,
+                             int ipv6PrefixLength,
+                             int topN) {
+        this.states           = states.isEmpty() ? EnumSet.noneOf(PayloadState.SessionState.class) : EnumSet.copyOf(states);
+        this.ipv4PrefixLength = Math.max(0, Math.min(32, ipv4PrefixLength));
+        this.ipv6PrefixLength = Math.max(0, Math.min(128, ipv6PrefixLength));
+        this.topN             = Math.max(0, topN);
+    }
+
+    public void setMaxAggregates(int maxAggregates) {
+        this.maxAggregates = Math.max(1, maxAggregates);
+    }
+
+    public void beginCycle() {
+        aggregateMap.clear();
+        Arrays.fill(stateSessions, 0);
+    }
+
+    /**
+     * 접는 대상 상태면 집계에 더한다.
+     *
+     * @return 집계에 포함되어 세션 단위로 전송하지 않아도 되는지 여부
+     */
+    public boolean add(SessionCollectedData session) {
+        PayloadState.SessionState state = session.getState();
+        if (state == null || !states.contains(state) || session.isListen()) {
+            return false;
+        }
+        this.aggregate(session, 1);
+        return true;
+    }
+
+    /**
+     * 상태와 관계없이 집계에 더한다. ({@link SessionBudget} 축소 단계)
+     *
+     * @param weight sampling 된 세션이면 sampling 비율
+     * @return LISTEN/UNCONN 이거나 상태를 모르면 false
+     */
+    boolean addAny(SessionCollectedData session,
+                   int weight) {
+        if (session.getState() == null || session.isListen()) {
+            return false;
+        }
+        this.aggregate(session, weight);
+        return true;
+    }
+
+    private void aggregate(SessionCollectedData session,
+                           int weight) {
+        PayloadState.SessionState state = session.getState();
+        SessionAddress local = session.getLocal();
+        SessionAddress peer = session.getPeer();
+        long peerHigh = SessionKey.high(peer);
+        long peerLow = SessionKey.low(peer);
+        boolean v4 = peerHigh == 0 && (peerLow >>> 32) == 0xffffL;
+        int prefixLength = v4 ? ipv4PrefixLength + 96 : ipv6PrefixLength;
+        AggregateKey key = new AggregateKey(session.getPid() != null ? session.getPid() : 0,
+                                            session.getProtocol(),
+                                            local != null && local.getPort() != null ? local.getPort() : 0,
+                                            state,
+                                            peerHigh & highMask(prefixLength),
+                                            peerLow & lowMask(prefixLength),
+                                            v4 ? ipv4PrefixLength : ipv6PrefixLength);
+        Aggregate aggregate = aggregateMap.get(key);
+        if (aggregate == null) {
+            if (aggregateMap.size() >= maxAggregates) {
+                key = new AggregateKey(0, session.getProtocol(), 0, state, 0, 0, 0);
+                aggregate = aggregateMap.get(key);
+            }
+            if (aggregate == null) {
+                aggregate = new Aggregate();
+                aggregateMap.put(key, aggregate);
+            }
+        }
+        aggregate.add(peer != null ? peer.getAddress() : null, weight);
+        stateSessions[state.ordinal()] += weight;
+    }
+
+    /**
+     * 이번 주기에 접은 세션 수 (SessionState ordinal index)
+     */
+    long[] getStateSessions() {
+        return stateSessions;
+    }
+
+    public int size() {
+        return aggregateMap.size();
+    }
+
+    /**
+     * bundle data 용 Struct (type : session_aggregate, aggregates : [...])
+     */
+    public Struct toStruct() {
+        ListValue.Builder aggregates = ListValue.newBuilder();
+        aggregateMap.forEach((key, aggregate) -> {
+            ListValue.Builder topPeers = ListValue.newBuilder();
+            for (Map.Entry<String, long[]> peer : aggregate.top(topN)) {
+                topPeers.addValues(Value.newBuilder()
+                                        .setStructValue(Struct.newBuilder()
+                                                              .putFields("address", stringValue(peer.getKey()))
+                                                              .putFields("count", numberValue(peer.getValue()[0])))
+                                        .build());
+            }
+            String prefix = SessionKey.address(key.prefixHigh, key.prefixLow, 0)
+                                      .getAddress() + "/" + key.prefixLength;
+            aggregates.addValues(Value.newBuilder()
+                                      .setStructValue(Struct.newBuilder()
+                                                            .putFields("pid", numberValue(key.pid))
+                                                            .putFields("protocol", numberValue(key.protocol))
+                                                            .putFields("local_port", numberValue(key.localPort))
+                                                            .putFields("state", stringValue(key.state.name()))
+                                                            .putFields("remote_prefix", stringValue(prefix))
+                                                            .putFields("count", numberValue(aggregate.count))
+                                                            .putFields("top_peers", Value.newBuilder()
+                                                                                         .setListValue(topPeers)
+                                                                                         .build()))
+                                      .build());
+        });
+        return Struct.newBuilder()
+                     .putFields("type", stringValue(STRUCT_TYPE))
+                     .putFields("aggregates", Value.newBuilder()
+                                                   .setListValue(aggregates)
+                                                   .build())
+                     .build();
+    }
+
+    private static long highMask(int prefixLength) {
+        return prefixLength >= 64 ? -1L : prefixLength == 0 ? 0 : -1L << (64 - prefixLength);
+    }
+
+    private static long lowMask(int prefixLength) {
+        return prefixLength <= 64 ? 0 : prefixLength == 128 ? -1L : -1L << (128 - prefixLength);
+    }
+
+    private static Value stringValue(String value) {
+        return Value.newBuilder()
+                    .setStringValue(value != null ? value : "")
+                    .build();
+    }
+
+    private static Value numberValue(long value) {
+        return Value.newBuilder()
+                    .setNumberValue(value)
+                    .build();
+    }
+
+    private static class Aggregate {
+        private final Map<String, long[]> peerCountMap = new HashMap<>();
+        private       long                count;
+
+        private void add(String peer,
+                         int weight) {
+            count += weight;
+            if (peer == null) {
+                return;
+            }
+            long[] peerCount = peerCountMap.get(peer);
+            if (peerCount != null) {
+                peerCount[0] += weight;
+            } else if (peerCountMap.size() < MAX_TRACKED_PEERS) {
+                peerCountMap.put(peer, new long[]{weight});
+            }
+        }
+
+        private List<Map.Entry<String, long[]>> top(int n) {
+            List<Map.Entry<String, long[]>> peers = new ArrayList<>(peerCountMap.entrySet());
+            peers.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+            return peers.size() > n ? peers.subList(0, n) : peers;
+        }
+    }
+
+    private static class AggregateKey {
+        private final int                       pid;
+        private final int                       protocol;
+        private final int                       localPort;
+        private final PayloadState.SessionState state;
+        private final long                      prefixHigh;
+        private final long                      prefixLow;
+        private final int                       prefixLength;
+
+        private AggregateKey(int pid,
+                             int protocol,
+                             int localPort,
+                             PayloadState.SessionState state,
+                             long prefixHigh,
+                             long prefixLow,
+                             int prefixLength) {
+            this.pid          = pid;
+            this.protocol     = protocol;
+            this.localPort    = localPort;
+            this.state        = state;
+            this.prefixHigh   = prefixHigh;
+            this.prefixLow    = prefixLow;
+            this.prefixLength = prefixLength;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof AggregateKey)) {
+                return false;
+            }
+            AggregateKey that = (AggregateKey) o;
+            return pid == that.pid && protocol == that.protocol && localPort == that.localPort && state == that.state
+                    && prefixHigh == that.prefixHigh && prefixLow == that.prefixLow && prefixLength == that.prefixLength;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pid, protocol, localPort, state, prefixHigh, prefixLow, prefixLength);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.elixcore.collector.session;
+
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+/**
+ * 한 수집 주기에서 보관하는 세션 수 한도와 초과 시의 단계적 축소.
+ * <pre>
+ * NORMAL         : 소켓 단위 전송
+ * DETAIL_LIMITED : detailSessions 초과 -> 이후 ESTABLISHED 외 상태는 집계로 접음
+ * AGGREGATE_ONLY : aggregateSessions 초과 -> 이후 모든 세션(LISTEN/UNCONN 제외)을 집계로 접음
+ * SAMPLED        : sampleSessions 초과 -> 이후 세션은 1/sampleRate 만 집계 (개수는 sampleRate 배로 더함)
+ * </pre>
+ * 집계 key 수는 maxAggregates 로 묶인다. (별도로 설정한 {@link SessionAggregator} 는 자체 한도를 따른다)
+ * 축소된 주기의 bundle 에는 {@link Cycle#toStruct()} 를 붙이고 (type : degradation),
+ * 종료 세션(CLOSED) 판정을 건너뛴다. (접힌 세션이 종료로 보이지 않도록)
+ */
+public class SessionBudget {
+    public static final String STRUCT_TYPE = "degradation";
+
+    public enum Level {
+        NORMAL,
+        DETAIL_LIMITED,
+        AGGREGATE_ONLY,
+        SAMPLED
+    }
+
+    private final int detailSessions;
+    private final int aggregateSessions;
+    private final int sampleSessions;
+    private final int sampleRate;
+    private final int maxAggregates;
+
+    /**
+     * 50,000 / 200,000 / 1,000,000, 1/16 sampling, 집계 key 5,000
+     */
+    public SessionBudget() {
+        this(50_000, 200_000, 1_000_000, 16, 5_000);
+    }
+
+    public SessionBudget(int detailSessions,
+                         int aggregateSessions,
+                         int sampleSessions,
+                         int sampleRate,
+                         int maxAggregates) {
+        this.detailSessions    = detailSessions;
+        this.aggregateSessions = Math.max(detailSessions, aggregateSessions);
+        this.sampleSessions    = Math.max(this.aggregateSessions, sampleSessions);
+        this.sampleRate        = Math.max(1, sampleRate);
+        this.maxAggregates     = Math.max(1, maxAggregates);
+    }
+
+    public int getDetailSessions() {
+        return detailSessions;
+    }
+
+    public int getSampleSessions() {
+        return sampleSessions;
+    }
+
+    public int getMaxAggregates() {
+        return maxAggregates;
+    }
+
+    Cycle newCycle() {
+        return new Cycle();
+    }
+
+    /**
+     * 한 주기의 세션 수와 현재 단계. (수집 스레드 전용)
+     */
+    class Cycle {
+        private Level level = Level.NORMAL;
+        private long  sessions;
+        private long  detail;
+        private long  aggregated;
+        private long  sampledOut;
+
+        void reset() {
+            level      = Level.NORMAL;
+            sessions   = 0;
+            detail     = 0;
+            aggregated = 0;
+            sampledOut = 0;
+        }
+
+        /**
+         * 세션 하나를 세고 이 세션에 적용할 단계를 반환한다.
+         */
+        Level next() {
+            sessions++;
+            if (sessions > sampleSessions) {
+                level = Level.SAMPLED;
+            } else if (sessions > aggregateSessions) {
+                level = Level.AGGREGATE_ONLY;
+            } else if (sessions > detailSessions) {
+                level = Level.DETAIL_LIMITED;
+            }
+            return level;
+        }
+
+        /**
+         * tuple hash 로 1/sampleRate 를 고른다.
+         */
+        boolean sample(SessionCollectedData session) {
+            long hash = SessionKey.hash(SessionKey.high(session.getLocal()), SessionKey.low(session.getLocal()),
+                                        SessionKey.high(session.getPeer()), SessionKey.low(session.getPeer()),
+                                        SessionKey.tuple(SessionKey.meta(session)));
+            if (Long.remainderUnsigned(hash, sampleRate) == 0) {
+                return true;
+            }
+            sampledOut++;
+            return false;
+        }
+
+        void addDetail() {
+            detail++;
+        }
+
+        void addAggregated() {
+            aggregated++;
+        }
+
+        /**
+         * 단계는 주기 안에서 올라가기만 하므로 마지막 단계가 이번 주기의 단계이다.
+         */
+        Level getLevel() {
+            return level;
+        }
+
+        int getSampleRate() {
+            return sampleRate;
+        }
+
+        Struct toStruct() {
+            return Struct.newBuilder()
+                         .putFields("type", Value.newBuilder()
+                                                 .setStringValue(STRUCT_TYPE)
+                                                 .build())
+                         .putFields("level", Value.newBuilder()
+                                                  .setStringValue(level.name())
+                                                  .build())
+                         .putFields("sessions", numberValue(sessions))
+                         .putFields("detail", numberValue(detail))
+                         .putFields("aggregated", numberValue(aggregated))
+                         .putFields("sampled_out", numberValue(sampledOut))
+                         .putFields("sample_rate", numberValue(level == Level.SAMPLED ? sampleRate : 1))
+                         .build();
+        }
+    }
+
+    private static Value numberValue(long value) {
+        return Value.newBuilder()
+                    .setNumberValue(value)
+                    .build();
+    }
+}
@@ -0,0 +1,208 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * {@link SessionCollector} 를 주기적으로 수집하는 scheduler.
+ * <pre>
+ * single-flight : 전용 스레드에서 이전 수집이 끝난 뒤에 다음 수집을 예약. 다른 호출자의 수집이 진행 중이면 이번 tick 은 건너뜀
+ * overrun       : 수집이 주기를 넘기면 SKIP(놓친 tick 은 버리고 다음 tick 에 수집) 또는 COALESCE(놓친 tick 을 합쳐 즉시 한 번)
+ * jitter        : 시작 시점을 주기 안에서 무작위로 두고, 매 예약마다 주기의 ±jitter 비율만큼 흔든다 (tick 기준은 흔들리지 않음)
+ * 적응형 주기   : 한 번의 수집 CPU 시간 / 주기 가 cpuBudget 을 넘으면 주기를 늘리고 (최대 maxInterval),
+ *                 여유가 있으면 기본 주기까지 천천히 줄인다
+ * </pre>
+ * CPU 시간은 JVM 프로세스 전체 기준이다. (`ss` 자식 프로세스 제외, 측정할 수 없으면 경과 시간)
+ */
+@Slf4j
+public class SessionCollectScheduler {
+    public enum OverrunPolicy {
+        SKIP,
+        COALESCE
+    }
+
+    private final    SessionCollector      collector;
+    private final    long                  baseInterval; /* ns */
+    private volatile long                  maxInterval;
+    private volatile double                cpuBudget     = 0.05; /* 코어 1개 대비 비율 */
+    private volatile double                jitter        = 0.1;
+    private volatile OverrunPolicy         overrunPolicy = OverrunPolicy.SKIP;
+    private volatile long                  interval; /* 현재 주기 (ns) */
+    /*scheduler 스레드 전용*/
+    private          long                  nextTick;
+    private          long                  nextDelay;
+    private final    LongAdder             runs          = new LongAdder();
+    private final    LongAdder             skipped       = new LongAdder();
+    private final    LongAdder             overruns      = new LongAdder();
+    private final    OperatingSystemMXBean osBean        = ManagementFactory.getOperatingSystemMXBean();
+
+    public SessionCollectScheduler(SessionCollector collector,
+                                   Duration interval) {
+        this.collector    = collector;
+        this.baseInterval = interval.toNanos();
+        this.interval     = baseInterval;
+        this.maxInterval  = baseInterval * 10;
+    }
+
+    public void setMaxInterval(Duration maxInterval) {
+        this.maxInterval = Math.max(baseInterval, maxInterval.toNanos());
+    }
+
+    /**
+     * @param cpuBudget 수집에 쓸 CPU 비율 (0.05 : 코어 1개의 5%)
+     */
+    public void setCpuBudget(double cpuBudget) {
+        this.cpuBudget = cpuBudget;
+    }
+
+    /**
+     * @param jitter 주기 대비 비율 (0 ~ 0.5)
+     */
+    public void setJitter(double jitter) {
+        this.jitter = Math.max(0, Math.min(0.5, jitter));
+    }
+
+    public void setOverrunPolicy(OverrunPolicy overrunPolicy) {
+        this.overrunPolicy = overrunPolicy;
+    }
+
+    /**
+     * 수집을 시작한다. bundle 은 scheduler 스레드에서 전달된다.
+     *
+     * @return 중지용
+     */
+    public Disposable start(Consumer<PayloadState.StateBundle> bundleConsumer) {
+        Scheduler scheduler = Schedulers.newSingle("session-collect", true);
+        long phase = (long) (ThreadLocalRandom.current()
+                                              .nextDouble() * interval);
+        nextTick  = System.nanoTime() + phase;
+        nextDelay = phase;
+        return Mono.defer(() -> Mono.delay(Duration.ofNanos(nextDelay), scheduler))
+                   .then(Mono.fromRunnable(() -> this.run(bundleConsumer)))
+                   .repeat()
+                   .doFinally(signal -> scheduler.dispose())
+                   .subscribe(null, e -> log.error("Session collect scheduler stopped : {}", e.getMessage()));
+    }
+
+    private void run(Consumer<PayloadState.StateBundle> bundleConsumer) {
+        long start = System.nanoTime();
+        long cpuStart = processCpuTime();
+        try {
+            PayloadState.StateBundle bundle = collector.tryCollectSession();
+            if (bundle == null) {
+                skipped.increment();
+            } else {
+                runs.increment();
+                long cpu = cpuStart >= 0 ? processCpuTime() - cpuStart : System.nanoTime() - start;
+                this.adapt(cpu);
+                bundleConsumer.accept(bundle);
+            }
+        } catch (RuntimeException e) {
+            log.error("Session collect fail : {}", e.getMessage(), e);
+        }
+        this.scheduleNext();
+    }
+
+    private void adapt(long cpu) {
+        long current = adaptInterval(interval, cpu, cpuBudget, baseInterval, maxInterval);
+        if (current != interval) {
+            log.debug("session collect interval : {} ms (cpu {} ms)", current / 1_000_000, cpu / 1_000_000);
+        }
+        interval = current;
+    }
+
+    private void scheduleNext() {
+        long now = System.nanoTime();
+        long current = interval;
+        nextTick += current;
+        if (nextTick < now) {
+            overruns.increment();
+            nextTick = catchUp(nextTick, now, current, overrunPolicy);
+        }
+        nextDelay = delay(nextTick, now, current, jitter, ThreadLocalRandom.current()
+                                                                           .nextDouble());
+    }
+
+    /**
+     * 수집 CPU 시간 / cpuBudget 이 현재 주기보다 길면 바로 늘리고 (최대 maxInterval), 짧으면 3/4 가중 평균으로 줄인다. (최소 baseInterval)
+     */
+    static long adaptInterval(long interval,
+                              long cpu,
+                              double cpuBudget,
+                              long baseInterval,
+                              long maxInterval) {
+        long target = (long) (cpu / cpuBudget);
+        if (target > interval) {
+            return Math.min(maxInterval, target);
+        }
+        return Math.max(baseInterval, (interval * 3 + target) / 4);
+    }
+
+    /**
+     * 이미 지난 tick 대신 사용할 tick.
+     * SKIP 은 tick 격자에서 now 이후의 첫 tick, COALESCE 는 now (다음 tick 부터는 now 기준 격자)
+     */
+    static long catchUp(long tick,
+                        long now,
+                        long interval,
+                        OverrunPolicy overrunPolicy) {
+        if (overrunPolicy == OverrunPolicy.COALESCE) {
+            return now;
+        }
+        return tick + ((now - tick) / interval + 1) * interval;
+    }
+
+    /**
+     * tick 까지의 대기 시간에 주기의 ±jitter 비율을 더한다. (tick 자체는 바꾸지 않음)
+     *
+     * @param random 0 ~ 1 난수
+     */
+    static long delay(long tick,
+                      long now,
+                      long interval,
+                      double jitter,
+                      double random) {
+        long shift = (long) ((random * 2 - 1) * jitter * interval);
+        return Math.max(0, tick - now + shift);
+    }
+
+    private long processCpuTime() {
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    public Duration getInterval() {
+        return Duration.ofNanos(interval);
+    }
+
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    /**
+     * 다른 호출자의 수집과 겹쳐 건너뛴 tick 수
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * 수집이 주기를 넘긴 횟수
+     */
+    public long getOverruns() {
+        return overruns.sum();
+    }
+}
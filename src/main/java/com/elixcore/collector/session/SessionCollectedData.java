@@ -5,10 +5,15 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 
+import java.util.List;
+
 @Data
 @RequiredArgsConstructor
 @AllArgsConstructor
 public class SessionCollectedData {
+    public static final int PROTOCOL_TCP = 1;
+    public static final int PROTOCOL_UDP = 2;
+
     private final int                       protocol; /* TCP: 1, UDP: 2*/
     private       PayloadState.SessionState state;
     private       long                      rxByte;
@@ -17,8 +22,38 @@ public class SessionCollectedData {
     private       long                      txPacket;
     private       SessionAddress            local;
     private       SessionAddress            peer;
-    private       Integer                   pid;
+    private       Integer                   pid; /* 소유 프로세스가 여럿이면 가장 작은 pid */
+    private       List<SessionOwner>        owners; /* 소유 프로세스가 둘 이상일 때만 (pid 순) */
     private       int                       direction; /*IN :1, OUT :2*/
+    private       long                      inode; /* socket inode (알 수 없으면 0) */
+    /*tcp_info*/
+    private       long                      rtt; /* us */
+    private       long                      rttVar; /* us */
+    private       long                      retrans; /* 누적 재전송 segment */
+    private       long                      cwnd; /* segment */
+    private       long                      deliveryRate; /* bps */
+    /*이전 수집 대비 초당 값 (첫 수집, 재사용된 tuple 은 0)*/
+    private       double                    rxByteRate;
+    private       double                    txByteRate;
+    private       double                    rxPacketRate;
+    private       double                    txPacketRate;
+    /*byte/s 의 EWMA (사용하지 않으면 0)*/
+    private       double                    rxByteRateAvg;
+    private       double                    txByteRateAvg;
+
+    /**
+     * 수신 대기 소켓 여부 (TCP LISTEN, 연결되지 않은 UDP)
+     */
+    public boolean isListen() {
+        return state == PayloadState.SessionState.LISTEN || (protocol == PROTOCOL_UDP && state == PayloadState.SessionState.UNCONN);
+    }
+
+    /**
+     * 여러 프로세스가 공유하는 소켓 여부
+     */
+    public boolean isShared() {
+        return owners != null && owners.size() > 1;
+    }
 
     public String getInterlockId() {
         return String.format("%s-%s-%s-%s-%s", local != null ? local : "NONE", peer != null ? peer : "NONE", state, protocol, pid != null ? pid : "NONE");
@@ -5,314 +5,980 @@ import com.elixcore.lib.protocol.message.ElixcoreProtocol;
 import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
 import com.google.protobuf.Any;
 import com.google.protobuf.GeneratedMessage;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.util.retry.Retry;
 
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
-public class SessionCollector extends EndpointCollector {
-    private static Map<String, SessionCollectedData> preSessionMap = new ConcurrentHashMap<>();
-    private static Map<String, SessionCollectedData> listenMap     = new ConcurrentHashMap<>();
-    // 버퍼 크기를 16KB로 설정
-    private final  int                               bufferSize    = 16 * 1024;
-    private        Set<Integer>                      listenPortSet = new CopyOnWriteArraySet<>();
+public class SessionCollector extends EndpointCollector implements Closeable {
+    public static final  String                              DELTA_HEADER_TYPE        = "delta_header";
+    private static final int                                 PARALLEL_PID_THRESHOLD   = 64;
+    private static final int                                 DESTROYED_QUEUE_CAPACITY = 64 * 1024;
+    private final        SessionDeltaTable                   sessionTable             = new SessionDeltaTable();
+    private              int                                 listenCount;
+    /*수집 주기 단위 직렬화 (세션 테이블, listen port, delta 순번)*/
+    private final        ReentrantLock                       cycleLock                = new ReentrantLock();
+    /* protocol << 16 | port -> 마지막으로 본 수집 주기 (이번 주기에 보이지 않은 port 는 제거) */
+    private final        Map<Integer, Long>                  listenPortMap            = new ConcurrentHashMap<>();
+    private              long                                listenCycle;
+    private final        SsSessionSource                     ssSessionSource          = new SsSessionSource();
+    /*tcpUdpSessionCommand : `ss` 한 번으로 TCP 줄과 UDP 세션을 함께 읽음*/
+    private final        SsSessionSource                     tcpUdpSsSessionSource    = new SsSessionSource(SsSessionSource.SESSION_COMMAND, SessionCollectedData.PROTOCOL_TCP);
+    private final        SsSessionSource                     udpSsSessionSource       = new SsSessionSource(SsSessionSource.UDP_COMMAND, SessionCollectedData.PROTOCOL_UDP);
+    private final        SessionSource                       sessionSource;
+    private final        SessionSource                       fallbackSource; /* sessionSource 실패 시, null 이면 대체하지 않음 */
+    /*delta 모드*/
+    private              int                                 keyframeInterval; /* 0 : 사용 안 함 (매 주기 전체 전송) */
+    private              long                                sequence;
+    private              long                                keyframeSequence;
+    private              int                                 openedCount;
+    private              int                                 changedCount;
+    private              int                                 closedCount;
+    private volatile     boolean                             keyframeRequested; /* 이전 bundle 이 전달되지 않음 (requestKeyframe) */
+    /*자체 계측*/
+    private final        SessionCollectorMetrics             metrics                  = new SessionCollectorMetrics();
+    private              boolean                             attachMetrics;
+    private              Consumer<SessionCollectorMetrics>   metricsListener;
+    /*realtime 해제 이벤트 (다음 주기의 delta 계산 후 테이블에 반영하고 bundle 에 CLOSED 로 전송)*/
+    private final        BlockingQueue<SessionCollectedData> destroyedSessionQ        = new ArrayBlockingQueue<>(DESTROYED_QUEUE_CAPACITY);
+    private final        Disposable.Composite                realtimeSubscriptions    = Disposables.composite(); /* close 시 해제 */
+    private volatile     ProcessMetadataCache                processMetadataCache;
+    private volatile     SessionFilter                       sessionFilter;
+    private volatile     SessionAggregator                   sessionAggregator;
+    private volatile     SessionRateRollup                   rateRollup;
+    private volatile     HeavyHitterTracker                  heavyHitterTracker;
+    /*null 이면 builder 로 변환 (cycleLock 안에서만 사용)*/
+    private              SessionProcessEncoder               processEncoder;
+    /*세션 수 한도 (초과 시 단계적 축소)*/
+    private volatile     SessionBudget                       sessionBudget; /* null : 제한 없음 (setSessionBudget 으로 설정) */
+    private final        SessionAggregator                   budgetAggregator         = new SessionAggregator(EnumSet.noneOf(PayloadState.SessionState.class), 24, 64, 5);
+
+    public SessionCollector() {
+        this((Path) null, null);
+    }
+
+    /**
+     * 기본 소스를 쓰되 inode -> pid 색인을 공유한다. (색인 갱신은 소유자가 담당, /proc/[pid]/fd 를 한 번만 읽음)
+     *
+     * @param procRoot   /proc/net 소스가 읽을 procfs (null 이면 /proc)
+     * @param inodeIndex null 이면 소스가 색인을 따로 만든다
+     */
+    SessionCollector(Path procRoot,
+                     SocketInodeIndex inodeIndex) {
+        this.sessionSource  = defaultSessionSource(procRoot, inodeIndex);
+        this.fallbackSource = ssSessionSource;
+        this.bindMetrics();
+        log.debug("session source : {}", sessionSource.getClass()
+                                                     .getSimpleName());
+    }
+
+    public SessionCollector(SessionSource sessionSource) {
+        this.sessionSource  = sessionSource;
+        this.fallbackSource = ssSessionSource;
+        this.bindMetrics();
+    }
+
+    /**
+     * @param fallbackSource sessionSource 가 실패한 주기에 대신 사용할 소스. null 이면 대체하지 않는다.
+     *                       (다른 network namespace 를 수집하는 경우 host 의 `ss` 로 대체하면 안 됨)
+     */
+    public SessionCollector(SessionSource sessionSource,
+                            SessionSource fallbackSource) {
+        this.sessionSource  = sessionSource;
+        this.fallbackSource = fallbackSource;
+        this.bindMetrics();
+    }
+
+    /**
+     * netlink -> ss -> /proc/net 순서로 사용 가능한 소스.
+     * /proc/net 에는 byte/packet 카운터가 없으므로 `ss` 를 실행할 수 없을 때만 사용한다.
+     */
+    private SessionSource defaultSessionSource(Path procRoot,
+                                               SocketInodeIndex inodeIndex) {
+        NetlinkSessionSource netlinkSessionSource = inodeIndex != null ? new NetlinkSessionSource(inodeIndex, true) : new NetlinkSessionSource(true);
+        if (netlinkSessionSource.isAvailable()) {
+            return netlinkSessionSource;
+        }
+        if (ssSessionSource.isAvailable()) {
+            return ssSessionSource;
+        }
+        Path root = procRoot != null ? procRoot : Paths.get("/proc");
+        ProcNetSessionSource procNetSessionSource = inodeIndex != null ? new ProcNetSessionSource(root, inodeIndex, true) : new ProcNetSessionSource(root, true);
+        if (procNetSessionSource.isAvailable()) {
+            return procNetSessionSource;
+        }
+        return ssSessionSource;
+    }
+
+    private void bindMetrics() {
+        sessionSource.setMetrics(metrics);
+        ssSessionSource.setMetrics(metrics);
+    }
+
+    /**
+     * {@link SessionRealtime} 의 해제 이벤트를 받아 다음 수집 주기에 반영한다.
+     * 이벤트는 queue 에 모아 두었다가 주기의 delta 계산이 끝난 뒤(cycleLock 안) 세션 테이블에서 제거하며,
+     * 마지막 수집 이후의 delta(수집 사이에 열리고 닫힌 세션은 전체 누적값)로 그 bundle 에 CLOSED 상태로 포함된다.
+     * (수집 중에 제거하면 같은 주기의 갱신이 세션을 다시 만들어 누적값이 중복 집계됨)
+     * `ss` 가 종료되면 1초 후 다시 구독한다. {@link #close()} 시 함께 해제된다.
+     *
+     * @return 구독 해제용
+     */
+    public Disposable attachRealtime(SessionRealtime sessionRealtime) {
+        Disposable subscription = sessionRealtime.events()
+                                                 .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                                                                 .maxBackoff(Duration.ofMinutes(1))
+                                                                 .doBeforeRetry(signal -> log.warn("Session realtime fail, retry : {}", signal.failure()
+                                                                                                                                              .getMessage())))
+                                                 .repeatWhen(completed -> completed.delayElements(Duration.ofSeconds(1)))
+                                                 .subscribe(this::onSessionEvent);
+        realtimeSubscriptions.add(subscription);
+        return subscription;
+    }
+
+    private void onSessionEvent(SessionEvent sessionEvent) {
+        metrics.addEventReceived(1);
+        SessionCollectedData session = sessionEvent.getSession();
+        SessionFilter filter = sessionFilter;
+        if (filter != null && !filter.test(session)) {
+            return;
+        }
+        if (!destroyedSessionQ.offer(session)) {
+            metrics.addEventDropped(1);
+        }
+    }
+
+    public SessionCollectorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * true 이면 bundle 의 data 에 {@link SessionCollectorMetrics#toStruct()} 를 붙인다. (type : collector_metrics)
+     */
+    public void setAttachMetrics(boolean attachMetrics) {
+        this.attachMetrics = attachMetrics;
+    }
+
+    /**
+     * 매 수집 주기 종료 시 호출 (bundle 과 별도로 계측값을 내보낼 때)
+     */
+    public void setMetricsListener(Consumer<SessionCollectorMetrics> metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * null 이 아니면 aggregator 의 상태(기본 TIME_WAIT, SYN_RECV) 세션은 소켓 단위 대신
+     * (pid, local port, state, remote prefix) 별 개수와 상위 peer 로 접어 bundle data 에 붙인다. (type : session_aggregate)
+     * 접은 세션은 세션 테이블에 보관하지 않으므로 delta/CLOSED 대상이 아니다.
+     */
+    public void setSessionAggregator(SessionAggregator sessionAggregator) {
+        this.sessionAggregator = sessionAggregator;
+    }
+
+    /**
+     * null 이 아니면 세션 rate(이전 수집 이후 초당 byte/packet)의 pid 별, 상태별 합계를 bundle data 에 붙인다. (type : session_rate)
+     * 세션별 rate 는 설정과 무관하게 {@link SessionCollectedData} 에 채워진다.
+     */
+    public void setRateRollup(SessionRateRollup rateRollup) {
+        this.rateRollup = rateRollup;
+    }
+
+    /**
+     * null 이 아니면 주기마다 세션 delta 를 넣어 상위 (pid, peer 주소, port) 를 추적한다.
+     * tracker 의 emitTop 이 0 보다 크면 상위 항목을 bundle data 에 붙인다. (type : heavy_hitter)
+     */
+    public void setHeavyHitterTracker(HeavyHitterTracker heavyHitterTracker) {
+        this.heavyHitterTracker = heavyHitterTracker;
+    }
+
+    /**
+     * true 이면 bundle 의 SessionProcess 를 builder 객체 없이 세션 목록에서 바로 직렬화한다. (결과 byte 는 builder 변환과 같음)
+     * 생성된 proto 구조를 인코더가 지원하지 않으면 무시한다.
+     */
+    public void setDirectEncoding(boolean directEncoding) {
+        cycleLock.lock();
+        try {
+            this.processEncoder = directEncoding && SessionProcessEncoder.isAvailable() ? new SessionProcessEncoder() : null;
+        } finally {
+            cycleLock.unlock();
+        }
+    }
+
+    /**
+     * 세션별 byte/s EWMA 의 시정수. (0 이면 사용 안 함)
+     */
+    public void setRateTimeConstant(Duration timeConstant) {
+        synchronized (sessionTable) {
+            sessionTable.setRateTimeConstant(timeConstant.toNanos());
+        }
+    }
+
+    /**
+     * 한 수집 주기의 세션 수 한도. 한도를 넘으면 소켓 단위 전송 -> 집계 -> sampling 순으로 축소하고,
+     * 해당 bundle 에 {@link SessionBudget#STRUCT_TYPE} Struct 를 붙인다. null 이면 제한하지 않는다.
+     * 집계에는 {@link #setSessionAggregator(SessionAggregator)} 로 설정한 aggregator 를, 없으면 내부 aggregator 를 사용한다.
+     */
+    public void setSessionBudget(SessionBudget sessionBudget) {
+        this.sessionBudget = sessionBudget;
+        tcpUdpSsSessionSource.setMaxLines(sessionBudget != null ? sessionBudget.getSampleSessions() : Integer.MAX_VALUE);
+    }
+
+    /**
+     * null 이 아니면 이 collector 가 실행하는 `ss` 출력(tcpUdpSessionCommand, convertUdpSession, `ss` 소스/fallback)을 기록한다.
+     */
+    public void setRecorder(SsRecorder recorder) {
+        this.ssSources()
+            .forEach(source -> source.setRecorder(recorder));
+    }
+
+    /**
+     * null 이 아니면 이 collector 의 `ss` 출력(tcpUdpSessionCommand, convertUdpSession, `ss` 소스/fallback)을 `ss` 대신 player 에서 읽는다.
+     * (기록 재생 {@link SsReplay}, 합성 출력 {@link SsOutputGenerator})
+     */
+    public void setPlayer(SsOutputPlayer player) {
+        this.ssSources()
+            .forEach(source -> source.setPlayer(player));
+    }
+
+    private List<SsSessionSource> ssSources() {
+        List<SsSessionSource> sources = new ArrayList<>(Arrays.asList(ssSessionSource, tcpUdpSsSessionSource, udpSsSessionSource));
+        if (sessionSource instanceof SsSessionSource && sessionSource != ssSessionSource) {
+            sources.add((SsSessionSource) sessionSource);
+        }
+        return sources;
+    }
+
+    /**
+     * 수집 대상 세션 조건. 소스가 지원하는 조건은 수집 단계(`ss` filter, netlink 상태 bitmask)에서 먼저 거른다.
+     * 조건에서 제외된 LISTEN 세션도 in/out 방향 판별용 listen port 에는 반영한다.
+     */
+    public void setFilter(SessionFilter sessionFilter) {
+        this.sessionFilter = sessionFilter;
+        sessionSource.setFilter(sessionFilter);
+        ssSessionSource.setFilter(sessionFilter);
+    }
+
+    /**
+     * null 이 아니면 bundle 의 data 에 pid 별 프로세스 정보를 붙인다. (type : process_metadata)
+     * 처음 보이거나 재사용된 pid 만 포함하고, delta 모드의 keyframe 에는 전체 pid 를 다시 포함한다.
+     */
+    public void setProcessMetadataCache(ProcessMetadataCache processMetadataCache) {
+        this.processMetadataCache = processMetadataCache;
+    }
+
+    /**
+     * delta 모드 설정.
+     * 0 보다 크면 interval 주기마다 전체(keyframe)를, 그 사이에는 신규/변경/종료된 세션만 전송하고,
+     * bundle 의 첫 data 에 {@link Struct} header(type, mode, sequence, keyframe, opened, changed, closed)를 붙인다.
+     * 종료된 세션은 CLOSED 상태로 전송한다.
+     */
+    public void setKeyframeInterval(int keyframeInterval) {
+        this.keyframeInterval = Math.max(0, keyframeInterval);
+    }
+
+    /**
+     * 다음 주기를 keyframe 으로 보낸다. (수집한 bundle 이 전달되지 못해 수신 측이 delta 를 놓친 경우, 예: 제한 시간 초과로 취소)
+     */
+    public void requestKeyframe() {
+        this.keyframeRequested = true;
+    }
 
     public List<PayloadState.SessionProcess> convertTcpSession(List<SessionCollectedData> tcpCollectedDataList) {
         Map<Integer, List<SessionCollectedData>> pidSessionMap = tcpCollectedDataList.stream()
                                                                                      .collect(Collectors.groupingBy(SessionCollectedData::getPid));
+        return this.convertTcpSession(pidSessionMap);
+    }
+
+    /**
+     * pid 별 {@link PayloadState.SessionProcess} 를 만든다.
+     * pid 수가 {@link #PARALLEL_PID_THRESHOLD} 이상이면 common fork-join pool 에서 pid 단위로 병렬 변환하며,
+     * 결과 순서는 map 의 순회 순서와 같다.
+     * <p>
+     * 여러 프로세스가 공유하는 소켓은 가장 작은 pid 에 한 번만 usage 를 싣고,
+     * LISTEN 소켓만 다른 소유 프로세스의 listen 에도 추가한다. (usage 가 없으므로 중복 집계되지 않음)
+     */
+    public List<PayloadState.SessionProcess> convertTcpSession(Map<Integer, List<SessionCollectedData>> pidSessionMap) {
+        pidSessionMap = shareListen(pidSessionMap);
+        if (pidSessionMap.size() < PARALLEL_PID_THRESHOLD) {
+            List<PayloadState.SessionProcess> sessionProcessList = new ArrayList<>(pidSessionMap.size());
+            pidSessionMap.forEach((pid, sessionList) -> sessionProcessList.add(this.convertProcess(pid, sessionList)));
+            return sessionProcessList;
+        }
+        return pidSessionMap.entrySet()
+                            .parallelStream()
+                            .map(entry -> this.convertProcess(entry.getKey(), entry.getValue()))
+                            .collect(Collectors.toList());
+    }
+
+    /**
+     * {@link #convertTcpSession(Map)} 결과를 {@link Any#pack} 한 것과 같은 목록.
+     * encoder 가 있으면 세션 목록에서 바로 직렬화하고, 인코딩할 수 없는 pid 만 builder 로 변환한다.
+     */
+    private List<Any> packTcpSession(Map<Integer, List<SessionCollectedData>> pidSessionMap) {
+        SessionProcessEncoder encoder = processEncoder;
+        if (encoder == null) {
+            return this.convertTcpSession(pidSessionMap)
+                       .stream()
+                       .map(Any::pack)
+                       .collect(Collectors.toList());
+        }
+        pidSessionMap = shareListen(pidSessionMap);
+        List<Any> anyList = encoder.encode(pidSessionMap, this::isListenPort);
+        int i = 0;
+        for (Map.Entry<Integer, List<SessionCollectedData>> entry : pidSessionMap.entrySet()) {
+            if (anyList.get(i) == null) {
+                anyList.set(i, Any.pack(this.convertProcess(entry.getKey(), entry.getValue())));
+            }
+            i++;
+        }
+        return anyList;
+    }
+
+    /**
+     * 세션의 local port 가 이번에 본 LISTEN port 인지 (in 방향)
+     */
+    boolean isListenPort(SessionCollectedData session) {
+        return listenPortMap.containsKey(listenKey(session.getProtocol(), session.getLocal()
+                                                                         .getPortValue()));
+    }
+
+    /**
+     * 세션 테이블 항목 수 (세션 수 한도에서 테이블 크기 확인용)
+     */
+    int tableSize() {
+        synchronized (sessionTable) {
+            return sessionTable.size();
+        }
+    }
 
-        List<PayloadState.SessionProcess> sessionProcessList = new CopyOnWriteArrayList<>();
-
-        pidSessionMap.entrySet()
-                     .forEach(entry -> {
-                         Integer pid = entry.getKey();
-                         List<SessionCollectedData> sessionList = entry.getValue();
-                         PayloadState.SessionProcess.Builder pidSessionBuilder = PayloadState.SessionProcess.newBuilder();
-
-                         pidSessionBuilder.setPid(pid);
-
-                         Map<PayloadState.SessionState, List<PayloadState.Session>> inSessionStateMap = new HashMap<>();
-                         Map<PayloadState.SessionState, List<PayloadState.Session>> outSessionStateMap = new HashMap<>();
-
-                         for (SessionCollectedData session : sessionList) {
-                             PayloadState.Session.Builder sessionBuilder = PayloadState.Session.newBuilder();
-                             PayloadState.SessionState state = session.getState();
-                             /*Local Address*/
-                             SessionAddress local = session.getLocal();
-                             boolean listen = false;
-                             boolean in = false;
-
-                             Integer localPort = local.getPort();
-                             if (state == PayloadState.SessionState.LISTEN) {
-                                 listen = true;
-                                 in     = true;
-                             } else {
-                                 if (listenPortSet.contains(localPort)) {
-                                     in = true;
-                                 }
-                             }
-
-                             PayloadState.SessionAddress.Builder localAddressBuilder = PayloadState.SessionAddress.newBuilder();
-                             localAddressBuilder.setAddress(local.getAddress());
-                             localAddressBuilder.setPort(localPort);
-                             PayloadState.SessionAddress localAddress = localAddressBuilder.build();
-                             if (in) {
-                                 sessionBuilder.setDst(localAddress);
-                             } else {
-                                 sessionBuilder.setSrc(localAddress);
-                             }
-
-                             /*Peer Address*/
-                             SessionAddress peer = session.getPeer();
-                             if (peer != null) {
-                                 PayloadState.SessionAddress.Builder peerAddressBuilder = PayloadState.SessionAddress.newBuilder();
-                                 peerAddressBuilder.setAddress(peer.getAddress());
-                                 Integer port = peer.getPort();
-                                 if (port != null) {
-                                     peerAddressBuilder.setPort(port);
-                                 }
-                                 PayloadState.SessionAddress peerAddress = peerAddressBuilder.build();
-                                 if (in) {
-                                     sessionBuilder.setSrc(peerAddress);
-                                 } else {
-                                     sessionBuilder.setDst(peerAddress);
-                                 }
-                             }
-
-                             switch (state) {
-                                 case LISTEN: {
-                                     break;
-                                 }
-                                 default: {
-                                     /*Usage*/
-                                     sessionBuilder.setRxByte(session.getRxByte());
-                                     sessionBuilder.setTxByte(session.getTxByte());
-                                     sessionBuilder.setRxPacket(session.getRxPacket());
-                                     sessionBuilder.setTxPacket(session.getTxPacket());
-                                     break;
-                                 }
-                             }
-
-                             if (state == PayloadState.SessionState.LISTEN) {
-                                 pidSessionBuilder.addListen(sessionBuilder.build());
-                             } else {
-                                 Optional.ofNullable(local)
-                                         .map(SessionAddress::getPort)
-                                         .ifPresent(port -> {
-                                             if (listenPortSet.contains(port)) {
-                                                 List<PayloadState.Session> stateSessionList = inSessionStateMap.computeIfAbsent(state, s -> new ArrayList<>());
-                                                 stateSessionList.add(sessionBuilder.build());
-                                             } else {
-                                                 List<PayloadState.Session> stateSessionList = outSessionStateMap.computeIfAbsent(state,
-                                                                                                                                  s -> new ArrayList<>()
-                                                 );
-                                                 stateSessionList.add(sessionBuilder.build());
-                                             }
-                                         });
-                             }
-                         }
-
-                         /*IN SESSION*/
-                         if (inSessionStateMap.size() > 0) {
-                             PayloadState.SessionStateUsage.Builder inUsageBuilder = PayloadState.SessionStateUsage.newBuilder();
-                             inSessionStateMap.forEach((state, stateSessionList) -> {
-                                 inUsageBuilder.setState(state);
-                                 inUsageBuilder.addAllSession(stateSessionList);
-                                 pidSessionBuilder.addIn(inUsageBuilder.build());
-                             });
-                         }
-
-                         /*OUT SESSION*/
-                         if (outSessionStateMap.size() > 0) {
-                             PayloadState.SessionStateUsage.Builder outUsageBuilder = PayloadState.SessionStateUsage.newBuilder();
-                             outSessionStateMap.forEach((state, stateSessionList) -> {
-                                 outUsageBuilder.setState(state);
-                                 outUsageBuilder.addAllSession(stateSessionList);
-                                 pidSessionBuilder.addOut(outUsageBuilder.build());
-                             });
-                         }
-
-                         sessionProcessList.add(pidSessionBuilder.build());
-                     });
-        preSessionMap.clear();
-        listenMap.clear();
-
-        tcpCollectedDataList.parallelStream()
-                            .forEach(session -> {
-                                if (session.getState() == PayloadState.SessionState.LISTEN) {
-                                    listenMap.put(session.getInterlockId(), session);
-                                } else {
-                                    preSessionMap.put(session.getInterlockId(), session);
-                                }
-                            });
-        return sessionProcessList;
+    /**
+     * 공유 LISTEN 소켓을 다른 소유 pid 에도 넣은 map. 공유 LISTEN 소켓이 없으면 그대로 반환한다.
+     */
+    static Map<Integer, List<SessionCollectedData>> shareListen(Map<Integer, List<SessionCollectedData>> pidSessionMap) {
+        Map<Integer, List<SessionCollectedData>> sharedMap = null;
+        for (List<SessionCollectedData> sessionList : pidSessionMap.values()) {
+            for (SessionCollectedData session : sessionList) {
+                if (!session.isShared() || !session.isListen()) {
+                    continue;
+                }
+                if (sharedMap == null) {
+                    sharedMap = new LinkedHashMap<>();
+                }
+                int previousPid = session.getPid();
+                for (SessionOwner owner : session.getOwners()) {
+                    /*pid 순 정렬이므로 같은 프로세스의 다른 fd 는 연속*/
+                    if (owner.getPid() == previousPid) {
+                        continue;
+                    }
+                    previousPid = owner.getPid();
+                    sharedMap.computeIfAbsent(owner.getPid(), pid -> new ArrayList<>())
+                             .add(session);
+                }
+            }
+        }
+        if (sharedMap == null) {
+            return pidSessionMap;
+        }
+        Map<Integer, List<SessionCollectedData>> ownerSessionMap = new LinkedHashMap<>(pidSessionMap);
+        sharedMap.forEach((pid, sharedList) -> ownerSessionMap.merge(pid, sharedList, (sessionList, shared) -> {
+            List<SessionCollectedData> merged = new ArrayList<>(sessionList.size() + shared.size());
+            merged.addAll(sessionList);
+            merged.addAll(shared);
+            return merged;
+        }));
+        return ownerSessionMap;
+    }
+
+    PayloadState.SessionProcess convertProcess(Integer pid,
+                                               List<SessionCollectedData> sessionList) {
+        PayloadState.SessionProcess.Builder pidSessionBuilder = PayloadState.SessionProcess.newBuilder();
+        pidSessionBuilder.setPid(pid);
+
+        Map<PayloadState.SessionState, List<PayloadState.Session>> inSessionStateMap = new EnumMap<>(PayloadState.SessionState.class);
+        Map<PayloadState.SessionState, List<PayloadState.Session>> outSessionStateMap = new EnumMap<>(PayloadState.SessionState.class);
+
+        for (SessionCollectedData session : sessionList) {
+            PayloadState.SessionState state = session.getState();
+            /*Local Address*/
+            SessionAddress local = session.getLocal();
+            Integer localPort = local.getPort();
+            if (localPort == null) {
+                continue;
+            }
+            boolean listen = session.isListen();
+            boolean in = listen || listenPortMap.containsKey(listenKey(session.getProtocol(), localPort));
+
+            PayloadState.Session.Builder sessionBuilder = PayloadState.Session.newBuilder();
+            PayloadState.SessionAddress localAddress = PayloadState.SessionAddress.newBuilder()
+                                                                                  .setAddress(local.getAddress())
+                                                                                  .setPort(localPort)
+                                                                                  .build();
+            if (in) {
+                sessionBuilder.setDst(localAddress);
+            } else {
+                sessionBuilder.setSrc(localAddress);
+            }
+
+            /*Peer Address*/
+            SessionAddress peer = session.getPeer();
+            if (peer != null) {
+                PayloadState.SessionAddress.Builder peerAddressBuilder = PayloadState.SessionAddress.newBuilder();
+                peerAddressBuilder.setAddress(peer.getAddress());
+                Integer port = peer.getPort();
+                if (port != null) {
+                    peerAddressBuilder.setPort(port);
+                }
+                PayloadState.SessionAddress peerAddress = peerAddressBuilder.build();
+                if (in) {
+                    sessionBuilder.setSrc(peerAddress);
+                } else {
+                    sessionBuilder.setDst(peerAddress);
+                }
+            }
+
+            if (listen) {
+                pidSessionBuilder.addListen(sessionBuilder.build());
+                continue;
+            }
+
+            /*Usage*/
+            sessionBuilder.setRxByte(session.getRxByte());
+            sessionBuilder.setTxByte(session.getTxByte());
+            sessionBuilder.setRxPacket(session.getRxPacket());
+            sessionBuilder.setTxPacket(session.getTxPacket());
+
+            Map<PayloadState.SessionState, List<PayloadState.Session>> stateMap = in ? inSessionStateMap : outSessionStateMap;
+            stateMap.computeIfAbsent(state, s -> new ArrayList<>())
+                    .add(sessionBuilder.build());
+        }
+
+        /*IN SESSION*/
+        inSessionStateMap.forEach((state, stateSessionList) -> pidSessionBuilder.addIn(usage(state, stateSessionList)));
+        /*OUT SESSION*/
+        outSessionStateMap.forEach((state, stateSessionList) -> pidSessionBuilder.addOut(usage(state, stateSessionList)));
+
+        return pidSessionBuilder.build();
+    }
+
+    /**
+     * 상태별 usage. (상태마다 새 builder 를 사용해야 이전 상태의 세션이 섞이지 않는다)
+     */
+    private static PayloadState.SessionStateUsage usage(PayloadState.SessionState state,
+                                                        List<PayloadState.Session> stateSessionList) {
+        return PayloadState.SessionStateUsage.newBuilder()
+                                             .setState(state)
+                                             .addAllSession(stateSessionList)
+                                             .build();
     }
 
     public List<SessionCollectedData> tcpSessionParsing(Queue<String> tcpLineQ) {
         List<SessionCollectedData> tcpCollectedDataList = tcpLineQ.stream()
                                                                   .parallel()
-                                                                  .map(line -> {
-                                                                      SessionCollectedData sessionCollectedData = new SessionCollectedData(1);
-                                                                      String[] split = line.split("\\s+");
-                                                                      String state = split[0];
-                                                                      PayloadState.SessionState stateEnum = this.fromStateStr(state);
-                                                                      String local = split[3];
-                                                                      String peer = split[4];
-                                                                      Long rxByte = 0L;
-                                                                      Long txByte = 0L;
-                                                                      Long rxPacket = 0L;
-                                                                      Long txPacket = 0L;
-
-                                                                      sessionCollectedData.setLocal(Optional.ofNullable(local)
-                                                                                                            .map(address -> SessionAddress.findMatch(address))
-                                                                                                            .orElse(null));
-                                                                      sessionCollectedData.setPeer(Optional.ofNullable(peer)
-                                                                                                           .map(address -> SessionAddress.findMatch(address))
-                                                                                                           .orElse(null));
-
-                                                                      sessionCollectedData.setState(stateEnum);
-                                                                      sessionCollectedData.setPid(0);
-
-                                                                      sessionCollectedData.setPid(Optional.ofNullable(extractPidWithIndex(line, "pid="))
-                                                                                                          .map(Integer::parseInt)
-                                                                                                          .orElse(0));
-                                                                      txByte   = Optional.ofNullable(extractPidWithIndex(line, "bytes_sent:"))
-                                                                                         .map(Long::parseLong)
-                                                                                         .orElse(0L);
-                                                                      rxByte   = Optional.ofNullable(extractPidWithIndex(line, "bytes_received:"))
-                                                                                         .map(Long::parseLong)
-                                                                                         .orElse(0L);
-                                                                      txPacket = Optional.ofNullable(extractPidWithIndex(line, "segs_out:"))
-                                                                                         .map(Long::parseLong)
-                                                                                         .orElse(0L);
-                                                                      rxPacket = Optional.ofNullable(extractPidWithIndex(line, "segs_in:"))
-                                                                                         .map(Long::parseLong)
-                                                                                         .orElse(0L);
-
-                                                                      SessionCollectedData
-                                                                          preSession
-                                                                          = preSessionMap.get(sessionCollectedData.getInterlockId());
-
-                                                                      if (preSession != null) {
-                                                                          long preRxByte = preSession.getRxByte();
-                                                                          long preTxByte = preSession.getTxByte();
-                                                                          long preRxPacket = preSession.getRxPacket();
-                                                                          long preTxPacket = preSession.getTxPacket();
-
-                                                                          rxByte   = rxByte < preRxByte ? rxByte : rxByte - preRxByte;
-                                                                          txByte   = txByte < preTxByte ? txByte : txByte - preTxByte;
-                                                                          rxPacket = rxPacket < preRxPacket ? rxPacket : rxPacket - preRxPacket;
-                                                                          txPacket = txPacket < preTxPacket ? txPacket : txPacket - preTxPacket;
-                                                                      }
-
-                                                                      if (stateEnum == PayloadState.SessionState.LISTEN) {
-                                                                          Optional.ofNullable(sessionCollectedData.getLocal())
-                                                                                  .map(SessionAddress::getPort)
-                                                                                  .ifPresent(listenPortSet::add);
-                                                                      } else {
-                                                                          sessionCollectedData.setRxByte(rxByte);
-                                                                          sessionCollectedData.setTxByte(txByte);
-                                                                          sessionCollectedData.setRxPacket(rxPacket);
-                                                                          sessionCollectedData.setTxPacket(txPacket);
-                                                                      }
-
-                                                                      return sessionCollectedData;
-                                                                  })
+                                                                  .map(line -> SsLineParser.parse(line, 1))
                                                                   .collect(Collectors.toList());
-        return tcpCollectedDataList;
+        return this.tcpSessionDelta(tcpCollectedDataList);
     }
 
-    public void convertUdpSession(List<SessionCollectedData> sessionCollectedDataList) {
+    /**
+     * {@link SessionSource} 에서 받은 누적 카운터를 이전 수집 대비 delta 로 변환한다.
+     * 한 번의 호출이 한 수집 주기이며, 이번 목록에 없는 세션은 테이블에서 제거된다.
+     */
+    public List<SessionCollectedData> tcpSessionDelta(List<SessionCollectedData> tcpCollectedDataList) {
+        cycleLock.lock();
         try {
-            long now = System.currentTimeMillis();
-            ProcessBuilder ssUdp = new ProcessBuilder("sh", "-c", "ss -aiOpnuH");
-            ssUdp.redirectErrorStream(true);
-            Queue<String> udpLineQ = new ConcurrentLinkedQueue<>();
-
-            String udpLine;
-            Process ssUdpProc = ssUdp.start();
-            BufferedReader udpReader = new BufferedReader(new InputStreamReader(ssUdpProc.getInputStream()), bufferSize);
-
-            try {
-                while ((udpLine = udpReader.readLine()) != null) {
-                    udpLineQ.add(udpLine);
+            long cycle = ++listenCycle;
+            this.sessionDelta(Collections.singletonList(tcpCollectedDataList), null, null, true, System.nanoTime(), null, null);
+            this.expireListen(cycle);
+            return tcpCollectedDataList;
+        } finally {
+            cycleLock.unlock();
+        }
+    }
+
+    /**
+     * @param changedSessionMap  null 이 아니면 신규/변경/종료된 세션을 pid 별로 담는다.
+     * @param aggregatedSessions 집계로 접은 상태별 세션 수 (상태별 세션 수 계측에 더함, 없으면 null)
+     * @param expire             false 이면 이번 주기에 없는 세션을 종료로 보지 않는다. (세션 수 한도로 접힌 주기)
+     *                           테이블이 한도의 2배를 넘으면 그래도 제거한다.
+     * @param sampleTime         카운터를 읽기 시작한 시각 ({@link System#nanoTime()}), rate 계산 기준
+     * @param rollup             null 이 아니면 세션 rate 를 pid/상태별로 더한다.
+     * @param destroyed          null 이 아니면 갱신이 끝난 뒤 realtime 해제 이벤트를 테이블에 반영하고 CLOSED 세션을 담는다.
+     */
+    private void sessionDelta(Collection<List<SessionCollectedData>> sessionGroups,
+                              Map<Integer, List<SessionCollectedData>> changedSessionMap,
+                              long[] aggregatedSessions,
+                              boolean expire,
+                              long sampleTime,
+                              SessionRateRollup rollup,
+                              List<SessionCollectedData> destroyed) {
+        long deltaStart = System.nanoTime();
+        long[] stateSessions = aggregatedSessions != null ? aggregatedSessions.clone() : new long[PayloadState.SessionState.values().length];
+        if (rollup != null) {
+            rollup.beginCycle();
+        }
+        HeavyHitterTracker tracker = heavyHitterTracker;
+        if (tracker != null) {
+            tracker.beginCycle(sampleTime);
+        }
+        synchronized (sessionTable) {
+            sessionTable.beginCycle(sampleTime);
+            int listen = 0;
+            int opened = 0;
+            int changed = 0;
+            for (List<SessionCollectedData> sessionList : sessionGroups) {
+                for (SessionCollectedData sessionCollectedData : sessionList) {
+                    if (sessionCollectedData.isListen()) {
+                        listen++;
+                    }
+                    if (sessionCollectedData.getState() != null) {
+                        stateSessions[sessionCollectedData.getState()
+                                                          .ordinal()]++;
+                    }
+                    int result = this.applyDelta(sessionCollectedData);
+                    if (rollup != null) {
+                        rollup.add(sessionCollectedData);
+                    }
+                    if (tracker != null) {
+                        tracker.add(sessionCollectedData);
+                    }
+                    if (result == SessionDeltaTable.UNCHANGED) {
+                        continue;
+                    }
+                    if (result == SessionDeltaTable.OPENED) {
+                        opened++;
+                    } else {
+                        changed++;
+                    }
+                    if (changedSessionMap != null) {
+                        changedSessionMap.computeIfAbsent(sessionCollectedData.getPid(), pid -> new ArrayList<>())
+                                         .add(sessionCollectedData);
+                    }
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
             }
+            if (destroyed != null) {
+                /* 이번 주기 갱신 뒤에 제거해야 종료된 세션이 같은 주기에 다시 생기지 않음 (expire 보다 먼저 : 중복 CLOSED 방지) */
+                this.closeDestroyed(destroyed);
+            }
+            SessionBudget budget = sessionBudget;
+            if (!expire && (budget == null || sessionTable.size() <= 2L * budget.getDetailSessions())) {
+                closedCount = 0;
+            } else {
+                closedCount = sessionTable.expire((localHigh, localLow, peerHigh, peerLow, meta) -> {
+                    if (changedSessionMap == null) {
+                        return;
+                    }
+                    SessionCollectedData closed = new SessionCollectedData(SessionKey.protocol(meta));
+                    closed.setState(PayloadState.SessionState.CLOSED);
+                    closed.setLocal(SessionKey.address(localHigh, localLow, SessionKey.localPort(meta)));
+                    closed.setPeer(SessionKey.address(peerHigh, peerLow, SessionKey.peerPort(meta)));
+                    closed.setPid(SessionKey.pid(meta));
+                    changedSessionMap.computeIfAbsent(closed.getPid(), pid -> new ArrayList<>())
+                                     .add(closed);
+                });
+            }
+            openedCount  = opened;
+            changedCount = changed;
+            listenCount  = listen;
+        }
+        if (tracker != null) {
+            tracker.publish();
+        }
+        metrics.setStateSessions(stateSessions);
+        metrics.record(SessionCollectorMetrics.Stage.DELTA, System.nanoTime() - deltaStart);
+    }
+
+    /**
+     * queue 에 모인 해제 이벤트를 테이블에서 제거하고 카운터를 마지막 수집 대비 delta 로 바꾼다. (sessionTable lock 안)
+     */
+    private void closeDestroyed(List<SessionCollectedData> destroyed) {
+        SessionCollectedData session;
+        while ((session = destroyedSessionQ.poll()) != null) {
+            sessionTable.close(session);
+            session.setState(PayloadState.SessionState.CLOSED);
+            destroyed.add(session);
+        }
+    }
+
+    private int applyDelta(SessionCollectedData sessionCollectedData) {
+        int result = sessionTable.update(sessionCollectedData);
+
+        if (sessionCollectedData.isListen()) {
+            this.markListen(sessionCollectedData);
+            sessionCollectedData.setRxByte(0);
+            sessionCollectedData.setTxByte(0);
+            sessionCollectedData.setRxPacket(0);
+            sessionCollectedData.setTxPacket(0);
+            sessionCollectedData.setRxByteRate(0);
+            sessionCollectedData.setTxByteRate(0);
+            sessionCollectedData.setRxPacketRate(0);
+            sessionCollectedData.setTxPacketRate(0);
+            sessionCollectedData.setRxByteRateAvg(0);
+            sessionCollectedData.setTxByteRateAvg(0);
+        }
+        return result;
+    }
+
+    private void markListen(SessionCollectedData session) {
+        Optional.ofNullable(session.getLocal())
+                .map(SessionAddress::getPort)
+                .map(port -> listenKey(session.getProtocol(), port))
+                .ifPresent(key -> listenPortMap.put(key, listenCycle));
+    }
+
+    private void expireListen(long cycle) {
+        listenPortMap.values()
+                     .removeIf(seen -> seen != cycle);
+    }
 
-            ssUdpProc.waitFor();
-            ssUdpProc.destroy();
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+    /**
+     * UDP 소켓을 `ss` 로 수집해 delta 를 적용한 뒤 list 에 추가한다.
+     * <p>
+     * {@link #collectSession()} 과 같은 delta 테이블({@link SessionCollectedData#PROTOCOL_UDP} key)을 쓰므로,
+     * 카운터/rate 는 마지막으로 같은 소켓을 읽은 수집(이 메서드 또는 {@link #collectSession()}) 대비 값이다.
+     * 이번에 보이지 않은 UDP 항목만 제거하고 TCP 항목은 건드리지 않는다.
+     * {@link #collectSession()} 은 TCP/UDP 를 한 번에 수집하므로 이 메서드를 거치지 않는다.
+     */
+    public void convertUdpSession(List<SessionCollectedData> sessionCollectedDataList) {
+        List<SessionCollectedData> udpSessions = new ArrayList<>();
+        long sampleTime = System.nanoTime();
+        try {
+            udpSsSessionSource.collect(udpSessions::add);
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            log.error("SS Command Fail : {}", e.getMessage());
+            return;
         }
+        this.applyUdpDelta(udpSessions, sampleTime, sessionCollectedDataList);
     }
 
+    /**
+     * {@link #tcpUdpSessionCommand()} 가 함께 읽은 UDP 세션에 delta 를 적용한 뒤 list 에 추가한다. (`ss` 를 다시 실행하지 않음)
+     * 세션 객체의 카운터가 delta 로 바뀌므로 snapshot 하나는 한 번만 넘긴다.
+     */
+    public void convertUdpSession(SsSnapshot snapshot,
+                                  List<SessionCollectedData> sessionCollectedDataList) {
+        this.applyUdpDelta(snapshot.getUdpSessions(), snapshot.getSampleTime(), sessionCollectedDataList);
+    }
+
+    private void applyUdpDelta(List<SessionCollectedData> udpSessions,
+                               long sampleTime,
+                               List<SessionCollectedData> sessionCollectedDataList) {
+        cycleLock.lock();
+        try {
+            synchronized (sessionTable) {
+                sessionTable.beginCycle(sampleTime);
+                for (SessionCollectedData session : udpSessions) {
+                    this.applyDelta(session);
+                }
+                sessionTable.expire(SessionCollectedData.PROTOCOL_UDP, null);
+            }
+        } finally {
+            cycleLock.unlock();
+        }
+        sessionCollectedDataList.addAll(udpSessions);
+    }
+
+    /**
+     * TCP 소켓의 `ss -t` 형식 출력 줄. (같은 실행의 UDP 소켓도 필요하면 {@link #tcpUdpSessionCommand()})
+     */
     public Queue<String> tcpSessionCommand() {
-        ProcessBuilder ssTcp = new ProcessBuilder("sh", "-c", "ss -aiOpntH");
-        ssTcp.redirectErrorStream(true);
-        Queue<String> tcpLineQ = new ConcurrentLinkedQueue<>();
+        return this.tcpUdpSessionCommand()
+                   .getTcpLines();
+    }
+
+    /**
+     * `ss` 한 번으로 TCP 줄과 UDP 세션을 함께 읽는다. UDP 세션은 {@link #convertUdpSession(SsSnapshot, List)} 로 넘긴다.
+     */
+    public SsSnapshot tcpUdpSessionCommand() {
+        List<SessionCollectedData> udpSessions = new ArrayList<>();
+        long sampleTime = System.nanoTime();
+        Queue<String> lineQ = tcpUdpSsSessionSource.readLines(line -> {
+            SessionCollectedData session = SsLineParser.parse(line, SessionCollectedData.PROTOCOL_UDP);
+            if (session.getLocal() != null) {
+                udpSessions.add(session);
+            }
+        });
+        return new SsSnapshot(lineQ, Collections.unmodifiableList(udpSessions), sampleTime);
+    }
+
+    /**
+     * `ss` 한 번 실행 결과. (TCP 출력 줄, 같은 실행의 UDP 세션, 읽기 시작한 시각 {@link System#nanoTime()})
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class SsSnapshot {
+        private final Queue<String>              tcpLines;
+        private final List<SessionCollectedData> udpSessions;
+        private final long                       sampleTime;
+    }
+
+    /**
+     * 설정된 {@link SessionSource} 로 TCP/UDP 를 함께 수집하면서 pid 별로 묶고, 끝나면 delta 를 계산한다.
+     * 소스가 실패하면 `ss` 출력 파싱으로 대체한다.
+     */
+    public Map<Integer, List<SessionCollectedData>> sessionCollect() {
+        cycleLock.lock();
+        try {
+            return this.sessionCollect(null, null, null, null, null);
+        } finally {
+            cycleLock.unlock();
+        }
+    }
+
+    /**
+     * @param aggregator  null 이 아니면 접는 대상 상태의 세션은 map 대신 aggregator 에 더한다.
+     * @param budgetCycle null 이 아니면 세션 수 한도를 넘은 뒤의 세션을 aggregator 로 접거나 sampling 한다. (aggregator 필수)
+     * @param rollup      null 이 아니면 세션 rate 를 pid/상태별로 더한다.
+     * @param destroyed   null 이 아니면 delta 계산 뒤 반영한 realtime 해제 세션을 담는다.
+     */
+    private Map<Integer, List<SessionCollectedData>> sessionCollect(Map<Integer, List<SessionCollectedData>> changedSessionMap,
+                                                                    SessionAggregator aggregator,
+                                                                    SessionBudget.Cycle budgetCycle,
+                                                                    SessionRateRollup rollup,
+                                                                    List<SessionCollectedData> destroyed) {
+        Map<Integer, List<SessionCollectedData>> pidSessionMap = new HashMap<>();
+        SessionFilter filter = sessionFilter;
+        Runnable reset = () -> {
+            pidSessionMap.clear();
+            if (aggregator != null) {
+                aggregator.beginCycle();
+            }
+            if (budgetCycle != null) {
+                budgetCycle.reset();
+            }
+        };
+        reset.run();
+        long cycle = ++listenCycle;
+        Consumer<SessionCollectedData> grouping = session -> this.group(session, pidSessionMap, filter, aggregator, budgetCycle);
+        long sampleTime = System.nanoTime();
         try {
-            Process ssTcpProc = ssTcp.start();
-
-            BufferedReader reader = new BufferedReader(new InputStreamReader(ssTcpProc.getInputStream()), bufferSize);
-            String line;
-            try {
-                while ((line = reader.readLine()) != null) {
-                    tcpLineQ.add(line);
-                    //                    System.out.println(line);
+            sessionSource.collect(grouping);
+        } catch (IOException | RuntimeException e) {
+            reset.run();
+            if (Thread.currentThread()
+                      .isInterrupted()) {
+                /* 호출 측이 취소한 주기 (ClosedByInterruptException, `ss` 강제 종료 등) : 빈 결과로 세션을 종료 처리하지 않고 테이블을 그대로 둠 */
+                log.warn("Session collect interrupted : {}", e.getMessage());
+                return pidSessionMap;
+            }
+            if (sessionSource == ssSessionSource) {
+                log.error("SS Command Fail : {}", e.getMessage());
+            } else if (fallbackSource == null) {
+                log.error("Session source {} fail : {}", sessionSource.getClass()
+                                                                     .getSimpleName(), e.getMessage());
+            } else {
+                log.warn("Session source {} fail, fallback to ss : {}", sessionSource.getClass()
+                                                                                    .getSimpleName(), e.getMessage());
+                try {
+                    sampleTime = System.nanoTime();
+                    fallbackSource.collect(grouping);
+                } catch (IOException | RuntimeException ex) {
+                    reset.run();
+                    log.error("SS Command Fail : {}", ex.getMessage());
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
             }
-            ssTcpProc.waitFor();
-            ssTcpProc.destroy();
-        } catch (Exception e) {
-            log.error("SS Command Fail : {}", e.getMessage());
         }
-        return tcpLineQ;
+        SessionBudget.Level level = budgetCycle != null ? budgetCycle.getLevel() : SessionBudget.Level.NORMAL;
+        if (level != SessionBudget.Level.NORMAL) {
+            log.warn("Session budget exceeded, level : {}", level);
+        }
+        this.sessionDelta(pidSessionMap.values(), changedSessionMap, aggregator != null ? aggregator.getStateSessions() : null, level == SessionBudget.Level.NORMAL,
+                          sampleTime, rollup, destroyed);
+        this.expireListen(cycle);
+        return pidSessionMap;
     }
 
+    private void group(SessionCollectedData session,
+                       Map<Integer, List<SessionCollectedData>> pidSessionMap,
+                       SessionFilter filter,
+                       SessionAggregator aggregator,
+                       SessionBudget.Cycle budgetCycle) {
+        if (filter != null && !filter.test(session)) {
+            if (session.isListen()) {
+                this.markListen(session);
+            }
+            return;
+        }
+        if (budgetCycle != null && !session.isListen()) {
+            SessionBudget.Level level = budgetCycle.next();
+            int weight = 1;
+            if (level == SessionBudget.Level.SAMPLED) {
+                if (!budgetCycle.sample(session)) {
+                    return;
+                }
+                weight = budgetCycle.getSampleRate();
+            }
+            boolean fold = level == SessionBudget.Level.AGGREGATE_ONLY || level == SessionBudget.Level.SAMPLED
+                    || (level == SessionBudget.Level.DETAIL_LIMITED && session.getState() != PayloadState.SessionState.ESTABLISHED);
+            if ((fold && aggregator.addAny(session, weight)) || aggregator.add(session)) {
+                budgetCycle.addAggregated();
+                return;
+            }
+            budgetCycle.addDetail();
+        } else if (aggregator != null && aggregator.add(session)) {
+            return;
+        }
+        pidSessionMap.computeIfAbsent(session.getPid(), pid -> new ArrayList<>())
+                     .add(session);
+    }
+
+    /**
+     * 한 주기를 수집한다. 다른 스레드의 수집이 진행 중이면 끝날 때까지 기다린다. (주기는 겹치지 않음)
+     */
     public PayloadState.StateBundle collectSession() {
+        cycleLock.lock();
+        try {
+            return this.collectCycle();
+        } finally {
+            cycleLock.unlock();
+        }
+    }
+
+    /**
+     * 다른 수집이 진행 중이면 기다리지 않고 null 을 반환한다.
+     */
+    public PayloadState.StateBundle tryCollectSession() {
+        if (!cycleLock.tryLock()) {
+            return null;
+        }
+        try {
+            return this.collectCycle();
+        } finally {
+            cycleLock.unlock();
+        }
+    }
+
+    private PayloadState.StateBundle collectCycle() {
         long now = System.currentTimeMillis();
+        long collectStart = System.nanoTime();
         PayloadState.StateBundle.Builder sessionBundleBuilder = PayloadState.StateBundle.newBuilder();
         sessionBundleBuilder.setCollectTime(now);
 
-        Queue<String> tcpSessionCommandResult = this.tcpSessionCommand();
-        List<SessionCollectedData> tcpSessionCollectedData = this.tcpSessionParsing(tcpSessionCommandResult);
-        List<PayloadState.SessionProcess> tcpSessionList = this.convertTcpSession(tcpSessionCollectedData);
+        boolean deltaMode = keyframeInterval > 0;
+        boolean keyframe = !deltaMode || sequence % keyframeInterval == 0 || keyframeRequested;
+        keyframeRequested = false;
+        Map<Integer, List<SessionCollectedData>> changedSessionMap = deltaMode ? new HashMap<>() : null;
+        SessionBudget budget = sessionBudget;
+        SessionBudget.Cycle budgetCycle = budget != null ? budget.newCycle() : null;
+        SessionAggregator aggregator = sessionAggregator;
+        if (aggregator == null && budget != null) {
+            aggregator = budgetAggregator;
+            aggregator.setMaxAggregates(budget.getMaxAggregates());
+        }
+        SessionRateRollup rollup = rateRollup;
+        List<SessionCollectedData> destroyed = new ArrayList<>();
+        Map<Integer, List<SessionCollectedData>> sessionCollectedData = this.sessionCollect(changedSessionMap, aggregator, budgetCycle, rollup, destroyed);
+        closedCount += this.addDestroyed(destroyed, sessionCollectedData, changedSessionMap);
+
+        long convertStart = System.nanoTime();
+        List<Any> sessionList = this.packTcpSession(keyframe ? sessionCollectedData : changedSessionMap);
+        metrics.record(SessionCollectorMetrics.Stage.CONVERT, System.nanoTime() - convertStart);
 
-        sessionBundleBuilder.addAllData(tcpSessionList.stream()
-                                                      .map(Any::pack)
-                                                      .collect(Collectors.toList()));
+        if (deltaMode) {
+            if (keyframe) {
+                keyframeSequence = sequence;
+            }
+            sessionBundleBuilder.addData(Any.pack(this.deltaHeader(keyframe)));
+            sequence++;
+        }
+        sessionBundleBuilder.addAllData(sessionList);
+        if (aggregator != null && aggregator.size() > 0) {
+            sessionBundleBuilder.addData(Any.pack(aggregator.toStruct()));
+        }
+        if (budgetCycle != null && budgetCycle.getLevel() != SessionBudget.Level.NORMAL) {
+            sessionBundleBuilder.addData(Any.pack(budgetCycle.toStruct()));
+        }
+        if (rollup != null) {
+            sessionBundleBuilder.addData(Any.pack(rollup.toStruct()));
+        }
+        HeavyHitterTracker tracker = heavyHitterTracker;
+        if (tracker != null && tracker.getEmitTop() > 0) {
+            sessionBundleBuilder.addData(Any.pack(tracker.toStruct(tracker.getEmitTop())));
+        }
+        ProcessMetadataCache metadataCache = processMetadataCache;
+        if (metadataCache != null) {
+            List<ProcessMetadata> metadataList = metadataCache.resolve(keyframe ? sessionCollectedData : changedSessionMap, deltaMode && keyframe);
+            if (!metadataList.isEmpty()) {
+                sessionBundleBuilder.addData(Any.pack(ProcessMetadataCache.toStruct(metadataList)));
+            }
+        }
 
-        log.debug("session count : {}, listen count : {}", preSessionMap.size(), listenMap.size());
+        log.debug("session count : {}, listen count : {}, opened : {}, changed : {}, closed : {}",
+                  sessionTable.size() - listenCount, listenCount, openedCount, changedCount, closedCount);
 
+        metrics.record(SessionCollectorMetrics.Stage.TOTAL, System.nanoTime() - collectStart);
+        if (attachMetrics) {
+            sessionBundleBuilder.addData(Any.pack(metrics.toStruct()));
+        }
+        Consumer<SessionCollectorMetrics> listener = metricsListener;
+        if (listener != null) {
+            listener.accept(metrics);
+        }
         return sessionBundleBuilder.build();
     }
 
-    private String extractPidWithIndex(String input,
-                                       String findKey) {
-        int pidIndex = input.indexOf(findKey);
-        if (pidIndex != -1) {
-            int startIndex = pidIndex + findKey.length();
-            int endIndex = startIndex;
-            while (endIndex < input.length() && Character.isDigit(input.charAt(endIndex))) {
-                endIndex++;
+    private int addDestroyed(List<SessionCollectedData> destroyed,
+                             Map<Integer, List<SessionCollectedData>> pidSessionMap,
+                             Map<Integer, List<SessionCollectedData>> changedSessionMap) {
+        HeavyHitterTracker tracker = heavyHitterTracker;
+        for (SessionCollectedData session : destroyed) {
+            if (tracker != null) {
+                /* 다음 publish 에 반영 */
+                tracker.add(session);
+            }
+            pidSessionMap.computeIfAbsent(session.getPid(), pid -> new ArrayList<>())
+                         .add(session);
+            if (changedSessionMap != null) {
+                changedSessionMap.computeIfAbsent(session.getPid(), pid -> new ArrayList<>())
+                                 .add(session);
             }
-            return input.substring(startIndex, endIndex);
         }
-        return null;
+        return destroyed.size();
+    }
+
+    private Struct deltaHeader(boolean keyframe) {
+        return Struct.newBuilder()
+                     .putFields("type", Value.newBuilder()
+                                             .setStringValue(DELTA_HEADER_TYPE)
+                                             .build())
+                     .putFields("mode", Value.newBuilder()
+                                             .setStringValue(keyframe ? "keyframe" : "delta")
+                                             .build())
+                     .putFields("sequence", numberValue(sequence))
+                     .putFields("keyframe", numberValue(keyframeSequence))
+                     .putFields("opened", numberValue(openedCount))
+                     .putFields("changed", numberValue(changedCount))
+                     .putFields("closed", numberValue(closedCount))
+                     .build();
+    }
+
+    private static Value numberValue(long value) {
+        return Value.newBuilder()
+                    .setNumberValue(value)
+                    .build();
+    }
+
+    private static int listenKey(int protocol,
+                                 int port) {
+        return (protocol << 16) | (port & 0xffff);
     }
 
     public static PayloadState.SessionState fromStateStr(String s) {
@@ -339,7 +1005,7 @@ public class SessionCollector extends EndpointCollector {
                 return PayloadState.SessionState.LISTEN;
             case "closing":
                 return PayloadState.SessionState.CLOSING;
-            case "UNCONN":
+            case "unconn":
                 return PayloadState.SessionState.UNCONN;
             case "NONE":
             default:
@@ -347,6 +1013,16 @@ public class SessionCollector extends EndpointCollector {
         }
     }
 
+    /**
+     * {@link #attachRealtime(SessionRealtime)} 구독을 해제하고 반영하지 않은 해제 이벤트를 버린다.
+     * 진행 중인 주기는 기다리지 않는다. (세션 테이블은 collector 와 함께 회수)
+     */
+    @Override
+    public void close() {
+        realtimeSubscriptions.dispose();
+        destroyedSessionQ.clear();
+    }
+
     @Override
     public GeneratedMessage collect() {
         return collectSession();
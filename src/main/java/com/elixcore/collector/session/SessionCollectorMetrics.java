@@ -0,0 +1,171 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 수집 pipeline 자체 계측. (단계별 소요 시간, 읽은 줄 수, 주소 파싱 실패, 상태별 세션 수)
+ * <p>
+ * 모든 값은 lock-free 로 갱신되며, 수집 중에도 다른 스레드에서 읽을 수 있다.
+ * 상태별 세션 수는 마지막 수집 주기의 값이고, 나머지는 누적 값이다.
+ */
+public class SessionCollectorMetrics {
+    public static final String STRUCT_TYPE = "collector_metrics";
+
+    public enum Stage {
+        EXEC, /* ss 실행 / netlink socket open, inode index 갱신 */
+        READ, /* 출력(응답) 읽기. ss 는 파싱과 겹쳐 진행되므로 수집 전체 wall time 에 가깝다 */
+        PARSE, /* 줄/메시지 파싱 (병렬 파싱은 worker 시간 합) */
+        DELTA,
+        CONVERT, /* protobuf 변환 */
+        TOTAL
+    }
+
+    private final Map<Stage, LatencyHistogram> stageHistogram = new EnumMap<>(Stage.class);
+    private final LongAdder                    recordsRead    = new LongAdder();
+    private final LongAdder                    addressFailure = new LongAdder();
+    private final LongAdder                    eventReceived  = new LongAdder();
+    private final LongAdder                    eventDropped   = new LongAdder();
+    private final AtomicLongArray              stateSessions  = new AtomicLongArray(PayloadState.SessionState.values().length);
+
+    public SessionCollectorMetrics() {
+        for (Stage stage : Stage.values()) {
+            stageHistogram.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public void record(Stage stage,
+                       long nanos) {
+        stageHistogram.get(stage)
+                      .record(nanos);
+    }
+
+    public void addRecordsRead(long count) {
+        recordsRead.add(count);
+    }
+
+    public void addAddressFailure(long count) {
+        addressFailure.add(count);
+    }
+
+    public void addEventReceived(long count) {
+        eventReceived.add(count);
+    }
+
+    public void addEventDropped(long count) {
+        eventDropped.add(count);
+    }
+
+    /**
+     * 수집 주기 종료 시 상태별 세션 수 반영
+     */
+    public void setStateSessions(long[] counts) {
+        for (int i = 0; i < counts.length && i < stateSessions.length(); i++) {
+            stateSessions.set(i, counts[i]);
+        }
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return stageHistogram.get(stage);
+    }
+
+    /**
+     * 누적 읽은 레코드 수 (ss 출력 줄 / netlink 메시지)
+     */
+    public long getRecordsRead() {
+        return recordsRead.sum();
+    }
+
+    /**
+     * 누적 주소 파싱 실패 수 (local/peer 각각)
+     */
+    public long getAddressFailure() {
+        return addressFailure.sum();
+    }
+
+    /**
+     * 누적 수신한 realtime 이벤트 수
+     */
+    public long getEventReceived() {
+        return eventReceived.sum();
+    }
+
+    /**
+     * 다음 bundle 대기열이 가득 차 버린 realtime 이벤트 수
+     */
+    public long getEventDropped() {
+        return eventDropped.sum();
+    }
+
+    public Map<PayloadState.SessionState, Long> getStateSessions() {
+        Map<PayloadState.SessionState, Long> result = new EnumMap<>(PayloadState.SessionState.class);
+        PayloadState.SessionState[] states = PayloadState.SessionState.values();
+        for (int i = 0; i < states.length; i++) {
+            long count = stateSessions.get(i);
+            if (count > 0) {
+                result.put(states[i], count);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * bundle 첨부/외부 전송용. 시간 단위는 us
+     * <pre>
+     * type : collector_metrics
+     * stage.{exec,read,parse,delta,convert,total} : {last, mean, p99, max, count}
+     * records_read, address_failure, event_received, event_dropped, state.{ESTABLISHED,...}
+     * </pre>
+     */
+    public Struct toStruct() {
+        Struct.Builder stages = Struct.newBuilder();
+        stageHistogram.forEach((stage, histogram) -> stages.putFields(stage.name()
+                                                                           .toLowerCase(), struct(histogramStruct(histogram))));
+        Struct.Builder states = Struct.newBuilder();
+        getStateSessions().forEach((state, count) -> states.putFields(state.name(), number(count)));
+
+        return Struct.newBuilder()
+                     .putFields("type", Value.newBuilder()
+                                             .setStringValue(STRUCT_TYPE)
+                                             .build())
+                     .putFields("stage", struct(stages.build()))
+                     .putFields("records_read", number(getRecordsRead()))
+                     .putFields("address_failure", number(getAddressFailure()))
+                     .putFields("event_received", number(getEventReceived()))
+                     .putFields("event_dropped", number(getEventDropped()))
+                     .putFields("state", struct(states.build()))
+                     .build();
+    }
+
+    private static Struct histogramStruct(LatencyHistogram histogram) {
+        return Struct.newBuilder()
+                     .putFields("last", micros(histogram.getLast()))
+                     .putFields("mean", micros(histogram.getMean()))
+                     .putFields("p99", micros(histogram.getPercentile(0.99)))
+                     .putFields("max", micros(histogram.getMax()))
+                     .putFields("count", number(histogram.getCount()))
+                     .build();
+    }
+
+    private static Value struct(Struct struct) {
+        return Value.newBuilder()
+                    .setStructValue(struct)
+                    .build();
+    }
+
+    private static Value micros(long nanos) {
+        return number(nanos / 1000);
+    }
+
+    private static Value number(long value) {
+        return Value.newBuilder()
+                    .setNumberValue(value)
+                    .build();
+    }
+}
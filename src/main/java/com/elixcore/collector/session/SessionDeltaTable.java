@@ -0,0 +1,409 @@
+package com.elixcore.collector.session;
+
+/**
+ * 이전 수집의 누적 카운터를 보관하는 open addressing(linear probing) 테이블.
+ * <p>
+ * key 는 {@link SessionKey} 로 packing 한 long 5개, 값은 primitive 배열에 저장한다.
+ * 수집 주기마다 clear/재구성하지 않고 generation 을 올려 제자리 갱신하며,
+ * 이번 주기에 갱신되지 않은 항목(종료된 세션)만 {@link #expire()} 에서 제거한다.
+ * <p>
+ * hash 는 pid 를 제외한 tuple 로 계산해, pid 를 모르는 종료 이벤트도 같은 probe 구간에서 찾을 수 있게 한다.
+ * <p>
+ * 항목마다 마지막 표본 시각(monotonic, {@link System#nanoTime()})을 두어 delta 를 초당 값으로 바꾸며,
+ * 수집 간격이 흔들리거나 세션이 몇 주기 빠져도 실제 경과 시간으로 나눈다.
+ * inode 가 있으면 같은 tuple 의 다른 소켓(재사용)을 정확히 구분하고, 없을 때만 카운터 감소를 reset 으로 본다.
+ * <p>
+ * 단일 writer 기준이다. (한 주기의 {@link #beginCycle()} ~ {@link #expire()} 를 한 스레드에서 호출)
+ */
+public class SessionDeltaTable {
+    /*update 결과*/
+    public static final  int UNCHANGED        = 0;
+    public static final  int CHANGED          = 1; /* 카운터 증가 */
+    public static final  int STATE_CHANGED    = 2;
+    public static final  int OPENED           = 3;
+    private static final int DEFAULT_CAPACITY = 1 << 12;
+
+    private int      capacity;
+    private int      mask;
+    private int      size;
+    private int      generation;
+    private long     sampleTime; /* 이번 주기 표본 시각 (ns) */
+    private long     rateTimeConstant; /* EWMA 시정수 (ns), 0 : 사용 안 함 */
+    /*key*/
+    private long[]   localHigh;
+    private long[]   localLow;
+    private long[]   peerHigh;
+    private long[]   peerLow;
+    private long[]   meta;
+    /*value*/
+    private int[]    stamp; /* 0 : 빈 slot */
+    private byte[]   state; /* SessionState ordinal */
+    private long[]   inode;
+    private long[]   rxByte;
+    private long[]   txByte;
+    private long[]   rxPacket;
+    private long[]   txPacket;
+    private long[]   sampled; /* 마지막 표본 시각 */
+    private double[] rxRateAvg; /* -1 : 아직 rate 없음 */
+    private double[] txRateAvg;
+
+    public SessionDeltaTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SessionDeltaTable(int initialCapacity) {
+        allocate(Integer.highestOneBit(Math.max(16, initialCapacity - 1)) << 1, false);
+    }
+
+    public void beginCycle() {
+        this.beginCycle(System.nanoTime());
+    }
+
+    /**
+     * @param sampleTime 이번 주기에 카운터를 읽은 시각 ({@link System#nanoTime()})
+     */
+    public void beginCycle(long sampleTime) {
+        this.sampleTime = sampleTime;
+        generation++;
+        if (generation == 0) {
+            /* overflow 시 0(빈 slot 표시)을 건너뜀 */
+            generation = 1;
+        }
+    }
+
+    /**
+     * byte/s EWMA 의 시정수. 표본 간격 dt 마다 1 - exp(-dt / timeConstant) 만큼 새 값을 반영한다. (0 이하면 사용 안 함)
+     */
+    public void setRateTimeConstant(long nanos) {
+        this.rateTimeConstant = Math.max(0, nanos);
+    }
+
+    /**
+     * 누적 카운터를 저장하고, session 의 카운터를 이전 주기 대비 delta 로, rate 를 이전 표본 이후 초당 값으로 바꾼다.
+     * 이전 값이 없거나(신규) inode 가 달라진 경우(재사용된 tuple) 누적값을 그대로 두고 rate 는 0 이다.
+     *
+     * @return {@link #OPENED}, {@link #STATE_CHANGED}, {@link #CHANGED}, {@link #UNCHANGED}
+     */
+    public int update(SessionCollectedData session) {
+        long k0 = SessionKey.high(session.getLocal());
+        long k1 = SessionKey.low(session.getLocal());
+        long k2 = SessionKey.high(session.getPeer());
+        long k3 = SessionKey.low(session.getPeer());
+        long k4 = SessionKey.meta(session);
+
+        if ((size + 1) * 2 > capacity) {
+            allocate(capacity << 1, true);
+        }
+        int slot = slot(k0, k1, k2, k3, k4);
+        while (stamp[slot] != 0) {
+            if (localHigh[slot] == k0 && localLow[slot] == k1 && peerHigh[slot] == k2 && peerLow[slot] == k3 && meta[slot] == k4) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        long curRxByte = session.getRxByte();
+        long curTxByte = session.getTxByte();
+        long curRxPacket = session.getRxPacket();
+        long curTxPacket = session.getTxPacket();
+        byte curState = session.getState() != null ? (byte) session.getState()
+                                                                   .ordinal() : -1;
+        boolean opened = stamp[slot] == 0;
+        int result;
+
+        if (opened) {
+            localHigh[slot] = k0;
+            localLow[slot]  = k1;
+            peerHigh[slot]  = k2;
+            peerLow[slot]   = k3;
+            meta[slot]      = k4;
+            size++;
+            result = OPENED;
+        } else if (session.getInode() != 0 && inode[slot] != 0 && session.getInode() != inode[slot]) {
+            result = OPENED;
+        } else {
+            session.setRxByte(delta(curRxByte, rxByte[slot]));
+            session.setTxByte(delta(curTxByte, txByte[slot]));
+            session.setRxPacket(delta(curRxPacket, rxPacket[slot]));
+            session.setTxPacket(delta(curTxPacket, txPacket[slot]));
+            this.rate(slot, session);
+            if (state[slot] != curState) {
+                result = STATE_CHANGED;
+            } else if ((session.getRxByte() | session.getTxByte() | session.getRxPacket() | session.getTxPacket()) != 0) {
+                result = CHANGED;
+            } else {
+                result = UNCHANGED;
+            }
+        }
+
+        if (result == OPENED) {
+            rxRateAvg[slot] = -1;
+            txRateAvg[slot] = -1;
+        }
+        stamp[slot]    = generation;
+        state[slot]    = curState;
+        inode[slot]    = session.getInode();
+        rxByte[slot]   = curRxByte;
+        txByte[slot]   = curTxByte;
+        rxPacket[slot] = curRxPacket;
+        txPacket[slot] = curTxPacket;
+        sampled[slot]  = sampleTime;
+        return result;
+    }
+
+    /**
+     * session 의 delta 를 이전 표본 이후 경과 시간으로 나눈다. (같은 주기에 두 번 갱신된 항목 등 경과 시간이 0 이면 0)
+     */
+    private void rate(int slot,
+                      SessionCollectedData session) {
+        long elapsed = sampleTime - sampled[slot];
+        if (elapsed <= 0) {
+            return;
+        }
+        double perSecond = 1e9 / elapsed;
+        double rxRate = session.getRxByte() * perSecond;
+        double txRate = session.getTxByte() * perSecond;
+        session.setRxByteRate(rxRate);
+        session.setTxByteRate(txRate);
+        session.setRxPacketRate(session.getRxPacket() * perSecond);
+        session.setTxPacketRate(session.getTxPacket() * perSecond);
+        if (rateTimeConstant <= 0) {
+            return;
+        }
+        double alpha = 1 - Math.exp(-(double) elapsed / rateTimeConstant);
+        rxRateAvg[slot] = rxRateAvg[slot] < 0 ? rxRate : rxRateAvg[slot] + alpha * (rxRate - rxRateAvg[slot]);
+        txRateAvg[slot] = txRateAvg[slot] < 0 ? txRate : txRateAvg[slot] + alpha * (txRate - txRateAvg[slot]);
+        session.setRxByteRateAvg(rxRateAvg[slot]);
+        session.setTxByteRateAvg(txRateAvg[slot]);
+    }
+
+    /**
+     * 종료 이벤트로 받은 세션을 제거하고, session 의 카운터를 마지막 수집 대비 delta 로 바꾼다.
+     * 이벤트의 pid 가 0 이면(종료 시점에는 소유 프로세스가 없음) pid 를 제외한 tuple 로 찾고, 찾은 항목의 pid 를 채운다.
+     * 테이블에 없으면(수집 사이에 열리고 닫힌 세션) 누적값을 그대로 둔다.
+     *
+     * @return 테이블에 있던 세션 여부
+     */
+    public boolean close(SessionCollectedData session) {
+        long k0 = SessionKey.high(session.getLocal());
+        long k1 = SessionKey.low(session.getLocal());
+        long k2 = SessionKey.high(session.getPeer());
+        long k3 = SessionKey.low(session.getPeer());
+        long k4 = SessionKey.meta(session);
+        long tuple = SessionKey.tuple(k4);
+        boolean anyPid = SessionKey.pid(k4) == 0;
+
+        int slot = slot(k0, k1, k2, k3, k4);
+        while (stamp[slot] != 0) {
+            if (localHigh[slot] == k0 && localLow[slot] == k1 && peerHigh[slot] == k2 && peerLow[slot] == k3
+                    && (meta[slot] == k4 || (anyPid && SessionKey.tuple(meta[slot]) == tuple))) {
+                if (session.getInode() != 0 && inode[slot] != 0 && session.getInode() != inode[slot]) {
+                    return false;
+                }
+                session.setPid(SessionKey.pid(meta[slot]));
+                session.setRxByte(delta(session.getRxByte(), rxByte[slot]));
+                session.setTxByte(delta(session.getTxByte(), txByte[slot]));
+                session.setRxPacket(delta(session.getRxPacket(), rxPacket[slot]));
+                session.setTxPacket(delta(session.getTxPacket(), txPacket[slot]));
+                remove(slot);
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * 이번 주기에 갱신되지 않은 항목을 제거한다. (backward shift deletion)
+     *
+     * @return 제거된 항목 수
+     */
+    public int expire() {
+        return expire(null);
+    }
+
+    /**
+     * 이번 주기에 갱신되지 않은 항목을 제거하면서, 제거되는 항목의 key 를 listener 로 전달한다.
+     *
+     * @return 제거된 항목 수
+     */
+    public int expire(ClosedListener listener) {
+        return expire(-1, listener);
+    }
+
+    /**
+     * protocol 이 같은 항목 중 이번 주기에 갱신되지 않은 항목만 제거한다. (한 protocol 만 수집한 주기, 0 미만이면 전체)
+     * 다른 protocol 의 항목은 다음 전체 주기에서 다시 갱신되므로 그대로 둔다.
+     *
+     * @return 제거된 항목 수
+     */
+    public int expire(int protocol,
+                      ClosedListener listener) {
+        int removed = 0;
+        int slot = 0;
+        while (slot < capacity) {
+            if (stamp[slot] != 0 && stamp[slot] != generation && (protocol < 0 || SessionKey.protocol(meta[slot]) == protocol)) {
+                if (listener != null) {
+                    listener.closed(localHigh[slot], localLow[slot], peerHigh[slot], peerLow[slot], meta[slot]);
+                }
+                remove(slot);
+                removed++;
+                /* 뒤쪽 항목이 당겨졌을 수 있으므로 같은 slot 을 다시 검사 */
+                continue;
+            }
+            slot++;
+        }
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(DEFAULT_CAPACITY, false);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * generation overflow 확인용. 다음 {@link #beginCycle(long)} 는 generation + 1 부터 시작한다.
+     */
+    void setGeneration(int generation) {
+        this.generation = generation;
+    }
+
+    private void remove(int hole) {
+        stamp[hole] = 0;
+        size--;
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (stamp[slot] == 0) {
+                return;
+            }
+            int home = slot(localHigh[slot], localLow[slot], peerHigh[slot], peerLow[slot], meta[slot]);
+            /* home 이 (hole, slot] 구간 밖이면 hole 로 당긴다 */
+            boolean movable = hole <= slot ? (home <= hole || home > slot) : (home <= hole && home > slot);
+            if (movable) {
+                move(slot, hole);
+                stamp[slot] = 0;
+                hole        = slot;
+            }
+        }
+    }
+
+    private void move(int from,
+                      int to) {
+        localHigh[to] = localHigh[from];
+        localLow[to]  = localLow[from];
+        peerHigh[to]  = peerHigh[from];
+        peerLow[to]   = peerLow[from];
+        meta[to]      = meta[from];
+        stamp[to]     = stamp[from];
+        state[to]     = state[from];
+        inode[to]     = inode[from];
+        rxByte[to]    = rxByte[from];
+        txByte[to]    = txByte[from];
+        rxPacket[to]  = rxPacket[from];
+        txPacket[to]  = txPacket[from];
+        sampled[to]   = sampled[from];
+        rxRateAvg[to] = rxRateAvg[from];
+        txRateAvg[to] = txRateAvg[from];
+    }
+
+    private void allocate(int newCapacity,
+                          boolean rehash) {
+        long[] oldLocalHigh = localHigh;
+        long[] oldLocalLow = localLow;
+        long[] oldPeerHigh = peerHigh;
+        long[] oldPeerLow = peerLow;
+        long[] oldMeta = meta;
+        int[] oldStamp = stamp;
+        byte[] oldState = state;
+        long[] oldInode = inode;
+        long[] oldRxByte = rxByte;
+        long[] oldTxByte = txByte;
+        long[] oldRxPacket = rxPacket;
+        long[] oldTxPacket = txPacket;
+        long[] oldSampled = sampled;
+        double[] oldRxRateAvg = rxRateAvg;
+        double[] oldTxRateAvg = txRateAvg;
+        int oldCapacity = capacity;
+
+        capacity  = newCapacity;
+        mask      = newCapacity - 1;
+        size      = 0;
+        localHigh = new long[newCapacity];
+        localLow  = new long[newCapacity];
+        peerHigh  = new long[newCapacity];
+        peerLow   = new long[newCapacity];
+        meta      = new long[newCapacity];
+        stamp     = new int[newCapacity];
+        state     = new byte[newCapacity];
+        inode     = new long[newCapacity];
+        rxByte    = new long[newCapacity];
+        txByte    = new long[newCapacity];
+        rxPacket  = new long[newCapacity];
+        txPacket  = new long[newCapacity];
+        sampled   = new long[newCapacity];
+        rxRateAvg = new double[newCapacity];
+        txRateAvg = new double[newCapacity];
+
+        if (!rehash) {
+            return;
+        }
+        for (int i = 0; i < oldCapacity; i++) {
+            if (oldStamp[i] == 0) {
+                continue;
+            }
+            int slot = slot(oldLocalHigh[i], oldLocalLow[i], oldPeerHigh[i], oldPeerLow[i], oldMeta[i]);
+            while (stamp[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            localHigh[slot] = oldLocalHigh[i];
+            localLow[slot]  = oldLocalLow[i];
+            peerHigh[slot]  = oldPeerHigh[i];
+            peerLow[slot]   = oldPeerLow[i];
+            meta[slot]      = oldMeta[i];
+            stamp[slot]     = oldStamp[i];
+            state[slot]     = oldState[i];
+            inode[slot]     = oldInode[i];
+            rxByte[slot]    = oldRxByte[i];
+            txByte[slot]    = oldTxByte[i];
+            rxPacket[slot]  = oldRxPacket[i];
+            txPacket[slot]  = oldTxPacket[i];
+            sampled[slot]   = oldSampled[i];
+            rxRateAvg[slot] = oldRxRateAvg[i];
+            txRateAvg[slot] = oldTxRateAvg[i];
+            size++;
+        }
+    }
+
+    /**
+     * 종료(expire)된 세션의 key. 주소/port 등은 {@link SessionKey} 로 복원한다.
+     */
+    public interface ClosedListener {
+        void closed(long localHigh,
+                    long localLow,
+                    long peerHigh,
+                    long peerLow,
+                    long meta);
+    }
+
+    private int slot(long k0,
+                     long k1,
+                     long k2,
+                     long k3,
+                     long k4) {
+        return (int) SessionKey.hash(k0, k1, k2, k3, SessionKey.tuple(k4)) & mask;
+    }
+
+    private static long delta(long current,
+                              long previous) {
+        /* counter reset */
+        return current < previous ? current : current - previous;
+    }
+}
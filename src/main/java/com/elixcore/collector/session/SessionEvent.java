@@ -0,0 +1,21 @@
+package com.elixcore.collector.session;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * {@link SessionRealtime} 이 전달하는 커널 소켓 이벤트
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class SessionEvent {
+    public enum Type {
+        DESTROY /* 소켓 해제. 카운터는 해제 시점의 누적값 */
+    }
+
+    private final Type                 type;
+    private final SessionCollectedData session;
+    private final long                 eventTime; /* ms */
+}
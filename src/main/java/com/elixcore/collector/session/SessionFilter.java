@@ -0,0 +1,224 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 수집 대상 세션 조건. 비어 있는 조건은 전체를 허용한다.
+ * <p>
+ * 가능한 조건은 수집 단계로 내려 보낸다. (`ss` filter expression, netlink inet_diag 상태 bitmask)
+ * 나머지(pid, sampling 등)와 내려 보내지 못한 소스는 {@link #test(SessionCollectedData)} 로 적용한다.
+ * <pre>
+ * states          : 상태 (UNCONN, CLOSED 는 kernel 에서 같은 TCP_CLOSE)
+ * ports           : local 또는 peer port
+ * cidrs           : local 또는 peer 주소 (10.0.0.0/8, fd00::/8)
+ * pids            : 소유 pid (pid 를 모르는 세션은 제외)
+ * excludeLoopback : local 주소가 127.0.0.0/8, ::1 인 세션 제외
+ * sampleRate      : 상태별 1/N sampling. tuple hash 로 고르므로 같은 세션은 매 주기 같은 결과
+ * </pre>
+ * LISTEN/UNCONN 은 조건과 관계없이 수집 단계에서 받는다. (in/out 방향 판별용 listen port, 전송에서는 제외)
+ * 수집기에 설정한 뒤에는 변경하지 않는다.
+ */
+public class SessionFilter {
+    /* tcp_states.h 순서, 1 부터 */
+    private static final String[] SS_STATE_NAMES = {"established", "syn-sent", "syn-recv", "fin-wait-1", "fin-wait-2", "time-wait", "closed", "close-wait", "last-ack", "listening", "closing"};
+
+    private final Set<PayloadState.SessionState>          states          = EnumSet.noneOf(PayloadState.SessionState.class);
+    private final Set<Integer>                            ports           = new HashSet<>();
+    private final List<long[]>                            cidrs           = new ArrayList<>(); /* high, low, prefix */
+    private final List<String>                            cidrNames       = new ArrayList<>();
+    private final Set<Integer>                            pids            = new HashSet<>();
+    private final Map<PayloadState.SessionState, Integer> sampleRates     = new EnumMap<>(PayloadState.SessionState.class);
+    private       boolean                                 excludeLoopback;
+
+    public SessionFilter addState(PayloadState.SessionState state) {
+        states.add(state);
+        return this;
+    }
+
+    public SessionFilter addPort(int port) {
+        ports.add(port & 0xffff);
+        return this;
+    }
+
+    /**
+     * @param cidr 10.0.0.0/8, fd00::/8 (prefix 가 없으면 단일 주소)
+     */
+    public SessionFilter addCidr(String cidr) {
+        int slash = cidr.indexOf('/');
+        String address = slash < 0 ? cidr : cidr.substring(0, slash);
+        boolean v4 = address.indexOf(':') < 0;
+        int prefix = slash < 0 ? (v4 ? 32 : 128) : Integer.parseInt(cidr.substring(slash + 1));
+        if (prefix < 0 || prefix > (v4 ? 32 : 128)) {
+            throw new IllegalArgumentException("invalid cidr : " + cidr);
+        }
+        /* IPv4 는 ::ffff:a.b.c.d 로 비교 */
+        cidrs.add(new long[]{SessionKey.pack(address, true), SessionKey.pack(address, false), v4 ? prefix + 96 : prefix});
+        cidrNames.add(v4 ? address + "/" + prefix : "[" + address + "]/" + prefix);
+        return this;
+    }
+
+    public SessionFilter addPid(int pid) {
+        pids.add(pid);
+        return this;
+    }
+
+    public SessionFilter setExcludeLoopback(boolean excludeLoopback) {
+        this.excludeLoopback = excludeLoopback;
+        return this;
+    }
+
+    /**
+     * @param rate 1 이하면 sampling 하지 않음
+     */
+    public SessionFilter setSampleRate(PayloadState.SessionState state,
+                                       int rate) {
+        if (rate <= 1) {
+            sampleRates.remove(state);
+        } else {
+            sampleRates.put(state, rate);
+        }
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return states.isEmpty() && ports.isEmpty() && cidrs.isEmpty() && pids.isEmpty() && sampleRates.isEmpty() && !excludeLoopback;
+    }
+
+    public boolean acceptState(PayloadState.SessionState state) {
+        return states.isEmpty() || states.contains(state);
+    }
+
+    public boolean test(SessionCollectedData session) {
+        if (!acceptState(session.getState())) {
+            return false;
+        }
+        if (!ports.isEmpty() && !ports.contains(port(session.getLocal())) && !ports.contains(port(session.getPeer()))) {
+            return false;
+        }
+        if (!pids.isEmpty() && (session.getPid() == null || !pids.contains(session.getPid()))) {
+            return false;
+        }
+        if (cidrs.isEmpty() && !excludeLoopback && sampleRates.isEmpty()) {
+            return true;
+        }
+        long localHigh = SessionKey.high(session.getLocal());
+        long localLow = SessionKey.low(session.getLocal());
+        if (excludeLoopback && isLoopback(localHigh, localLow)) {
+            return false;
+        }
+        long peerHigh = SessionKey.high(session.getPeer());
+        long peerLow = SessionKey.low(session.getPeer());
+        if (!cidrs.isEmpty() && !matchCidr(localHigh, localLow) && !matchCidr(peerHigh, peerLow)) {
+            return false;
+        }
+        Integer rate = sampleRates.get(session.getState());
+        if (rate != null) {
+            long hash = SessionKey.hash(localHigh, localLow, peerHigh, peerLow, SessionKey.tuple(SessionKey.meta(session)));
+            return Long.remainderUnsigned(hash, rate) == 0;
+        }
+        return true;
+    }
+
+    /**
+     * `ss` 명령 뒤에 붙일 filter 인자 (상태, port, 주소, loopback). argv 로 그대로 넘기므로 quoting 하지 않는다.
+     *
+     * @return 조건이 없으면 빈 목록
+     */
+    public List<String> toSsArguments() {
+        List<String> arguments = new ArrayList<>();
+        if (!states.isEmpty()) {
+            Set<String> names = new HashSet<>();
+            for (int kernelState = 1; kernelState <= SS_STATE_NAMES.length; kernelState++) {
+                String name = SS_STATE_NAMES[kernelState - 1];
+                if (collectState(InetDiagDecoder.toState(kernelState)) && names.add(name)) {
+                    arguments.add("state");
+                    arguments.add(name);
+                }
+            }
+            if (states.contains(PayloadState.SessionState.CLOSED) && names.add("closed")) {
+                arguments.add("state");
+                arguments.add("closed");
+            }
+        }
+        List<String> conditions = new ArrayList<>();
+        if (!ports.isEmpty()) {
+            List<String> portConditions = new ArrayList<>();
+            for (Integer port : ports) {
+                portConditions.add("sport = :" + port);
+                portConditions.add("dport = :" + port);
+            }
+            conditions.add("( " + String.join(" or ", portConditions) + " )");
+        }
+        if (!cidrNames.isEmpty()) {
+            List<String> cidrConditions = new ArrayList<>();
+            for (String cidr : cidrNames) {
+                cidrConditions.add("src " + cidr);
+                cidrConditions.add("dst " + cidr);
+            }
+            conditions.add("( " + String.join(" or ", cidrConditions) + " )");
+        }
+        if (excludeLoopback) {
+            conditions.add("not src 127.0.0.0/8 and not src [::1]");
+        }
+        if (!conditions.isEmpty()) {
+            /* peer port 0 : LISTEN/UNCONN. shell 을 거치지 않으므로 식 전체가 하나의 인자 */
+            arguments.add("( " + String.join(" and ", conditions) + " ) or dport = :0");
+        }
+        return arguments;
+    }
+
+    /**
+     * inet_diag_req_v2.idiag_states (1 << kernel state)
+     */
+    public int kernelStateMask() {
+        if (states.isEmpty()) {
+            return 0xffffffff;
+        }
+        int mask = 0;
+        for (int kernelState = 1; kernelState <= 12; kernelState++) {
+            PayloadState.SessionState state = InetDiagDecoder.toState(kernelState);
+            if (collectState(state) || (kernelState == 7 && states.contains(PayloadState.SessionState.CLOSED))) {
+                mask |= 1 << kernelState;
+            }
+        }
+        return mask;
+    }
+
+    private boolean collectState(PayloadState.SessionState state) {
+        return acceptState(state) || state == PayloadState.SessionState.LISTEN || state == PayloadState.SessionState.UNCONN;
+    }
+
+    private boolean matchCidr(long high,
+                              long low) {
+        for (long[] cidr : cidrs) {
+            int prefix = (int) cidr[2];
+            long highMask = prefix >= 64 ? -1L : prefix == 0 ? 0 : -1L << (64 - prefix);
+            long lowMask = prefix <= 64 ? 0 : prefix == 128 ? -1L : -1L << (128 - prefix);
+            if ((high & highMask) == (cidr[0] & highMask) && (low & lowMask) == (cidr[1] & lowMask)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLoopback(long high,
+                                      long low) {
+        if (high != 0) {
+            return false;
+        }
+        /* ::1, ::ffff:127.0.0.0/8 */
+        return low == 1 || (low >>> 24) == 0xffff7fL;
+    }
+
+    private static int port(SessionAddress address) {
+        return address != null && address.hasPort() ? address.getPortValue() & 0xffff : -1;
+    }
+}
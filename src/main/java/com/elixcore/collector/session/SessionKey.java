@@ -0,0 +1,192 @@
+package com.elixcore.collector.session;
+
+/**
+ * 세션 식별자(local/peer 주소, port, protocol, pid)를 long 값으로 packing 한다.
+ * <p>
+ * 주소는 128bit(IPv4 는 ::ffff:a.b.c.d) 로 high/low 두 개의 long 으로 나누고,
+ * 나머지는 meta 하나에 담는다.
+ * <pre>
+ * meta : local port(16) | peer port(16) | protocol(8) | pid(24)
+ * </pre>
+ */
+final class SessionKey {
+    private static final long V4_MAPPED_PREFIX = 0xffffL << 32;
+
+    private SessionKey() {
+    }
+
+    static long high(SessionAddress address) {
+        return address == null ? 0 : address.getHigh();
+    }
+
+    static long low(SessionAddress address) {
+        return address == null ? 0 : address.getLow();
+    }
+
+    static long meta(SessionCollectedData session) {
+        long localPort = port(session.getLocal());
+        long peerPort = port(session.getPeer());
+        long pid = session.getPid() != null ? session.getPid() : 0;
+        return (localPort << 48) | (peerPort << 32) | ((session.getProtocol() & 0xffL) << 24) | (pid & 0xffffffL);
+    }
+
+    static int localPort(long meta) {
+        return (int) (meta >>> 48);
+    }
+
+    static int peerPort(long meta) {
+        return (int) ((meta >>> 32) & 0xffff);
+    }
+
+    static int protocol(long meta) {
+        return (int) ((meta >>> 24) & 0xff);
+    }
+
+    static int pid(long meta) {
+        return (int) (meta & 0xffffff);
+    }
+
+    /**
+     * pid 를 제외한 meta (port, protocol)
+     */
+    static long tuple(long meta) {
+        return meta & ~0xffffffL;
+    }
+
+    static long hash(long k0,
+                     long k1,
+                     long k2,
+                     long k3,
+                     long k4) {
+        long h = k0 * 0x9E3779B97F4A7C15L;
+        h = (h ^ k1) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ k2) * 0x9E3779B97F4A7C15L;
+        h = (h ^ k3) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ k4) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * packing 된 128bit 주소를 {@link SessionAddress} 로 복원한다. (IPv4 는 ::ffff:a.b.c.d 로 저장되므로 mapped 형태)
+     */
+    static SessionAddress address(long high,
+                                  long low,
+                                  int port) {
+        boolean mapped = high == 0 && (low >>> 32) == 0xffff;
+        return SessionAddress.of(high, low, port, mapped ? 2 : 1);
+    }
+
+    private static int port(SessionAddress address) {
+        return address != null ? address.getPortValue() & 0xffff : 0;
+    }
+
+    /**
+     * `ss`/{@link SessionAddress#findMatch(String)} 표기의 주소를 128bit 로 변환한다.
+     * 잘못된 표기와 * 는 0
+     */
+    static long pack(String address,
+                     boolean high) {
+        if (address == null || address.isEmpty() || address.equals("*")) {
+            return 0;
+        }
+        if (address.indexOf(':') < 0) {
+            return high ? 0 : V4_MAPPED_PREFIX | ipv4(address, 0, address.length());
+        }
+
+        /* '::' 앞/뒤 그룹을 따로 누적한 뒤 생략된 0 그룹만큼 앞쪽을 shift */
+        long headHigh = 0;
+        long headLow = 0;
+        long tailHigh = 0;
+        long tailLow = 0;
+        int headWords = 0;
+        int tailWords = 0;
+        boolean tail = false;
+        int length = address.length();
+        int i = 0;
+        while (i < length) {
+            if (address.charAt(i) == ':') {
+                if (i + 1 < length && address.charAt(i + 1) == ':') {
+                    tail = true;
+                    i += 2;
+                } else {
+                    i++;
+                }
+                continue;
+            }
+            int end = i;
+            boolean dotted = false;
+            while (end < length && address.charAt(end) != ':') {
+                dotted |= address.charAt(end) == '.';
+                end++;
+            }
+            if (dotted) {
+                /* ::ffff:1.2.3.4 형태의 마지막 32bit */
+                long v4 = ipv4(address, i, end);
+                for (int w = 0; w < 2; w++) {
+                    long word = (v4 >>> (16 * (1 - w))) & 0xffff;
+                    if (tail) {
+                        tailHigh = (tailHigh << 16) | (tailLow >>> 48);
+                        tailLow  = (tailLow << 16) | word;
+                        tailWords++;
+                    } else {
+                        headHigh = (headHigh << 16) | (headLow >>> 48);
+                        headLow  = (headLow << 16) | word;
+                        headWords++;
+                    }
+                }
+            } else {
+                long word = 0;
+                for (int j = i; j < end; j++) {
+                    word = (word << 4) | Character.digit(address.charAt(j), 16);
+                }
+                if (tail) {
+                    tailHigh = (tailHigh << 16) | (tailLow >>> 48);
+                    tailLow  = (tailLow << 16) | (word & 0xffff);
+                    tailWords++;
+                } else {
+                    headHigh = (headHigh << 16) | (headLow >>> 48);
+                    headLow  = (headLow << 16) | (word & 0xffff);
+                    headWords++;
+                }
+            }
+            i = end;
+        }
+        int shift = 16 * Math.max(0, 8 - headWords);
+        long shiftedHigh;
+        long shiftedLow;
+        if (shift == 0) {
+            shiftedHigh = headHigh;
+            shiftedLow  = headLow;
+        } else if (shift >= 64) {
+            shiftedHigh = shift == 128 ? 0 : headLow << (shift - 64);
+            shiftedLow  = 0;
+        } else {
+            shiftedHigh = (headHigh << shift) | (headLow >>> (64 - shift));
+            shiftedLow  = headLow << shift;
+        }
+        if (tailWords == 0) {
+            return high ? shiftedHigh : shiftedLow;
+        }
+        return high ? shiftedHigh | tailHigh : shiftedLow | tailLow;
+    }
+
+    private static long ipv4(String address,
+                             int from,
+                             int to) {
+        long value = 0;
+        long octet = 0;
+        for (int i = from; i < to; i++) {
+            char c = address.charAt(i);
+            if (c == '.') {
+                value = (value << 8) | (octet & 0xff);
+                octet = 0;
+            } else if (c >= '0' && c <= '9') {
+                octet = octet * 10 + (c - '0');
+            }
+        }
+        return ((value << 8) | (octet & 0xff)) & 0xffffffffL;
+    }
+}
@@ -0,0 +1,15 @@
+package com.elixcore.collector.session;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 소켓을 열고 있는 프로세스. (fork 로 공유된 소켓은 여러 개)
+ */
+@Data
+@AllArgsConstructor
+public class SessionOwner {
+    private final int    pid;
+    private final String comm; /* 알 수 없으면 null */
+    private final int    fd; /* 알 수 없으면 -1 */
+}
@@ -0,0 +1,464 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import com.google.protobuf.Any;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.UnsafeByteOperations;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * {@link SessionCollectedData} 목록을 {@link PayloadState.SessionProcess} builder 를 거치지 않고 wire format 으로 바로 쓴다.
+ * <p>
+ * 결과는 {@link SessionCollector} 의 builder 변환 후 {@link Any#pack} 한 것과 byte 단위로 같다.
+ * (필드 순서 = 필드 번호 순, 같은 순서의 listen / 상태별(in, out) 묶음, proto3 기본값 생략)
+ * 필드 번호, wire type, presence 는 생성된 descriptor 에서 읽으므로 proto 정의가 바뀌어도 따라가며,
+ * 예상과 다른 구조면 {@link #isAvailable()} 가 false 가 되어 builder 경로를 사용한다.
+ * <p>
+ * 세션마다 객체를 만들지 않는다. (세션 크기, 묶음 순서는 재사용하는 int 배열, 출력은 재사용하는 byte 배열에 쓴 뒤 process 마다 한 번 복사)
+ * 한 인스턴스는 한 스레드에서 사용한다.
+ */
+@Slf4j
+final class SessionProcessEncoder {
+    private static final String                      TYPE_URL     = "type.googleapis.com/" + PayloadState.SessionProcess.getDescriptor()
+                                                                                                                     .getFullName();
+    private static final PayloadState.SessionState[] STATE_VALUES = PayloadState.SessionState.values();
+    private static final int                         STATES       = STATE_VALUES.length;
+    /*SessionProcess*/
+    private static final Field                       PID;
+    private static final Field                       LISTEN;
+    private static final Field                       IN;
+    private static final Field                       OUT;
+    private static final Field[]                     PROCESS_ORDER;
+    /*SessionStateUsage*/
+    private static final Field                       USAGE_STATE;
+    private static final Field                       USAGE_SESSION;
+    private static final Field[]                     USAGE_ORDER;
+    /*Session*/
+    private static final Field                       SRC;
+    private static final Field                       DST;
+    private static final Field                       RX_BYTE;
+    private static final Field                       TX_BYTE;
+    private static final Field                       RX_PACKET;
+    private static final Field                       TX_PACKET;
+    private static final Field[]                     SESSION_ORDER;
+    /*SessionAddress*/
+    private static final Field                       ADDRESS;
+    private static final Field                       PORT;
+    private static final Field[]                     ADDRESS_ORDER;
+    private static final boolean                     AVAILABLE;
+
+    static {
+        Field pid = null, listen = null, in = null, out = null, usageState = null, usageSession = null;
+        Field src = null, dst = null, rxByte = null, txByte = null, rxPacket = null, txPacket = null, address = null, port = null;
+        boolean available;
+        try {
+            pid          = Field.of(PayloadState.SessionProcess.getDescriptor(), PayloadState.SessionProcess.PID_FIELD_NUMBER, false);
+            listen       = Field.of(PayloadState.SessionProcess.getDescriptor(), PayloadState.SessionProcess.LISTEN_FIELD_NUMBER, true);
+            in           = Field.of(PayloadState.SessionProcess.getDescriptor(), PayloadState.SessionProcess.IN_FIELD_NUMBER, true);
+            out          = Field.of(PayloadState.SessionProcess.getDescriptor(), PayloadState.SessionProcess.OUT_FIELD_NUMBER, true);
+            usageState   = Field.of(PayloadState.SessionStateUsage.getDescriptor(), PayloadState.SessionStateUsage.STATE_FIELD_NUMBER, false);
+            usageSession = Field.of(PayloadState.SessionStateUsage.getDescriptor(), PayloadState.SessionStateUsage.SESSION_FIELD_NUMBER, true);
+            src          = Field.of(PayloadState.Session.getDescriptor(), PayloadState.Session.SRC_FIELD_NUMBER, false);
+            dst          = Field.of(PayloadState.Session.getDescriptor(), PayloadState.Session.DST_FIELD_NUMBER, false);
+            rxByte       = Field.of(PayloadState.Session.getDescriptor(), PayloadState.Session.RX_BYTE_FIELD_NUMBER, false);
+            txByte       = Field.of(PayloadState.Session.getDescriptor(), PayloadState.Session.TX_BYTE_FIELD_NUMBER, false);
+            rxPacket     = Field.of(PayloadState.Session.getDescriptor(), PayloadState.Session.RX_PACKET_FIELD_NUMBER, false);
+            txPacket     = Field.of(PayloadState.Session.getDescriptor(), PayloadState.Session.TX_PACKET_FIELD_NUMBER, false);
+            address      = Field.of(PayloadState.SessionAddress.getDescriptor(), PayloadState.SessionAddress.ADDRESS_FIELD_NUMBER, false);
+            port         = Field.of(PayloadState.SessionAddress.getDescriptor(), PayloadState.SessionAddress.PORT_FIELD_NUMBER, false);
+            available = listen.type == Descriptors.FieldDescriptor.Type.MESSAGE && in.type == Descriptors.FieldDescriptor.Type.MESSAGE
+                    && out.type == Descriptors.FieldDescriptor.Type.MESSAGE && usageSession.type == Descriptors.FieldDescriptor.Type.MESSAGE
+                    && src.type == Descriptors.FieldDescriptor.Type.MESSAGE && dst.type == Descriptors.FieldDescriptor.Type.MESSAGE
+                    && usageState.type == Descriptors.FieldDescriptor.Type.ENUM && address.type == Descriptors.FieldDescriptor.Type.STRING
+                    && pid.isInteger() && rxByte.isInteger() && txByte.isInteger() && rxPacket.isInteger() && txPacket.isInteger() && port.isInteger();
+        } catch (RuntimeException e) {
+            log.debug("session process encoder unavailable : {}", e.getMessage());
+            available = false;
+        }
+        PID           = pid;
+        LISTEN        = listen;
+        IN            = in;
+        OUT           = out;
+        PROCESS_ORDER = sorted(pid, listen, in, out);
+        USAGE_STATE   = usageState;
+        USAGE_SESSION = usageSession;
+        USAGE_ORDER   = sorted(usageState, usageSession);
+        SRC           = src;
+        DST           = dst;
+        RX_BYTE       = rxByte;
+        TX_BYTE       = txByte;
+        RX_PACKET     = rxPacket;
+        TX_PACKET     = txPacket;
+        SESSION_ORDER = sorted(src, dst, rxByte, txByte, rxPacket, txPacket);
+        ADDRESS       = address;
+        PORT          = port;
+        ADDRESS_ORDER = sorted(address, port);
+        AVAILABLE     = available;
+    }
+
+    /*process 하나 단위로 재사용*/
+    private int[]  group       = new int[256]; /* -1 : 제외, 0 : listen, 1 + direction * STATES + state : in/out 상태 묶음 */
+    private int[]  sessionSize = new int[256];
+    private int[]  order       = new int[256]; /* group 순 session index */
+    private int[]  groupStart  = new int[2 * STATES + 2];
+    private int[]  groupSize   = new int[2 * STATES + 1]; /* usage 메시지 크기 */
+    private byte[] buffer      = new byte[64 * 1024];
+
+    static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * @param inbound 세션이 in 방향인지 (LISTEN 포함)
+     * @return pidSessionMap 순회 순서의 Any. 변환할 수 없는 값(상태 없음, UNRECOGNIZED, 주소 null)이 있는 pid 는 null
+     */
+    List<Any> encode(Map<Integer, List<SessionCollectedData>> pidSessionMap,
+                     Predicate<SessionCollectedData> inbound) {
+        List<Any> result = new ArrayList<>(pidSessionMap.size());
+        for (Map.Entry<Integer, List<SessionCollectedData>> entry : pidSessionMap.entrySet()) {
+            byte[] bytes = this.encode(entry.getKey(), entry.getValue(), inbound);
+            result.add(bytes != null ? Any.newBuilder()
+                                          .setTypeUrl(TYPE_URL)
+                                          .setValue(UnsafeByteOperations.unsafeWrap(bytes))
+                                          .build() : null);
+        }
+        return result;
+    }
+
+    /**
+     * @return SessionProcess 직렬화 byte, 변환할 수 없으면 null
+     */
+    byte[] encode(int pid,
+                  List<SessionCollectedData> sessionList,
+                  Predicate<SessionCollectedData> inbound) {
+        int count = sessionList.size();
+        if (group.length < count) {
+            int capacity = Math.max(count, group.length * 2);
+            group       = new int[capacity];
+            sessionSize = new int[capacity];
+            order       = new int[capacity];
+        }
+        Arrays.fill(groupStart, 0);
+        Arrays.fill(groupSize, 0);
+
+        /*묶음 분류, 세션 크기*/
+        for (int i = 0; i < count; i++) {
+            SessionCollectedData session = sessionList.get(i);
+            SessionAddress local = session.getLocal();
+            if (!local.hasPort()) {
+                group[i] = -1;
+                continue;
+            }
+            if (local.getAddress() == null || (session.getPeer() != null && session.getPeer()
+                                                                                   .getAddress() == null)) {
+                return null;
+            }
+            boolean listen = session.isListen();
+            boolean in = listen || inbound.test(session);
+            if (listen) {
+                group[i] = 0;
+            } else {
+                PayloadState.SessionState state = session.getState();
+                if (state == null || state == PayloadState.SessionState.UNRECOGNIZED) {
+                    return null;
+                }
+                group[i] = 1 + (in ? 0 : STATES) + state.ordinal();
+            }
+            sessionSize[i] = sessionSize(session, in, !listen);
+            groupStart[group[i] + 1]++;
+        }
+        /*counting sort (묶음 안에서는 입력 순서 유지)*/
+        for (int g = 1; g < groupStart.length; g++) {
+            groupStart[g] += groupStart[g - 1];
+        }
+        int[] next = groupStart.clone();
+        for (int i = 0; i < count; i++) {
+            if (group[i] >= 0) {
+                order[next[group[i]]++] = i;
+            }
+        }
+        int sorted = groupStart[groupStart.length - 1];
+
+        /*usage 크기*/
+        for (int k = 0; k < sorted; k++) {
+            int i = order[k];
+            if (group[i] > 0) {
+                groupSize[group[i]] += messageSize(USAGE_SESSION, sessionSize[i]);
+            }
+        }
+        int processSize = PID.size(pid, true);
+        for (int k = 0; k < sorted; k++) {
+            int i = order[k];
+            if (group[i] == 0) {
+                processSize += messageSize(LISTEN, sessionSize[i]);
+            }
+        }
+        for (int g = 1; g < groupSize.length; g++) {
+            if (groupStart[g + 1] > groupStart[g]) {
+                groupSize[g] += USAGE_STATE.size(stateNumber(g), true);
+                processSize += messageSize(g <= STATES ? IN : OUT, groupSize[g]);
+            }
+        }
+
+        if (buffer.length < processSize) {
+            buffer = new byte[Math.max(processSize, buffer.length * 2)];
+        }
+        CodedOutputStream output = CodedOutputStream.newInstance(buffer, 0, processSize);
+        try {
+            for (Field field : PROCESS_ORDER) {
+                if (field == PID) {
+                    PID.write(output, pid, true);
+                } else if (field == LISTEN) {
+                    for (int k = groupStart[0]; k < groupStart[1]; k++) {
+                        int i = order[k];
+                        LISTEN.writeMessageHeader(output, sessionSize[i]);
+                        writeSession(output, sessionList.get(i), true, false);
+                    }
+                } else {
+                    int from = field == IN ? 1 : 1 + STATES;
+                    for (int g = from; g < from + STATES; g++) {
+                        if (groupStart[g + 1] > groupStart[g]) {
+                            field.writeMessageHeader(output, groupSize[g]);
+                            this.writeUsage(output, g, sessionList);
+                        }
+                    }
+                }
+            }
+            output.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException("session process size mismatch", e);
+        }
+        return Arrays.copyOf(buffer, processSize);
+    }
+
+    private void writeUsage(CodedOutputStream output,
+                            int g,
+                            List<SessionCollectedData> sessionList) throws IOException {
+        for (Field field : USAGE_ORDER) {
+            if (field == USAGE_STATE) {
+                USAGE_STATE.write(output, stateNumber(g), true);
+            } else {
+                for (int k = groupStart[g]; k < groupStart[g + 1]; k++) {
+                    int i = order[k];
+                    USAGE_SESSION.writeMessageHeader(output, sessionSize[i]);
+                    writeSession(output, sessionList.get(i), g <= STATES, true);
+                }
+            }
+        }
+    }
+
+    private static int stateNumber(int g) {
+        return STATE_VALUES[(g - 1) % STATES].getNumber();
+    }
+
+    /*Session : in 이면 src = peer, dst = local*/
+
+    private static int sessionSize(SessionCollectedData session,
+                                   boolean in,
+                                   boolean usage) {
+        int size = messageSize(in ? DST : SRC, addressSize(session.getLocal(), true));
+        SessionAddress peer = session.getPeer();
+        if (peer != null) {
+            size += messageSize(in ? SRC : DST, addressSize(peer, peer.hasPort()));
+        }
+        if (usage) {
+            size += RX_BYTE.size(session.getRxByte(), true) + TX_BYTE.size(session.getTxByte(), true)
+                    + RX_PACKET.size(session.getRxPacket(), true) + TX_PACKET.size(session.getTxPacket(), true);
+        }
+        return size;
+    }
+
+    private static void writeSession(CodedOutputStream output,
+                                     SessionCollectedData session,
+                                     boolean in,
+                                     boolean usage) throws IOException {
+        SessionAddress local = session.getLocal();
+        SessionAddress peer = session.getPeer();
+        for (Field field : SESSION_ORDER) {
+            if (field == SRC || field == DST) {
+                SessionAddress address = (field == DST) == in ? local : peer;
+                if (address != null) {
+                    boolean portSet = address == local || address.hasPort();
+                    field.writeMessageHeader(output, addressSize(address, portSet));
+                    writeAddress(output, address, portSet);
+                }
+            } else if (usage) {
+                field.write(output, field == RX_BYTE ? session.getRxByte()
+                                                     : field == TX_BYTE ? session.getTxByte()
+                                                                        : field == RX_PACKET ? session.getRxPacket() : session.getTxPacket(), true);
+            }
+        }
+    }
+
+    private static int addressSize(SessionAddress address,
+                                   boolean portSet) {
+        return ADDRESS.stringSize(address.getAddress()) + (portSet ? PORT.size(address.getPortValue(), true) : 0);
+    }
+
+    private static void writeAddress(CodedOutputStream output,
+                                     SessionAddress address,
+                                     boolean portSet) throws IOException {
+        for (Field field : ADDRESS_ORDER) {
+            if (field == ADDRESS) {
+                ADDRESS.writeString(output, address.getAddress());
+            } else if (portSet) {
+                PORT.write(output, address.getPortValue(), true);
+            }
+        }
+    }
+
+    private static int messageSize(Field field,
+                                   int size) {
+        return CodedOutputStream.computeTagSize(field.number) + CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+    }
+
+    private static Field[] sorted(Field... fields) {
+        if (fields[0] == null) {
+            return fields;
+        }
+        Field[] sorted = fields.clone();
+        Arrays.sort(sorted, Comparator.comparingInt(field -> field.number));
+        return sorted;
+    }
+
+    /**
+     * 필드 번호, 타입, presence. (presence 가 있으면 builder 에서 set 한 값은 기본값이어도 직렬화됨)
+     */
+    private static final class Field {
+        private final int                              number;
+        private final Descriptors.FieldDescriptor.Type type;
+        private final boolean                          presence;
+
+        private Field(int number,
+                      Descriptors.FieldDescriptor.Type type,
+                      boolean presence) {
+            this.number   = number;
+            this.type     = type;
+            this.presence = presence;
+        }
+
+        static Field of(Descriptors.Descriptor descriptor,
+                        int number,
+                        boolean repeated) {
+            Descriptors.FieldDescriptor field = descriptor.findFieldByNumber(number);
+            if (field == null || field.isRepeated() != repeated || (repeated && field.isPacked())) {
+                throw new IllegalStateException(descriptor.getName() + " field " + number + " unexpected");
+            }
+            return new Field(number, field.getType(), field.hasPresence());
+        }
+
+        boolean isInteger() {
+            switch (type) {
+                case INT32:
+                case INT64:
+                case UINT32:
+                case UINT64:
+                case SINT32:
+                case SINT64:
+                case FIXED32:
+                case FIXED64:
+                case SFIXED32:
+                case SFIXED64:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * @param set builder 에서 값을 set 했는지
+         */
+        int size(long value,
+                 boolean set) {
+            if (!set || (value == 0 && !presence)) {
+                return 0;
+            }
+            switch (type) {
+                case INT32:
+                case ENUM:
+                    return CodedOutputStream.computeInt32Size(number, (int) value);
+                case UINT32:
+                    return CodedOutputStream.computeUInt32Size(number, (int) value);
+                case SINT32:
+                    return CodedOutputStream.computeSInt32Size(number, (int) value);
+                case UINT64:
+                    return CodedOutputStream.computeUInt64Size(number, value);
+                case SINT64:
+                    return CodedOutputStream.computeSInt64Size(number, value);
+                case FIXED32:
+                case SFIXED32:
+                    return CodedOutputStream.computeFixed32Size(number, (int) value);
+                case FIXED64:
+                case SFIXED64:
+                    return CodedOutputStream.computeFixed64Size(number, value);
+                default:
+                    return CodedOutputStream.computeInt64Size(number, value);
+            }
+        }
+
+        void write(CodedOutputStream output,
+                   long value,
+                   boolean set) throws IOException {
+            if (!set || (value == 0 && !presence)) {
+                return;
+            }
+            switch (type) {
+                case INT32:
+                    output.writeInt32(number, (int) value);
+                    break;
+                case ENUM:
+                    output.writeEnum(number, (int) value);
+                    break;
+                case UINT32:
+                    output.writeUInt32(number, (int) value);
+                    break;
+                case SINT32:
+                    output.writeSInt32(number, (int) value);
+                    break;
+                case UINT64:
+                    output.writeUInt64(number, value);
+                    break;
+                case SINT64:
+                    output.writeSInt64(number, value);
+                    break;
+                case FIXED32:
+                case SFIXED32:
+                    output.writeFixed32(number, (int) value);
+                    break;
+                case FIXED64:
+                case SFIXED64:
+                    output.writeFixed64(number, value);
+                    break;
+                default:
+                    output.writeInt64(number, value);
+                    break;
+            }
+        }
+
+        int stringSize(String value) {
+            return value.isEmpty() && !presence ? 0 : CodedOutputStream.computeStringSize(number, value);
+        }
+
+        void writeString(CodedOutputStream output,
+                         String value) throws IOException {
+            if (!value.isEmpty() || presence) {
+                output.writeString(number, value);
+            }
+        }
+
+        void writeMessageHeader(CodedOutputStream output,
+                                int size) throws IOException {
+            output.writeTag(number, 2);
+            output.writeUInt32NoTag(size);
+        }
+    }
+}
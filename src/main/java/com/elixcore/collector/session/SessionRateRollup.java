@@ -0,0 +1,169 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 세션 rate({@link SessionDeltaTable} 가 채운 초당 값)의 pid 별, 상태별 합계.
+ * <p>
+ * delta 계산과 같은 순회에서 {@link #add(SessionCollectedData)} 로 더하며, 세션마다 객체를 만들지 않는다.
+ * (pid 별 합계 배열은 pid 가 처음 보일 때만 만들고, 한 주기 동안 보이지 않은 pid 는 다음 주기에 제거)
+ * <p>
+ * 한 주기 동안 한 스레드에서 {@link #beginCycle()} -> {@link #add(SessionCollectedData)} -> {@link #toStruct()} 순서로 사용한다.
+ */
+public class SessionRateRollup {
+    public static final  String STRUCT_TYPE     = "session_rate";
+    private static final int    DEFAULT_MAX_PID = 100;
+    /*합계 배열 index*/
+    private static final int    RX_BYTE         = 0;
+    private static final int    TX_BYTE         = 1;
+    private static final int    RX_PACKET       = 2;
+    private static final int    TX_PACKET       = 3;
+    private static final int    RX_BYTE_AVG     = 4;
+    private static final int    TX_BYTE_AVG     = 5;
+    private static final int    SESSIONS        = 6;
+    private static final int    FIELDS          = 7;
+
+    private final int                    maxPid;
+    private final double[][]             stateTotals = new double[PayloadState.SessionState.values().length][FIELDS];
+    private final Map<Integer, double[]> pidTotals   = new HashMap<>();
+
+    public SessionRateRollup() {
+        this(DEFAULT_MAX_PID);
+    }
+
+    /**
+     * @param maxPid {@link #toStruct()} 에 포함할 pid 수 (byte/s 합계 상위)
+     */
+    public SessionRateRollup(int maxPid) {
+        this.maxPid = Math.max(0, maxPid);
+    }
+
+    public void beginCycle() {
+        for (double[] totals : stateTotals) {
+            Arrays.fill(totals, 0);
+        }
+        Iterator<double[]> iterator = pidTotals.values()
+                                               .iterator();
+        while (iterator.hasNext()) {
+            double[] totals = iterator.next();
+            if (totals[SESSIONS] == 0) {
+                iterator.remove();
+            } else {
+                Arrays.fill(totals, 0);
+            }
+        }
+    }
+
+    /**
+     * LISTEN/UNCONN 세션은 제외한다.
+     */
+    public void add(SessionCollectedData session) {
+        if (session.isListen() || session.getState() == null) {
+            return;
+        }
+        add(stateTotals[session.getState()
+                               .ordinal()], session);
+        Integer pid = session.getPid();
+        if (pid != null) {
+            double[] totals = pidTotals.get(pid);
+            if (totals == null) {
+                totals = new double[FIELDS];
+                pidTotals.put(pid, totals);
+            }
+            add(totals, session);
+        }
+    }
+
+    public double[] getStateTotals(PayloadState.SessionState state) {
+        return stateTotals[state.ordinal()].clone();
+    }
+
+    /**
+     * 합계 배열을 유지 중인 pid 수 (직전 주기에 보이지 않은 pid 는 beginCycle 에서 제거)
+     */
+    int pidCount() {
+        return pidTotals.size();
+    }
+
+    /**
+     * bundle data 용 Struct
+     * <pre>
+     * type : session_rate
+     * state.{ESTABLISHED,...} / pid.{pid} : {rx_byte_rate, tx_byte_rate, rx_packet_rate, tx_packet_rate, rx_byte_rate_avg, tx_byte_rate_avg, sessions}
+     * </pre>
+     * 단위는 byte/s, packet/s 이다. pid 는 byte/s 합계 상위 maxPid 개만 포함한다.
+     */
+    public Struct toStruct() {
+        Struct.Builder states = Struct.newBuilder();
+        PayloadState.SessionState[] stateValues = PayloadState.SessionState.values();
+        for (int i = 0; i < stateValues.length; i++) {
+            if (stateTotals[i][SESSIONS] > 0) {
+                states.putFields(stateValues[i].name(), struct(stateTotals[i]));
+            }
+        }
+        List<Map.Entry<Integer, double[]>> pidEntries = new ArrayList<>();
+        for (Map.Entry<Integer, double[]> entry : pidTotals.entrySet()) {
+            if (entry.getValue()[SESSIONS] > 0) {
+                pidEntries.add(entry);
+            }
+        }
+        if (pidEntries.size() > maxPid) {
+            pidEntries.sort((a, b) -> Double.compare(b.getValue()[RX_BYTE] + b.getValue()[TX_BYTE], a.getValue()[RX_BYTE] + a.getValue()[TX_BYTE]));
+            pidEntries = pidEntries.subList(0, maxPid);
+        }
+        Struct.Builder pids = Struct.newBuilder();
+        for (Map.Entry<Integer, double[]> entry : pidEntries) {
+            pids.putFields(Integer.toString(entry.getKey()), struct(entry.getValue()));
+        }
+        return Struct.newBuilder()
+                     .putFields("type", Value.newBuilder()
+                                             .setStringValue(STRUCT_TYPE)
+                                             .build())
+                     .putFields("state", Value.newBuilder()
+                                              .setStructValue(states)
+                                              .build())
+                     .putFields("pid", Value.newBuilder()
+                                            .setStructValue(pids)
+                                            .build())
+                     .build();
+    }
+
+    private static void add(double[] totals,
+                            SessionCollectedData session) {
+        totals[RX_BYTE]     += session.getRxByteRate();
+        totals[TX_BYTE]     += session.getTxByteRate();
+        totals[RX_PACKET]   += session.getRxPacketRate();
+        totals[TX_PACKET]   += session.getTxPacketRate();
+        totals[RX_BYTE_AVG] += session.getRxByteRateAvg();
+        totals[TX_BYTE_AVG] += session.getTxByteRateAvg();
+        totals[SESSIONS]++;
+    }
+
+    private static Value struct(double[] totals) {
+        return Value.newBuilder()
+                    .setStructValue(Struct.newBuilder()
+                                          .putFields("rx_byte_rate", number(totals[RX_BYTE]))
+                                          .putFields("tx_byte_rate", number(totals[TX_BYTE]))
+                                          .putFields("rx_packet_rate", number(totals[RX_PACKET]))
+                                          .putFields("tx_packet_rate", number(totals[TX_PACKET]))
+                                          .putFields("rx_byte_rate_avg", number(totals[RX_BYTE_AVG]))
+                                          .putFields("tx_byte_rate_avg", number(totals[TX_BYTE_AVG]))
+                                          .putFields("sessions", number(totals[SESSIONS])))
+                    .build();
+    }
+
+    private static Value number(double value) {
+        return Value.newBuilder()
+                    .setNumberValue(value)
+                    .build();
+    }
+}
@@ -1,39 +1,143 @@
 package com.elixcore.collector.session;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * `ss -E` 로 커널 소켓 해제 이벤트를 받아 {@link SessionEvent} stream 으로 제공한다.
+ * <p>
+ * 커널(inet_diag multicast)은 해제 이벤트만 보내므로 생성 이벤트는 없다.
+ * 해제 시점의 누적 카운터가 포함되어, 두 수집 사이에 열리고 닫힌 세션도 놓치지 않는다.
+ * <p>
+ * 구독 시 `ss` 를 실행하고 구독 해제 시 종료한다. 줄은 수집과 같은 {@link SsLineParser} 로 파싱하며,
+ * 구독자가 느리면 최대 bufferSize 개까지 보관하고 오래된 이벤트부터 버린다. (`ss` 를 막으면 커널 buffer 에서 이벤트가 유실됨)
+ * <p>
+ * player 가 있으면 `ss` 대신 player 의 출력으로 이벤트를 만들고, 출력이 끝나면 stream 도 끝난다.
+ */
+@Slf4j
 public class SessionRealtime {
-    public void start() {
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        ProcessBuilder processBuilder = new ProcessBuilder("sh", "-c", "ss -E -H -apnmO");
-        processBuilder.redirectErrorStream(true);
-        // 버퍼 크기를 16KB로 설정
-        int bufferSize = 16 * 1024;
+    public static final  String EVENT_COMMAND       = "ss -EHtuaeipnO";
+    private static final int    DEFAULT_BUFFER_SIZE = 64 * 1024;
 
-        try {
-            Process process = processBuilder.start();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()), bufferSize);
-
-            executor.submit(() -> {
-                String line;
-                try {
-                    while ((line = reader.readLine()) != null) {
-                        System.out.println(line);
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
+    private final    String         command;
+    private final    int            bufferSize;
+    private final    LongAdder      dropped = new LongAdder();
+    private volatile SsRecorder     recorder;
+    private volatile SsOutputPlayer player;
+
+    public SessionRealtime() {
+        this(EVENT_COMMAND, DEFAULT_BUFFER_SIZE);
+    }
+
+    public SessionRealtime(String command,
+                           int bufferSize) {
+        this.command    = command;
+        this.bufferSize = bufferSize;
+    }
+
+    public Flux<SessionEvent> events() {
+        return Flux.<SessionEvent>create(sink -> {
+                       SsOutputPlayer outputPlayer = player;
+                       if (outputPlayer != null) {
+                           this.play(outputPlayer, sink);
+                           return;
+                       }
+                       List<String> argv = SsProcess.argv(command, Collections.emptyList());
+                       Process process;
+                       try {
+                           process = SsProcess.start(argv);
+                       } catch (IOException e) {
+                           sink.error(e);
+                           return;
+                       }
+                       sink.onDispose(process::destroy);
+                       this.read(process, argv, sink);
+                   })
+                   .subscribeOn(Schedulers.boundedElastic())
+                   .onBackpressureBuffer(bufferSize, event -> dropped.increment(), BufferOverflowStrategy.DROP_OLDEST);
+    }
+
+    /**
+     * null 이 아니면 `ss` 이벤트 출력을 기록한다.
+     */
+    public void setRecorder(SsRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * null 이 아니면 구독 시 `ss` 를 실행하지 않고 player 의 {@link #EVENT_COMMAND} 출력을 읽는다.
+     */
+    public void setPlayer(SsOutputPlayer player) {
+        this.player = player;
+    }
+
+    /**
+     * 구독자가 느려 버린 이벤트 수
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * `ss` 가 출력을 끝내면 종료 코드를 확인해, 실패(권한 없음 등)는 stderr 첫 줄과 함께 error 로 전달한다.
+     */
+    private void read(Process process,
+                      List<String> argv,
+                      FluxSink<SessionEvent> sink) {
+        SsRecorder ssRecorder = recorder;
+        try (InputStream input = process.getInputStream();
+             SsRecorder.Run run = ssRecorder != null ? ssRecorder.begin(command) : null) {
+            SsProcess.readLines(input, line -> {
+                if (run != null) {
+                    run.line(line);
                 }
+                return emit(line, sink);
             });
+            if (!sink.isCancelled()) {
+                SsProcess.awaitExit(process, argv);
+            }
+            sink.complete();
+        } catch (IOException e) {
+            if (sink.isCancelled()) {
+                sink.complete();
+            } else {
+                sink.error(e);
+            }
+        }
+    }
+
+    private void play(SsOutputPlayer outputPlayer,
+                      FluxSink<SessionEvent> sink) {
+        try {
+            outputPlayer.play(command, line -> emit(line, sink));
+            sink.complete();
+        } catch (IOException e) {
+            sink.error(e);
+        }
+    }
 
-            process.waitFor();
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            executor.shutdown();
+    private static boolean emit(String line,
+                                FluxSink<SessionEvent> sink) {
+        SessionCollectedData session = SsLineParser.parse(line, SessionCollectedData.PROTOCOL_TCP);
+        if (session.getLocal() != null) {
+            /* unix socket 등은 제외 */
+            sink.next(new SessionEvent(SessionEvent.Type.DESTROY, session, System.currentTimeMillis()));
         }
+        return !sink.isCancelled();
+    }
+
+    public void start() {
+        events().doOnNext(sessionEvent -> log.info("{}", sessionEvent))
+                .blockLast();
     }
 
     public static void main(String[] args) {
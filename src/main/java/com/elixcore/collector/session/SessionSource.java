@@ -0,0 +1,37 @@
+package com.elixcore.collector.session;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * 세션 수집 소스.
+ * 소켓 목록을 누적 카운터(rx/tx byte, packet) 그대로 전달하며, delta 계산은 {@link SessionCollector} 가 담당한다.
+ */
+public interface SessionSource {
+
+    /**
+     * 현재 시점의 소켓을 하나씩 consumer 로 전달한다.
+     * consumer 는 동시에 호출되지 않는다. (호출 스레드에서 순서대로 전달)
+     */
+    void collect(Consumer<SessionCollectedData> consumer) throws IOException;
+
+    /**
+     * 현재 호스트에서 사용 가능한 소스인지 여부
+     */
+    default boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * 단계별 소요 시간/읽은 레코드 수를 기록할 대상. (지원하지 않는 소스는 무시)
+     */
+    default void setMetrics(SessionCollectorMetrics metrics) {
+    }
+
+    /**
+     * 수집 단계로 내려 보낼 수 있는 조건 (지원하지 않는 소스는 무시).
+     * 전체 조건은 {@link SessionCollector} 가 {@link SessionFilter#test(SessionCollectedData)} 로 다시 적용한다.
+     */
+    default void setFilter(SessionFilter filter) {
+    }
+}
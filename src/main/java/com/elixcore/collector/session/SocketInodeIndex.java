@@ -0,0 +1,259 @@
+package com.elixcore.collector.session;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * socket inode -> pid 색인. (/proc/[pid]/fd 의 socket:[inode] 링크)
+ * fork 로 여러 프로세스가 공유하는 소켓은 소유 pid 를 모두 (오름차순) 보관한다.
+ * <p>
+ * {@link #refresh()} 는 전체를 다시 읽지 않고 증분으로 갱신한다.
+ * <pre>
+ * 종료된 pid      : 해당 pid 의 inode 제거
+ * 새 pid          : fd 목록 scan
+ * 기존 pid        : /proc/[pid]/fd 의 size(열린 fd 수, kernel 6.2+)/mtime 이 바뀐 경우에만 다시 scan
+ * 색인에 없는 inode 조회가 있었으면 다음 refresh 에서 전체 scan (fullScanInterval 마다 최대 1회)
+ * </pre>
+ */
+@Slf4j
+public class SocketInodeIndex {
+    private static final String SOCKET_PREFIX      = "socket:[";
+    private static final long   FULL_SCAN_INTERVAL = TimeUnit.SECONDS.toNanos(30);
+
+    private final    Path                     procRoot;
+    private final    Map<Long, int[]>         inodePidMap   = new ConcurrentHashMap<>(); /* 정렬된 pid, 교체만 하고 수정하지 않음 */
+    /*refresh 스레드 전용*/
+    private final    Map<Integer, ProcessFds> processFdsMap = new HashMap<>();
+    private volatile boolean                  missed;
+    private          long                     lastFullScan;
+    private          boolean                  scanned;
+
+    public SocketInodeIndex() {
+        this(Paths.get("/proc"));
+    }
+
+    public SocketInodeIndex(Path procRoot) {
+        this.procRoot = procRoot;
+    }
+
+    public synchronized void refresh() {
+        long now = System.nanoTime();
+        boolean fullScan = !scanned || (missed && now - lastFullScan >= FULL_SCAN_INTERVAL);
+        if (fullScan) {
+            lastFullScan = now;
+            missed       = false;
+        }
+        Set<Integer> alive = new HashSet<>(processFdsMap.size() * 2 + 16);
+        try (DirectoryStream<Path> pidDirs = Files.newDirectoryStream(procRoot)) {
+            for (Path pidDir : pidDirs) {
+                int pid = parsePid(pidDir.getFileName()
+                                         .toString());
+                if (pid <= 0) {
+                    continue;
+                }
+                alive.add(pid);
+                Path fdDir = pidDir.resolve("fd");
+                long signature = signature(fdDir);
+                ProcessFds processFds = processFdsMap.get(pid);
+                if (processFds != null && !fullScan && processFds.signature == signature) {
+                    continue;
+                }
+                this.scan(pid, fdDir, signature, processFds);
+            }
+        } catch (IOException e) {
+            log.debug("proc scan fail : {}", e.getMessage());
+        }
+        processFdsMap.entrySet()
+                     .removeIf(entry -> {
+                         if (alive.contains(entry.getKey())) {
+                             return false;
+                         }
+                         this.unlink(entry.getKey(), entry.getValue().inodes);
+                         return true;
+                     });
+        scanned = true;
+    }
+
+    /**
+     * @return 소유 pid 중 가장 작은 값 (없으면 0)
+     */
+    public int getPid(long inode) {
+        int[] pids = inodePidMap.get(inode);
+        if (pids == null) {
+            missed = true;
+            return 0;
+        }
+        return pids[0];
+    }
+
+    /**
+     * session 의 pid(가장 작은 소유 pid)와, 소유 프로세스가 둘 이상이면 owners 를 채운다.
+     */
+    public void attribute(long inode,
+                          SessionCollectedData session) {
+        int[] pids = inode != 0 ? inodePidMap.get(inode) : null;
+        if (pids == null) {
+            if (inode != 0) {
+                missed = true;
+            }
+            session.setPid(0);
+            return;
+        }
+        session.setPid(pids[0]);
+        if (pids.length > 1) {
+            List<SessionOwner> owners = new ArrayList<>(pids.length);
+            for (int pid : pids) {
+                owners.add(new SessionOwner(pid, null, -1));
+            }
+            session.setOwners(owners);
+        }
+    }
+
+    public int size() {
+        return inodePidMap.size();
+    }
+
+    private void scan(int pid,
+                      Path fdDir,
+                      long signature,
+                      ProcessFds previous) {
+        Set<Long> inodes = new HashSet<>();
+        try (DirectoryStream<Path> fds = Files.newDirectoryStream(fdDir)) {
+            for (Path fd : fds) {
+                long inode = parseSocketInode(fd);
+                if (inode > 0) {
+                    inodes.add(inode);
+                }
+            }
+        } catch (IOException e) {
+            /* 종료된 프로세스 또는 권한 없음 */
+        }
+        if (previous != null) {
+            previous.inodes.removeAll(inodes);
+            this.unlink(pid, previous.inodes);
+        }
+        for (Long inode : inodes) {
+            inodePidMap.compute(inode, (key, pids) -> link(pids, pid));
+        }
+        processFdsMap.put(pid, new ProcessFds(signature, inodes));
+    }
+
+    private void unlink(int pid,
+                        Set<Long> inodes) {
+        for (Long inode : inodes) {
+            inodePidMap.computeIfPresent(inode, (key, pids) -> unlink(pids, pid));
+        }
+    }
+
+    private static int[] link(int[] pids,
+                              int pid) {
+        if (pids == null) {
+            return new int[]{pid};
+        }
+        int index = Arrays.binarySearch(pids, pid);
+        if (index >= 0) {
+            return pids;
+        }
+        int insert = -index - 1;
+        int[] linked = new int[pids.length + 1];
+        System.arraycopy(pids, 0, linked, 0, insert);
+        linked[insert] = pid;
+        System.arraycopy(pids, insert, linked, insert + 1, pids.length - insert);
+        return linked;
+    }
+
+    /**
+     * @return 남은 pid 가 없으면 null (항목 제거)
+     */
+    private static int[] unlink(int[] pids,
+                                int pid) {
+        int index = Arrays.binarySearch(pids, pid);
+        if (index < 0) {
+            return pids;
+        }
+        if (pids.length == 1) {
+            return null;
+        }
+        int[] unlinked = new int[pids.length - 1];
+        System.arraycopy(pids, 0, unlinked, 0, index);
+        System.arraycopy(pids, index + 1, unlinked, index, pids.length - index - 1);
+        return unlinked;
+    }
+
+    /**
+     * fd 디렉터리 변경 감지용 값 (size, mtime)
+     * procfs 의 size 는 kernel 6.2 부터 열린 fd 수이고 이전에는 0 이다. (변경 감지 불가 -> 조회 실패 시 전체 scan 에 의존)
+     */
+    private static long signature(Path fdDir) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(fdDir, BasicFileAttributes.class);
+            return attributes.size() * 31 + attributes.lastModifiedTime()
+                                                      .toMillis();
+        } catch (IOException | UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    static int parsePid(String name) {
+        int pid = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            pid = pid * 10 + (c - '0');
+        }
+        return pid;
+    }
+
+    private static long parseSocketInode(Path fd) {
+        String target;
+        try {
+            target = Files.readSymbolicLink(fd)
+                          .toString();
+        } catch (IOException | UnsupportedOperationException e) {
+            return -1;
+        }
+        if (!target.startsWith(SOCKET_PREFIX)) {
+            return -1;
+        }
+        long inode = 0;
+        for (int i = SOCKET_PREFIX.length(); i < target.length(); i++) {
+            char c = target.charAt(i);
+            if (c == ']') {
+                return inode;
+            }
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            inode = inode * 10 + (c - '0');
+        }
+        return -1;
+    }
+
+    private static class ProcessFds {
+        private final long      signature;
+        private final Set<Long> inodes;
+
+        private ProcessFds(long signature,
+                           Set<Long> inodes) {
+            this.signature = signature;
+            this.inodes    = inodes;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * `ss -aeiOpnH` 한 줄을 {@link SessionCollectedData} 로 변환한다. (누적 카운터)
+ * <p>
+ * 줄을 한 번만 훑으면서 컬럼(State, Recv-Q, Send-Q, Local, Peer)과 이후 key:value 항목을 처리하고,
+ * 숫자는 substring 없이 그 자리에서 파싱한다.
+ * `ss -tu` 처럼 Netid 컬럼이 있으면 protocol 은 Netid 값을 따른다.
+ * <pre>
+ * ESTAB 0 0 10.0.0.1:22 10.0.0.2:5555 users:(("sshd",pid=123,fd=3)) ino:40211 sk:3c cubic rto:204 rtt:0.5/0.25 cwnd:10
+ *       bytes_sent:1234 bytes_received:456 segs_out:10 segs_in:12 delivery_rate 100Mbps retrans:0/1 ...
+ * udp UNCONN 0 0 0.0.0.0:68 0.0.0.0:* users:(("dhclient",pid=812,fd=6))
+ * </pre>
+ */
+final class SsLineParser {
+    private static final int COLUMN_STATE = 0;
+    private static final int COLUMN_LOCAL = 3;
+    private static final int COLUMN_PEER  = 4;
+
+    private SsLineParser() {
+    }
+
+    static SessionCollectedData parse(String line,
+                                      int protocol) {
+        int length = line.length();
+        int i = 0;
+        while (i < length && isSpace(line.charAt(i))) {
+            i++;
+        }
+        /*Netid*/
+        if (i + 3 < length && isSpace(line.charAt(i + 3))) {
+            if (line.startsWith("tcp", i)) {
+                protocol = SessionCollectedData.PROTOCOL_TCP;
+                i += 3;
+            } else if (line.startsWith("udp", i)) {
+                protocol = SessionCollectedData.PROTOCOL_UDP;
+                i += 3;
+            }
+        }
+
+        SessionCollectedData sessionCollectedData = new SessionCollectedData(protocol);
+        sessionCollectedData.setPid(0);
+
+        int column = 0;
+        while (true) {
+            while (i < length && isSpace(line.charAt(i))) {
+                i++;
+            }
+            if (i >= length) {
+                break;
+            }
+            int start = i;
+            if (column > COLUMN_PEER && line.startsWith("users:(", start)) {
+                i = parseUsers(line, start + 7, length, sessionCollectedData);
+                column++;
+                continue;
+            }
+            while (i < length && !isSpace(line.charAt(i))) {
+                i++;
+            }
+            switch (column) {
+                case COLUMN_STATE:
+                    sessionCollectedData.setState(toState(line, start, i));
+                    break;
+                case COLUMN_LOCAL:
+                    sessionCollectedData.setLocal(SessionAddress.findMatch(line, start, i));
+                    break;
+                case COLUMN_PEER:
+                    sessionCollectedData.setPeer(SessionAddress.findMatch(line, start, i));
+                    break;
+                default:
+                    if (column > COLUMN_PEER) {
+                        i = parseField(line, start, i, length, sessionCollectedData);
+                    }
+                    break;
+            }
+            column++;
+        }
+        return sessionCollectedData;
+    }
+
+    /**
+     * key:value 항목. 값이 다음 토큰에 있는 항목(delivery_rate)은 다음 토큰까지 소비한다.
+     *
+     * @return 다음 파싱 위치
+     */
+    private static int parseField(String line,
+                                  int start,
+                                  int end,
+                                  int length,
+                                  SessionCollectedData sessionCollectedData) {
+        switch (line.charAt(start)) {
+            case 'b':
+                if (line.startsWith("bytes_sent:", start)) {
+                    sessionCollectedData.setTxByte(parseLong(line, start + 11, end));
+                } else if (line.startsWith("bytes_received:", start)) {
+                    sessionCollectedData.setRxByte(parseLong(line, start + 15, end));
+                }
+                break;
+            case 's':
+                if (line.startsWith("segs_out:", start)) {
+                    sessionCollectedData.setTxPacket(parseLong(line, start + 9, end));
+                } else if (line.startsWith("segs_in:", start)) {
+                    sessionCollectedData.setRxPacket(parseLong(line, start + 8, end));
+                }
+                break;
+            case 'r':
+                if (line.startsWith("rtt:", start)) {
+                    int slash = indexOf(line, '/', start + 4, end);
+                    sessionCollectedData.setRtt(parseMillisToMicros(line, start + 4, slash));
+                    sessionCollectedData.setRttVar(parseMillisToMicros(line, slash + 1, end));
+                } else if (line.startsWith("retrans:", start)) {
+                    /* retrans:현재/누적 */
+                    int slash = indexOf(line, '/', start + 8, end);
+                    sessionCollectedData.setRetrans(parseLong(line, slash + 1, end));
+                }
+                break;
+            case 'c':
+                if (line.startsWith("cwnd:", start)) {
+                    sessionCollectedData.setCwnd(parseLong(line, start + 5, end));
+                }
+                break;
+            case 'i':
+                if (line.startsWith("ino:", start)) {
+                    /* -e : 재사용된 tuple 구분 */
+                    sessionCollectedData.setInode(parseLong(line, start + 4, end));
+                }
+                break;
+            case 'd':
+                if (end - start == 13 && line.startsWith("delivery_rate", start)) {
+                    int valueStart = end;
+                    while (valueStart < length && isSpace(line.charAt(valueStart))) {
+                        valueStart++;
+                    }
+                    int valueEnd = valueStart;
+                    while (valueEnd < length && !isSpace(line.charAt(valueEnd))) {
+                        valueEnd++;
+                    }
+                    sessionCollectedData.setDeliveryRate(parseRate(line, valueStart, valueEnd));
+                    return valueEnd;
+                }
+                break;
+        }
+        return end;
+    }
+
+    /**
+     * users:(("nginx",pid=10,fd=6),("nginx",pid=11,fd=6)) 의 소유 프로세스.
+     * pid 는 출력 순서와 무관하게 가장 작은 pid 로 두고, 둘 이상이면 (pid, comm, fd) 목록을 pid 순으로 채운다.
+     * comm 에 공백/괄호가 있을 수 있으므로 따옴표를 고려해 괄호 끝까지 소비한다.
+     *
+     * @return users 블록 다음 위치
+     */
+    private static int parseUsers(String line,
+                                  int from,
+                                  int length,
+                                  SessionCollectedData sessionCollectedData) {
+        List<SessionOwner> owners = null;
+        /*첫 번째 소유자는 두 번째가 나올 때까지 객체로 만들지 않는다*/
+        int firstPid = -1;
+        int firstFd = -1;
+        int firstCommStart = -1;
+        int firstCommEnd = -1;
+        int pid = -1;
+        int fd = -1;
+        int commStart = -1;
+        int commEnd = -1;
+        boolean quoted = false;
+        int depth = 1;
+        int i = from;
+        while (i < length && depth > 0) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted) {
+                    commEnd = i;
+                } else {
+                    commStart = i + 1;
+                }
+                quoted = !quoted;
+            } else if (!quoted) {
+                if (c == '(') {
+                    depth++;
+                    pid       = -1;
+                    fd        = -1;
+                    commStart = -1;
+                    commEnd   = -1;
+                } else if (c == ')') {
+                    if (depth == 2 && pid >= 0) {
+                        if (firstPid < 0) {
+                            firstPid       = pid;
+                            firstFd        = fd;
+                            firstCommStart = commStart;
+                            firstCommEnd   = commEnd;
+                        } else {
+                            if (owners == null) {
+                                owners = new ArrayList<>(4);
+                                owners.add(owner(line, firstPid, firstCommStart, firstCommEnd, firstFd));
+                            }
+                            owners.add(owner(line, pid, commStart, commEnd, fd));
+                        }
+                    }
+                    depth--;
+                } else if (c == 'p' && line.startsWith("pid=", i)) {
+                    int valueEnd = digitEnd(line, i + 4, length);
+                    pid = (int) parseLong(line, i + 4, valueEnd);
+                    i   = valueEnd;
+                    continue;
+                } else if (c == 'f' && line.startsWith("fd=", i)) {
+                    int valueEnd = digitEnd(line, i + 3, length);
+                    fd = (int) parseLong(line, i + 3, valueEnd);
+                    i  = valueEnd;
+                    continue;
+                }
+            }
+            i++;
+        }
+        if (owners != null) {
+            owners.sort(Comparator.comparingInt(SessionOwner::getPid));
+            sessionCollectedData.setPid(owners.get(0)
+                                              .getPid());
+            sessionCollectedData.setOwners(owners);
+        } else if (firstPid >= 0) {
+            sessionCollectedData.setPid(firstPid);
+        }
+        return i;
+    }
+
+    private static SessionOwner owner(String line,
+                                      int pid,
+                                      int commStart,
+                                      int commEnd,
+                                      int fd) {
+        String comm = commStart >= 0 && commEnd >= commStart ? line.substring(commStart, commEnd) : null;
+        return new SessionOwner(pid, comm, fd);
+    }
+
+    private static int digitEnd(String line,
+                                int from,
+                                int length) {
+        int end = from;
+        while (end < length && isDigit(line.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    private static PayloadState.SessionState toState(String line,
+                                                     int start,
+                                                     int end) {
+        switch (end - start) {
+            case 5:
+                if (line.regionMatches(true, start, "estab", 0, 5)) {
+                    return PayloadState.SessionState.ESTABLISHED;
+                }
+                if (line.regionMatches(true, start, "close", 0, 5)) {
+                    return PayloadState.SessionState.CLOSED;
+                }
+                break;
+            case 6:
+                if (line.regionMatches(true, start, "listen", 0, 6)) {
+                    return PayloadState.SessionState.LISTEN;
+                }
+                if (line.regionMatches(true, start, "unconn", 0, 6)) {
+                    return PayloadState.SessionState.UNCONN;
+                }
+                break;
+            case 7:
+                if (line.regionMatches(true, start, "closing", 0, 7)) {
+                    return PayloadState.SessionState.CLOSING;
+                }
+                break;
+            case 8:
+                if (line.regionMatches(true, start, "syn-sent", 0, 8)) {
+                    return PayloadState.SessionState.SYN_SENT;
+                }
+                if (line.regionMatches(true, start, "syn-recv", 0, 8)) {
+                    return PayloadState.SessionState.SYN_RECV;
+                }
+                if (line.regionMatches(true, start, "last-ack", 0, 8)) {
+                    return PayloadState.SessionState.LAST_ACK;
+                }
+                break;
+            case 9:
+                if (line.regionMatches(true, start, "time-wait", 0, 9)) {
+                    return PayloadState.SessionState.TIME_WAIT;
+                }
+                break;
+            case 10:
+                if (line.regionMatches(true, start, "fin-wait-1", 0, 10)) {
+                    return PayloadState.SessionState.FIN_WAIT_1;
+                }
+                if (line.regionMatches(true, start, "fin-wait-2", 0, 10)) {
+                    return PayloadState.SessionState.FIN_WAIT_2;
+                }
+                if (line.regionMatches(true, start, "close-wait", 0, 10)) {
+                    return PayloadState.SessionState.CLOSE_WAIT;
+                }
+                break;
+        }
+        return PayloadState.SessionState.UNRECOGNIZED;
+    }
+
+    /**
+     * 앞쪽 연속된 숫자만 파싱 (없으면 0)
+     */
+    private static long parseLong(String line,
+                                  int from,
+                                  int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (!isDigit(c)) {
+                break;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * 0.045 (ms) -> 45 (us)
+     */
+    private static long parseMillisToMicros(String line,
+                                            int from,
+                                            int to) {
+        long value = 0;
+        int fraction = -1;
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c == '.' && fraction < 0) {
+                fraction = 0;
+            } else if (isDigit(c)) {
+                if (fraction < 0) {
+                    value = value * 10 + (c - '0');
+                } else if (fraction < 3) {
+                    value = value * 10 + (c - '0');
+                    fraction++;
+                }
+            } else {
+                break;
+            }
+        }
+        for (int f = Math.max(fraction, 0); f < 3; f++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    /**
+     * 463.4Mbps -> 463400000 (bps)
+     */
+    private static long parseRate(String line,
+                                  int from,
+                                  int to) {
+        long value = 0;
+        long scale = 1;
+        boolean fraction = false;
+        int i = from;
+        for (; i < to; i++) {
+            char c = line.charAt(i);
+            if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (isDigit(c)) {
+                value = value * 10 + (c - '0');
+                if (fraction) {
+                    scale *= 10;
+                }
+            } else {
+                break;
+            }
+        }
+        long unit = 1;
+        if (i < to) {
+            switch (line.charAt(i)) {
+                case 'K':
+                case 'k':
+                    unit = 1000L;
+                    break;
+                case 'M':
+                    unit = 1000_000L;
+                    break;
+                case 'G':
+                    unit = 1000_000_000L;
+                    break;
+            }
+        }
+        return value * unit / scale;
+    }
+
+    private static int indexOf(String line,
+                               char c,
+                               int from,
+                               int to) {
+        int index = line.indexOf(c, from);
+        return index < 0 || index >= to ? to : index;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t';
+    }
+}
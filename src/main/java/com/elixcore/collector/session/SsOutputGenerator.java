@@ -0,0 +1,307 @@
+package com.elixcore.collector.session;
+
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * 합성 `ss` 출력. (부하 시험, 회귀 비교용)
+ * <p>
+ * sessions 개의 소켓 table 을 유지하며, 수집 명령을 한 번 재생할 때마다 한 주기가 지나간다.
+ * 매 주기 churn 비율의 소켓이 닫히고 새 소켓(새 inode)으로 바뀌며, 열린 소켓의 누적 카운터는 증가한다.
+ * 상태 비율은 운영 서버와 비슷하게 ESTAB 위주, 일부 LISTEN/TIME-WAIT/UDP 로 구성한다.
+ * <ul>
+ * <li>{@link SsSessionSource#SESSION_COMMAND} : TCP/UDP (Netid 포함)</li>
+ * <li>{@link SsSessionSource#TCP_COMMAND}, {@link SsSessionSource#UDP_COMMAND} : 해당 protocol 만 (Netid 없음)</li>
+ * <li>{@link SessionRealtime#EVENT_COMMAND} : 직전 호출 이후 닫힌 소켓 (해제 이벤트)</li>
+ * </ul>
+ * TCP/UDP 명령은 주기를 진행시키고, 이벤트 명령은 진행시키지 않는다. 같은 seed 이면 출력이 같다.
+ */
+public class SsOutputGenerator implements SsOutputPlayer {
+    private static final String[]      CLOSING_STATES = {"SYN-SENT", "SYN-RECV", "FIN-WAIT-1", "FIN-WAIT-2", "CLOSE-WAIT", "LAST-ACK", "CLOSING"};
+    private static final int           KIND_LISTEN    = 0;
+    private static final int           KIND_UDP       = 1;
+    private static final int           KIND_TIME_WAIT = 2;
+    private static final int           KIND_CLOSING   = 3;
+    private static final int           KIND_ESTAB     = 4;
+    private static final int           LOCAL_HOSTS    = 4;
+    private final        int           sessions;
+    private final        double        churn;
+    private final        int           processCount;
+    private final        Random        random;
+    private final        StringBuilder line           = new StringBuilder(512);
+    /*소켓 table (slot 단위)*/
+    private final        byte[]        kind;
+    private final        byte[]        closingState;
+    private final        int[]         pid;
+    private final        int[]         fd;
+    private final        int[]         localHost;
+    private final        int[]         localPort;
+    private final        int[]         peerHost; /* 0 : v6 (peerPort 로 구분) */
+    private final        int[]         peerPort;
+    private final        long[]        inode;
+    private final        long[]        bytesSent;
+    private final        long[]        bytesReceived;
+    private final        long[]        segsOut;
+    private final        long[]        segsIn;
+    private              long          nextInode      = 100000;
+    private              long          cycle;
+    /*직전 이벤트 재생 이후 닫힌 소켓*/
+    private              String[]      closed         = new String[1024];
+    private              int           closedCount;
+
+    /**
+     * @param churn 주기마다 교체되는 소켓 비율 (0 ~ 1)
+     */
+    public SsOutputGenerator(int sessions,
+                             double churn,
+                             long seed) {
+        this.sessions      = sessions;
+        this.churn         = Math.max(0, Math.min(1, churn));
+        this.processCount  = Math.max(1, sessions / 50);
+        this.random        = new Random(seed);
+        this.kind          = new byte[sessions];
+        this.closingState  = new byte[sessions];
+        this.pid           = new int[sessions];
+        this.fd            = new int[sessions];
+        this.localHost     = new int[sessions];
+        this.localPort     = new int[sessions];
+        this.peerHost      = new int[sessions];
+        this.peerPort      = new int[sessions];
+        this.inode         = new long[sessions];
+        this.bytesSent     = new long[sessions];
+        this.bytesReceived = new long[sessions];
+        this.segsOut       = new long[sessions];
+        this.segsIn        = new long[sessions];
+        for (int slot = 0; slot < sessions; slot++) {
+            this.open(slot);
+        }
+    }
+
+    /**
+     * 지금까지 진행한 주기 수
+     */
+    public synchronized long getCycle() {
+        return cycle;
+    }
+
+    @Override
+    public synchronized void play(String command,
+                                  Predicate<String> lineHandler) {
+        if (command.equals(SessionRealtime.EVENT_COMMAND)) {
+            int count = closedCount;
+            closedCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (!lineHandler.test(closed[i])) {
+                    break;
+                }
+            }
+            return;
+        }
+        boolean tcp = !command.equals(SsSessionSource.UDP_COMMAND);
+        boolean udp = !command.equals(SsSessionSource.TCP_COMMAND);
+        boolean netid = command.equals(SsSessionSource.SESSION_COMMAND);
+        this.advance();
+        for (int slot = 0; slot < sessions; slot++) {
+            boolean udpSlot = kind[slot] == KIND_UDP;
+            if (udpSlot ? !udp : !tcp) {
+                continue;
+            }
+            if (!lineHandler.test(this.format(slot, netid))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 한 주기 진행 : churn 만큼 교체, 열린 소켓 카운터 증가
+     */
+    private void advance() {
+        cycle++;
+        int replace = (int) Math.round(sessions * churn);
+        for (int i = 0; i < replace; i++) {
+            int slot = random.nextInt(sessions);
+            if (kind[slot] != KIND_LISTEN && kind[slot] != KIND_UDP) {
+                this.close(slot);
+            }
+            this.open(slot);
+        }
+        for (int slot = 0; slot < sessions; slot++) {
+            if (kind[slot] == KIND_ESTAB) {
+                long sent = random.nextInt(1 << 16);
+                long received = random.nextInt(1 << 16);
+                bytesSent[slot]     += sent;
+                bytesReceived[slot] += received;
+                segsOut[slot]       += 1 + sent / 1448;
+                segsIn[slot]        += 1 + received / 1448;
+            }
+        }
+    }
+
+    private void open(int slot) {
+        int value = random.nextInt(100);
+        kind[slot]          = (byte) (value < 2 ? KIND_LISTEN : value < 5 ? KIND_UDP : value < 15 ? KIND_TIME_WAIT : value < 20 ? KIND_CLOSING : KIND_ESTAB);
+        closingState[slot]  = (byte) random.nextInt(CLOSING_STATES.length);
+        pid[slot]           = 1000 + random.nextInt(processCount);
+        fd[slot]            = 3 + random.nextInt(1000);
+        localHost[slot]     = random.nextInt(LOCAL_HOSTS);
+        localPort[slot]     = kind[slot] == KIND_LISTEN || kind[slot] == KIND_UDP ? 1 + random.nextInt(10000) : 1024 + random.nextInt(64000);
+        peerHost[slot]      = random.nextInt(8) == 0 ? 0 : 1 + random.nextInt(0xffffff);
+        peerPort[slot]      = 1 + random.nextInt(65535);
+        inode[slot]         = nextInode++;
+        bytesSent[slot]     = random.nextInt(1 << 20);
+        bytesReceived[slot] = random.nextInt(1 << 20);
+        segsOut[slot]       = 1 + bytesSent[slot] / 1448;
+        segsIn[slot]        = 1 + bytesReceived[slot] / 1448;
+    }
+
+    private void close(int slot) {
+        if (closedCount == closed.length) {
+            if (closed.length >= sessions * 4) {
+                /* 이벤트를 읽지 않는 경우 오래된 이벤트부터 버림 */
+                System.arraycopy(closed, closedCount / 2, closed, 0, closedCount - closedCount / 2);
+                closedCount -= closedCount / 2;
+            } else {
+                String[] grown = new String[closed.length * 2];
+                System.arraycopy(closed, 0, grown, 0, closedCount);
+                closed = grown;
+            }
+        }
+        closed[closedCount++] = this.format(slot, true);
+    }
+
+    private String format(int slot,
+                          boolean netid) {
+        StringBuilder builder = line;
+        builder.setLength(0);
+        if (netid) {
+            builder.append(kind[slot] == KIND_UDP ? "udp   " : "tcp   ");
+        }
+        switch (kind[slot]) {
+            case KIND_LISTEN:
+                builder.append("LISTEN 0      4096   ");
+                this.appendLocal(builder, slot);
+                builder.append(localHost[slot] == 0 ? "   [::]:*" : "   0.0.0.0:*");
+                this.appendUsers(builder, slot);
+                builder.append(" ino:")
+                       .append(inode[slot])
+                       .append(" sk:")
+                       .append(Long.toHexString(inode[slot]))
+                       .append(" cubic rto:1000 mss:536 cwnd:10");
+                break;
+            case KIND_UDP:
+                builder.append("UNCONN 0      0      ");
+                this.appendLocal(builder, slot);
+                builder.append("   0.0.0.0:*");
+                this.appendUsers(builder, slot);
+                builder.append(" ino:")
+                       .append(inode[slot]);
+                break;
+            case KIND_TIME_WAIT:
+                builder.append("TIME-WAIT 0      0      ");
+                this.appendLocal(builder, slot);
+                builder.append("   ");
+                this.appendPeer(builder, slot);
+                break;
+            case KIND_CLOSING:
+                builder.append(CLOSING_STATES[closingState[slot]])
+                       .append(" 0      0      ");
+                this.appendLocal(builder, slot);
+                builder.append("   ");
+                this.appendPeer(builder, slot);
+                this.appendUsers(builder, slot);
+                builder.append(" ino:")
+                       .append(inode[slot])
+                       .append(" cubic rto:200 rtt:1/0.5 mss:1448 cwnd:10 bytes_sent:")
+                       .append(bytesSent[slot])
+                       .append(" segs_out:")
+                       .append(segsOut[slot])
+                       .append(" segs_in:")
+                       .append(segsIn[slot]);
+                break;
+            default:
+                builder.append("ESTAB 0      0      ");
+                this.appendLocal(builder, slot);
+                builder.append("   ");
+                this.appendPeer(builder, slot);
+                this.appendUsers(builder, slot);
+                builder.append(" ino:")
+                       .append(inode[slot])
+                       .append(" sk:")
+                       .append(Long.toHexString(inode[slot]))
+                       .append(" cubic wscale:7,7 rto:204 rtt:0.")
+                       .append(100 + slot % 900)
+                       .append("/0.05 ato:40 mss:1448 pmtu:1500 rcvmss:536 advmss:1448 cwnd:")
+                       .append(10 + slot % 20)
+                       .append(" ssthresh:20 bytes_sent:")
+                       .append(bytesSent[slot])
+                       .append(" bytes_acked:")
+                       .append(bytesSent[slot])
+                       .append(" bytes_received:")
+                       .append(bytesReceived[slot])
+                       .append(" segs_out:")
+                       .append(segsOut[slot])
+                       .append(" segs_in:")
+                       .append(segsIn[slot])
+                       .append(" send 231.7Mbps lastsnd:4 lastrcv:4 lastack:4 pacing_rate 463.4Mbps delivery_rate ")
+                       .append(1 + slot % 900)
+                       .append(".5Mbps delivered:6 busy:20ms retrans:0/")
+                       .append(slot % 7)
+                       .append(" rcv_space:14480 rcv_ssthresh:64088 minrtt:0.1");
+                break;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * local host 0 은 v6 (2001:db8::1), 나머지는 10.0.0.N
+     */
+    private void appendLocal(StringBuilder builder,
+                             int slot) {
+        if (localHost[slot] == 0) {
+            builder.append("[2001:db8::1]:");
+        } else {
+            builder.append("10.0.0.")
+                   .append(localHost[slot])
+                   .append(':');
+        }
+        builder.append(localPort[slot]);
+    }
+
+    private void appendPeer(StringBuilder builder,
+                            int slot) {
+        int host = peerHost[slot];
+        if (host == 0) {
+            builder.append("[2001:db8:1::")
+                   .append(Integer.toHexString(peerPort[slot]))
+                   .append("]:");
+        } else if (localHost[slot] == 0) {
+            builder.append("[::ffff:10.")
+                   .append(host >>> 16)
+                   .append('.')
+                   .append((host >>> 8) & 0xff)
+                   .append('.')
+                   .append(host & 0xff)
+                   .append("]:");
+        } else {
+            builder.append("10.")
+                   .append(host >>> 16)
+                   .append('.')
+                   .append((host >>> 8) & 0xff)
+                   .append('.')
+                   .append(host & 0xff)
+                   .append(':');
+        }
+        builder.append(peerPort[slot]);
+    }
+
+    private void appendUsers(StringBuilder builder,
+                             int slot) {
+        builder.append(" users:((\"svc-")
+               .append(pid[slot])
+               .append("\",pid=")
+               .append(pid[slot])
+               .append(",fd=")
+               .append(fd[slot])
+               .append("))");
+    }
+}
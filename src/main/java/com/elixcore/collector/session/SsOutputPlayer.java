@@ -0,0 +1,21 @@
+package com.elixcore.collector.session;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * `ss` 를 실행하는 대신 출력 줄을 제공하는 대상. (기록 재생 {@link SsReplay}, 합성 출력 {@link SsOutputGenerator})
+ * <p>
+ * {@link SsSessionSource}, {@link SessionRealtime} 에 설정하면 root 권한이나 실제 호스트 없이 수집 pipeline 을 그대로 돌릴 수 있다.
+ */
+public interface SsOutputPlayer {
+
+    /**
+     * command 한 번 실행분의 출력을 줄 단위로 호출 스레드에 전달한다.
+     *
+     * @param command     `ss` 명령 (filter 인자 제외, ex. {@link SsSessionSource#SESSION_COMMAND})
+     * @param lineHandler false 를 반환하면 나머지 출력은 버린다
+     */
+    void play(String command,
+              Predicate<String> lineHandler) throws IOException;
+}
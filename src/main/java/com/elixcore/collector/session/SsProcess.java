@@ -0,0 +1,280 @@
+package com.elixcore.collector.session;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * `ss` 실행과 출력 읽기.
+ * <p>
+ * shell 을 거치지 않고 `ss` 를 직접 exec 하며(명령 문자열은 공백으로 나눈 argv), 출력은 재사용하는 읽기 buffer 로 줄 단위로 나눈다.
+ * 실행 시간이 timeout 을 넘으면 프로세스를 강제 종료하고 {@link IOException} 을 던진다.
+ * stderr 는 stdout 과 섞지 않고, 출력을 끝까지 읽었는데 종료 코드가 0 이 아니면 stderr 첫 줄과 함께 {@link IOException} 을 던진다.
+ * <p>
+ * 읽기 buffer 는 heap byte[] 를 pool 에서 빌려 쓴다. (Process 의 stdout 은 InputStream 이라 direct buffer 는 복사만 늘어남)
+ */
+final class SsProcess {
+    private static final int                      READ_BUFFER_SIZE = 64 * 1024;
+    private static final int                      MAX_POOLED       = 4;
+    private static final int                      MAX_ERROR_LENGTH = 512;
+    private static final Queue<byte[]>            BUFFER_POOL      = new ConcurrentLinkedQueue<>();
+    private static final ScheduledExecutorService WATCHDOG         = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ss-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SsProcess() {
+    }
+
+    /**
+     * "ss -tuaeiOpnH" + 추가 인자 -> argv
+     */
+    static List<String> argv(String command,
+                             List<String> arguments) {
+        List<String> argv = new ArrayList<>(Arrays.asList(command.trim()
+                                                                 .split("\\s+")));
+        argv.addAll(arguments);
+        return argv;
+    }
+
+    /**
+     * program 이 경로(/ 포함)면 그 파일, 아니면 PATH 에서 실행 가능한 파일을 찾는다.
+     */
+    static boolean isExecutable(String program) {
+        if (program.indexOf('/') >= 0) {
+            return Files.isExecutable(Paths.get(program));
+        }
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return false;
+        }
+        for (String directory : path.split(File.pathSeparator)) {
+            if (directory.isEmpty()) {
+                continue;
+            }
+            Path candidate = Paths.get(directory, program);
+            if (Files.isRegularFile(candidate) && Files.isExecutable(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Process start(List<String> argv) throws IOException {
+        return new ProcessBuilder(argv).start();
+    }
+
+    /**
+     * 실행해서 출력을 호출 스레드에서 읽고 종료를 기다린다. reader 가 먼저 반환하면 남은 출력은 버리고 종료시킨다.
+     *
+     * @param timeoutMillis 0 이하면 제한 없음
+     */
+    static void run(List<String> argv,
+                    long timeoutMillis,
+                    OutputReader reader) throws IOException {
+        Process process = start(argv);
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> watchdog = timeoutMillis > 0 ? WATCHDOG.schedule(() -> {
+            timedOut.set(true);
+            process.destroyForcibly();
+        }, timeoutMillis, TimeUnit.MILLISECONDS) : null;
+        EndTrackingInputStream output = new EndTrackingInputStream(process.getInputStream());
+        try {
+            reader.read(output);
+            if (output.isEnded()) {
+                awaitExit(process, argv);
+            } else {
+                /* reader 가 먼저 반환 : 남은 출력은 버리고 종료 코드는 보지 않음 */
+                process.destroy();
+                process.waitFor();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new IOException(e);
+        } catch (IOException e) {
+            if (timedOut.get()) {
+                throw new IOException(String.format("%s timeout (%d ms)", argv.get(0), timeoutMillis), e);
+            }
+            throw e;
+        } finally {
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+            process.destroy();
+        }
+        if (timedOut.get()) {
+            /* 읽기 도중 종료되어 출력이 잘렸을 수 있음 */
+            throw new IOException(String.format("%s timeout (%d ms)", argv.get(0), timeoutMillis));
+        }
+    }
+
+    /**
+     * stdout 을 끝까지 읽은 뒤 종료를 기다린다. 종료 코드가 0 이 아니면 stderr 첫 줄과 함께 {@link IOException} 을 던진다.
+     */
+    static void awaitExit(Process process,
+                          List<String> argv) throws IOException {
+        String error = firstLine(process.getErrorStream());
+        int exitValue;
+        try {
+            exitValue = process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new IOException(e);
+        }
+        if (exitValue != 0) {
+            throw new IOException(String.format("%s exit %d : %s", argv.get(0), exitValue, error.isEmpty() ? "(no stderr)" : error));
+        }
+    }
+
+    /**
+     * 첫 줄(최대 {@link #MAX_ERROR_LENGTH} byte)만 남기고 끝까지 읽어 버린다.
+     */
+    private static String firstLine(InputStream inputStream) throws IOException {
+        byte[] line = new byte[MAX_ERROR_LENGTH];
+        int length = 0;
+        boolean lineEnded = false;
+        byte[] buffer = new byte[1024];
+        try (InputStream input = inputStream) {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                for (int i = 0; i < read && !lineEnded; i++) {
+                    if (buffer[i] == '\n') {
+                        lineEnded = true;
+                    } else if (length < line.length) {
+                        line[length++] = buffer[i];
+                    }
+                }
+            }
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * 줄 단위로 나눠 전달한다. ASCII 줄은 ISO-8859-1(1 byte/char) 로, 그 외(comm 의 UTF-8 등)는 UTF-8 로 변환한다.
+     *
+     * @param lineHandler false 를 반환하면 읽기를 멈춘다
+     * @return 전달한 줄 수
+     */
+    static long readLines(InputStream inputStream,
+                          Predicate<String> lineHandler) throws IOException {
+        byte[] buffer = BUFFER_POOL.poll();
+        if (buffer == null) {
+            buffer = new byte[READ_BUFFER_SIZE];
+        }
+        long lines = 0;
+        try {
+            int start = 0;
+            int limit = 0;
+            boolean ascii = true;
+            int scan = 0;
+            while (true) {
+                int read = inputStream.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    break;
+                }
+                limit += read;
+                for (; scan < limit; scan++) {
+                    byte b = buffer[scan];
+                    if (b == '\n') {
+                        lines++;
+                        if (!lineHandler.test(toLine(buffer, start, scan, ascii))) {
+                            return lines;
+                        }
+                        start = scan + 1;
+                        ascii = true;
+                    } else if (b < 0) {
+                        ascii = false;
+                    }
+                }
+                if (start > 0) {
+                    /* 남은 일부 줄을 앞으로 */
+                    System.arraycopy(buffer, start, buffer, 0, limit - start);
+                    limit -= start;
+                    scan -= start;
+                    start = 0;
+                } else if (limit == buffer.length) {
+                    /* buffer 보다 긴 줄 */
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+            if (limit > start) {
+                lines++;
+                lineHandler.test(toLine(buffer, start, limit, ascii));
+            }
+        } finally {
+            if (buffer.length == READ_BUFFER_SIZE && BUFFER_POOL.size() < MAX_POOLED) {
+                BUFFER_POOL.offer(buffer);
+            }
+        }
+        return lines;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String toLine(byte[] buffer,
+                                 int start,
+                                 int end,
+                                 boolean ascii) {
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        if (ascii) {
+            /* hibyte 0 : Latin-1 compact string 을 복사 한 번으로 생성 */
+            return new String(buffer, 0, start, end - start);
+        }
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    interface OutputReader {
+        void read(InputStream inputStream) throws IOException;
+    }
+
+    /**
+     * stdout 을 끝(EOF)까지 읽었는지 기록한다.
+     */
+    private static class EndTrackingInputStream extends FilterInputStream {
+        private boolean ended;
+
+        private EndTrackingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            ended |= read < 0;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer,
+                        int offset,
+                        int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            ended |= read < 0;
+            return read;
+        }
+
+        private boolean isEnded() {
+            return ended;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.elixcore.collector.session;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * `ss` 출력 기록. ({@link SsSessionSource#setRecorder(SsRecorder)}, {@link SessionRealtime#setRecorder(SsRecorder)})
+ * <p>
+ * `ss` 한 번 실행분(run)을 줄 단위 시각과 함께 chunk 로 나눠 deflate 압축해 쓴다.
+ * 여러 run 이 동시에 기록되면 chunk 가 섞이며, run id 로 구분한다. 파일은 {@link SsReplay} 로 재생한다.
+ * <pre>
+ * header : int MAGIC, long 기록 시작 시각 (epoch ms)
+ * chunk  : int run id, UTF command, byte flags (1 : run 의 마지막 chunk), long offset (기록 시작 기준 ns),
+ *          int 줄 수, int 압축 길이, deflate(줄마다 varint 시각 (chunk offset 기준 us), varint 길이, UTF-8)
+ * </pre>
+ * 이벤트(`ss -E`)처럼 끝나지 않는 run 은 chunk 크기 또는 {@link #FLUSH_NANOS} 를 넘긴 뒤 다음 줄에서 chunk 를 쓰고,
+ * 기록을 닫을 때 진행 중인 run 은 마지막 chunk 를 쓰고 끝낸다.
+ */
+@Slf4j
+public class SsRecorder implements Closeable {
+    static final         int              MAGIC       = 0x53535231; /* SSR1 */
+    static final         int              FLAG_LAST   = 1;
+    private static final int              CHUNK_BYTES = 1 << 20;
+    private static final long             FLUSH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private final        DataOutputStream output;
+    private final        int              chunkBytes;
+    private final        long             startNanos  = System.nanoTime();
+    private final        AtomicInteger    runId       = new AtomicInteger();
+    private final        Set<Run>         openRuns    = ConcurrentHashMap.newKeySet();
+    private volatile     boolean          closed;
+
+    public SsRecorder(Path path) throws IOException {
+        this(path, CHUNK_BYTES);
+    }
+
+    /**
+     * @param chunkBytes run 을 chunk 로 나누는 압축 전 크기
+     */
+    SsRecorder(Path path,
+               int chunkBytes) throws IOException {
+        this.output     = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+        this.chunkBytes = chunkBytes;
+        output.writeInt(MAGIC);
+        output.writeLong(System.currentTimeMillis());
+    }
+
+    /**
+     * run 기록 시작. 반환된 {@link Run} 은 한 스레드에서 사용하고 끝나면 닫는다.
+     */
+    public Run begin(String command) {
+        Run run = new Run(runId.getAndIncrement(), command);
+        openRuns.add(run);
+        return run;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Run run : openRuns) {
+            run.close();
+        }
+        synchronized (this) {
+            if (!closed) {
+                closed = true;
+                output.close();
+            }
+        }
+    }
+
+    private synchronized void write(Run run,
+                                    boolean last) throws IOException {
+        if (closed) {
+            return;
+        }
+        output.writeInt(run.id);
+        output.writeUTF(run.command);
+        output.writeByte(last ? FLAG_LAST : 0);
+        output.writeLong(run.chunkOffset);
+        output.writeInt(run.lineCount);
+        output.writeInt(run.compressedLength);
+        output.write(run.compressed, 0, run.compressedLength);
+        if (last) {
+            output.flush();
+        }
+    }
+
+    /**
+     * `ss` 한 번 실행분
+     */
+    public final class Run implements Closeable {
+        private final int                   id;
+        private final String                command;
+        private final ByteArrayOutputStream buffer     = new ByteArrayOutputStream(64 * 1024);
+        private final Deflater              deflater   = new Deflater(Deflater.BEST_SPEED);
+        private       byte[]                compressed = new byte[64 * 1024];
+        private       int                   compressedLength;
+        private       long                  chunkOffset;
+        private       int                   lineCount;
+        private       boolean               failed;
+
+        private Run(int id,
+                    String command) {
+            this.id          = id;
+            this.command     = command;
+            this.chunkOffset = System.nanoTime() - startNanos;
+        }
+
+        public synchronized void line(String line) {
+            if (failed) {
+                return;
+            }
+            long offset = System.nanoTime() - startNanos;
+            if (buffer.size() >= chunkBytes || (lineCount > 0 && offset - chunkOffset >= FLUSH_NANOS)) {
+                this.flush(false);
+                this.chunkOffset = offset;
+            }
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            writeVarint(buffer, TimeUnit.NANOSECONDS.toMicros(offset - chunkOffset));
+            writeVarint(buffer, bytes.length);
+            buffer.write(bytes, 0, bytes.length);
+            lineCount++;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!openRuns.remove(this)) {
+                return;
+            }
+            this.flush(true);
+            deflater.end();
+            failed = true; /* 닫은 뒤의 줄은 무시 */
+        }
+
+        private void flush(boolean last) {
+            if (failed) {
+                return;
+            }
+            deflater.reset();
+            deflater.setInput(buffer.toByteArray());
+            deflater.finish();
+            compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == compressed.length) {
+                    byte[] grown = new byte[compressed.length * 2];
+                    System.arraycopy(compressed, 0, grown, 0, compressedLength);
+                    compressed = grown;
+                }
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+            try {
+                SsRecorder.this.write(this, last);
+            } catch (IOException e) {
+                /* 기록 실패가 수집을 막지 않도록 이 run 의 기록만 중단 */
+                log.warn("ss record fail : {}", e.getMessage());
+                failed = true;
+            }
+            buffer.reset();
+            lineCount = 0;
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream buffer,
+                                    long value) {
+        while ((value & ~0x7fL) != 0) {
+            buffer.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.write((int) value);
+    }
+}
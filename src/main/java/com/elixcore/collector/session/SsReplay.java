@@ -0,0 +1,303 @@
+package com.elixcore.collector.session;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * {@link SsRecorder} 기록 재생.
+ * <p>
+ * command 별로 기록된 run 을 순서대로 하나씩 재생한다. (호출 한 번에 run 하나)
+ * speed 가 0 보다 크면 command 별 첫 재생 시점을 기준으로 기록된 줄 시각에 맞춰(speed 배속) 전달하고,
+ * 0 이하이면 대기 없이 전달한다.
+ * 같은 command 의 run 이 동시에 기록되어 chunk 가 겹친 경우, 먼저 시작한 run 과 겹친 다른 run 은 건너뛸 수 있다.
+ * <p>
+ * 기록/재생으로 수집 주기를 반복하는 도구는 jmh source set 의 SsReplayMain 이다.
+ */
+@Slf4j
+public class SsReplay implements SsOutputPlayer, Closeable {
+    private final    Path                path;
+    private final    double              speed;
+    private final    boolean             loop;
+    private final    Map<String, Cursor> cursorMap = new HashMap<>();
+    private volatile boolean             closed;
+
+    /**
+     * @param speed 1 : 기록 속도, 0 이하 : 대기 없이
+     * @param loop  true 이면 마지막 run 다음에 처음부터 다시 재생
+     */
+    public SsReplay(Path path,
+                    double speed,
+                    boolean loop) throws IOException {
+        this.path  = path;
+        this.speed = speed;
+        this.loop  = loop;
+        new ChunkReader(path).close();
+    }
+
+    /**
+     * @throws EOFException 재생할 run 이 남아 있지 않은 경우 (loop 가 아닐 때)
+     */
+    @Override
+    public void play(String command,
+                     Predicate<String> lineHandler) throws IOException {
+        Cursor cursor = this.cursor(command);
+        synchronized (cursor) {
+            cursor.play(lineHandler);
+        }
+    }
+
+    /**
+     * command 의 재생할 run 이 남아 있는지
+     */
+    public boolean hasNext(String command) throws IOException {
+        Cursor cursor = this.cursor(command);
+        synchronized (cursor) {
+            return cursor.peek() != null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        synchronized (cursorMap) {
+            for (Cursor cursor : cursorMap.values()) {
+                cursor.reader.close();
+            }
+            cursorMap.clear();
+        }
+    }
+
+    private Cursor cursor(String command) throws IOException {
+        synchronized (cursorMap) {
+            if (closed) {
+                throw new IOException("replay closed");
+            }
+            Cursor cursor = cursorMap.get(command);
+            if (cursor == null) {
+                cursor = new Cursor(command);
+                cursorMap.put(command, cursor);
+            }
+            return cursor;
+        }
+    }
+
+    /**
+     * command 하나의 재생 위치와 시각 기준
+     */
+    private final class Cursor {
+        private final String      command;
+        private       ChunkReader reader;
+        private       Chunk       pending; /* 다음 run 의 첫 chunk */
+        private       int         lastRunId = -1;
+        private       long        baseNanos = -1;
+        private       long        originOffset;
+
+        private Cursor(String command) throws IOException {
+            this.command = command;
+            this.reader  = new ChunkReader(path);
+        }
+
+        private Chunk peek() throws IOException {
+            if (pending == null) {
+                pending = reader.next(command, lastRunId, false);
+            }
+            if (pending == null && loop && lastRunId >= 0) {
+                reader.close();
+                reader    = new ChunkReader(path);
+                lastRunId = -1;
+                baseNanos = -1;
+                pending   = reader.next(command, lastRunId, false);
+            }
+            return pending;
+        }
+
+        private void play(Predicate<String> lineHandler) throws IOException {
+            Chunk chunk = this.peek();
+            if (chunk == null) {
+                throw new EOFException("no more '" + command + "' run in " + path);
+            }
+            pending   = null;
+            lastRunId = chunk.runId;
+            boolean stopped = false;
+            while (true) {
+                if (!stopped) {
+                    stopped = !this.emit(chunk, lineHandler);
+                }
+                if (chunk.last) {
+                    return;
+                }
+                chunk = reader.next(command, chunk.runId, true);
+                if (chunk == null) {
+                    /* 기록 중 종료되어 마지막 chunk 가 없는 run */
+                    return;
+                }
+            }
+        }
+
+        private boolean emit(Chunk chunk,
+                             Predicate<String> lineHandler) throws IOException {
+            byte[] raw = chunk.inflate();
+            int position = 0;
+            for (int i = 0; i < chunk.lineCount; i++) {
+                long micros = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = raw[position++];
+                    micros |= (long) (b & 0x7f) << shift;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+                int length = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = raw[position++];
+                    length |= (b & 0x7f) << shift;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+                String line = new String(raw, position, length, StandardCharsets.UTF_8);
+                position += length;
+                this.await(chunk.offset + TimeUnit.MICROSECONDS.toNanos(micros));
+                if (!lineHandler.test(line)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void await(long offset) {
+            if (speed <= 0) {
+                return;
+            }
+            if (baseNanos < 0) {
+                baseNanos    = System.nanoTime();
+                originOffset = offset;
+            }
+            long target = baseNanos + (long) ((offset - originOffset) / speed);
+            long remain;
+            while ((remain = target - System.nanoTime()) > 0 && !closed) {
+                LockSupport.parkNanos(remain);
+            }
+        }
+    }
+
+    private static final class Chunk {
+        private int     runId;
+        private boolean last;
+        private long    offset;
+        private int     lineCount;
+        private byte[]  compressed;
+
+        private byte[] inflate() throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                byte[] raw = new byte[Math.max(1024, compressed.length * 4)];
+                int length = 0;
+                while (!inflater.finished()) {
+                    if (length == raw.length) {
+                        byte[] grown = new byte[raw.length * 2];
+                        System.arraycopy(raw, 0, grown, 0, length);
+                        raw = grown;
+                    }
+                    int inflated = inflater.inflate(raw, length, raw.length - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("truncated ss record chunk");
+                    }
+                    length += inflated;
+                }
+                return raw;
+            } catch (DataFormatException e) {
+                throw new IOException("invalid ss record chunk : " + e.getMessage(), e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    private static final class ChunkReader implements Closeable {
+        private final DataInputStream input;
+
+        private ChunkReader(Path path) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+            try {
+                if (input.readInt() != SsRecorder.MAGIC) {
+                    throw new IOException("not a ss record : " + path);
+                }
+                input.readLong();
+            } catch (IOException e) {
+                input.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @param exact true 이면 runId 의 chunk, false 이면 runId 보다 뒤에 시작한 run 의 chunk
+         * @return 파일 끝이면 null
+         */
+        private Chunk next(String command,
+                           int runId,
+                           boolean exact) throws IOException {
+            while (true) {
+                int id;
+                try {
+                    id = input.readInt();
+                } catch (EOFException e) {
+                    return null;
+                }
+                try {
+                    String chunkCommand = input.readUTF();
+                    int flags = input.readByte();
+                    long offset = input.readLong();
+                    int lineCount = input.readInt();
+                    int length = input.readInt();
+                    if (!chunkCommand.equals(command) || (exact ? id != runId : id <= runId)) {
+                        skip(length);
+                        continue;
+                    }
+                    Chunk chunk = new Chunk();
+                    chunk.runId      = id;
+                    chunk.last       = (flags & SsRecorder.FLAG_LAST) != 0;
+                    chunk.offset     = offset;
+                    chunk.lineCount  = lineCount;
+                    chunk.compressed = new byte[length];
+                    input.readFully(chunk.compressed);
+                    return chunk;
+                } catch (EOFException e) {
+                    log.warn("ss record truncated");
+                    return null;
+                }
+            }
+        }
+
+        private void skip(int length) throws IOException {
+            while (length > 0) {
+                int skipped = input.skipBytes(length);
+                if (skipped <= 0) {
+                    throw new EOFException();
+                }
+                length -= skipped;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.elixcore.collector.session;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * `ss` 명령 출력을 파싱하는 세션 소스. (netlink 를 사용할 수 없는 경우의 fallback)
+ * <p>
+ * {@link #collect(Consumer)} 는 `ss` 가 출력하는 동안 줄 묶음(batch) 단위로 병렬 파싱하고,
+ * 결과는 출력 순서대로 호출 스레드에서 전달한다.
+ * 처리 중인 batch 수를 제한해 메모리를 묶어두며, 한도에 도달하면 읽기를 멈춰 `ss` 의 pipe 쓰기가 대기하게 된다.
+ * <p>
+ * `ss` 는 shell 없이 직접 실행하고({@link SsProcess}), timeout 을 넘기면 강제 종료한다.
+ * <p>
+ * {@link #setRecorder(SsRecorder)} 로 실행 출력을 기록하고, {@link #setPlayer(SsOutputPlayer)} 로 `ss` 대신 기록/합성 출력을 읽을 수 있다.
+ */
+@Slf4j
+public class SsSessionSource implements SessionSource {
+    /* -e : socket inode (ino:) */
+    public static final  String TCP_COMMAND     = "ss -aeiOpntH";
+    public static final  String UDP_COMMAND     = "ss -aeiOpnuH";
+    /* Netid 컬럼 포함 */
+    public static final  String SESSION_COMMAND = "ss -tuaeiOpnH";
+    private static final int    BATCH_SIZE      = 1024;
+    private static final long   DEFAULT_TIMEOUT = 30_000;
+
+    private final    int                     maxInFlight     = Math.max(2, Runtime.getRuntime()
+                                                                                  .availableProcessors() * 2);
+    private final    String                  command;
+    private final    int                     protocol;
+    private volatile SessionCollectorMetrics metrics;
+    private volatile List<String>            filterArguments = Collections.emptyList();
+    private volatile int                     maxLines        = Integer.MAX_VALUE; /* readLines 한도 */
+    private volatile long                    timeoutMillis   = DEFAULT_TIMEOUT;
+    private volatile SsRecorder              recorder;
+    private volatile SsOutputPlayer          player; /* null 이 아니면 `ss` 를 실행하지 않음 */
+
+    public SsSessionSource() {
+        this(SESSION_COMMAND, SessionCollectedData.PROTOCOL_TCP);
+    }
+
+    public SsSessionSource(String command,
+                           int protocol) {
+        this.command  = command;
+        this.protocol = protocol;
+    }
+
+    public Queue<String> readLines() {
+        return this.readLines(null);
+    }
+
+    /**
+     * Netid 컬럼이 있는 명령({@link #SESSION_COMMAND})을 한 번 실행해 TCP/UDP 를 함께 읽는다.
+     * TCP 줄은 Netid 를 뗀 `ss -t` 형식으로 반환하고, UDP 줄은 udpLineConsumer 로 넘긴다.
+     *
+     * @param udpLineConsumer null 이면 모든 줄을 그대로 반환
+     */
+    public Queue<String> readLines(Consumer<String> udpLineConsumer) {
+        Queue<String> lineQ = new ConcurrentLinkedQueue<>();
+        int limit = maxLines;
+        int[] lines = {0};
+        try {
+            this.readOutput(line -> {
+                if (udpLineConsumer != null) {
+                    int netidEnd = netidEnd(line);
+                    if (netidEnd > 0 && line.startsWith("udp")) {
+                        udpLineConsumer.accept(line);
+                        return true;
+                    }
+                    line = line.substring(netidEnd);
+                }
+                if (++lines[0] > limit) {
+                    log.warn("SS output exceeds {} lines, truncated", limit);
+                    return false;
+                }
+                lineQ.add(line);
+                return true;
+            });
+        } catch (Exception e) {
+            log.error("SS Command Fail : {}", e.getMessage());
+        }
+        return lineQ;
+    }
+
+    /**
+     * `ss` 출력을 줄 단위로 호출 스레드에 전달한다.
+     *
+     * @param lineHandler false 를 반환하면 나머지 출력은 버리고 `ss` 를 종료한다
+     */
+    public void readOutput(Predicate<String> lineHandler) throws IOException {
+        SsOutputPlayer outputPlayer = player;
+        if (outputPlayer != null) {
+            outputPlayer.play(command, lineHandler);
+            return;
+        }
+        SsProcess.run(this.argv(), timeoutMillis, inputStream -> this.record(inputStream, lineHandler));
+    }
+
+    /**
+     * player 가 있거나 `ss` 를 실행할 수 있으면 true
+     */
+    @Override
+    public boolean isAvailable() {
+        if (player != null) {
+            return true;
+        }
+        List<String> argv = SsProcess.argv(command, Collections.emptyList());
+        return !argv.isEmpty() && SsProcess.isExecutable(argv.get(0));
+    }
+
+    @Override
+    public void collect(Consumer<SessionCollectedData> consumer) throws IOException {
+        SsOutputPlayer outputPlayer = player;
+        if (outputPlayer != null) {
+            this.parse(lineHandler -> {
+                long[] lines = {0};
+                outputPlayer.play(command, line -> {
+                    lines[0]++;
+                    return lineHandler.test(line);
+                });
+                return lines[0];
+            }, consumer);
+            return;
+        }
+        long execStart = System.nanoTime();
+        SsProcess.run(this.argv(), timeoutMillis, inputStream -> {
+            if (metrics != null) {
+                metrics.record(SessionCollectorMetrics.Stage.EXEC, System.nanoTime() - execStart);
+            }
+            try (InputStream input = inputStream) {
+                this.parse(lineHandler -> this.record(input, lineHandler), consumer);
+            }
+        });
+    }
+
+    /**
+     * `ss` 출력 형식의 stream 을 파싱한다. (저장해 둔 출력 재생, benchmark 등)
+     */
+    public void collect(InputStream inputStream,
+                        Consumer<SessionCollectedData> consumer) throws IOException {
+        try (InputStream input = inputStream) {
+            this.parse(lineHandler -> SsProcess.readLines(input, lineHandler), consumer);
+        }
+    }
+
+    /**
+     * recorder 가 있으면 읽은 줄을 함께 기록한다.
+     */
+    private long record(InputStream input,
+                        Predicate<String> lineHandler) throws IOException {
+        SsRecorder ssRecorder = recorder;
+        if (ssRecorder == null) {
+            return SsProcess.readLines(input, lineHandler);
+        }
+        try (SsRecorder.Run run = ssRecorder.begin(command)) {
+            return SsProcess.readLines(input, line -> {
+                run.line(line);
+                return lineHandler.test(line);
+            });
+        }
+    }
+
+    private void parse(LineReader lineReader,
+                       Consumer<SessionCollectedData> consumer) throws IOException {
+        Deque<ForkJoinTask<SessionCollectedData[]>> inFlight = new ArrayDeque<>();
+        BatchStat batchStat = new BatchStat();
+        long readStart = System.nanoTime();
+        long lines = 0;
+        try {
+            String[][] batch = {new String[BATCH_SIZE]};
+            int[] count = {0};
+            lines = lineReader.read(line -> {
+                batch[0][count[0]++] = line;
+                if (count[0] == BATCH_SIZE) {
+                    this.submit(inFlight, batch[0], count[0], batchStat, consumer);
+                    batch[0] = new String[BATCH_SIZE];
+                    count[0] = 0;
+                }
+                return true;
+            });
+            if (count[0] > 0) {
+                this.submit(inFlight, batch[0], count[0], batchStat, consumer);
+            }
+            while (!inFlight.isEmpty()) {
+                deliver(inFlight.poll()
+                                .join(), consumer);
+            }
+        } finally {
+            inFlight.forEach(task -> task.cancel(false));
+            SessionCollectorMetrics collectorMetrics = metrics;
+            if (collectorMetrics != null) {
+                collectorMetrics.record(SessionCollectorMetrics.Stage.READ, System.nanoTime() - readStart);
+                collectorMetrics.record(SessionCollectorMetrics.Stage.PARSE, batchStat.parseNanos.sum());
+                collectorMetrics.addRecordsRead(lines);
+                collectorMetrics.addAddressFailure(batchStat.addressFailure.sum());
+            }
+        }
+    }
+
+    @Override
+    public void setMetrics(SessionCollectorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@link #readLines()} 가 보관하는 최대 줄 수. 넘으면 나머지 출력은 버리고 `ss` 를 종료한다.
+     * ({@link #collect(Consumer)} 는 처리 중인 batch 수로 메모리가 묶이므로 적용하지 않음)
+     */
+    public void setMaxLines(int maxLines) {
+        this.maxLines = Math.max(1, maxLines);
+    }
+
+    /**
+     * null 이 아니면 `ss` 실행 출력을 기록한다. (player 로 읽는 출력은 기록하지 않음)
+     */
+    public void setRecorder(SsRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * null 이 아니면 `ss` 를 실행하지 않고 player 의 출력을 읽는다. (filter 인자는 적용되지 않으며, 조건은 수집 측에서 다시 적용)
+     */
+    public void setPlayer(SsOutputPlayer player) {
+        this.player = player;
+    }
+
+    public SsOutputPlayer getPlayer() {
+        return player;
+    }
+
+    /**
+     * `ss` 실행 제한 시간. 넘으면 강제 종료하고 수집은 {@link IOException} 으로 실패한다. (0 이하면 제한 없음)
+     */
+    public void setTimeout(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 상태, port, 주소 조건을 `ss` filter 로 붙인다.
+     */
+    @Override
+    public void setFilter(SessionFilter filter) {
+        this.filterArguments = filter != null ? filter.toSsArguments() : Collections.emptyList();
+    }
+
+    private List<String> argv() {
+        return SsProcess.argv(command, filterArguments);
+    }
+
+    /**
+     * "tcp   ESTAB ..." 의 Netid 와 뒤 공백 끝. Netid 가 없으면 0
+     */
+    private static int netidEnd(String line) {
+        if (line.startsWith("tcp") || line.startsWith("udp")) {
+            int i = 3;
+            while (i < line.length() && line.charAt(i) == ' ') {
+                i++;
+            }
+            return i > 3 ? i : 0;
+        }
+        return 0;
+    }
+
+    private void submit(Deque<ForkJoinTask<SessionCollectedData[]>> inFlight,
+                        String[] batch,
+                        int count,
+                        BatchStat batchStat,
+                        Consumer<SessionCollectedData> consumer) {
+        inFlight.add(ForkJoinPool.commonPool()
+                                 .submit(() -> {
+                                     long parseStart = System.nanoTime();
+                                     int addressFailure = 0;
+                                     SessionCollectedData[] parsed = new SessionCollectedData[count];
+                                     for (int i = 0; i < count; i++) {
+                                         parsed[i] = SsLineParser.parse(batch[i], protocol);
+                                         if (parsed[i].getLocal() == null) {
+                                             addressFailure++;
+                                         }
+                                         if (parsed[i].getPeer() == null) {
+                                             addressFailure++;
+                                         }
+                                     }
+                                     batchStat.parseNanos.add(System.nanoTime() - parseStart);
+                                     batchStat.addressFailure.add(addressFailure);
+                                     return parsed;
+                                 }));
+        /* 끝난 batch 는 바로 전달, 한도에 도달하면 가장 오래된 batch 를 기다린다 */
+        while (!inFlight.isEmpty() && (inFlight.size() >= maxInFlight || inFlight.peek()
+                                                                                 .isDone())) {
+            deliver(inFlight.poll()
+                            .join(), consumer);
+        }
+    }
+
+    /**
+     * 줄을 lineHandler 로 전달하고 읽은 줄 수를 반환
+     */
+    private interface LineReader {
+        long read(Predicate<String> lineHandler) throws IOException;
+    }
+
+    /**
+     * 한 번의 수집에서 worker 들이 누적하는 파싱 통계
+     */
+    private static class BatchStat {
+        private final LongAdder parseNanos     = new LongAdder();
+        private final LongAdder addressFailure = new LongAdder();
+    }
+
+    private static void deliver(SessionCollectedData[] parsed,
+                                Consumer<SessionCollectedData> consumer) {
+        for (SessionCollectedData sessionCollectedData : parsed) {
+            if (sessionCollectedData.getLocal() == null) {
+                /* ss 오류 메시지 등 세션이 아닌 줄 */
+                continue;
+            }
+            consumer.accept(sessionCollectedData);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.elixcore.collector.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link AddressTable} 의 공유, 표기 보존, packing 값 기준 표기 형식 확인
+ */
+class AddressTableTest {
+    private static final String[] SPELLINGS = {
+        "*", "0.0.0.0", "::", "0:0:0:0:0:0:0:0", "::1", "0:0:0:0:0:0:0:1", "::ffff:10.0.0.1", "::FFFF:10.0.0.1", "10.0.0.1",
+        "2001:db8::1", "2001:DB8:0:0:0:0:0:1", "fe80::1"
+    };
+
+    @Test
+    void sharesSameSpelling() {
+        String line = "  10.1.2.3:80  ";
+        PackedAddress address = AddressTable.intern(line, 2, 10);
+        assertEquals("10.1.2.3", address.text());
+        assertSame(address, AddressTable.intern("10.1.2.3", 0, 8));
+        assertTrue(address.textEquals(line, 2, 10));
+        assertFalse(address.textEquals(line, 2, 9));
+        assertEquals(SessionKey.pack("10.1.2.3", true), address.getHigh());
+        assertEquals(SessionKey.pack("10.1.2.3", false), address.getLow());
+        assertTrue(address.isV4Mapped());
+
+        PackedAddress value = AddressTable.intern(address.getHigh(), address.getLow());
+        assertSame(value, AddressTable.intern(address.getHigh(), address.getLow()));
+    }
+
+    /**
+     * 같은 값이라도 `ss` 표기가 다르면 다른 항목이며, 원문을 그대로 돌려준다. (packing 값 기준 표기로 바꾸지 않음)
+     */
+    @Test
+    void keepsOriginalSpelling() {
+        for (String spelling : SPELLINGS) {
+            PackedAddress address = AddressTable.intern(spelling, 0, spelling.length());
+            assertEquals(spelling, address.text());
+            assertEquals(spelling, address.toString());
+            PackedAddress value = AddressTable.intern(address.getHigh(), address.getLow());
+            assertEquals(value.getHigh(), address.getHigh());
+            assertEquals(value.getLow(), address.getLow());
+            assertEquals(spelling.equals(value.text()), address.equals(value), spelling);
+            assertEquals(value.hashCode(), address.hashCode());
+        }
+        PackedAddress any = AddressTable.intern("*", 0, 1);
+        PackedAddress zero = AddressTable.intern("::", 0, 2);
+        assertEquals(0, any.getHigh() | any.getLow());
+        assertNotEquals(any, zero);
+        assertEquals("*", any.text());
+        assertEquals("::", AddressTable.intern(0, 0)
+                                       .text());
+    }
+
+    /**
+     * netlink, /proc/net 의 packing 값은 IPv4/v4-mapped 는 a.b.c.d, 나머지는 RFC 5952 로 표기한다.
+     */
+    @Test
+    void formatsPackedValue() {
+        assertEquals("10.0.0.1", format("::ffff:10.0.0.1"));
+        assertEquals("255.255.255.255", format("255.255.255.255"));
+        assertEquals("::1", format("0:0:0:0:0:0:0:1"));
+        assertEquals("::", format("0:0:0:0:0:0:0:0"));
+        assertEquals("2001:db8::1", format("2001:DB8:0:0:0:0:0:1"));
+        /*같은 길이면 앞쪽 0 구간, 0 하나는 축약하지 않음*/
+        assertEquals("2001:db8::1:0:0:1", format("2001:db8:0:0:1:0:0:1"));
+        assertEquals("2001:0:0:1::1", format("2001:0:0:1:0:0:0:1"));
+        assertEquals("1:0:2:3:4:5:6:7", format("1:0:2:3:4:5:6:7"));
+        assertEquals("fe80::", format("fe80:0:0:0:0:0:0:0"));
+    }
+
+    /**
+     * slot 이 겹쳐 덮어쓰여도 항상 요청한 표기의 주소를 돌려준다.
+     */
+    @Test
+    void overwritesCollidingSlots() {
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < AddressTable.CAPACITY * 3; i++) {
+                String spelling = "10." + (i >> 16) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff);
+                PackedAddress address = AddressTable.intern(spelling, 0, spelling.length());
+                assertEquals(spelling, address.text());
+                PackedAddress value = AddressTable.intern(address.getHigh(), address.getLow());
+                assertEquals(address.getLow(), value.getLow());
+                assertEquals(spelling, value.text());
+            }
+        }
+    }
+
+    /**
+     * 여러 스레드가 같은 slot 을 덮어쓰며 공유해도 원문 표기(*, 0:0:0:0:0:0:0:1 등)는 packing 값 기준 표기로 바뀌지 않는다.
+     */
+    @Test
+    void sharedAcrossThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int offset = thread;
+                futures.add(executor.submit(() -> {
+                    for (int n = 0; n < 200_000; n++) {
+                        String spelling = SPELLINGS[(n + offset) % SPELLINGS.length];
+                        PackedAddress address = AddressTable.intern(spelling, 0, spelling.length());
+                        assertEquals(spelling, address.text());
+                        AddressTable.intern(address.getHigh(), address.getLow())
+                                    .text();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String format(String spelling) {
+        return AddressTable.intern(SessionKey.pack(spelling, true), SessionKey.pack(spelling, false))
+                           .text();
+    }
+}
@@ -0,0 +1,296 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link HeavyHitterTracker} 를 치우친(Zipf) 세션 흐름에 대해 정확한 counter 와 비교한다.
+ * (bytes - error <= 실제 <= bytes, total / capacity 를 넘는 key 는 반드시 추적)
+ */
+class HeavyHitterTrackerTest {
+    private static final long SECOND = 1_000_000_000L;
+    private static final int  KEYS   = 2_000;
+
+    @Test
+    void boundsAgainstExactCounter() {
+        HeavyHitterTracker tracker = new HeavyHitterTracker(64, Duration.ofMinutes(5));
+        Map<String, Double> exact = new HashMap<>();
+        Stream stream = new Stream(13, 1.2);
+        double total = 0;
+        for (int n = 0; n < 50_000; n++) {
+            SessionCollectedData session = stream.next();
+            tracker.add(session);
+            exact.merge(key(session), (double) (session.getRxByte() + session.getTxByte()), Double::sum);
+            total += session.getRxByte() + session.getTxByte();
+            if (n % 97 == 0) {
+                tracker.checkConsistency();
+            }
+        }
+        tracker.checkConsistency();
+        tracker.publish();
+        assertBounds(tracker, exact, total, 64, 0);
+    }
+
+    /**
+     * 주기마다 (불규칙한 간격) 감쇠해도 heap 순서와 추정 범위가 유지된다. 정확한 counter 도 같은 비율로 감쇠한다.
+     */
+    @Test
+    void decayKeepsHeapOrder() {
+        long window = 20 * SECOND;
+        HeavyHitterTracker tracker = new HeavyHitterTracker(48, Duration.ofNanos(window));
+        Map<String, Double> exact = new HashMap<>();
+        Stream stream = new Stream(17, 1.1);
+        Random random = new Random(17);
+        long now = 3 * SECOND;
+        double total = 0;
+        for (int cycle = 0; cycle < 60; cycle++) {
+            long elapsed = SECOND / 10 + (long) (random.nextDouble() * 10 * SECOND);
+            now += elapsed;
+            tracker.beginCycle(now);
+            if (cycle > 0) {
+                double decay = Math.exp(-(double) elapsed / window);
+                exact.replaceAll((key, bytes) -> bytes * decay);
+                total *= decay;
+            }
+            tracker.checkConsistency();
+            /*주기 중간에 key 분포가 바뀌어 오래된 상위 항목이 밀려난다*/
+            if (cycle == 30) {
+                stream = new Stream(19, 1.1);
+            }
+            for (int n = 0; n < 1_000; n++) {
+                SessionCollectedData session = stream.next();
+                tracker.add(session);
+                exact.merge(key(session), (double) (session.getRxByte() + session.getTxByte()), Double::sum);
+                total += session.getRxByte() + session.getTxByte();
+            }
+            tracker.checkConsistency();
+            tracker.publish();
+            assertBounds(tracker, exact, total, 48, 1e-9);
+        }
+    }
+
+    /**
+     * index 가 작아 probe 구간이 겹치고 테이블 끝을 넘어가는 상태에서 대체(backward shift 삭제)를 반복한다.
+     * 밀려난 key 는 index 에서 사라져 다시 들어오면 새 항목(error > 0)이 된다.
+     */
+    @Test
+    void replacementKeepsIndex() {
+        HeavyHitterTracker tracker = new HeavyHitterTracker(5, Duration.ofMinutes(5));
+        Random random = new Random(23);
+        for (int n = 0; n < 20_000; n++) {
+            tracker.add(session(1 + random.nextInt(3), "10.0.0." + random.nextInt(16), 443, 1 + random.nextInt(100), 0));
+            tracker.checkConsistency();
+        }
+
+        HeavyHitterTracker small = new HeavyHitterTracker(2, Duration.ofMinutes(5));
+        small.add(session(1, "10.0.0.1", 80, 100, 0));
+        small.add(session(1, "10.0.0.2", 80, 50, 0));
+        /*가장 작은 10.0.0.2 를 대체 : error 50*/
+        small.add(session(1, "10.0.0.3", 80, 10, 0));
+        small.checkConsistency();
+        small.add(session(1, "10.0.0.2", 80, 1, 0));
+        small.checkConsistency();
+        small.publish();
+        List<HeavyHitter> top = small.top(2);
+        assertEquals("10.0.0.1", top.get(0)
+                                    .getPeer()
+                                    .getAddress());
+        assertEquals(100, top.get(0)
+                             .getBytes());
+        assertEquals(0, top.get(0)
+                           .getError());
+        assertEquals("10.0.0.2", top.get(1)
+                                    .getPeer()
+                                    .getAddress());
+        assertEquals(61, top.get(1)
+                            .getBytes());
+        assertEquals(60, top.get(1)
+                            .getError());
+    }
+
+    /**
+     * 조회는 publish 시점의 snapshot 이며, topPeers 는 주소별 합계, 제외 대상(LISTEN, delta 0)은 더하지 않는다.
+     */
+    @Test
+    void topSnapshot() {
+        HeavyHitterTracker tracker = new HeavyHitterTracker(16, Duration.ofMinutes(5));
+        tracker.add(session(100, "10.0.0.1", 443, 700, 300));
+        tracker.add(session(200, "10.0.0.1", 8443, 500, 0));
+        tracker.add(session(100, "10.0.0.2", 443, 900, 0));
+        tracker.add(session(300, "10.0.0.3", 53, 10, 20));
+        tracker.add(session(100, "10.0.0.1", 443, 0, 0));
+        SessionCollectedData listen = session(100, "10.0.0.4", 0, 10_000, 0);
+        listen.setState(PayloadState.SessionState.LISTEN);
+        tracker.add(listen);
+        assertTrue(tracker.top(10)
+                          .isEmpty());
+
+        tracker.publish();
+        List<HeavyHitter> top = tracker.top(10);
+        assertEquals(Arrays.asList("100/10.0.0.1:443", "100/10.0.0.2:443", "200/10.0.0.1:8443", "300/10.0.0.3:53"), keys(top));
+        assertEquals(700, top.get(0)
+                             .getRxByte());
+        assertEquals(300, top.get(0)
+                             .getTxByte());
+        assertEquals(2, tracker.top(2)
+                               .size());
+        assertTrue(tracker.top(-1)
+                          .isEmpty());
+
+        List<HeavyHitter> peers = tracker.topPeers(2);
+        assertEquals(2, peers.size());
+        assertEquals("10.0.0.1", peers.get(0)
+                                      .getPeer()
+                                      .getAddress());
+        assertEquals(1_500, peers.get(0)
+                                 .getBytes());
+        assertEquals(0, peers.get(0)
+                             .getPid());
+        assertEquals("10.0.0.2", peers.get(1)
+                                      .getPeer()
+                                      .getAddress());
+
+        /*다음 publish 전까지 snapshot 은 그대로*/
+        tracker.add(session(300, "10.0.0.3", 53, 5_000, 0));
+        assertEquals(top, tracker.top(10));
+        tracker.publish();
+        assertEquals("300/10.0.0.3:53", keys(tracker.top(1)).get(0));
+
+        Struct struct = tracker.toStruct(2);
+        assertEquals(HeavyHitterTracker.STRUCT_TYPE, struct.getFieldsOrThrow("type")
+                                                           .getStringValue());
+        assertEquals(300, struct.getFieldsOrThrow("window")
+                                .getNumberValue());
+        List<Value> entries = struct.getFieldsOrThrow("entries")
+                                    .getListValue()
+                                    .getValuesList();
+        assertEquals(2, entries.size());
+        Struct first = entries.get(0)
+                              .getStructValue();
+        assertEquals(300, first.getFieldsOrThrow("pid")
+                               .getNumberValue());
+        assertEquals(53, first.getFieldsOrThrow("port")
+                              .getNumberValue());
+        assertEquals(5_030, first.getFieldsOrThrow("bytes")
+                                 .getNumberValue());
+    }
+
+    private static void assertBounds(HeavyHitterTracker tracker,
+                                     Map<String, Double> exact,
+                                     double total,
+                                     int capacity,
+                                     double tolerance) {
+        List<HeavyHitter> hitters = tracker.top(capacity);
+        assertEquals(capacity, hitters.size());
+        Set<String> tracked = new HashSet<>();
+        for (int i = 0; i < hitters.size(); i++) {
+            HeavyHitter hitter = hitters.get(i);
+            if (i > 0) {
+                assertTrue(hitters.get(i - 1)
+                                  .getBytes() >= hitter.getBytes());
+            }
+            String key = key(hitter);
+            tracked.add(key);
+            double actual = exact.getOrDefault(key, 0.0);
+            double slack = hitter.getBytes() * tolerance + 1e-6;
+            assertTrue(actual <= hitter.getBytes() + slack, key + " actual " + actual + " > " + hitter.getBytes());
+            assertTrue(hitter.getBytes() - hitter.getError() <= actual + slack, key + " actual " + actual + " < " + hitter);
+            /*rx/tx 는 추적을 시작한 뒤의 양*/
+            assertEquals(hitter.getBytes() - hitter.getError(), hitter.getRxByte() + hitter.getTxByte(), slack);
+        }
+
+        /*total / capacity 를 넘는 key (실제 상위) 는 모두 추적*/
+        List<Map.Entry<String, Double>> ranked = new ArrayList<>(exact.entrySet());
+        ranked.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+        int heavy = 0;
+        for (Map.Entry<String, Double> entry : ranked) {
+            if (entry.getValue() <= total / capacity * (1 + tolerance)) {
+                break;
+            }
+            assertTrue(tracked.contains(entry.getKey()), entry.getKey() + " " + entry.getValue());
+            heavy++;
+        }
+        assertTrue(heavy >= 3, "heavy " + heavy);
+    }
+
+    private static List<String> keys(List<HeavyHitter> hitters) {
+        List<String> keys = new ArrayList<>();
+        for (HeavyHitter hitter : hitters) {
+            keys.add(key(hitter));
+        }
+        return keys;
+    }
+
+    private static String key(HeavyHitter hitter) {
+        return hitter.getPid() + "/" + hitter.getPeer()
+                                             .getAddress() + ":" + hitter.getPeer()
+                                                                         .getPort();
+    }
+
+    private static String key(SessionCollectedData session) {
+        return session.getPid() + "/" + session.getPeer()
+                                               .getAddress() + ":" + session.getPeer()
+                                                                            .getPort();
+    }
+
+    private static SessionCollectedData session(int pid,
+                                                String peer,
+                                                int peerPort,
+                                                long rxByte,
+                                                long txByte) {
+        SessionCollectedData session = new SessionCollectedData(SessionCollectedData.PROTOCOL_TCP);
+        session.setState(PayloadState.SessionState.ESTABLISHED);
+        session.setLocal(new SessionAddress("10.9.0.1", 40_000, 0));
+        session.setPeer(new SessionAddress(peer, peerPort, 0));
+        session.setPid(pid);
+        session.setRxByte(rxByte);
+        session.setTxByte(txByte);
+        return session;
+    }
+
+    /**
+     * rank 의 -exponent 제곱에 비례하는 빈도로 key 를 고르는 세션 delta 흐름
+     */
+    private static final class Stream {
+        private final Random   random;
+        private final int      offset; /* seed 마다 다른 key 배치 */
+        private final double[] cumulative = new double[KEYS];
+
+        private Stream(long seed,
+                       double exponent) {
+            this.random = new Random(seed);
+            this.offset = (int) (seed * 389 % KEYS);
+            double sum = 0;
+            for (int rank = 0; rank < KEYS; rank++) {
+                sum += Math.pow(rank + 1, -exponent);
+                cumulative[rank] = sum;
+            }
+            for (int rank = 0; rank < KEYS; rank++) {
+                cumulative[rank] /= sum;
+            }
+        }
+
+        private SessionCollectedData next() {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+            rank = Math.min(KEYS - 1, rank < 0 ? -rank - 1 : rank);
+            int id = (int) ((rank * 2_654_435_761L + offset) % KEYS);
+            long bytes = 500 + random.nextInt(1_000);
+            long rx = random.nextInt((int) bytes + 1);
+            return session(100 + id % 7, "10.1." + (id >> 8) + "." + (id & 0xff), 1_000 + id % 13, rx, bytes - rx);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import com.google.protobuf.Any;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Struct;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * src/test/resources/netns 의 가짜 procfs 로 namespace 구분, 순서, bundle 구성 확인. (구성은 netns/README)
+ */
+class NamespaceSessionCollectorTest {
+    private static final Path PROC = Paths.get("src/test/resources/netns/proc");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void deduplicatesNamespacesByInode() {
+        List<NetNamespace> namespaces = new NamespaceSessionCollector(PROC, null, 2).namespaces();
+        /* pid 100, 101 은 같은 namespace : 가장 작은 pid 가 대표 */
+        assertEquals(Arrays.asList(new NetNamespace(4026532200L, 100, false),
+                                   new NetNamespace(4026532300L, 200, false),
+                                   new NetNamespace(4026532400L, 300, false)), namespaces);
+    }
+
+    @Test
+    void tagsDataWithNamespace() throws IOException {
+        NamespaceSessionCollector collector = new NamespaceSessionCollector(PROC, null, 2);
+        Map<Long, List<PayloadState.SessionProcess>> namespaceData = split(collector.collectSession());
+        assertEquals(Arrays.asList(4026532200L, 4026532300L, 4026532400L), new ArrayList<>(namespaceData.keySet()));
+
+        /* pid 101 은 100 과 공유한 ESTAB 소켓만 있으므로 가장 작은 pid(100)에만 포함 */
+        List<PayloadState.SessionProcess> shared = namespaceData.get(4026532200L);
+        assertEquals(Arrays.asList(100), pids(shared));
+        assertEquals(1, namespaceData.get(4026532300L)
+                                     .size());
+        assertEquals(200, namespaceData.get(4026532300L)
+                                       .get(0)
+                                       .getPid());
+        /* net/ 파일이 없는 namespace 도 빈 namespace 로 포함 */
+        assertTrue(namespaceData.get(4026532400L)
+                                .isEmpty());
+    }
+
+    @Test
+    void hostNamespaceFirst() throws IOException {
+        Path proc = copy(PROC, tempDir.resolve("proc"));
+        /* 수집 프로세스(self)가 pid 200 의 namespace 에 있으면 그 namespace 가 host */
+        Files.createDirectories(proc.resolve("self/ns"));
+        Files.createSymbolicLink(proc.resolve("self/ns/net"), Paths.get("net:[4026532300]"));
+
+        List<NetNamespace> created = new ArrayList<>();
+        SocketInodeIndex inodeIndex = new SocketInodeIndex(proc);
+        NamespaceSessionCollector collector = new NamespaceSessionCollector(proc, namespace -> {
+            created.add(namespace);
+            return new SessionCollector(new ProcNetSessionSource(proc.resolve(Integer.toString(namespace.getPid())), inodeIndex, true), null);
+        }, 2);
+        inodeIndex.refresh();
+
+        List<NetNamespace> namespaces = collector.namespaces();
+        assertEquals(new NetNamespace(4026532300L, 200, true), namespaces.get(0));
+        assertFalse(namespaces.get(1)
+                              .isHost());
+
+        List<Struct> structs = namespaceStructs(collector.collectSession());
+        assertEquals(3, structs.size());
+        assertTrue(structs.get(0)
+                          .getFieldsOrThrow("host")
+                          .getBoolValue());
+        assertEquals(4026532300L, (long) structs.get(0)
+                                                .getFieldsOrThrow("inode")
+                                                .getNumberValue());
+        assertEquals(4026532200L, (long) structs.get(1)
+                                                .getFieldsOrThrow("inode")
+                                                .getNumberValue());
+
+        /* 다음 주기는 collector 를 다시 만들지 않음 */
+        collector.collectSession();
+        assertEquals(3, created.size());
+    }
+
+    /**
+     * 제한 시간을 넘긴 namespace 는 interrupt 로 취소되고 timeout 으로 표시된다.
+     * 취소된 주기는 세션 테이블을 건드리지 않고, 버려진 bundle 대신 다음 주기를 keyframe 으로 보낸다.
+     */
+    @Test
+    void timeoutInterruptsSlowNamespace() throws Exception {
+        SocketInodeIndex inodeIndex = new SocketInodeIndex(PROC);
+        inodeIndex.refresh();
+        AtomicBoolean block = new AtomicBoolean();
+        CountDownLatch interrupted = new CountDownLatch(1);
+        List<SessionCollector> slow = new ArrayList<>();
+        NamespaceSessionCollector collector = new NamespaceSessionCollector(PROC, namespace -> {
+            SessionSource source = new ProcNetSessionSource(PROC.resolve(Integer.toString(namespace.getPid())), inodeIndex, true);
+            if (namespace.getPid() != 200) {
+                return new SessionCollector(source, null);
+            }
+            SessionCollector sessionCollector = new SessionCollector(consumer -> {
+                source.collect(consumer);
+                if (block.get()) {
+                    try {
+                        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread()
+                              .interrupt();
+                        interrupted.countDown();
+                        throw new InterruptedIOException("slow source");
+                    }
+                }
+            }, null);
+            sessionCollector.setKeyframeInterval(100);
+            slow.add(sessionCollector);
+            return sessionCollector;
+        }, 2);
+        collector.setTimeout(200);
+
+        collector.collectSession();
+        int tableSize = slow.get(0)
+                            .tableSize();
+        assertTrue(tableSize > 0);
+
+        block.set(true);
+        Map<Long, String> errors = errors(collector.collectSession());
+        assertEquals("timeout", errors.get(4026532300L));
+        assertNull(errors.get(4026532200L));
+        assertNull(errors.get(4026532400L));
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        /* 빈 결과로 세션을 종료 처리하지 않음 */
+        assertEquals(tableSize, slow.get(0)
+                                    .tableSize());
+
+        block.set(false);
+        PayloadState.StateBundle bundle = collector.collectSession();
+        for (int retry = 0; "busy".equals(errors(bundle).get(4026532300L)) && retry < 100; retry++) {
+            /* 취소된 주기가 아직 정리 중 */
+            Thread.sleep(10);
+            bundle = collector.collectSession();
+        }
+        assertNull(errors(bundle).get(4026532300L));
+        assertEquals(1, slow.size());
+        Struct header = null;
+        for (Struct struct : namespaceStructs(bundle)) {
+            if (struct.getFieldsOrThrow("type")
+                      .getStringValue()
+                      .equals(SessionCollector.DELTA_HEADER_TYPE)) {
+                header = struct;
+            }
+        }
+        assertNotNull(header);
+        assertEquals("keyframe", header.getFieldsOrThrow("mode")
+                                       .getStringValue());
+        collector.close();
+    }
+
+    /**
+     * 사라진 namespace, 대표 pid 가 바뀐 namespace 의 collector 는 닫고, close 는 남은 collector 를 모두 닫는다.
+     */
+    @Test
+    void closesDroppedCollectors() throws IOException {
+        Path proc = copy(PROC, tempDir.resolve("proc"));
+        SocketInodeIndex inodeIndex = new SocketInodeIndex(proc);
+        List<NetNamespace> closed = new ArrayList<>();
+        NamespaceSessionCollector collector = new NamespaceSessionCollector(proc, namespace -> new SessionCollector(
+                new ProcNetSessionSource(proc.resolve(Integer.toString(namespace.getPid())), inodeIndex, true), null) {
+            @Override
+            public void close() {
+                closed.add(namespace);
+                super.close();
+            }
+        }, 2);
+        inodeIndex.refresh();
+        collector.collectSession();
+        assertEquals(3, collector.collectorCount());
+
+        /* pid 300 종료 : namespace 4026532400 이 사라짐 */
+        Files.delete(proc.resolve("300/ns/net"));
+        collector.collectSession();
+        assertEquals(Arrays.asList(new NetNamespace(4026532400L, 300, false)), closed);
+        assertEquals(2, collector.collectorCount());
+
+        /* pid 100 종료 : 같은 namespace 의 101 로 다시 만듦 */
+        Files.delete(proc.resolve("100/ns/net"));
+        collector.collectSession();
+        assertEquals(new NetNamespace(4026532200L, 100, false), closed.get(1));
+        assertEquals(2, collector.collectorCount());
+
+        collector.close();
+        assertEquals(4, closed.size());
+        assertEquals(0, collector.collectorCount());
+        assertEquals(0, collector.collectSession()
+                                 .getDataCount());
+    }
+
+    /**
+     * namespace inode -> error (없으면 포함하지 않음)
+     */
+    private static Map<Long, String> errors(PayloadState.StateBundle bundle) throws InvalidProtocolBufferException {
+        Map<Long, String> errors = new LinkedHashMap<>();
+        for (Struct struct : namespaceStructs(bundle)) {
+            if (struct.getFieldsOrThrow("type")
+                      .getStringValue()
+                      .equals(NetNamespace.STRUCT_TYPE) && struct.containsFields("error")) {
+                errors.put((long) struct.getFieldsOrThrow("inode")
+                                        .getNumberValue(), struct.getFieldsOrThrow("error")
+                                                                 .getStringValue());
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * namespace inode -> 뒤따르는 data (count 개)
+     */
+    private static Map<Long, List<PayloadState.SessionProcess>> split(PayloadState.StateBundle bundle) throws InvalidProtocolBufferException {
+        Map<Long, List<PayloadState.SessionProcess>> namespaceData = new LinkedHashMap<>();
+        List<Any> dataList = bundle.getDataList();
+        int i = 0;
+        while (i < dataList.size()) {
+            Struct struct = dataList.get(i++)
+                                    .unpack(Struct.class);
+            assertEquals(NetNamespace.STRUCT_TYPE, struct.getFieldsOrThrow("type")
+                                                         .getStringValue());
+            assertFalse(struct.containsFields("error"), () -> struct.getFieldsOrThrow("error")
+                                                                    .getStringValue());
+            int count = (int) struct.getFieldsOrThrow("count")
+                                    .getNumberValue();
+            List<PayloadState.SessionProcess> processes = new ArrayList<>();
+            for (int k = 0; k < count; k++) {
+                processes.add(dataList.get(i++)
+                                      .unpack(PayloadState.SessionProcess.class));
+            }
+            namespaceData.put((long) struct.getFieldsOrThrow("inode")
+                                           .getNumberValue(), processes);
+        }
+        return namespaceData;
+    }
+
+    private static List<Struct> namespaceStructs(PayloadState.StateBundle bundle) throws InvalidProtocolBufferException {
+        List<Struct> structs = new ArrayList<>();
+        for (Any any : bundle.getDataList()) {
+            if (any.is(Struct.class)) {
+                structs.add(any.unpack(Struct.class));
+            }
+        }
+        return structs;
+    }
+
+    private static List<Integer> pids(List<PayloadState.SessionProcess> processes) {
+        return processes.stream()
+                        .map(PayloadState.SessionProcess::getPid)
+                        .sorted()
+                        .collect(Collectors.toList());
+    }
+
+    /**
+     * symbolic link (ns/net, fd/*) 를 그대로 복사
+     */
+    private static Path copy(Path source,
+                             Path target) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Path copied = target.resolve(source.relativize(path)
+                                                   .toString());
+                if (Files.isSymbolicLink(path)) {
+                    Files.createSymbolicLink(copied, Files.readSymbolicLink(path));
+                } else if (Files.isDirectory(path)) {
+                    Files.createDirectories(copied);
+                } else {
+                    Files.copy(path, copied);
+                }
+            }
+        }
+        return target;
+    }
+}
@@ -0,0 +1,219 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 가짜 procfs (net/{tcp,tcp6,udp,udp6}, [pid]/fd/* -> socket:[inode]) 로 {@link ProcNetSessionSource}, {@link SocketInodeIndex} 확인.
+ * 주소 hex 는 host byte order 의 32bit word 이므로 little-endian host 기준으로 작성했다.
+ */
+class ProcNetSessionSourceTest {
+    private static final String HEADER = "  sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode";
+
+    @TempDir
+    Path procRoot;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        write("net/tcp",
+              "   0: 0100007F:0016 00000000:0000 0A 00000000:00000000 00:00000000 00000000     0        0 1001 1 0000000000000000 100 0 0 10 0",
+              "   1: 0200000A:C350 0100000A:01BB 01 00000000:00000000 02:000A7D8F 00000000  1000        0 1002 1 0000000000000000 20 4 30 10 -1",
+              "   2: 0200000A:C351 0100000A:01BB 06 00000000:00000000 03:00001770 00000000     0        0 0 3 0000000000000000");
+        write("net/tcp6",
+              "   0: 00000000000000000000000001000000:1F90 00000000000000000000000000000000:0000 0A 00000000:00000000 00:00000000 00000000     0        0 1003 1 0000000000000000 100 0 0 10 0",
+              "   1: 0000000000000000FFFF00000100007F:1F90 0000000000000000FFFF00000200007F:D431 01 00000000:00000000 00:00000000 00000000     0        0 1004 1 0000000000000000 20 4 30 10 -1",
+              "   2: B80D0120000000000000000001000000:0050 B80D0120000000000000000002000000:E000 01 00000000:00000000 00:00000000 00000000     0        0 1005 1 0000000000000000 20 4 30 10 -1");
+        write("net/udp",
+              "  sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid  timeout inode ref pointer drops",
+              "  100: 3500007F:0035 00000000:0000 07 00000000:00000000 00:00000000 00000000   101        0 1006 2 0000000000000000 0");
+        write("net/udp6");
+        link(100, 3, 1001);
+        link(100, 4, 1002);
+        link(101, 3, 1001);
+        link(101, 5, 1003);
+        link(200, 7, 1004);
+        link(200, 8, 1005);
+        link(300, 9, 1006);
+        /* pid 가 아닌 디렉터리는 건너뜀 */
+        Files.createDirectories(procRoot.resolve("self"));
+    }
+
+    @Test
+    void decodesHexAddresses() throws IOException {
+        List<SessionCollectedData> sessions = collect(new ProcNetSessionSource(procRoot, true));
+        assertEquals(7, sessions.size());
+
+        SessionCollectedData listen = byInode(sessions, 1001);
+        assertEquals(SessionCollectedData.PROTOCOL_TCP, listen.getProtocol());
+        assertEquals(PayloadState.SessionState.LISTEN, listen.getState());
+        assertAddress(listen.getLocal(), "127.0.0.1", 22, 0);
+        assertAddress(listen.getPeer(), "0.0.0.0", 0, 0);
+
+        SessionCollectedData established = byInode(sessions, 1002);
+        assertEquals(PayloadState.SessionState.ESTABLISHED, established.getState());
+        assertAddress(established.getLocal(), "10.0.0.2", 50000, 0);
+        assertAddress(established.getPeer(), "10.0.0.1", 443, 0);
+        /* /proc/net 에는 카운터가 없음 */
+        assertEquals(0, established.getRxByte());
+        assertEquals(0, established.getTxByte());
+
+        SessionCollectedData timeWait = sessions.stream()
+                                                .filter(session -> session.getState() == PayloadState.SessionState.TIME_WAIT)
+                                                .findFirst()
+                                                .orElseThrow(AssertionError::new);
+        assertEquals(0, timeWait.getInode());
+        assertEquals(0, timeWait.getPid());
+        assertAddress(timeWait.getLocal(), "10.0.0.2", 50001, 0);
+
+        SessionCollectedData v6Listen = byInode(sessions, 1003);
+        assertEquals(PayloadState.SessionState.LISTEN, v6Listen.getState());
+        assertAddress(v6Listen.getLocal(), "::1", 8080, 1);
+        assertAddress(v6Listen.getPeer(), "::", 0, 1);
+
+        SessionCollectedData mapped = byInode(sessions, 1004);
+        assertAddress(mapped.getLocal(), "127.0.0.1", 8080, 2);
+        assertAddress(mapped.getPeer(), "127.0.0.2", 54321, 2);
+
+        SessionCollectedData v6 = byInode(sessions, 1005);
+        assertAddress(v6.getLocal(), "2001:db8::1", 80, 1);
+        assertAddress(v6.getPeer(), "2001:db8::2", 57344, 1);
+
+        SessionCollectedData udp = byInode(sessions, 1006);
+        assertEquals(SessionCollectedData.PROTOCOL_UDP, udp.getProtocol());
+        assertEquals(PayloadState.SessionState.UNCONN, udp.getState());
+        assertAddress(udp.getLocal(), "127.0.0.53", 53, 0);
+    }
+
+    @Test
+    void tcpOnly() throws IOException {
+        List<SessionCollectedData> sessions = collect(new ProcNetSessionSource(procRoot, false));
+        assertEquals(6, sessions.size());
+        assertTrue(sessions.stream()
+                           .allMatch(session -> session.getProtocol() == SessionCollectedData.PROTOCOL_TCP));
+    }
+
+    @Test
+    void joinsInodeToPid() throws IOException {
+        List<SessionCollectedData> sessions = collect(new ProcNetSessionSource(procRoot, true));
+        assertEquals(100, byInode(sessions, 1002).getPid());
+        assertEquals(101, byInode(sessions, 1003).getPid());
+        assertEquals(200, byInode(sessions, 1004).getPid());
+        assertEquals(300, byInode(sessions, 1006).getPid());
+
+        /* fork 로 공유한 listen 소켓 : 가장 작은 pid + 소유자 목록 */
+        SessionCollectedData shared = byInode(sessions, 1001);
+        assertEquals(100, shared.getPid());
+        assertNotNull(shared.getOwners());
+        assertEquals(Arrays.asList(100, 101), Arrays.asList(shared.getOwners()
+                                                                  .get(0)
+                                                                  .getPid(), shared.getOwners()
+                                                                                   .get(1)
+                                                                                   .getPid()));
+    }
+
+    @Test
+    void incrementalRefresh() throws IOException {
+        SocketInodeIndex index = new SocketInodeIndex(procRoot);
+        index.refresh();
+        assertEquals(6, index.size());
+        assertEquals(100, index.getPid(1001));
+        assertEquals(200, index.getPid(1005));
+
+        /* fd 목록이 바뀌었지만 fd 디렉터리의 size/mtime 이 같으면 다시 읽지 않는다 */
+        Path fdDir = procRoot.resolve("200/fd");
+        FileTime mtime = Files.getLastModifiedTime(fdDir);
+        Files.delete(fdDir.resolve("8"));
+        Files.createSymbolicLink(fdDir.resolve("8"), Paths.get("socket:[1007]"));
+        Files.setLastModifiedTime(fdDir, mtime);
+        index.refresh();
+        assertEquals(200, index.getPid(1005));
+        assertEquals(0, index.getPid(1007));
+
+        /* mtime 이 바뀐 pid 만 다시 scan */
+        Files.setLastModifiedTime(fdDir, FileTime.fromMillis(mtime.toMillis() + 60_000));
+        index.refresh();
+        assertEquals(0, index.getPid(1005));
+        assertEquals(200, index.getPid(1007));
+
+        /* 종료된 pid 의 inode 제거, 공유 소켓은 남은 소유자로 */
+        deleteRecursively(procRoot.resolve("100"));
+        /* 새 pid */
+        link(400, 3, 1008);
+        index.refresh();
+        assertEquals(0, index.getPid(1002));
+        assertEquals(101, index.getPid(1001));
+        assertEquals(400, index.getPid(1008));
+        assertEquals(300, index.getPid(1006));
+    }
+
+    private void write(String name,
+                       String... rows) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (rows.length == 0 || !rows[0].trim()
+                                        .startsWith("sl")) {
+            lines.add(HEADER);
+        }
+        lines.addAll(Arrays.asList(rows));
+        Path path = procRoot.resolve(name);
+        Files.createDirectories(path.getParent());
+        Files.write(path, lines, StandardCharsets.US_ASCII);
+    }
+
+    private void link(int pid,
+                      int fd,
+                      long inode) throws IOException {
+        Path fdDir = Files.createDirectories(procRoot.resolve(pid + "/fd"));
+        Files.createSymbolicLink(fdDir.resolve(String.valueOf(fd)), Paths.get("socket:[" + inode + "]"));
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            try (Stream<Path> children = Files.list(path)) {
+                for (Path child : (Iterable<Path>) children::iterator) {
+                    deleteRecursively(child);
+                }
+            }
+        }
+        Files.delete(path);
+    }
+
+    private static List<SessionCollectedData> collect(SessionSource sessionSource) throws IOException {
+        List<SessionCollectedData> sessions = new ArrayList<>();
+        sessionSource.collect(sessions::add);
+        return sessions;
+    }
+
+    private static SessionCollectedData byInode(List<SessionCollectedData> sessions,
+                                                long inode) {
+        return sessions.stream()
+                       .filter(session -> session.getInode() == inode)
+                       .findFirst()
+                       .orElseThrow(() -> new AssertionError("inode " + inode + " not decoded"));
+    }
+
+    private static void assertAddress(SessionAddress address,
+                                      String expectedAddress,
+                                      int expectedPort,
+                                      int expectedType) {
+        assertNotNull(address);
+        assertEquals(expectedAddress, address.getAddress());
+        assertEquals(expectedPort, address.getPort());
+        assertEquals(expectedType, address.getType());
+    }
+}
@@ -0,0 +1,209 @@
+package com.elixcore.collector.session;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 가짜 procfs ([pid]/stat, cmdline, cgroup) 와 고정 시계로 {@link ProcessMetadataCache} 의 LRU, 재사용 확인 주기, reported 확인
+ */
+class ProcessMetadataCacheTest {
+    private static final long VALIDATE_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    @TempDir
+    Path procRoot;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void startTimeAfterLastParen() {
+        assertEquals(4242, ProcessMetadataCache.startTime(stat(10, "a) (b c", 4242)));
+        assertEquals(7, ProcessMetadataCache.startTime(stat(10, "x", 7)));
+        assertEquals(0, ProcessMetadataCache.startTime("10 (x) S 1"));
+        assertEquals(0, ProcessMetadataCache.startTime("no comm"));
+    }
+
+    @Test
+    void readsCmdlineAndCgroup() throws IOException {
+        process(100, "nginx", 500, "nginx\0-g\0daemon off;\0\0", "12:pids:/docker/abc\n0::/system.slice/docker-abc.scope\n");
+        process(101, "a) (b", 501, "", "4:memory:/user.slice\n3:cpu:/other\n");
+
+        ProcessMetadata nginx = cache(8).get(100, "ignored");
+        assertEquals(100, nginx.getPid());
+        assertEquals(500, nginx.getStartTime());
+        assertEquals("nginx", nginx.getComm());
+        assertEquals("nginx -g daemon off;", nginx.getCmdline());
+        assertEquals("/system.slice/docker-abc.scope", nginx.getCgroup());
+
+        /*v2 항목이 없으면 첫 번째 항목*/
+        ProcessMetadata other = cache(8).get(101, null);
+        assertEquals("a) (b", other.getComm());
+        assertEquals("", other.getCmdline());
+        assertEquals("/user.slice", other.getCgroup());
+    }
+
+    @Test
+    void revalidatesStartTimeEveryInterval() throws IOException {
+        ProcessMetadataCache cache = cache(8);
+        process(100, "old", 500, "old\0", "0::/old");
+        assertEquals("old", cache.get(100, null)
+                                 .getCmdline());
+
+        /*pid 재사용 : 확인 주기 전까지는 이전 정보*/
+        process(100, "new", 900, "new\0", "0::/new");
+        clock.addAndGet(VALIDATE_INTERVAL - 1);
+        assertEquals(500, cache.get(100, null)
+                               .getStartTime());
+        clock.addAndGet(1);
+        ProcessMetadata reused = cache.get(100, null);
+        assertEquals(900, reused.getStartTime());
+        assertEquals("new", reused.getComm());
+        assertEquals("new", reused.getCmdline());
+        assertEquals("/new", reused.getCgroup());
+
+        /*시작 시각이 같으면 cmdline 은 다시 읽지 않고, 확인 시각만 갱신*/
+        write(100, "cmdline", "changed\0");
+        clock.addAndGet(VALIDATE_INTERVAL);
+        assertSame(reused, cache.get(100, null));
+        process(100, "newer", 901, "newer\0", "");
+        clock.addAndGet(VALIDATE_INTERVAL - 1);
+        assertSame(reused, cache.get(100, null));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws IOException {
+        ProcessMetadataCache cache = cache(2);
+        for (int pid = 1; pid <= 3; pid++) {
+            process(pid, "p" + pid, 100, "", "");
+        }
+        cache.get(1, null);
+        cache.get(2, null);
+        /*1 을 다시 사용해 2 가 가장 오래된 항목*/
+        cache.get(1, null);
+        cache.get(3, null);
+        assertEquals(2, cache.size());
+
+        /*확인 주기가 지나지 않았으므로 cache 에 남은 pid 는 /proc 를 다시 읽지 않는다*/
+        for (int pid = 1; pid <= 3; pid++) {
+            process(pid, "p" + pid, 200, "", "");
+        }
+        assertEquals(100, cache.get(1, null)
+                               .getStartTime());
+        assertEquals(100, cache.get(3, null)
+                               .getStartTime());
+        assertEquals(200, cache.get(2, null)
+                               .getStartTime());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void processOutsideProc() throws IOException {
+        ProcessMetadataCache cache = cache(8);
+        /*다른 pid namespace : ss 의 comm 만*/
+        ProcessMetadata hidden = cache.get(300, "java");
+        assertEquals(0, hidden.getStartTime());
+        assertEquals("java", hidden.getComm());
+        assertEquals("", hidden.getCmdline());
+        clock.addAndGet(VALIDATE_INTERVAL);
+        assertSame(hidden, cache.get(300, null));
+
+        assertNull(cache.get(301, null));
+        assertEquals(1, cache.size());
+
+        /*종료된 프로세스는 comm 이 없으면 항목 삭제*/
+        process(302, "gone", 100, "", "");
+        assertNotNull(cache.get(302, null));
+        assertEquals(2, cache.size());
+        Files.delete(procRoot.resolve("302/stat"));
+        clock.addAndGet(VALIDATE_INTERVAL);
+        assertNull(cache.get(302, null));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void reportsNewEntriesOnce() throws IOException {
+        ProcessMetadataCache cache = cache(8);
+        process(100, "nginx", 500, "nginx\0", "");
+        process(101, "worker", 501, "", "");
+        Map<Integer, List<SessionCollectedData>> pidSessionMap = new HashMap<>();
+        pidSessionMap.put(100, Collections.singletonList(session(100)));
+        /*공유 소켓 owners 의 pid (101 은 /proc 에 있고 400 은 없음)*/
+        pidSessionMap.put(101, Collections.singletonList(session(101, new SessionOwner(101, "worker", 3), new SessionOwner(400, "sidecar", 4))));
+
+        assertEquals(Arrays.asList(100, 101, 400), pids(cache.resolve(pidSessionMap, false)));
+        assertEquals(Collections.emptyList(), pids(cache.resolve(pidSessionMap, false)));
+        assertEquals(Arrays.asList(100, 101, 400), pids(cache.resolve(pidSessionMap, true)));
+        assertEquals("sidecar", cache.get(400, null)
+                                     .getComm());
+
+        /*재사용된 pid 는 다시 전달*/
+        process(100, "nginx", 600, "nginx\0", "");
+        clock.addAndGet(VALIDATE_INTERVAL);
+        List<ProcessMetadata> reported = cache.resolve(pidSessionMap, false);
+        assertEquals(Collections.singletonList(100), pids(reported));
+        assertEquals(600, reported.get(0)
+                                  .getStartTime());
+        assertEquals(Collections.emptyList(), pids(cache.resolve(pidSessionMap, false)));
+    }
+
+    private ProcessMetadataCache cache(int maxEntries) {
+        return new ProcessMetadataCache(procRoot, maxEntries, VALIDATE_INTERVAL, clock::get);
+    }
+
+    private void process(int pid,
+                         String comm,
+                         long startTime,
+                         String cmdline,
+                         String cgroup) throws IOException {
+        write(pid, "stat", stat(pid, comm, startTime));
+        write(pid, "cmdline", cmdline);
+        write(pid, "cgroup", cgroup);
+    }
+
+    private void write(int pid,
+                       String name,
+                       String content) throws IOException {
+        Path pidDir = Files.createDirectories(procRoot.resolve(String.valueOf(pid)));
+        Files.write(pidDir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * /proc/[pid]/stat 형식 (22번째 값이 시작 시각)
+     */
+    private static String stat(int pid,
+                               String comm,
+                               long startTime) {
+        return pid + " (" + comm + ") S 1 " + pid + " " + pid + " 0 -1 4194560 100 0 0 0 1 2 0 0 20 0 1 0 " + startTime + " 1000 200\n";
+    }
+
+    private static SessionCollectedData session(int pid,
+                                                SessionOwner... owners) {
+        SessionCollectedData session = new SessionCollectedData(SessionCollectedData.PROTOCOL_TCP);
+        session.setPid(pid);
+        if (owners.length > 0) {
+            session.setOwners(Arrays.asList(owners));
+        }
+        return session;
+    }
+
+    private static List<Integer> pids(List<ProcessMetadata> metadataList) {
+        return metadataList.stream()
+                           .map(ProcessMetadata::getPid)
+                           .sorted()
+                           .collect(Collectors.toList());
+    }
+}
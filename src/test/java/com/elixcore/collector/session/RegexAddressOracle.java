@@ -0,0 +1,133 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.collector.session.SessionAddress.PatternName;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.elixcore.collector.session.SessionAddress.PatternName.*;
+
+/**
+ * scanner 이전의 {@link SessionAddress#findMatch(String)} 구현 (정규식 pattern table).
+ * <p>
+ * 비교 기준으로만 사용하며, 결과 type 은 예전 switch 의 fall-through (IPV4 계열도 1) 그대로 둔다.
+ */
+final class RegexAddressOracle {
+    private static final String                    portNumberRegex              = "(?<port>\\d{1,5}|\\*)";
+    private static final String                    loopbackRegex                = "(?<lo>%lo)";
+    private static final String                    ipv6Regex                    = "([0-9a-f]{1,4}:){7}([0-9a-f]){1,4}";
+    private static final String                    ipv6AddressRegex             = String.format("(?<address>%s)", ipv6Regex);
+    private static final String                    ipv6PortRegex                = String.format("%s:%s", ipv6AddressRegex, portNumberRegex);
+    private static final String                    ipv6BracketPortRegex         = String.format("\\[%s]:%s", ipv6AddressRegex, portNumberRegex);
+    private static final String                    ipv6SimpleRegex              = "((?:[0-9A-Fa-f]{1,4}(?::[0-9A-Fa-f]{1,4})*)?)::((?:[0-9A-Fa-f]{1,4}(?::[0-9A-Fa-f]{1,4})*)?)|\\*|::";
+    private static final String                    ipv6SimpleAddressRegex       = String.format("(?<address>%s)", ipv6SimpleRegex);
+    private static final String                    ipv6SimpleBracketPortRegex   = String.format("\\[%s]:%s", ipv6SimpleAddressRegex, portNumberRegex);
+    private static final String                    ipv4Regex                    = "((25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9][0-9]|[0-9])(\\.(?!$)|$)){3}(25[0-5]|2[0-4][0-9]|1[0-9][0-9]|[1-9][0-9]|[0-9])|\\*";
+    private static final String                    ipv4AddressRegex             = String.format("(?<address>%s)", ipv4Regex);
+    private static final String                    ipv4PortRegex                = String.format("%s:%s", ipv4AddressRegex, portNumberRegex);
+    private static final String                    ipv4LoopbackPortRegex        = String.format("%s%s:%s", ipv4AddressRegex, loopbackRegex, portNumberRegex);
+    private static final String                    ipv4MappedV6Regex            = String.format("(?<address>(%s):(?<ipv4>%s))", ipv6SimpleRegex, ipv4Regex);
+    private static final String                    ipv4MappedV6BracketRegex     = String.format("\\[%s]", ipv4MappedV6Regex);
+    private static final String                    ipv4MappedV6BracketPortRegex = String.format("%s:%s", ipv4MappedV6BracketRegex, portNumberRegex);
+    private static final String                    ipv4MappedV6PortRegex        = String.format("%s:%s", ipv4MappedV6Regex, portNumberRegex);
+    private static final Map<PatternName, Pattern> addressPatternMap            = new LinkedHashMap<>();
+
+    static {
+        // 순서대로 검사
+        addressPatternMap.put(IPV4_MAPPED_V6_BRACKET, compile(ipv4MappedV6BracketRegex));
+        addressPatternMap.put(IPV6_BRACKET_PORT, compile(ipv6BracketPortRegex));
+        addressPatternMap.put(IPV4_MAPPED_V6, compile(ipv4MappedV6Regex));
+        addressPatternMap.put(IPV4_MAPPED_V6_BRACKET_PORT, compile(ipv4MappedV6BracketPortRegex));
+        addressPatternMap.put(IPV4_MAPPED_V6_PORT, compile(ipv4MappedV6PortRegex));
+        addressPatternMap.put(IPV4_PORT, compile(ipv4PortRegex));
+        addressPatternMap.put(IPV6_SIMPLE, compile(ipv6SimpleAddressRegex));
+        addressPatternMap.put(IPV6, compile(ipv6AddressRegex));
+        addressPatternMap.put(IPV4, compile(ipv4AddressRegex));
+        addressPatternMap.put(IPV4_LOOPBACK_PORT, compile(ipv4LoopbackPortRegex));
+        addressPatternMap.put(IPV6_PORT, compile(ipv6PortRegex));
+        addressPatternMap.put(IPV6_SIMPLE_BRACKET_PORT, compile(ipv6SimpleBracketPortRegex));
+    }
+
+    private RegexAddressOracle() {
+    }
+
+    private static Pattern compile(String regex) {
+        return Pattern.compile(String.format("^%s$", regex));
+    }
+
+    /**
+     * @return 일치하는 pattern 이 없으면 null
+     */
+    static Match findMatch(String address) {
+        for (Map.Entry<PatternName, Pattern> entry : addressPatternMap.entrySet()) {
+            Matcher matcher = entry.getValue()
+                                   .matcher(address);
+            if (!matcher.find()) {
+                continue;
+            }
+            PatternName pattern = entry.getKey();
+            String  matchedAddress;
+            Integer port = null;
+            Integer type = null;
+            switch (pattern) {
+                case IPV4_MAPPED_V6:
+                case IPV4_MAPPED_V6_BRACKET:
+                case IPV4_MAPPED_V6_PORT:
+                case IPV4_MAPPED_V6_BRACKET_PORT:
+                    matchedAddress = matcher.group("ipv4");
+                    break;
+                default:
+                    matchedAddress = matcher.group("address");
+                    break;
+            }
+            /* SET PORT */
+            switch (pattern) {
+                case IPV4_PORT:
+                case IPV6_SIMPLE_BRACKET_PORT:
+                case IPV6_BRACKET_PORT:
+                case IPV4_MAPPED_V6_PORT:
+                case IPV4_MAPPED_V6_BRACKET_PORT:
+                case IPV4_LOOPBACK_PORT:
+                    port = matcher.group("port")
+                                  .equals("*") ? 0 : Integer.parseInt(matcher.group("port"));
+                    break;
+            }
+            /* SET Type : 예전 구현 그대로 IPV4 계열이 IPV6 case 로 fall-through */
+            switch (pattern) {
+                case IPV4:
+                case IPV4_PORT:
+                case IPV4_LOOPBACK_PORT:
+                    type = 0;
+                case IPV6:
+                case IPV6_SIMPLE:
+                case IPV4_MAPPED_V6_BRACKET:
+                    type = 1;
+                    break;
+                case IPV4_MAPPED_V6_BRACKET_PORT:
+                case IPV4_MAPPED_V6_PORT:
+                case IPV4_MAPPED_V6:
+                    type = 2;
+                    break;
+            }
+            return new Match(pattern, matchedAddress, port, type);
+        }
+        return null;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class Match {
+        private final PatternName pattern;
+        private final String      address;
+        private final Integer     port;
+        private final Integer     type;
+
+        boolean isIpv4() {
+            return pattern == IPV4 || pattern == IPV4_PORT || pattern == IPV4_LOOPBACK_PORT;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.elixcore.collector.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SessionAddress#findMatch(String)} scanner 와 예전 정규식 구현({@link RegexAddressOracle}) 비교
+ */
+class SessionAddressTest {
+    private static final String[] SEEDS     = {
+        "*", "*:*", "0.0.0.0:*", "[::]:*", "[::ffff:127.0.0.1]:80", "::ffff:127.0.0.1", "::FFFF:172.16.0.15:33231",
+        "[::FFFF:172.16.0.15]", "127.0.0.53%lo:53", "ff06:0:0:0:0:0:0:c3", "ff06:0:0:0:0:0:0:c3:32312",
+        "[ff06:0:0:0:0:0:0:c3]:32312", "ff32::43:f3", "::", "::1", "[::1]:631", "12.3.45.5:44832", "255.255.255.255",
+        "1:2:3:4:5:6:7:8::9", "*:1.2.3.4", "*:*:*", "*:80", "[*]:80", "[*:*]", "[*:*]:*", "[::]%eth0:546",
+        "[fe80::1]%eth0:546", "10.0.0.1%eth0:22", "::1.2.3.4", ":::1.2.3.4", "1.2.3.4:99999", "1.2.3.4:00080", ""
+    };
+    private static final String[] PIECES    = {
+        "[", "]", ":", "::", ":::", "*", "%lo", "%eth0", ".", "0", "1", "9", "00", "25", "255", "256", "012", "127", "a",
+        "F", "ffff", "FFFF", "12345", "123456", "abcde", "fe80", "g", " ", "0.0.0.0", "127.0.0.1", "1.2.3",
+        "ff06:0:0:0:0:0:0:c3", "FF06:0:0:0:0:0:0:C3"
+    };
+    private static final String   MUTATIONS = "[]:.*%0129afAFg";
+
+    /**
+     * seed 주소와 그 변형, 조각을 이어 붙인 임의 문자열
+     */
+    private static List<String> corpus(int size) {
+        Random       random = new Random(42);
+        List<String> corpus = new ArrayList<>(Arrays.asList(SEEDS));
+        for (int i = 0; i < size; i++) {
+            StringBuilder builder = new StringBuilder();
+            if (random.nextInt(3) == 0) {
+                builder.append(SEEDS[random.nextInt(SEEDS.length)]);
+                int mutations = 1 + random.nextInt(2);
+                for (int m = 0; m < mutations && builder.length() > 0; m++) {
+                    int position = random.nextInt(builder.length() + 1);
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            if (position < builder.length()) {
+                                builder.deleteCharAt(position);
+                            }
+                            break;
+                        case 1:
+                            builder.insert(position, PIECES[random.nextInt(PIECES.length)]);
+                            break;
+                        default:
+                            if (position < builder.length()) {
+                                builder.setCharAt(position, MUTATIONS.charAt(random.nextInt(MUTATIONS.length())));
+                            }
+                            break;
+                    }
+                }
+            } else {
+                int pieces = 1 + random.nextInt(8);
+                for (int k = 0; k < pieces; k++) {
+                    builder.append(PIECES[random.nextInt(PIECES.length)]);
+                }
+            }
+            corpus.add(builder.toString());
+        }
+        return corpus;
+    }
+
+    /**
+     * `%iface` scope 를 `%lo` 로 바꾸거나 (IPV4) 지운 (bracket IPV6) 입력의 정규식 결과
+     */
+    private static RegexAddressOracle.Match scopeAsLoopback(String address) {
+        RegexAddressOracle.Match loopback = RegexAddressOracle.findMatch(address.replaceFirst("%[^:]+", "%lo"));
+        if (loopback != null) {
+            return loopback;
+        }
+        return RegexAddressOracle.findMatch(address.replaceFirst("%[^:]+", ""));
+    }
+
+    private static Integer expectedType(RegexAddressOracle.Match match) {
+        /* 예전 switch 는 IPV4 계열이 IPV6 case 로 fall-through 해 1 이 되었다 */
+        return match.isIpv4() ? Integer.valueOf(0) : match.getType();
+    }
+
+    @Test
+    void matchesRegexTable() {
+        int matched = 0;
+        for (String address : corpus(200_000)) {
+            SessionAddress           actual   = SessionAddress.findMatch(address);
+            RegexAddressOracle.Match expected = RegexAddressOracle.findMatch(address);
+            if (expected == null && actual != null && address.indexOf('%') >= 0) {
+                expected = scopeAsLoopback(address);
+                assertNotNull(expected, () -> "unexpected scoped match '" + address + "'");
+            }
+            if (expected == null) {
+                assertNull(actual, () -> "'" + address + "' matched " + actual);
+                continue;
+            }
+            matched++;
+            RegexAddressOracle.Match match = expected;
+            assertNotNull(actual, () -> "'" + address + "' expected " + match.getPattern());
+            assertEquals(expected.getAddress(), actual.getAddress(), () -> "address of '" + address + "'");
+            assertEquals(expected.getPort(), actual.getPort(), () -> "port of '" + address + "'");
+            assertEquals(expectedType(expected), actual.getType(), () -> "type of '" + address + "'");
+        }
+        assertTrue(matched > 10_000, "corpus matched only " + matched);
+    }
+
+    @Test
+    void ipv4TypeNoLongerFallsThrough() {
+        assertEquals(Integer.valueOf(1), RegexAddressOracle.findMatch("12.3.45.5:44832")
+                                                           .getType());
+        assertAddress("255.255.255.255", "255.255.255.255", null, 0);
+        assertAddress("12.3.45.5:44832", "12.3.45.5", 44832, 0);
+        assertAddress("0.0.0.0:*", "0.0.0.0", 0, 0);
+        assertAddress("127.0.0.53%lo:53", "127.0.0.53", 53, 0);
+        /* '*' 는 IPV6_SIMPLE 이 먼저 잡으므로 1 그대로 */
+        assertAddress("*", "*", null, 1);
+        /* '*:*' 는 IPV4_MAPPED_V6 (ipv4 '*') */
+        assertAddress("*:*", "*", null, 2);
+    }
+
+    @Test
+    void interfaceScope() {
+        assertNull(RegexAddressOracle.findMatch("10.0.0.1%eth0:22"));
+        assertNull(RegexAddressOracle.findMatch("[fe80::1]%eth0:546"));
+        assertAddress("10.0.0.1%eth0:22", "10.0.0.1", 22, 0);
+        assertAddress("[fe80::1]%eth0:546", "fe80::1", 546, null);
+        assertAddress("[::]%eth0:*", "::", 0, null);
+    }
+
+    @Test
+    void unchangedForms() {
+        assertAddress("[::ffff:127.0.0.1]:80", "127.0.0.1", 80, 2);
+        assertAddress("::FFFF:172.16.0.15:33231", "172.16.0.15", 33231, 2);
+        assertAddress("[::FFFF:172.16.0.15]", "172.16.0.15", null, 1);
+        assertAddress("ff06:0:0:0:0:0:0:c3", "ff06:0:0:0:0:0:0:c3", null, 1);
+        assertAddress("[ff06:0:0:0:0:0:0:c3]:32312", "ff06:0:0:0:0:0:0:c3", 32312, null);
+        assertAddress("[::1]:631", "::1", 631, null);
+        assertNull(SessionAddress.findMatch("1.2.3.4:123456"));
+        assertNull(SessionAddress.findMatch(""));
+    }
+
+    private static void assertAddress(String text,
+                                      String expectedAddress,
+                                      Integer expectedPort,
+                                      Integer expectedType) {
+        SessionAddress address = SessionAddress.findMatch(text);
+        assertNotNull(address, () -> "'" + text + "' not matched");
+        assertEquals(expectedAddress, address.getAddress(), () -> "address of '" + text + "'");
+        assertEquals(expectedPort, address.getPort(), () -> "port of '" + text + "'");
+        assertEquals(expectedType, address.getType(), () -> "type of '" + text + "'");
+    }
+}
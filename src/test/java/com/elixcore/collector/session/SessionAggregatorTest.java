@@ -0,0 +1,227 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SessionAggregator} 의 folding key (pid, protocol, local port, state, remote prefix), overflow key, 상위 peer 확인
+ */
+class SessionAggregatorTest {
+
+    @Test
+    void foldsByKey() {
+        SessionAggregator aggregator = new SessionAggregator();
+        aggregator.beginCycle();
+        /*같은 key : /24 안의 다른 peer, peer port*/
+        assertTrue(aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 100, 443, "10.1.2.3", 50000)));
+        assertTrue(aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 100, 443, "10.1.2.200", 50001)));
+        assertTrue(aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 100, 443, "10.1.2.3", 50002)));
+        /*pid, local port, state, prefix, protocol 이 다르면 다른 key*/
+        assertTrue(aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 101, 443, "10.1.2.3", 50003)));
+        assertTrue(aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 100, 8443, "10.1.2.3", 50004)));
+        assertTrue(aggregator.add(session(PayloadState.SessionState.SYN_RECV, 100, 443, "10.1.2.3", 50005)));
+        assertTrue(aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 100, 443, "10.1.3.3", 50006)));
+        assertTrue(aggregator.add(session(SessionCollectedData.PROTOCOL_UDP, PayloadState.SessionState.TIME_WAIT, 100, 443, "10.1.2.3", 50007)));
+        /*pid 를 모르면 0*/
+        SessionCollectedData noPid = session(PayloadState.SessionState.TIME_WAIT, 0, 443, "10.1.2.3", 50008);
+        noPid.setPid(null);
+        assertTrue(aggregator.add(noPid));
+        /*IPv6 는 /64*/
+        assertTrue(aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 100, 443, "2001:db8:0:1::5", 50009)));
+        assertTrue(aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 100, 443, "2001:db8:0:1:ffff::9", 50010)));
+        assertTrue(aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 100, 443, "2001:db8:0:2::5", 50011)));
+
+        /*접지 않는 상태, LISTEN/UNCONN*/
+        assertFalse(aggregator.add(session(PayloadState.SessionState.ESTABLISHED, 100, 443, "10.1.2.3", 50012)));
+        assertFalse(aggregator.add(session(PayloadState.SessionState.LISTEN, 100, 443, "*", 0)));
+
+        List<Struct> aggregates = aggregates(aggregator.toStruct());
+        assertEquals(aggregator.size(), aggregates.size());
+        assertEquals(Arrays.asList("100/1/443/TIME_WAIT/10.1.2.0/24=3",
+                                   "101/1/443/TIME_WAIT/10.1.2.0/24=1",
+                                   "100/1/8443/TIME_WAIT/10.1.2.0/24=1",
+                                   "100/1/443/SYN_RECV/10.1.2.0/24=1",
+                                   "100/1/443/TIME_WAIT/10.1.3.0/24=1",
+                                   "100/2/443/TIME_WAIT/10.1.2.0/24=1",
+                                   "0/1/443/TIME_WAIT/10.1.2.0/24=1",
+                                   "100/1/443/TIME_WAIT/2001:db8:0:1::/64=2",
+                                   "100/1/443/TIME_WAIT/2001:db8:0:2::/64=1"), keys(aggregates));
+
+        long[] stateSessions = aggregator.getStateSessions();
+        assertEquals(11, stateSessions[PayloadState.SessionState.TIME_WAIT.ordinal()]);
+        assertEquals(1, stateSessions[PayloadState.SessionState.SYN_RECV.ordinal()]);
+        assertEquals(0, stateSessions[PayloadState.SessionState.ESTABLISHED.ordinal()]);
+
+        aggregator.beginCycle();
+        assertEquals(0, aggregator.size());
+        assertEquals(0, aggregator.getStateSessions()[PayloadState.SessionState.TIME_WAIT.ordinal()]);
+    }
+
+    @Test
+    void prefixLengths() {
+        SessionAggregator aggregator = new SessionAggregator(EnumSet.of(PayloadState.SessionState.TIME_WAIT), 16, 128, 5);
+        aggregator.beginCycle();
+        aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 1, 80, "10.1.2.3", 1));
+        aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 1, 80, "10.1.200.3", 2));
+        aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 1, 80, "fe80::1", 3));
+        aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 1, 80, "fe80::2", 4));
+        assertEquals(Arrays.asList("1/1/80/TIME_WAIT/10.1.0.0/16=2", "1/1/80/TIME_WAIT/fe80::1/128=1", "1/1/80/TIME_WAIT/fe80::2/128=1"),
+                     keys(aggregates(aggregator.toStruct())));
+
+        /*범위 밖 prefix 는 0 ~ 32, 0 ~ 128 로 제한*/
+        SessionAggregator all = new SessionAggregator(EnumSet.of(PayloadState.SessionState.TIME_WAIT), -1, 200, 5);
+        all.beginCycle();
+        all.add(session(PayloadState.SessionState.TIME_WAIT, 1, 80, "10.1.2.3", 1));
+        all.add(session(PayloadState.SessionState.TIME_WAIT, 1, 80, "192.168.0.1", 2));
+        all.add(session(PayloadState.SessionState.TIME_WAIT, 1, 80, "fe80::1", 3));
+        assertEquals(Arrays.asList("1/1/80/TIME_WAIT/0.0.0.0/0=2", "1/1/80/TIME_WAIT/fe80::1/128=1"), keys(aggregates(all.toStruct())));
+    }
+
+    @Test
+    void overflowKey() {
+        SessionAggregator aggregator = new SessionAggregator();
+        aggregator.setMaxAggregates(3);
+        aggregator.beginCycle();
+        for (int port = 1; port <= 10; port++) {
+            assertTrue(aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 100 + port, port, "10.0." + port + ".1", 40000)));
+        }
+        /*기존 key 는 그대로 더하고, 새 key 는 상태/protocol 별 overflow key 로*/
+        aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 101, 1, "10.0.1.9", 40001));
+        aggregator.add(session(PayloadState.SessionState.SYN_RECV, 100, 1, "10.0.1.1", 40002));
+        aggregator.add(session(SessionCollectedData.PROTOCOL_UDP, PayloadState.SessionState.TIME_WAIT, 100, 1, "10.0.1.1", 40003));
+
+        List<Struct> aggregates = aggregates(aggregator.toStruct());
+        assertEquals(Arrays.asList("101/1/1/TIME_WAIT/10.0.1.0/24=2",
+                                   "102/1/2/TIME_WAIT/10.0.2.0/24=1",
+                                   "103/1/3/TIME_WAIT/10.0.3.0/24=1",
+                                   "0/1/0/TIME_WAIT/::/0=7",
+                                   "0/1/0/SYN_RECV/::/0=1",
+                                   "0/2/0/TIME_WAIT/::/0=1"), keys(aggregates));
+        /*overflow key 도 peer 를 센다 (모두 1 이므로 순서는 정하지 않음)*/
+        List<String> overflowPeers = topPeers(aggregates.get(3));
+        assertEquals(5, overflowPeers.size());
+        assertTrue(overflowPeers.stream()
+                                .allMatch(peer -> peer.matches("10\\.0\\.([4-9]|10)\\.1=1")), overflowPeers::toString);
+        assertEquals(13, aggregates.stream()
+                                   .mapToLong(aggregate -> (long) number(aggregate, "count"))
+                                   .sum());
+    }
+
+    @Test
+    void topPeers() {
+        SessionAggregator aggregator = new SessionAggregator(EnumSet.of(PayloadState.SessionState.TIME_WAIT), 8, 64, 3);
+        aggregator.beginCycle();
+        for (int peer = 1; peer <= 5; peer++) {
+            for (int n = 0; n < peer * 2; n++) {
+                aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 1, 80, "10.0.0." + peer, n));
+            }
+        }
+        List<Struct> aggregates = aggregates(aggregator.toStruct());
+        assertEquals(Arrays.asList("1/1/80/TIME_WAIT/10.0.0.0/8=30"), keys(aggregates));
+        assertEquals(Arrays.asList("10.0.0.5=10", "10.0.0.4=8", "10.0.0.3=6"), topPeers(aggregates.get(0)));
+
+        /*weight 는 합계와 peer count 에 모두 반영*/
+        assertTrue(aggregator.addAny(session(PayloadState.SessionState.ESTABLISHED, 1, 80, "10.0.0.1", 1), 20));
+        assertFalse(aggregator.addAny(session(PayloadState.SessionState.LISTEN, 1, 80, "*", 0), 20));
+        assertTrue(aggregator.addAny(session(PayloadState.SessionState.TIME_WAIT, 1, 80, "10.0.0.1", 1), 20));
+        aggregates = aggregates(aggregator.toStruct());
+        assertEquals(Arrays.asList("1/1/80/TIME_WAIT/10.0.0.0/8=50", "1/1/80/ESTABLISHED/10.0.0.0/8=20"), keys(aggregates));
+        assertEquals(Arrays.asList("10.0.0.1=22", "10.0.0.5=10", "10.0.0.4=8"), topPeers(aggregates.get(0)));
+    }
+
+    @Test
+    void trackedPeerLimit() {
+        SessionAggregator aggregator = new SessionAggregator(EnumSet.of(PayloadState.SessionState.TIME_WAIT), 16, 64, 100);
+        aggregator.beginCycle();
+        for (int peer = 0; peer < 100; peer++) {
+            aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 1, 80, "10.0.0." + peer, 1));
+        }
+        /*추적하지 못한 peer 는 합계에만*/
+        for (int n = 0; n < 10; n++) {
+            aggregator.add(session(PayloadState.SessionState.TIME_WAIT, 1, 80, "10.0.0.99", 1));
+        }
+        Struct aggregate = aggregates(aggregator.toStruct()).get(0);
+        assertEquals(110, (long) number(aggregate, "count"));
+        List<String> topPeers = topPeers(aggregate);
+        assertEquals(64, topPeers.size());
+        assertFalse(topPeers.stream()
+                            .anyMatch(peer -> peer.startsWith("10.0.0.99=")));
+    }
+
+    private static SessionCollectedData session(PayloadState.SessionState state,
+                                                int pid,
+                                                int localPort,
+                                                String peer,
+                                                int peerPort) {
+        return session(SessionCollectedData.PROTOCOL_TCP, state, pid, localPort, peer, peerPort);
+    }
+
+    private static SessionCollectedData session(int protocol,
+                                                PayloadState.SessionState state,
+                                                int pid,
+                                                int localPort,
+                                                String peer,
+                                                int peerPort) {
+        SessionCollectedData session = new SessionCollectedData(protocol);
+        session.setState(state);
+        session.setPid(pid);
+        session.setLocal(new SessionAddress(peer.indexOf(':') < 0 ? "10.9.9.9" : "2001:db8::9", localPort, 0));
+        session.setPeer(new SessionAddress(peer, peerPort, 0));
+        return session;
+    }
+
+    private static List<Struct> aggregates(Struct struct) {
+        assertEquals(SessionAggregator.STRUCT_TYPE, struct.getFieldsOrThrow("type")
+                                                          .getStringValue());
+        return struct.getFieldsOrThrow("aggregates")
+                     .getListValue()
+                     .getValuesList()
+                     .stream()
+                     .map(Value::getStructValue)
+                     .collect(Collectors.toList());
+    }
+
+    /**
+     * pid/protocol/local_port/state/remote_prefix=count
+     */
+    private static List<String> keys(List<Struct> aggregates) {
+        List<String> keys = new ArrayList<>();
+        for (Struct aggregate : aggregates) {
+            keys.add((long) number(aggregate, "pid") + "/" + (long) number(aggregate, "protocol") + "/" + (long) number(aggregate, "local_port") + "/"
+                     + aggregate.getFieldsOrThrow("state")
+                                .getStringValue() + "/" + aggregate.getFieldsOrThrow("remote_prefix")
+                                                                   .getStringValue() + "=" + (long) number(aggregate, "count"));
+        }
+        return keys;
+    }
+
+    /**
+     * address=count (전송 순서)
+     */
+    private static List<String> topPeers(Struct aggregate) {
+        return aggregate.getFieldsOrThrow("top_peers")
+                        .getListValue()
+                        .getValuesList()
+                        .stream()
+                        .map(Value::getStructValue)
+                        .map(peer -> peer.getFieldsOrThrow("address")
+                                         .getStringValue() + "=" + (long) number(peer, "count"))
+                        .collect(Collectors.toList());
+    }
+
+    private static double number(Struct struct,
+                                 String field) {
+        return struct.getFieldsOrThrow(field)
+                     .getNumberValue();
+    }
+}
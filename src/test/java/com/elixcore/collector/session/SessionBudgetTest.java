@@ -0,0 +1,249 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import com.google.protobuf.Any;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SsOutputGenerator} 출력으로 {@link SessionCollector} 를 돌려 {@link SessionBudget} 단계
+ * (NORMAL -> DETAIL_LIMITED -> AGGREGATE_ONLY -> SAMPLED) 와 축소된 주기의 강제 만료를 확인한다.
+ * <p>
+ * 기대값은 같은 seed 의 generator 출력을 따로 읽어 단계별 한도로 센다.
+ */
+class SessionBudgetTest {
+    private static final int DETAIL_SESSIONS    = 1_000;
+    private static final int AGGREGATE_SESSIONS = 2_000;
+    private static final int SAMPLE_SESSIONS    = 4_000;
+    private static final int SAMPLE_RATE        = 8;
+    private static final int MAX_AGGREGATES     = 50;
+
+    @Test
+    void normal() throws InvalidProtocolBufferException {
+        Cycle cycle = collect(900, 1);
+        assertTrue(cycle.expected.sessions <= DETAIL_SESSIONS);
+        assertNull(cycle.degradation);
+        assertNull(cycle.aggregates);
+        assertEquals(cycle.expected.sessions, cycle.detailSockets);
+    }
+
+    @Test
+    void detailLimited() throws InvalidProtocolBufferException {
+        Cycle cycle = collect(1_500, 2);
+        assertLevel(cycle, SessionBudget.Level.DETAIL_LIMITED);
+        /*한도 이후에는 ESTABLISHED 만 소켓 단위*/
+        assertTrue(cycle.expected.detail > DETAIL_SESSIONS);
+        assertTrue(cycle.expected.aggregated > 0);
+    }
+
+    @Test
+    void aggregateOnly() throws InvalidProtocolBufferException {
+        Cycle cycle = collect(3_000, 3);
+        assertLevel(cycle, SessionBudget.Level.AGGREGATE_ONLY);
+        assertTrue(cycle.expected.sessions > AGGREGATE_SESSIONS);
+    }
+
+    @Test
+    void sampled() throws InvalidProtocolBufferException {
+        Cycle cycle = collect(12_000, 4);
+        assertLevel(cycle, SessionBudget.Level.SAMPLED);
+        assertEquals(SAMPLE_RATE, (long) number(cycle.degradation, "sample_rate"));
+        /*한도 이후 세션의 1/sampleRate 만 남고, 남은 세션은 sampleRate 배로 센다*/
+        long beyond = cycle.expected.sessions - SAMPLE_SESSIONS;
+        long kept = beyond - (long) number(cycle.degradation, "sampled_out");
+        assertEquals(beyond / (double) SAMPLE_RATE, kept, beyond / (double) SAMPLE_RATE * 0.15);
+        assertEquals(cycle.expected.aggregated - beyond + kept * SAMPLE_RATE, cycle.aggregatedCount);
+    }
+
+    /**
+     * 축소된 주기는 보이지 않은 세션을 종료로 보지 않지만, 테이블이 detailSessions 의 2배를 넘으면 그래도 만료한다.
+     */
+    @Test
+    void forcedExpiry() {
+        SessionBudget budget = new SessionBudget(500, 100_000, 200_000, SAMPLE_RATE, MAX_AGGREGATES);
+        SessionCollector collector = collector(new SsOutputGenerator(700, 0.3, 5), budget);
+        int expired = 0;
+        int previous = 0;
+        for (int n = 0; n < 30; n++) {
+            collector.collectSession();
+            int tableSize = collector.tableSize();
+            assertTrue(tableSize <= 2 * budget.getDetailSessions(), "cycle " + n + " table " + tableSize);
+            if (tableSize < previous) {
+                expired++;
+            }
+            previous = tableSize;
+        }
+        assertTrue(expired >= 2, "expired " + expired);
+
+        /*한도 안이면 매 주기 만료 (테이블 = 이번 주기 세션)*/
+        SsOutputGenerator generator = new SsOutputGenerator(400, 0.3, 5);
+        SessionCollector normal = collector(generator, budget);
+        for (int n = 0; n < 5; n++) {
+            normal.collectSession();
+            assertEquals(400, normal.tableSize());
+        }
+    }
+
+    /**
+     * 접힌 세션은 이번 주기에 갱신되지 않았어도 종료(CLOSED)로 보내거나 테이블에서 빼지 않는다.
+     */
+    @Test
+    void foldedSessionsAreNotClosed() throws InvalidProtocolBufferException {
+        SessionCollector collector = collector(new SsOutputGenerator(400, 0, 6), null);
+        collector.setKeyframeInterval(10);
+        collector.collectSession();
+        int tableSize = collector.tableSize();
+        assertEquals(400, tableSize);
+
+        collector.setSessionBudget(new SessionBudget(300, 100_000, 200_000, SAMPLE_RATE, MAX_AGGREGATES));
+        Cycle cycle = cycle(collector.collectSession());
+        assertEquals(SessionBudget.Level.DETAIL_LIMITED.name(), cycle.degradation.getFieldsOrThrow("level")
+                                                                                 .getStringValue());
+        assertTrue(number(cycle.degradation, "aggregated") > 0);
+        assertEquals(0, cycle.closedSockets);
+        assertEquals(tableSize, collector.tableSize());
+    }
+
+    /**
+     * 세션 수를 늘려도 소켓 단위 세션, 집계 key, 테이블 크기는 한도에 묶인다.
+     */
+    @Test
+    void boundedMemory() throws InvalidProtocolBufferException {
+        for (int sessions : new int[]{5_000, 20_000, 60_000}) {
+            SessionCollector collector = collector(new SsOutputGenerator(sessions, 0.1, sessions), budget());
+            for (int n = 0; n < 3; n++) {
+                Cycle cycle = cycle(collector.collectSession());
+                assertEquals(SessionBudget.Level.SAMPLED.name(), cycle.degradation.getFieldsOrThrow("level")
+                                                                                   .getStringValue());
+                assertTrue(cycle.detailSockets <= AGGREGATE_SESSIONS, sessions + " detail " + cycle.detailSockets);
+                /*overflow key 는 상태별 하나*/
+                assertTrue(cycle.aggregateKeys <= MAX_AGGREGATES + PayloadState.SessionState.values().length,
+                           sessions + " aggregates " + cycle.aggregateKeys);
+                /*LISTEN/UNCONN (약 5%) 은 접지 않는다*/
+                assertTrue(collector.tableSize() <= 2 * DETAIL_SESSIONS + sessions / 10, sessions + " table " + collector.tableSize());
+            }
+        }
+    }
+
+    private static void assertLevel(Cycle cycle,
+                                    SessionBudget.Level level) {
+        assertNotNull(cycle.degradation);
+        assertEquals(level.name(), cycle.degradation.getFieldsOrThrow("level")
+                                                    .getStringValue());
+        assertEquals(cycle.expected.sessions, (long) number(cycle.degradation, "sessions"));
+        assertEquals(cycle.expected.detail, (long) number(cycle.degradation, "detail"));
+        assertEquals(cycle.expected.detail, cycle.detailSockets);
+        if (level != SessionBudget.Level.SAMPLED) {
+            assertEquals(cycle.expected.aggregated, (long) number(cycle.degradation, "aggregated"));
+            assertEquals(0, (long) number(cycle.degradation, "sampled_out"));
+            assertEquals(1, (long) number(cycle.degradation, "sample_rate"));
+            assertEquals(cycle.expected.aggregated, cycle.aggregatedCount);
+        }
+        assertEquals(cycle.expected.sessions, (long) (number(cycle.degradation, "detail") + number(cycle.degradation, "aggregated")
+                                                      + number(cycle.degradation, "sampled_out")));
+        assertTrue(cycle.aggregateKeys <= MAX_AGGREGATES + PayloadState.SessionState.values().length);
+    }
+
+    private static SessionBudget budget() {
+        return new SessionBudget(DETAIL_SESSIONS, AGGREGATE_SESSIONS, SAMPLE_SESSIONS, SAMPLE_RATE, MAX_AGGREGATES);
+    }
+
+    private static SessionCollector collector(SsOutputGenerator generator,
+                                              SessionBudget budget) {
+        SessionCollector collector = new SessionCollector(new SsSessionSource(SsSessionSource.SESSION_COMMAND, SessionCollectedData.PROTOCOL_TCP), null);
+        collector.setPlayer(generator);
+        collector.setSessionBudget(budget);
+        return collector;
+    }
+
+    /**
+     * 첫 주기를 수집하고, 같은 seed 의 generator 출력으로 기대값을 센다.
+     */
+    private static Cycle collect(int sessions,
+                                 long seed) throws InvalidProtocolBufferException {
+        Cycle cycle = cycle(collector(new SsOutputGenerator(sessions, 0.1, seed), budget()).collectSession());
+        cycle.expected = expected(new SsOutputGenerator(sessions, 0.1, seed));
+        return cycle;
+    }
+
+    private static Expected expected(SsOutputGenerator generator) {
+        Expected expected = new Expected();
+        generator.play(SsSessionSource.SESSION_COMMAND, line -> {
+            SessionCollectedData session = SsLineParser.parse(line, SessionCollectedData.PROTOCOL_TCP);
+            if (session.isListen()) {
+                return true;
+            }
+            long n = ++expected.sessions;
+            boolean detail = n <= DETAIL_SESSIONS || (n <= AGGREGATE_SESSIONS && session.getState() == PayloadState.SessionState.ESTABLISHED);
+            if (detail) {
+                expected.detail++;
+            } else {
+                expected.aggregated++;
+            }
+            return true;
+        });
+        return expected;
+    }
+
+    private static Cycle cycle(PayloadState.StateBundle bundle) throws InvalidProtocolBufferException {
+        Cycle cycle = new Cycle();
+        for (Any any : bundle.getDataList()) {
+            if (any.is(PayloadState.SessionProcess.class)) {
+                PayloadState.SessionProcess process = any.unpack(PayloadState.SessionProcess.class);
+                List<PayloadState.SessionStateUsage> usages = new ArrayList<>(process.getInList());
+                usages.addAll(process.getOutList());
+                for (PayloadState.SessionStateUsage usage : usages) {
+                    cycle.detailSockets += usage.getSessionCount();
+                    if (usage.getState() == PayloadState.SessionState.CLOSED) {
+                        cycle.closedSockets += usage.getSessionCount();
+                    }
+                }
+                continue;
+            }
+            Struct struct = any.unpack(Struct.class);
+            String type = struct.getFieldsOrThrow("type")
+                                .getStringValue();
+            if (type.equals(SessionBudget.STRUCT_TYPE)) {
+                cycle.degradation = struct;
+            } else if (type.equals(SessionAggregator.STRUCT_TYPE)) {
+                cycle.aggregates = struct;
+                for (Value aggregate : struct.getFieldsOrThrow("aggregates")
+                                                                 .getListValue()
+                                                                 .getValuesList()) {
+                    cycle.aggregateKeys++;
+                    cycle.aggregatedCount += (long) number(aggregate.getStructValue(), "count");
+                }
+            }
+        }
+        return cycle;
+    }
+
+    private static double number(Struct struct,
+                                 String field) {
+        return struct.getFieldsOrThrow(field)
+                     .getNumberValue();
+    }
+
+    private static class Expected {
+        private long sessions;
+        private long detail;
+        private long aggregated;
+    }
+
+    private static class Cycle {
+        private Expected expected;
+        private Struct   degradation;
+        private Struct   aggregates;
+        private long     detailSockets;
+        private long     closedSockets;
+        private int      aggregateKeys;
+        private long     aggregatedCount;
+    }
+}
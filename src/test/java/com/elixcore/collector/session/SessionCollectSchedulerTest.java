@@ -0,0 +1,129 @@
+package com.elixcore.collector.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SessionCollectScheduler} 의 주기 조정, overrun 처리, jitter 를 가상 시각으로 확인
+ */
+class SessionCollectSchedulerTest {
+    private static final long   SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long   MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final double BUDGET = 0.05;
+
+    @Test
+    void adaptGrowsToCpuTarget() {
+        /*cpu / budget 이 주기보다 길면 바로 늘린다*/
+        assertEquals(2 * SECOND, SessionCollectScheduler.adaptInterval(SECOND, 100 * MILLIS, BUDGET, SECOND, 10 * SECOND));
+        assertEquals(10 * SECOND, SessionCollectScheduler.adaptInterval(SECOND, SECOND, BUDGET, SECOND, 10 * SECOND));
+        assertEquals(10 * SECOND, SessionCollectScheduler.adaptInterval(10 * SECOND, 5 * SECOND, BUDGET, SECOND, 10 * SECOND));
+        /*짧으면 3/4 가중 평균*/
+        assertEquals(3_500 * MILLIS, SessionCollectScheduler.adaptInterval(4 * SECOND, 100 * MILLIS, BUDGET, SECOND, 10 * SECOND));
+        assertEquals(SECOND, SessionCollectScheduler.adaptInterval(SECOND, 40 * MILLIS, BUDGET, SECOND, 10 * SECOND));
+    }
+
+    @Test
+    void adaptShrinksToBase() {
+        long interval = 10 * SECOND;
+        int steps = 0;
+        while (interval > SECOND) {
+            long next = SessionCollectScheduler.adaptInterval(interval, 0, BUDGET, SECOND, 10 * SECOND);
+            assertTrue(next < interval);
+            assertTrue(next >= SECOND);
+            interval = next;
+            steps++;
+        }
+        /*한 번에 줄이지 않고 천천히*/
+        assertTrue(steps > 5, "steps " + steps);
+        assertEquals(SECOND, SessionCollectScheduler.adaptInterval(interval, 0, BUDGET, SECOND, 10 * SECOND));
+    }
+
+    @Test
+    void skipAlignsToTickGrid() {
+        long interval = 100 * MILLIS;
+        long tick = 30 * MILLIS;
+        assertEquals(tick + 2 * interval, SessionCollectScheduler.catchUp(tick, tick + interval + 1, interval, SessionCollectScheduler.OverrunPolicy.SKIP));
+        assertEquals(tick + 4 * interval, SessionCollectScheduler.catchUp(tick, tick + 3 * interval + 50 * MILLIS, interval, SessionCollectScheduler.OverrunPolicy.SKIP));
+        /*정확히 tick 위에서 끝나도 다음 tick*/
+        assertEquals(tick + 4 * interval, SessionCollectScheduler.catchUp(tick, tick + 3 * interval, interval, SessionCollectScheduler.OverrunPolicy.SKIP));
+
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            long now = tick + 1 + (long) (random.nextDouble() * 100 * interval);
+            long next = SessionCollectScheduler.catchUp(tick, now, interval, SessionCollectScheduler.OverrunPolicy.SKIP);
+            assertTrue(next > now);
+            assertTrue(next <= now + interval);
+            assertEquals(0, (next - tick) % interval);
+        }
+    }
+
+    @Test
+    void coalesceRunsImmediately() {
+        long interval = 100 * MILLIS;
+        long now = 1_234 * MILLIS;
+        assertEquals(now, SessionCollectScheduler.catchUp(30 * MILLIS, now, interval, SessionCollectScheduler.OverrunPolicy.COALESCE));
+        assertEquals(0, SessionCollectScheduler.delay(now, now, interval, 0, 0.5));
+    }
+
+    @Test
+    void delayJitter() {
+        long interval = SECOND;
+        long now = 5 * SECOND;
+        long tick = now + 600 * MILLIS;
+        assertEquals(500 * MILLIS, SessionCollectScheduler.delay(tick, now, interval, 0.1, 0));
+        assertEquals(600 * MILLIS, SessionCollectScheduler.delay(tick, now, interval, 0.1, 0.5));
+        assertEquals(700 * MILLIS, SessionCollectScheduler.delay(tick, now, interval, 0.1, 1));
+        /*jitter 가 대기 시간보다 커도 음수가 되지 않음*/
+        assertEquals(0, SessionCollectScheduler.delay(now + 50 * MILLIS, now, interval, 0.1, 0));
+    }
+
+    /**
+     * 수집 시작 시각은 jitter 만큼 흔들려도 tick 은 처음 격자에 남는다. 주기를 넘긴 수집은 SKIP 이면 격자의 다음 tick 으로,
+     * COALESCE 이면 바로 한 번 수집한 뒤 그 시각 기준 격자로 이어진다.
+     */
+    @Test
+    void ticksStayOnGridUnderJitter() {
+        long interval = SECOND;
+        double jitter = 0.2;
+        for (SessionCollectScheduler.OverrunPolicy policy : SessionCollectScheduler.OverrunPolicy.values()) {
+            Random random = new Random(9);
+            long phase = 123 * MILLIS;
+            long tick = phase;
+            long now = 0;
+            long delay = phase;
+            int overruns = 0;
+            long gridStart = phase;
+            for (int run = 0; run < 5_000; run++) {
+                /*깨어난 시각과 tick 의 차이는 jitter 범위*/
+                long wake = now + delay;
+                if (delay > 0) {
+                    assertTrue(Math.abs(wake - tick) <= (long) (jitter * interval) + 1, policy + " run " + run);
+                }
+                /*가끔 주기를 넘기는 수집*/
+                long duration = random.nextInt(20) == 0 ? (long) (interval * (1 + random.nextDouble() * 3)) : (long) (interval * random.nextDouble() * 0.3);
+                now = wake + duration;
+
+                tick += interval;
+                if (tick < now) {
+                    overruns++;
+                    tick = SessionCollectScheduler.catchUp(tick, now, interval, policy);
+                    if (policy == SessionCollectScheduler.OverrunPolicy.COALESCE) {
+                        assertEquals(now, tick);
+                        gridStart = tick;
+                    }
+                }
+                assertEquals(0, (tick - gridStart) % interval, policy + " run " + run);
+                delay = SessionCollectScheduler.delay(tick, now, interval, jitter, random.nextDouble());
+                assertTrue(delay >= 0);
+            }
+            assertTrue(overruns > 100, policy + " overruns " + overruns);
+            if (policy == SessionCollectScheduler.OverrunPolicy.SKIP) {
+                assertEquals(phase, gridStart);
+            }
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SessionDeltaTable} 의 delta / 결과 / 제거를 이전의 HashMap 구현과 같은 규칙의 참조 모델과 비교
+ */
+class SessionDeltaTableTest {
+    private static final long                        SECOND = 1_000_000_000L;
+    private static final PayloadState.SessionState[] STATES = {
+        PayloadState.SessionState.ESTABLISHED, PayloadState.SessionState.CLOSE_WAIT, PayloadState.SessionState.FIN_WAIT_1,
+        PayloadState.SessionState.LISTEN, PayloadState.SessionState.UNCONN
+    };
+
+    @Test
+    void churnMatchesHashMap() {
+        Random random = new Random(11);
+        SessionDeltaTable table = new SessionDeltaTable(16);
+        int initialCapacity = table.capacity();
+        Map<List<Long>, long[]> reference = new HashMap<>();
+        List<Live> live = new ArrayList<>();
+        int nextId = 0;
+        long time = 0;
+
+        for (int cycle = 0; cycle < 300; cycle++) {
+            /*100 주기까지 5000 개로 늘린 뒤 500 개로 줄인다*/
+            int target = cycle < 100 ? 50 * (cycle + 1) : Math.max(500, 5000 - 25 * (cycle - 100));
+            live.removeIf(session -> random.nextInt(20) == 0);
+            while (live.size() < target) {
+                live.add(new Live(nextId++, random));
+            }
+            while (live.size() > target) {
+                live.remove(random.nextInt(live.size()));
+            }
+
+            time += 1_000_000_000L;
+            table.beginCycle(time);
+            Set<List<Long>> seen = new HashSet<>();
+            for (Live session : live) {
+                session.advance(random, true);
+                SessionCollectedData data = session.toData(session.pid);
+                List<Long> key = key(data);
+                long[] previous = reference.get(key);
+                int expected;
+                long[] expectedCounters = {data.getRxByte(), data.getTxByte(), data.getRxPacket(), data.getTxPacket()};
+                if (previous == null || (data.getInode() != 0 && previous[5] != 0 && data.getInode() != previous[5])) {
+                    expected = SessionDeltaTable.OPENED;
+                } else {
+                    for (int c = 0; c < 4; c++) {
+                        expectedCounters[c] = expectedCounters[c] < previous[c] ? expectedCounters[c] : expectedCounters[c] - previous[c];
+                    }
+                    if (previous[4] != data.getState()
+                                           .ordinal()) {
+                        expected = SessionDeltaTable.STATE_CHANGED;
+                    } else if ((expectedCounters[0] | expectedCounters[1] | expectedCounters[2] | expectedCounters[3]) != 0) {
+                        expected = SessionDeltaTable.CHANGED;
+                    } else {
+                        expected = SessionDeltaTable.UNCHANGED;
+                    }
+                }
+                reference.put(key, new long[]{data.getRxByte(), data.getTxByte(), data.getRxPacket(), data.getTxPacket(), data.getState()
+                                                                                                                               .ordinal(), data.getInode()});
+                seen.add(key);
+
+                int cycleNo = cycle;
+                assertEquals(expected, table.update(data), () -> "cycle " + cycleNo + " session " + session.id);
+                assertArrayEquals(expectedCounters, new long[]{data.getRxByte(), data.getTxByte(), data.getRxPacket(), data.getTxPacket()});
+            }
+
+            /*종료 이벤트 (pid 모름)*/
+            for (int n = 0; n < 5 && !live.isEmpty(); n++) {
+                Live session = live.remove(random.nextInt(live.size()));
+                session.advance(random, false);
+                SessionCollectedData event = session.toData(0);
+                List<Long> key = key(session.toData(session.pid));
+                long[] previous = reference.remove(key);
+                seen.remove(key);
+                assertTrue(table.close(event));
+                assertEquals(session.pid, event.getPid()
+                                               .intValue());
+                long rx = session.rxByte < previous[0] ? session.rxByte : session.rxByte - previous[0];
+                assertEquals(rx, event.getRxByte());
+            }
+
+            Set<List<Long>> expired = new HashSet<>(reference.keySet());
+            expired.removeAll(seen);
+            reference.keySet()
+                     .removeAll(expired);
+            Set<List<Long>> removed = new HashSet<>();
+            int count = table.expire((localHigh, localLow, peerHigh, peerLow, meta) -> removed.add(Arrays.asList(localHigh, localLow, peerHigh, peerLow, meta)));
+            assertEquals(expired, removed);
+            assertEquals(expired.size(), count);
+            assertEquals(reference.size(), table.size());
+        }
+        assertTrue(table.capacity() > initialCapacity * 64, "capacity " + table.capacity());
+    }
+
+    /**
+     * home slot 이 마지막 slot 인 항목들이 테이블 끝을 넘어 0, 1 에 놓인 상태에서 앞쪽을 지운다.
+     */
+    @Test
+    void deleteWrapsAroundEnd() {
+        SessionDeltaTable table = new SessionDeltaTable(16);
+        int mask = table.capacity() - 1;
+        List<SessionCollectedData> last = new ArrayList<>();
+        SessionCollectedData first = null;
+        for (int port = 1; last.size() < 3 || first == null; port++) {
+            SessionCollectedData session = session(port, 100, 1);
+            int home = home(session, mask);
+            if (home == mask && last.size() < 3) {
+                last.add(session);
+            } else if (home == 0 && first == null) {
+                first = session;
+            }
+        }
+        SessionCollectedData a = last.get(0);
+        SessionCollectedData b = last.get(1);
+        SessionCollectedData c = last.get(2);
+
+        table.beginCycle(1);
+        for (SessionCollectedData session : Arrays.asList(a, b, c, first)) {
+            assertEquals(SessionDeltaTable.OPENED, table.update(copy(session, 10)));
+        }
+
+        /*마지막 slot 의 a 를 지우면 b, c, first 가 한 칸씩 당겨져야 찾을 수 있다*/
+        assertTrue(table.close(copy(a, 30)));
+        assertEquals(3, table.size());
+        table.beginCycle(2);
+        for (SessionCollectedData session : Arrays.asList(b, first)) {
+            SessionCollectedData updated = copy(session, 25);
+            assertEquals(SessionDeltaTable.CHANGED, table.update(updated));
+            assertEquals(15, updated.getRxByte());
+        }
+        /*c 는 갱신되지 않아 제거, 남은 항목은 그대로 찾아진다*/
+        assertEquals(1, table.expire());
+        assertFalse(table.close(copy(c, 40)));
+        table.beginCycle(3);
+        for (SessionCollectedData session : Arrays.asList(b, first)) {
+            SessionCollectedData updated = copy(session, 26);
+            assertEquals(SessionDeltaTable.CHANGED, table.update(updated));
+            assertEquals(1, updated.getRxByte());
+        }
+        assertEquals(0, table.expire());
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    void generationRollover() {
+        for (int start : new int[]{Integer.MAX_VALUE - 1, -2}) {
+            SessionDeltaTable table = new SessionDeltaTable(16);
+            table.setGeneration(start);
+            SessionCollectedData kept = session(1000, 100, 1);
+            SessionCollectedData dropped = session(1001, 100, 2);
+            for (int cycle = 0; cycle < 4; cycle++) {
+                table.beginCycle(cycle + 1);
+                table.update(copy(kept, cycle * 10L));
+                if (cycle < 2) {
+                    table.update(copy(dropped, cycle * 10L));
+                }
+                /*generation 이 MAX -> MIN, -1 -> 1 (0 건너뜀) 으로 넘어가도 갱신된 항목은 남고 빠진 항목만 제거*/
+                assertEquals(cycle == 2 ? 1 : 0, table.expire(), "start " + start + " cycle " + cycle);
+                assertEquals(cycle < 2 ? 2 : 1, table.size());
+            }
+            SessionCollectedData last = copy(kept, 40);
+            table.beginCycle(10);
+            assertEquals(SessionDeltaTable.CHANGED, table.update(last));
+            assertEquals(10, last.getRxByte());
+        }
+    }
+
+    /**
+     * rate 는 주기 번호가 아니라 이전 표본 이후 실제 경과 시간(ns)으로 나눈다. (불규칙한 간격, 빠진 주기 포함)
+     */
+    @Test
+    void ratesUseElapsedTime() {
+        SessionDeltaTable table = new SessionDeltaTable(16);
+        SessionCollectedData session = session(2000, 100, 1);
+        long[] times = {5 * SECOND, 5 * SECOND + SECOND / 2, 8 * SECOND + SECOND / 2, 8 * SECOND + 750_000_000L, 20 * SECOND};
+        long[] rx = {1_000, 2_000, 8_000, 8_500, 20_500};
+        long[] tx = {0, 100, 400, 400, 1_600};
+        table.beginCycle(times[0]);
+        SessionCollectedData first = counters(session, rx[0], tx[0], 10, 0);
+        assertEquals(SessionDeltaTable.OPENED, table.update(first));
+        /*첫 표본은 rate 없음*/
+        assertEquals(0, first.getRxByteRate());
+        for (int n = 1; n < times.length; n++) {
+            table.beginCycle(times[n]);
+            if (n == 3) {
+                /*세션이 보이지 않은 주기 (expire 하지 않음)*/
+                table.beginCycle(times[n] + SECOND);
+                times[n] += SECOND;
+            }
+            SessionCollectedData updated = counters(session, rx[n], tx[n], 10 + n * 3L, n);
+            table.update(updated);
+            double seconds = (times[n] - times[n - 1]) / 1e9;
+            assertEquals((rx[n] - rx[n - 1]) / seconds, updated.getRxByteRate(), 1e-6, "sample " + n);
+            assertEquals((tx[n] - tx[n - 1]) / seconds, updated.getTxByteRate(), 1e-6);
+            assertEquals(3 / seconds, updated.getRxPacketRate(), 1e-9);
+            assertEquals(1 / seconds, updated.getTxPacketRate(), 1e-9);
+            /*시정수를 주지 않으면 EWMA 없음*/
+            assertEquals(0, updated.getRxByteRateAvg());
+        }
+
+        /*같은 주기에 다시 갱신되면 경과 시간 0 : rate 를 채우지 않음*/
+        SessionCollectedData again = counters(session, rx[4] + 1_000, tx[4], 30, 4);
+        table.update(again);
+        assertEquals(1_000, again.getRxByte());
+        assertEquals(0, again.getRxByteRate());
+    }
+
+    /**
+     * EWMA 는 표본 간격 dt 마다 alpha = 1 - exp(-dt / tau) 로 반영한다.
+     * 일정한 rate 에서는 표본 간격과 관계없이 같은 시각에 같은 값(시정수만큼의 지수 감쇠)이 된다.
+     */
+    @Test
+    void ewmaAlphaFollowsElapsedTime() {
+        long tau = 4 * SECOND;
+        Random random = new Random(21);
+        SessionDeltaTable table = new SessionDeltaTable(16);
+        table.setRateTimeConstant(tau);
+        SessionCollectedData session = session(3000, 100, 7);
+        long time = SECOND;
+        long rx = 0;
+        double average = -1;
+        table.beginCycle(time);
+        table.update(counters(session, rx, 0, 0, 0));
+        for (int n = 0; n < 200; n++) {
+            long dt = SECOND / 10 + (long) (random.nextDouble() * 5 * SECOND);
+            long delta = random.nextInt(1 << 20);
+            time += dt;
+            rx += delta;
+            table.beginCycle(time);
+            SessionCollectedData updated = counters(session, rx, 0, 0, 0);
+            table.update(updated);
+            double rate = delta / (dt / 1e9);
+            double alpha = 1 - Math.exp(-(double) dt / tau);
+            /*첫 rate 는 그대로 시작값*/
+            average = average < 0 ? rate : average + alpha * (rate - average);
+            assertEquals(average, updated.getRxByteRateAvg(), Math.abs(average) * 1e-9 + 1e-9, "sample " + n);
+            assertEquals(0, updated.getTxByteRateAvg());
+        }
+
+        /*1000 byte/s 에 수렴한 뒤 5000 byte/s 로 바뀐 세션을 서로 다른 간격으로 표본*/
+        long[][] intervals = {{SECOND, SECOND, SECOND, SECOND, SECOND, SECOND}, {SECOND / 2, 2 * SECOND, SECOND / 4, 3 * SECOND + SECOND / 4}, {6 * SECOND}};
+        for (long[] steps : intervals) {
+            SessionDeltaTable stepTable = new SessionDeltaTable(16);
+            stepTable.setRateTimeConstant(tau);
+            long stepTime = 0;
+            long stepRx = 0;
+            stepTable.beginCycle(stepTime);
+            stepTable.update(counters(session, stepRx, 0, 0, 0));
+            stepTime += 100 * SECOND;
+            stepRx += 100 * 1_000;
+            stepTable.beginCycle(stepTime);
+            SessionCollectedData updated = counters(session, stepRx, 0, 0, 0);
+            stepTable.update(updated);
+            assertEquals(1_000, updated.getRxByteRateAvg(), 1e-9);
+            for (long step : steps) {
+                stepTime += step;
+                stepRx += 5_000 * step / SECOND;
+                stepTable.beginCycle(stepTime);
+                updated = counters(session, stepRx, 0, 0, 0);
+                stepTable.update(updated);
+            }
+            assertEquals(5_000 + (1_000 - 5_000) * Math.exp(-6.0 * SECOND / tau), updated.getRxByteRateAvg(), 1e-6, Arrays.toString(steps));
+        }
+    }
+
+    /**
+     * 같은 tuple 의 다른 inode 는 새 세션 : 누적값을 delta 로 바꾸지 않고 rate 0, EWMA 는 이전 소켓과 섞지 않고 새로 시작한다.
+     * inode 를 모르면 카운터 감소를 reset 으로 보고 현재 값을 delta 로 쓴다.
+     */
+    @Test
+    void inodeReuseResetsRate() {
+        SessionDeltaTable table = new SessionDeltaTable(16);
+        table.setRateTimeConstant(2 * SECOND);
+        SessionCollectedData session = session(4000, 100, 11);
+        table.beginCycle(SECOND);
+        table.update(counters(session, 1_000, 0, 0, 0));
+        table.beginCycle(2 * SECOND);
+        SessionCollectedData updated = counters(session, 101_000, 0, 0, 0);
+        table.update(updated);
+        assertEquals(100_000, updated.getRxByteRateAvg(), 1e-9);
+
+        SessionCollectedData reused = counters(session(4000, 100, 12), 300, 0, 0, 0);
+        table.beginCycle(3 * SECOND);
+        assertEquals(SessionDeltaTable.OPENED, table.update(reused));
+        assertEquals(300, reused.getRxByte());
+        assertEquals(0, reused.getRxByteRate());
+        assertEquals(0, reused.getRxByteRateAvg());
+        assertEquals(1, table.size());
+
+        table.beginCycle(5 * SECOND);
+        SessionCollectedData next = counters(session(4000, 100, 12), 700, 0, 0, 0);
+        assertEquals(SessionDeltaTable.CHANGED, table.update(next));
+        assertEquals(400, next.getRxByte());
+        assertEquals(200, next.getRxByteRate(), 1e-9);
+        assertEquals(200, next.getRxByteRateAvg(), 1e-9);
+
+        /*inode 없음 : 감소는 reset*/
+        SessionCollectedData unknown = session(4001, 100, 0);
+        table.beginCycle(6 * SECOND);
+        table.update(counters(unknown, 50_000, 0, 0, 0));
+        table.beginCycle(8 * SECOND);
+        SessionCollectedData reset = counters(unknown, 600, 0, 0, 0);
+        assertEquals(SessionDeltaTable.CHANGED, table.update(reset));
+        assertEquals(600, reset.getRxByte());
+        assertEquals(300, reset.getRxByteRate(), 1e-9);
+    }
+
+    private static int home(SessionCollectedData session,
+                            int mask) {
+        return (int) SessionKey.hash(SessionKey.high(session.getLocal()), SessionKey.low(session.getLocal()), SessionKey.high(session.getPeer()),
+                                     SessionKey.low(session.getPeer()), SessionKey.tuple(SessionKey.meta(session))) & mask;
+    }
+
+    private static SessionCollectedData session(int localPort,
+                                                int pid,
+                                                long inode) {
+        SessionCollectedData session = new SessionCollectedData(SessionCollectedData.PROTOCOL_TCP);
+        session.setState(PayloadState.SessionState.ESTABLISHED);
+        session.setLocal(new SessionAddress("10.0.0.1", localPort, 0));
+        session.setPeer(new SessionAddress("10.0.0.2", 443, 0));
+        session.setPid(pid);
+        session.setInode(inode);
+        return session;
+    }
+
+    private static SessionCollectedData copy(SessionCollectedData session,
+                                             long rxByte) {
+        SessionCollectedData copy = new SessionCollectedData(session.getProtocol());
+        copy.setState(session.getState());
+        copy.setLocal(session.getLocal());
+        copy.setPeer(session.getPeer());
+        copy.setPid(session.getPid());
+        copy.setInode(session.getInode());
+        copy.setRxByte(rxByte);
+        return copy;
+    }
+
+    private static SessionCollectedData counters(SessionCollectedData session,
+                                                 long rxByte,
+                                                 long txByte,
+                                                 long rxPacket,
+                                                 long txPacket) {
+        SessionCollectedData copy = copy(session, rxByte);
+        copy.setTxByte(txByte);
+        copy.setRxPacket(rxPacket);
+        copy.setTxPacket(txPacket);
+        return copy;
+    }
+
+    private static List<Long> key(SessionCollectedData session) {
+        return Arrays.asList(SessionKey.high(session.getLocal()), SessionKey.low(session.getLocal()), SessionKey.high(session.getPeer()),
+                             SessionKey.low(session.getPeer()), SessionKey.meta(session));
+    }
+
+    /**
+     * 주기마다 카운터가 늘고, 가끔 reset / inode 재사용 / 상태 변경이 있는 세션
+     */
+    private static final class Live {
+        private final int                       id;
+        private final int                       protocol;
+        private final String                    local;
+        private final int                       localPort;
+        private final String                    peer;
+        private final int                       peerPort;
+        private final int                       pid;
+        private       PayloadState.SessionState state;
+        private       long                      inode;
+        private       long                      rxByte;
+        private       long                      txByte;
+        private       long                      rxPacket;
+        private       long                      txPacket;
+
+        private Live(int id,
+                     Random random) {
+            this.id        = id;
+            this.protocol  = 1 + random.nextInt(2);
+            this.local     = random.nextInt(4) == 0 ? "2001:db8::" + Integer.toHexString(id) : "10." + (id >> 16) + "." + ((id >> 8) & 0xff) + "." + (id & 0xff);
+            this.localPort = random.nextInt(65536);
+            this.peer      = random.nextBoolean() ? "192.168.0." + random.nextInt(256) : "2001:db8:1::" + Integer.toHexString(random.nextInt(65536));
+            this.peerPort  = random.nextInt(65536);
+            this.pid       = 1 + random.nextInt(1 << 22);
+            this.state     = STATES[random.nextInt(STATES.length)];
+            this.inode     = random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(Integer.MAX_VALUE);
+        }
+
+        /**
+         * @param reuse false 이면 inode 를 바꾸지 않는다. (종료 이벤트는 같은 소켓)
+         */
+        private void advance(Random random,
+                             boolean reuse) {
+            int roll = random.nextInt(100);
+            if (roll < 2) {
+                /*counter reset*/
+                rxByte   = random.nextInt(100);
+                txByte   = random.nextInt(100);
+                rxPacket = random.nextInt(10);
+                txPacket = random.nextInt(10);
+                return;
+            }
+            if (roll < 3 && reuse && inode != 0) {
+                /*같은 tuple 의 다른 소켓*/
+                inode++;
+            } else if (roll < 8) {
+                state = STATES[random.nextInt(STATES.length)];
+            }
+            if (random.nextInt(4) != 0) {
+                rxByte += random.nextInt(1 << 20);
+                txByte += random.nextInt(1 << 20);
+                rxPacket += random.nextInt(100);
+                txPacket += random.nextInt(100);
+            }
+        }
+
+        private SessionCollectedData toData(int pid) {
+            SessionCollectedData data = new SessionCollectedData(protocol);
+            data.setState(state);
+            data.setLocal(new SessionAddress(local, localPort, local.indexOf(':') < 0 ? 0 : 1));
+            data.setPeer(new SessionAddress(peer, peerPort, peer.indexOf(':') < 0 ? 0 : 1));
+            data.setPid(pid);
+            data.setInode(inode);
+            data.setRxByte(rxByte);
+            data.setTxByte(txByte);
+            data.setRxPacket(rxPacket);
+            data.setTxPacket(txPacket);
+            return data;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SessionFilter} 의 `ss` 인자, inet_diag 상태 bitmask, 수집기 안 조건 확인.
+ * 내려 보낸 조건은 {@link SsFilterOracle} 로 해석해 {@link SessionFilter#test(SessionCollectedData)} 와 비교한다.
+ */
+class SessionFilterTest {
+    /* `ss` 가 출력하는 상태 (CLOSED 는 UNCONN 으로 나온다) */
+    private static final PayloadState.SessionState[] STATES    = {
+        PayloadState.SessionState.ESTABLISHED, PayloadState.SessionState.SYN_SENT, PayloadState.SessionState.SYN_RECV,
+        PayloadState.SessionState.FIN_WAIT_1, PayloadState.SessionState.FIN_WAIT_2, PayloadState.SessionState.TIME_WAIT,
+        PayloadState.SessionState.CLOSE_WAIT, PayloadState.SessionState.LAST_ACK, PayloadState.SessionState.CLOSING,
+        PayloadState.SessionState.LISTEN, PayloadState.SessionState.UNCONN
+    };
+    private static final String[]                    ADDRESSES = {
+        "10.0.0.1", "10.1.2.3", "192.168.1.7", "192.168.1.8", "127.0.0.1", "127.5.0.1", "0.0.0.0", "*", "::1", "::", "fd00::5",
+        "fdff:1::9", "2001:db8::1", "2001:db9::1", "fe80::1", "::ffff:10.1.0.9", "::ffff:127.0.0.1"
+    };
+    private static final String[]                    CIDRS     = {
+        "10.0.0.0/8", "10.1.0.0/16", "192.168.1.7", "192.168.1.0/31", "fd00::/8", "2001:db8::/32", "::1/128", "0.0.0.0/0", "::/0"
+    };
+    private static final int[]                       PORTS     = {22, 53, 443, 8080, 65535};
+
+    @Test
+    void noCondition() {
+        SessionFilter filter = new SessionFilter();
+        assertTrue(filter.isEmpty());
+        assertEquals(Collections.emptyList(), filter.toSsArguments());
+        assertEquals(0xffffffff, filter.kernelStateMask());
+        assertTrue(filter.test(session(PayloadState.SessionState.TIME_WAIT, "10.0.0.1", 1234, "10.0.0.2", 80, null)));
+    }
+
+    @Test
+    void stateArguments() {
+        /*LISTEN(listening), UNCONN(closed) 은 항상 같이 받는다*/
+        SessionFilter established = new SessionFilter().addState(PayloadState.SessionState.ESTABLISHED);
+        assertEquals(Arrays.asList("state", "established", "state", "closed", "state", "listening"), established.toSsArguments());
+        assertEquals(1 << 1 | 1 << 7 | 1 << 10, established.kernelStateMask());
+
+        SessionFilter closed = new SessionFilter().addState(PayloadState.SessionState.CLOSED);
+        assertEquals(Arrays.asList("state", "closed", "state", "listening"), closed.toSsArguments());
+        assertEquals(1 << 7 | 1 << 10, closed.kernelStateMask());
+
+        /*SYN_RECV 는 TCP_SYN_RECV, TCP_NEW_SYN_RECV 둘 다*/
+        SessionFilter handshake = new SessionFilter().addState(PayloadState.SessionState.SYN_RECV)
+                                                     .addState(PayloadState.SessionState.TIME_WAIT);
+        assertEquals(Arrays.asList("state", "syn-recv", "state", "time-wait", "state", "closed", "state", "listening"), handshake.toSsArguments());
+        assertEquals(1 << 3 | 1 << 6 | 1 << 7 | 1 << 10 | 1 << 12, handshake.kernelStateMask());
+
+        SessionFilter listen = new SessionFilter().addState(PayloadState.SessionState.LISTEN);
+        assertEquals(Arrays.asList("state", "closed", "state", "listening"), listen.toSsArguments());
+    }
+
+    @Test
+    void expressionArguments() {
+        assertEquals(Collections.singletonList("( ( sport = :443 or dport = :443 ) ) or dport = :0"), new SessionFilter().addPort(443)
+                                                                                                                          .toSsArguments());
+        assertEquals(Collections.singletonList("( ( sport = :65535 or dport = :65535 ) ) or dport = :0"), new SessionFilter().addPort(-1)
+                                                                                                                              .toSsArguments());
+        assertEquals(Collections.singletonList("( ( src 10.0.0.0/8 or dst 10.0.0.0/8 or src [fd00::]/8 or dst [fd00::]/8 ) and not src 127.0.0.0/8 and not src [::1] ) or dport = :0"),
+                     new SessionFilter().addCidr("10.0.0.0/8")
+                                        .addCidr("fd00::/8")
+                                        .setExcludeLoopback(true)
+                                        .toSsArguments());
+        assertEquals(Arrays.asList("state", "established", "state", "closed", "state", "listening",
+                                   "( ( sport = :22 or dport = :22 ) and ( src 10.1.2.3/32 or dst 10.1.2.3/32 ) ) or dport = :0"),
+                     new SessionFilter().addState(PayloadState.SessionState.ESTABLISHED)
+                                        .addPort(22)
+                                        .addCidr("10.1.2.3")
+                                        .toSsArguments());
+
+        /*pid, sampling 은 내려 보내지 않는다*/
+        SessionFilter inProcess = new SessionFilter().addPid(100)
+                                                     .setSampleRate(PayloadState.SessionState.ESTABLISHED, 4);
+        assertFalse(inProcess.isEmpty());
+        assertEquals(Collections.emptyList(), inProcess.toSsArguments());
+        assertEquals(0xffffffff, inProcess.kernelStateMask());
+
+        assertThrows(IllegalArgumentException.class, () -> new SessionFilter().addCidr("10.0.0.0/33"));
+        assertThrows(IllegalArgumentException.class, () -> new SessionFilter().addCidr("fd00::/129"));
+    }
+
+    /**
+     * 내려 보낸 조건(`ss`, bitmask)은 수집기 안 조건보다 넓어야 하고, pid/sampling 이 없으면
+     * LISTEN/UNCONN 을 뺀 나머지는 같은 세션을 고른다.
+     */
+    @Test
+    void pushDownAgreesWithTest() {
+        Random random = new Random(11);
+        int accepted = 0;
+        for (int f = 0; f < 2_000; f++) {
+            SessionFilter filter = new SessionFilter();
+            boolean inProcessOnly = random.nextInt(4) == 0;
+            for (PayloadState.SessionState state : STATES) {
+                if (random.nextInt(5) == 0) {
+                    filter.addState(state);
+                }
+            }
+            for (int port : PORTS) {
+                if (random.nextInt(6) == 0) {
+                    filter.addPort(port);
+                }
+            }
+            for (String cidr : CIDRS) {
+                if (random.nextInt(6) == 0) {
+                    filter.addCidr(cidr);
+                }
+            }
+            filter.setExcludeLoopback(random.nextInt(3) == 0);
+            if (inProcessOnly) {
+                filter.addPid(1 + random.nextInt(3));
+                filter.setSampleRate(STATES[random.nextInt(STATES.length)], 2 + random.nextInt(3));
+            }
+            List<String> arguments = filter.toSsArguments();
+            int mask = filter.kernelStateMask();
+
+            for (int s = 0; s < 50; s++) {
+                SessionCollectedData session = randomSession(random);
+                boolean pushedDown = SsFilterOracle.accept(arguments, session);
+                boolean inProcess = filter.test(session);
+                String message = arguments + " " + session;
+                if (inProcess) {
+                    accepted++;
+                    assertTrue(pushedDown, message);
+                    assertTrue(maskAccepts(mask, session.getState()), message);
+                }
+                if (session.isListen()) {
+                    assertTrue(pushedDown, message);
+                    assertTrue(maskAccepts(mask, session.getState()), message);
+                } else if (!inProcessOnly) {
+                    assertEquals(pushedDown, inProcess, message);
+                    assertEquals(filter.acceptState(session.getState()), maskAccepts(mask, session.getState()), message);
+                }
+            }
+        }
+        assertTrue(accepted > 5_000, "accepted " + accepted);
+    }
+
+    @Test
+    void excludeLoopback() {
+        SessionFilter filter = new SessionFilter().setExcludeLoopback(true);
+        for (String loopback : new String[]{"127.0.0.1", "127.255.0.9", "::1", "::ffff:127.0.0.1"}) {
+            assertFalse(filter.test(session(PayloadState.SessionState.ESTABLISHED, loopback, 1234, "10.0.0.2", 80, null)), loopback);
+        }
+        for (String address : new String[]{"128.0.0.1", "::2", "10.0.0.1", "::ffff:10.0.0.1", "fe80::1"}) {
+            assertTrue(filter.test(session(PayloadState.SessionState.ESTABLISHED, address, 1234, "127.0.0.1", 80, null)), address);
+        }
+    }
+
+    @Test
+    void pidFilter() {
+        SessionFilter filter = new SessionFilter().addPid(100)
+                                                  .addPid(200);
+        assertTrue(filter.test(session(PayloadState.SessionState.ESTABLISHED, "10.0.0.1", 1234, "10.0.0.2", 80, 200)));
+        assertFalse(filter.test(session(PayloadState.SessionState.ESTABLISHED, "10.0.0.1", 1234, "10.0.0.2", 80, 300)));
+        /*pid 를 모르는 세션은 제외*/
+        assertFalse(filter.test(session(PayloadState.SessionState.ESTABLISHED, "10.0.0.1", 1234, "10.0.0.2", 80, null)));
+    }
+
+    /**
+     * 상태별 1/N, tuple hash 로 고르므로 주기나 pid 가 바뀌어도 같은 결과
+     */
+    @Test
+    void samplesByTupleHash() {
+        SessionFilter filter = new SessionFilter().setSampleRate(PayloadState.SessionState.TIME_WAIT, 8)
+                                                  .setSampleRate(PayloadState.SessionState.ESTABLISHED, 1);
+        int total = 40_000;
+        int sampled = 0;
+        for (int i = 0; i < total; i++) {
+            String peer = "10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "." + (i & 0xff);
+            SessionCollectedData timeWait = session(PayloadState.SessionState.TIME_WAIT, "10.0.0.1", 30000 + i % 20000, peer, 443, 10);
+            boolean accepted = filter.test(timeWait);
+            if (accepted) {
+                sampled++;
+            }
+            assertEquals(accepted, filter.test(session(PayloadState.SessionState.TIME_WAIT, "10.0.0.1", 30000 + i % 20000, peer, 443, 10)));
+            assertEquals(accepted, filter.test(session(PayloadState.SessionState.TIME_WAIT, "10.0.0.1", 30000 + i % 20000, peer, 443, 99)));
+            assertEquals(accepted, filter.test(session(PayloadState.SessionState.TIME_WAIT, "10.0.0.1", 30000 + i % 20000, peer, 443, null)));
+            /*rate 1 은 sampling 하지 않음, 다른 상태는 그대로*/
+            assertTrue(filter.test(session(PayloadState.SessionState.ESTABLISHED, "10.0.0.1", 30000 + i % 20000, peer, 443, 10)));
+            assertTrue(filter.test(session(PayloadState.SessionState.CLOSE_WAIT, "10.0.0.1", 30000 + i % 20000, peer, 443, 10)));
+        }
+        assertEquals(total / 8.0, sampled, total / 8.0 * 0.1);
+
+        /*sampling 을 끄면 전체*/
+        filter.setSampleRate(PayloadState.SessionState.TIME_WAIT, 0);
+        assertTrue(filter.isEmpty());
+    }
+
+    private static boolean maskAccepts(int mask,
+                                       PayloadState.SessionState state) {
+        for (int kernelState = 1; kernelState <= 12; kernelState++) {
+            if ((mask & 1 << kernelState) != 0 && InetDiagDecoder.toState(kernelState) == state) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static SessionCollectedData randomSession(Random random) {
+        PayloadState.SessionState state = STATES[random.nextInt(STATES.length)];
+        boolean listen = state == PayloadState.SessionState.LISTEN || state == PayloadState.SessionState.UNCONN;
+        int localPort = random.nextInt(3) == 0 ? PORTS[random.nextInt(PORTS.length)] : 1024 + random.nextInt(60000);
+        int peerPort = listen ? 0 : random.nextInt(3) == 0 ? PORTS[random.nextInt(PORTS.length)] : 1024 + random.nextInt(60000);
+        return session(state, ADDRESSES[random.nextInt(ADDRESSES.length)], localPort, listen ? "*" : ADDRESSES[random.nextInt(ADDRESSES.length)],
+                       peerPort, 1 + random.nextInt(3));
+    }
+
+    private static SessionCollectedData session(PayloadState.SessionState state,
+                                                String local,
+                                                int localPort,
+                                                String peer,
+                                                int peerPort,
+                                                Integer pid) {
+        SessionCollectedData session = new SessionCollectedData(state == PayloadState.SessionState.UNCONN ? SessionCollectedData.PROTOCOL_UDP
+                                                                                                          : SessionCollectedData.PROTOCOL_TCP);
+        session.setState(state);
+        session.setLocal(new SessionAddress(local, localPort, 0));
+        session.setPeer(new SessionAddress(peer, peerPort, 0));
+        session.setPid(pid);
+        return session;
+    }
+}
@@ -0,0 +1,112 @@
+package com.elixcore.collector.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SessionKey} packing 복원 확인
+ */
+class SessionKeyTest {
+
+    @Test
+    void metaRoundTrip() {
+        int[] ports = {0, 1, 443, 32768, 65534, 65535};
+        int[] protocols = {SessionCollectedData.PROTOCOL_TCP, SessionCollectedData.PROTOCOL_UDP, 0, 255};
+        int[] pids = {0, 1, 4_194_304, 0xffffff};
+        for (int localPort : ports) {
+            for (int peerPort : ports) {
+                for (int protocol : protocols) {
+                    for (int pid : pids) {
+                        SessionCollectedData session = new SessionCollectedData(protocol);
+                        session.setLocal(new SessionAddress("10.0.0.1", localPort, 0));
+                        session.setPeer(new SessionAddress("10.0.0.2", peerPort, 0));
+                        session.setPid(pid);
+                        long meta = SessionKey.meta(session);
+                        assertEquals(localPort, SessionKey.localPort(meta));
+                        assertEquals(peerPort, SessionKey.peerPort(meta));
+                        assertEquals(protocol, SessionKey.protocol(meta));
+                        assertEquals(pid, SessionKey.pid(meta));
+                        /*tuple 은 pid 만 뺀 값*/
+                        assertEquals(0, SessionKey.pid(SessionKey.tuple(meta)));
+                        assertEquals(meta, SessionKey.tuple(meta) | pid);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void metaWithoutPortOrPid() {
+        SessionCollectedData session = new SessionCollectedData(SessionCollectedData.PROTOCOL_UDP);
+        session.setLocal(new SessionAddress("0.0.0.0", null, 0));
+        long meta = SessionKey.meta(session);
+        assertEquals(0, SessionKey.localPort(meta));
+        assertEquals(0, SessionKey.peerPort(meta));
+        assertEquals(0, SessionKey.pid(meta));
+        assertEquals(SessionCollectedData.PROTOCOL_UDP, SessionKey.protocol(meta));
+    }
+
+    @Test
+    void packMatchesInetAddress() throws UnknownHostException {
+        String[] addresses = {
+            "0.0.0.0", "10.0.0.1", "255.255.255.255", "::", "::1", "1::", "2001:db8::1", "fe80::1:2:3:4", "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff",
+            "ff06:0:0:0:0:0:0:c3", "1:2:3:4:5:6:7:8", "1:2:3:4::7:8", "::ffff:172.16.0.15", "::FFFF:172.16.0.15", "1:2:3:4:5:6:1.2.3.4"
+        };
+        for (String address : addresses) {
+            ByteBuffer bytes = ByteBuffer.wrap(v6Bytes(address));
+            assertEquals(bytes.getLong(0), SessionKey.pack(address, true), () -> "high of " + address);
+            assertEquals(bytes.getLong(8), SessionKey.pack(address, false), () -> "low of " + address);
+        }
+        assertEquals(0, SessionKey.pack("*", true));
+        assertEquals(0, SessionKey.pack("*", false));
+        assertEquals(0, SessionKey.pack(null, false));
+    }
+
+    @Test
+    void addressRoundTrip() {
+        for (String address : new String[]{"10.0.0.1", "255.255.255.255", "0.0.0.0"}) {
+            SessionAddress restored = SessionKey.address(SessionKey.pack(address, true), SessionKey.pack(address, false), 65535);
+            assertEquals(address, restored.getAddress());
+            assertEquals(65535, restored.getPortValue());
+            assertEquals(Integer.valueOf(2), restored.getType());
+        }
+        SessionAddress v6 = SessionKey.address(SessionKey.pack("2001:db8::1", true), SessionKey.pack("2001:db8::1", false), 0);
+        assertEquals(Integer.valueOf(1), v6.getType());
+        assertEquals(SessionKey.pack("2001:db8::1", false), SessionKey.pack(v6.getAddress(), false));
+        assertEquals(SessionKey.pack("2001:db8::1", true), SessionKey.pack(v6.getAddress(), true));
+    }
+
+    @Test
+    void hashIgnoresPid() {
+        SessionCollectedData session = new SessionCollectedData(SessionCollectedData.PROTOCOL_TCP);
+        session.setLocal(new SessionAddress("10.0.0.1", 22, 0));
+        session.setPeer(new SessionAddress("10.0.0.2", 5555, 0));
+        session.setPid(123);
+        long withPid = SessionKey.meta(session);
+        session.setPid(0);
+        long withoutPid = SessionKey.meta(session);
+        assertNotEquals(withPid, withoutPid);
+        assertEquals(SessionKey.tuple(withPid), SessionKey.tuple(withoutPid));
+    }
+
+    /**
+     * IPv4 는 ::ffff:a.b.c.d 16 byte
+     */
+    private static byte[] v6Bytes(String address) throws UnknownHostException {
+        byte[] bytes = InetAddress.getByName(address)
+                                  .getAddress();
+        if (bytes.length == 16) {
+            return bytes;
+        }
+        byte[] mapped = new byte[16];
+        mapped[10] = (byte) 0xff;
+        mapped[11] = (byte) 0xff;
+        System.arraycopy(bytes, 0, mapped, 12, 4);
+        return mapped;
+    }
+}
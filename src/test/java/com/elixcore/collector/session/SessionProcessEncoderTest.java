@@ -0,0 +1,144 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import com.google.protobuf.Any;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * {@link SessionProcessEncoder} 의 직접 직렬화가 builder 변환({@link SessionCollector#convertProcess}) 후 {@link Any#pack} 한 것과 byte 단위로 같은지 확인.
+ */
+class SessionProcessEncoderTest {
+    private SessionCollector                         collector;
+    private Map<Integer, List<SessionCollectedData>> pidSessionMap;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(SessionProcessEncoder.isAvailable());
+
+        List<SessionCollectedData> sessionList = new ArrayList<>();
+        /*pid 100 : LISTEN, in (여러 상태), out, peer port 없음*/
+        sessionList.add(session(SessionCollectedData.PROTOCOL_TCP, PayloadState.SessionState.LISTEN, address("0.0.0.0", 8080, 0), address("0.0.0.0", null, 0), 100, 1001));
+        sessionList.add(session(SessionCollectedData.PROTOCOL_TCP, PayloadState.SessionState.ESTABLISHED, address("10.0.0.1", 8080, 0), address("10.0.0.2", 50000, 0), 100, 1002));
+        sessionList.add(session(SessionCollectedData.PROTOCOL_TCP, PayloadState.SessionState.SYN_RECV, address("10.0.0.1", 8080, 0), address("10.0.0.3", 50001, 0), 100, 1003));
+        sessionList.add(session(SessionCollectedData.PROTOCOL_TCP, PayloadState.SessionState.CLOSE_WAIT, address("10.0.0.1", 8080, 0), address("10.0.0.4", 50002, 0), 100, 1004));
+        sessionList.add(session(SessionCollectedData.PROTOCOL_TCP, PayloadState.SessionState.ESTABLISHED, address("10.0.0.1", 40000, 0), address("10.0.0.5", 443, 0), 100, 1005));
+        sessionList.add(session(SessionCollectedData.PROTOCOL_TCP, PayloadState.SessionState.TIME_WAIT, address("10.0.0.1", 40001, 0), address("10.0.0.5", 443, 0), 100, 1006));
+        sessionList.add(session(SessionCollectedData.PROTOCOL_TCP, PayloadState.SessionState.FIN_WAIT_1, address("10.0.0.1", 40002, 0), address("10.0.0.6", null, 0), 100, 1007));
+        sessionList.add(session(SessionCollectedData.PROTOCOL_TCP, PayloadState.SessionState.ESTABLISHED, address("10.0.0.1", 40003, 0), null, 100, 1008));
+        /*pid 200 : 공유 LISTEN (pid 200, 201 두 fd, 300), v6 in/out*/
+        SessionCollectedData sharedListen = session(SessionCollectedData.PROTOCOL_TCP, PayloadState.SessionState.LISTEN, address("::", 9090, 1), address("::", null, 1), 200, 2001);
+        sharedListen.setOwners(Arrays.asList(new SessionOwner(200, "nginx", 6),
+                                             new SessionOwner(201, "nginx", 6),
+                                             new SessionOwner(201, "nginx", 7),
+                                             new SessionOwner(300, "nginx", 6)));
+        sessionList.add(sharedListen);
+        sessionList.add(session(SessionCollectedData.PROTOCOL_TCP, PayloadState.SessionState.ESTABLISHED, address("2001:db8::1", 9090, 1), address("2001:db8::2", 51000, 1), 200, 2002));
+        sessionList.add(session(SessionCollectedData.PROTOCOL_TCP, PayloadState.SessionState.LAST_ACK, address("::ffff:10.0.0.1", 9090, 2), address("::ffff:10.0.0.7", 51001, 2), 200, 2003));
+        sessionList.add(session(SessionCollectedData.PROTOCOL_TCP, PayloadState.SessionState.SYN_SENT, address("2001:db8::1", 41000, 1), address("2001:db8::9", 5432, 1), 200, 2004));
+        /*pid 300 : 공유 LISTEN 만 받는 pid 의 out 세션 (0 카운터)*/
+        SessionCollectedData idle = session(SessionCollectedData.PROTOCOL_TCP, PayloadState.SessionState.ESTABLISHED, address("10.0.0.1", 42000, 0), address("10.0.0.8", 6379, 0), 300, 3001);
+        idle.setRxByte(0);
+        idle.setTxByte(0);
+        idle.setRxPacket(0);
+        idle.setTxPacket(0);
+        sessionList.add(idle);
+
+        collector = new SessionCollector(consumer -> {
+        });
+        collector.tcpSessionDelta(sessionList);
+
+        pidSessionMap = new LinkedHashMap<>();
+        for (SessionCollectedData session : sessionList) {
+            pidSessionMap.computeIfAbsent(session.getPid(), pid -> new ArrayList<>())
+                         .add(session);
+        }
+        pidSessionMap = SessionCollector.shareListen(pidSessionMap);
+    }
+
+    @Test
+    void sameBytesAsBuilder() {
+        assertEquals(Arrays.asList(100, 200, 300, 201), new ArrayList<>(pidSessionMap.keySet()));
+
+        SessionProcessEncoder encoder = new SessionProcessEncoder();
+        for (Map.Entry<Integer, List<SessionCollectedData>> entry : pidSessionMap.entrySet()) {
+            byte[] expected = Any.pack(collector.convertProcess(entry.getKey(), entry.getValue()))
+                                 .getValue()
+                                 .toByteArray();
+            assertArrayEquals(expected, encoder.encode(entry.getKey(), entry.getValue(), collector::isListenPort), "pid " + entry.getKey());
+        }
+    }
+
+    @Test
+    void sameAnyAsBuilder() {
+        List<Any> anyList = new SessionProcessEncoder().encode(pidSessionMap, collector::isListenPort);
+
+        assertEquals(pidSessionMap.size(), anyList.size());
+        int i = 0;
+        for (Map.Entry<Integer, List<SessionCollectedData>> entry : pidSessionMap.entrySet()) {
+            Any expected = Any.pack(collector.convertProcess(entry.getKey(), entry.getValue()));
+            Any actual = anyList.get(i++);
+            assertNotNull(actual, "pid " + entry.getKey());
+            assertEquals(expected.getTypeUrl(), actual.getTypeUrl());
+            assertEquals(expected.getValue(), actual.getValue(), "pid " + entry.getKey());
+        }
+    }
+
+    @Test
+    void inboundFollowsListenPort() throws Exception {
+        /*pid 201 은 공유 LISTEN 하나, pid 100 의 8080 세션은 in 으로 dst 가 local*/
+        PayloadState.SessionProcess shared = PayloadState.SessionProcess.parseFrom(new SessionProcessEncoder().encode(201, pidSessionMap.get(201), collector::isListenPort));
+        assertEquals(201, shared.getPid());
+        assertEquals(1, shared.getListenCount());
+        assertEquals(9090, shared.getListen(0)
+                                 .getDst()
+                                 .getPort());
+        assertEquals(0, shared.getInCount());
+        assertEquals(0, shared.getOutCount());
+
+        PayloadState.SessionProcess process = PayloadState.SessionProcess.parseFrom(new SessionProcessEncoder().encode(100, pidSessionMap.get(100), collector::isListenPort));
+        assertEquals(1, process.getListenCount());
+        assertEquals(3, process.getInList()
+                               .stream()
+                               .mapToInt(PayloadState.SessionStateUsage::getSessionCount)
+                               .sum());
+        assertEquals(4, process.getOutList()
+                               .stream()
+                               .mapToInt(PayloadState.SessionStateUsage::getSessionCount)
+                               .sum());
+    }
+
+    private static SessionCollectedData session(int protocol,
+                                                PayloadState.SessionState state,
+                                                SessionAddress local,
+                                                SessionAddress peer,
+                                                int pid,
+                                                long inode) {
+        SessionCollectedData session = new SessionCollectedData(protocol);
+        session.setState(state);
+        session.setLocal(local);
+        session.setPeer(peer);
+        session.setPid(pid);
+        session.setInode(inode);
+        session.setRxByte(inode * 1000 + 1);
+        session.setTxByte(inode * 100000 + 3);
+        session.setRxPacket(inode % 7 + 1);
+        session.setTxPacket(inode % 5 + 1);
+        return session;
+    }
+
+    private static SessionAddress address(String address,
+                                          Integer port,
+                                          int type) {
+        return new SessionAddress(address, port, type);
+    }
+}
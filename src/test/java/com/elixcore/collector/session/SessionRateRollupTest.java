@@ -0,0 +1,218 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SessionDeltaTable} 가 채운 rate 를 {@link SessionRateRollup} 이 pid/상태별로 더한 값을 직접 센 합계와 비교
+ */
+class SessionRateRollupTest {
+    private static final long                        SECOND = 1_000_000_000L;
+    private static final PayloadState.SessionState[] STATES = {
+        PayloadState.SessionState.ESTABLISHED, PayloadState.SessionState.CLOSE_WAIT, PayloadState.SessionState.LISTEN
+    };
+
+    /**
+     * 불규칙한 표본 간격(가상 ns)으로 세션이 들어오고 빠지는 동안 상태별, pid 별 합계가 delta / 경과 시간의 합과 같다.
+     */
+    @Test
+    void rollsUpTableRates() {
+        Random random = new Random(5);
+        SessionDeltaTable table = new SessionDeltaTable(16);
+        SessionRateRollup rollup = new SessionRateRollup(1_000);
+        List<long[]> sessions = new ArrayList<>(); /* local port, pid, state, rx, tx, 마지막 표본 시각 (-1 : 테이블에 없음) */
+        for (int n = 0; n < 300; n++) {
+            sessions.add(new long[]{10_000 + n, 1 + random.nextInt(20), random.nextInt(STATES.length), 0, 0, -1});
+        }
+        long time = 7 * SECOND;
+        for (int cycle = 0; cycle < 40; cycle++) {
+            time += SECOND / 5 + (long) (random.nextDouble() * 4 * SECOND);
+            table.beginCycle(time);
+            rollup.beginCycle();
+            Map<String, double[]> expectedStates = new HashMap<>();
+            Map<String, double[]> expectedPids = new HashMap<>();
+            for (long[] live : sessions) {
+                if (random.nextInt(10) == 0) {
+                    /*이번 주기에 보이지 않음 : expire 로 테이블에서 빠진다*/
+                    live[5] = -1;
+                    continue;
+                }
+                long rxDelta = random.nextInt(1 << 16);
+                long txDelta = random.nextInt(1 << 12);
+                live[3] += rxDelta;
+                live[4] += txDelta;
+                SessionCollectedData session = session((int) live[0], (int) live[1], STATES[(int) live[2]], live[3], live[4]);
+                table.update(session);
+                rollup.add(session);
+
+                if (session.isListen()) {
+                    live[5] = time;
+                    continue;
+                }
+                double rx = 0;
+                double tx = 0;
+                if (live[5] >= 0) {
+                    double seconds = (time - live[5]) / 1e9;
+                    rx = rxDelta / seconds;
+                    tx = txDelta / seconds;
+                }
+                live[5] = time;
+                for (double[] totals : Arrays.asList(expectedStates.computeIfAbsent(session.getState()
+                                                                                           .name(), key -> new double[3]),
+                                                     expectedPids.computeIfAbsent(Long.toString(live[1]), key -> new double[3]))) {
+                    totals[0] += rx;
+                    totals[1] += tx;
+                    totals[2]++;
+                }
+            }
+            table.expire();
+
+            Struct struct = rollup.toStruct();
+            assertEquals(SessionRateRollup.STRUCT_TYPE, struct.getFieldsOrThrow("type")
+                                                              .getStringValue());
+            assertTotals(expectedStates, struct.getFieldsOrThrow("state")
+                                               .getStructValue(), "cycle " + cycle);
+            assertTotals(expectedPids, struct.getFieldsOrThrow("pid")
+                                             .getStructValue(), "cycle " + cycle);
+            assertFalse(struct.getFieldsOrThrow("state")
+                              .getStructValue()
+                              .containsFields(PayloadState.SessionState.LISTEN.name()));
+        }
+    }
+
+    /**
+     * 한 주기 동안 보이지 않은 pid 는 0 으로 남았다가 다음 beginCycle 에서 제거되고, 다시 보이면 새로 더한다.
+     */
+    @Test
+    void evictsIdlePids() {
+        SessionRateRollup rollup = new SessionRateRollup();
+        rollup.beginCycle();
+        rollup.add(rated(1, 100, 1_000));
+        rollup.add(rated(2, 200, 2_000));
+        assertEquals(2, rollup.pidCount());
+
+        rollup.beginCycle();
+        rollup.add(rated(3, 100, 500));
+        /*pid 200 은 이번 주기에 없지만 아직 유지, Struct 에는 포함하지 않음*/
+        assertEquals(2, rollup.pidCount());
+        assertEquals(Arrays.asList("100"), new ArrayList<>(pids(rollup).keySet()));
+        assertEquals(500, rxRate(pids(rollup).get("100")));
+
+        rollup.beginCycle();
+        assertEquals(1, rollup.pidCount());
+        rollup.add(rated(4, 200, 700));
+        assertEquals(2, rollup.pidCount());
+        assertEquals(700, rxRate(pids(rollup).get("200")));
+
+        rollup.beginCycle();
+        rollup.beginCycle();
+        assertEquals(0, rollup.pidCount());
+        assertTrue(pids(rollup).isEmpty());
+    }
+
+    /**
+     * pid 는 byte/s 합계 상위 maxPid 개만 포함하고, pid 를 모르는 세션과 LISTEN 은 상태 합계에서만 다르게 다룬다.
+     */
+    @Test
+    void topPidsByBytes() {
+        SessionRateRollup rollup = new SessionRateRollup(2);
+        rollup.beginCycle();
+        rollup.add(rated(1, 100, 10));
+        rollup.add(rated(2, 200, 3_000));
+        rollup.add(rated(3, 300, 1_000));
+        rollup.add(rated(4, 300, 1_000));
+        SessionCollectedData unknownPid = rated(5, 0, 50);
+        unknownPid.setPid(null);
+        rollup.add(unknownPid);
+        SessionCollectedData listen = rated(6, 100, 1_000_000);
+        listen.setState(PayloadState.SessionState.LISTEN);
+        rollup.add(listen);
+
+        Map<String, Struct> pids = pids(rollup);
+        assertEquals(2, pids.size());
+        assertEquals(3_000, rxRate(pids.get("200")));
+        assertEquals(2_000, rxRate(pids.get("300")));
+        assertEquals(2, pids.get("300")
+                            .getFieldsOrThrow("sessions")
+                            .getNumberValue());
+        Struct established = rollup.toStruct()
+                                   .getFieldsOrThrow("state")
+                                   .getStructValue()
+                                   .getFieldsOrThrow(PayloadState.SessionState.ESTABLISHED.name())
+                                   .getStructValue();
+        assertEquals(5_060, rxRate(established));
+        assertEquals(5, established.getFieldsOrThrow("sessions")
+                                   .getNumberValue());
+        assertEquals(5_060, rollup.getStateTotals(PayloadState.SessionState.ESTABLISHED)[0]);
+    }
+
+    private static void assertTotals(Map<String, double[]> expected,
+                                     Struct actual,
+                                     String message) {
+        assertEquals(expected.keySet(), actual.getFieldsMap()
+                                              .keySet(), message);
+        for (Map.Entry<String, double[]> entry : expected.entrySet()) {
+            Struct totals = actual.getFieldsOrThrow(entry.getKey())
+                                  .getStructValue();
+            double[] values = entry.getValue();
+            assertEquals(values[0], rxRate(totals), values[0] * 1e-9 + 1e-6, message + " " + entry.getKey());
+            assertEquals(values[1], totals.getFieldsOrThrow("tx_byte_rate")
+                                          .getNumberValue(), values[1] * 1e-9 + 1e-6, message + " " + entry.getKey());
+            assertEquals(values[2], totals.getFieldsOrThrow("sessions")
+                                          .getNumberValue(), message + " " + entry.getKey());
+        }
+    }
+
+    private static Map<String, Struct> pids(SessionRateRollup rollup) {
+        Map<String, Struct> pids = new HashMap<>();
+        for (Map.Entry<String, Value> entry : rollup.toStruct()
+                                                    .getFieldsOrThrow("pid")
+                                                    .getStructValue()
+                                                    .getFieldsMap()
+                                                    .entrySet()) {
+            pids.put(entry.getKey(), entry.getValue()
+                                          .getStructValue());
+        }
+        return pids;
+    }
+
+    private static double rxRate(Struct totals) {
+        return totals.getFieldsOrThrow("rx_byte_rate")
+                     .getNumberValue();
+    }
+
+    private static SessionCollectedData rated(int localPort,
+                                              int pid,
+                                              double rxByteRate) {
+        SessionCollectedData session = session(localPort, pid, PayloadState.SessionState.ESTABLISHED, 0, 0);
+        session.setRxByteRate(rxByteRate);
+        return session;
+    }
+
+    private static SessionCollectedData session(int localPort,
+                                                int pid,
+                                                PayloadState.SessionState state,
+                                                long rxByte,
+                                                long txByte) {
+        SessionCollectedData session = new SessionCollectedData(SessionCollectedData.PROTOCOL_TCP);
+        session.setState(state);
+        session.setLocal(new SessionAddress("10.0.0.1", localPort, 0));
+        session.setPeer(new SessionAddress("10.0.0.2", 443, 0));
+        session.setPid(pid);
+        session.setInode(localPort);
+        session.setRxByte(rxByte);
+        session.setTxByte(txByte);
+        return session;
+    }
+}
@@ -0,0 +1,144 @@
+package com.elixcore.collector.session;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * tokenizer 이전의 {@link SsLineParser#parse(String, int)} 구현 (split + 정규식).
+ * <p>
+ * 비교 기준으로만 사용한다. 예전 구현에 없던 항목(Netid, 여러 소유자, rtt, retrans, cwnd, ino, delivery_rate)도 같은 방식으로 읽고,
+ * 의도적으로 바뀐 동작은 새 구현을 따른다.
+ * <pre>
+ * - key 는 토큰 시작에서만 비교 (예전 indexOf 는 segs_in: 이 data_segs_in: 에도 걸렸다)
+ * - pid 는 첫 번째가 아닌 가장 작은 pid, 소유자가 둘 이상이면 pid 순 목록
+ * - unconn 상태 인식 ({@link SessionCollector#fromStateStr(String)})
+ * </pre>
+ */
+final class SplitLineOracle {
+    private static final Pattern OWNER = Pattern.compile("\\(\"([^\"]*)\",pid=(\\d+),fd=(\\d+)\\)");
+    private static final Pattern USERS = Pattern.compile("users:\\((?:\\(\"[^\"]*\",pid=\\d+,fd=\\d+\\),?)+\\)");
+    private static final Pattern RATE  = Pattern.compile("^(\\d+(?:\\.\\d+)?)([KkMG]?)bps$");
+
+    private SplitLineOracle() {
+    }
+
+    static SessionCollectedData parse(String line,
+                                      int protocol) {
+        Matcher users = USERS.matcher(line);
+        String usersBlock = users.find() ? users.group() : null;
+        String rest = usersBlock != null ? line.substring(0, users.start()) + " " + line.substring(users.end()) : line;
+        String[] split = rest.trim()
+                             .split("\\s+");
+        int column = 0;
+        if (split[0].equals("tcp")) {
+            protocol = SessionCollectedData.PROTOCOL_TCP;
+            column++;
+        } else if (split[0].equals("udp")) {
+            protocol = SessionCollectedData.PROTOCOL_UDP;
+            column++;
+        }
+
+        SessionCollectedData sessionCollectedData = new SessionCollectedData(protocol);
+        sessionCollectedData.setPid(0);
+        sessionCollectedData.setState(SessionCollector.fromStateStr(split[column]));
+        sessionCollectedData.setLocal(SessionAddress.findMatch(split[column + 3]));
+        sessionCollectedData.setPeer(SessionAddress.findMatch(split[column + 4]));
+
+        if (usersBlock != null) {
+            List<SessionOwner> owners = new ArrayList<>();
+            Matcher owner = OWNER.matcher(usersBlock);
+            while (owner.find()) {
+                owners.add(new SessionOwner(Integer.parseInt(owner.group(2)), owner.group(1), Integer.parseInt(owner.group(3))));
+            }
+            owners.sort(Comparator.comparingInt(SessionOwner::getPid));
+            sessionCollectedData.setPid(owners.get(0)
+                                              .getPid());
+            if (owners.size() > 1) {
+                sessionCollectedData.setOwners(owners);
+            }
+        }
+
+        for (int i = column + 5; i < split.length; i++) {
+            String token = split[i];
+            if (token.equals("delivery_rate")) {
+                sessionCollectedData.setDeliveryRate(i + 1 < split.length ? rate(split[++i]) : 0);
+                continue;
+            }
+            int colon = token.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String key = token.substring(0, colon);
+            String value = token.substring(colon + 1);
+            switch (key) {
+                case "bytes_sent":
+                    sessionCollectedData.setTxByte(Long.parseLong(value));
+                    break;
+                case "bytes_received":
+                    sessionCollectedData.setRxByte(Long.parseLong(value));
+                    break;
+                case "segs_out":
+                    sessionCollectedData.setTxPacket(Long.parseLong(value));
+                    break;
+                case "segs_in":
+                    sessionCollectedData.setRxPacket(Long.parseLong(value));
+                    break;
+                case "rtt":
+                    String[] rtt = value.split("/");
+                    sessionCollectedData.setRtt(micros(rtt[0]));
+                    sessionCollectedData.setRttVar(micros(rtt[1]));
+                    break;
+                case "retrans":
+                    sessionCollectedData.setRetrans(Long.parseLong(value.split("/")[1]));
+                    break;
+                case "cwnd":
+                    sessionCollectedData.setCwnd(Long.parseLong(value));
+                    break;
+                case "ino":
+                    sessionCollectedData.setInode(Long.parseLong(value));
+                    break;
+            }
+        }
+        return sessionCollectedData;
+    }
+
+    /**
+     * ms -> us (소수점 아래 3자리 이후 버림)
+     */
+    private static long micros(String millis) {
+        return new BigDecimal(millis).movePointRight(3)
+                                     .setScale(0, RoundingMode.DOWN)
+                                     .longValueExact();
+    }
+
+    private static long rate(String text) {
+        Matcher matcher = RATE.matcher(text);
+        if (!matcher.find()) {
+            return 0;
+        }
+        long unit;
+        switch (matcher.group(2)) {
+            case "K":
+            case "k":
+                unit = 1000L;
+                break;
+            case "M":
+                unit = 1000_000L;
+                break;
+            case "G":
+                unit = 1000_000_000L;
+                break;
+            default:
+                unit = 1;
+                break;
+        }
+        return new BigDecimal(matcher.group(1)).multiply(BigDecimal.valueOf(unit))
+                                               .setScale(0, RoundingMode.DOWN)
+                                               .longValueExact();
+    }
+}
@@ -0,0 +1,206 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link SessionFilter#toSsArguments()} 결과를 `ss` 처럼 해석하는 비교 기준.
+ * <p>
+ * `ss` filter 문법 중 SessionFilter 가 만드는 부분만 다룬다.
+ * <pre>
+ * state NAME ...                       : 인자 쌍, 하나라도 있으면 해당 상태만
+ * expr   := term ( or term )*
+ * term   := factor ( and factor )*
+ * factor := not factor | ( expr ) | sport = :N | dport = :N | src CIDR | dst CIDR
+ * </pre>
+ * 주소는 `ss` 와 같이 IPv4 를 ::ffff:a.b.c.d 로 보고 {@link InetAddress} 로 비교한다. (SessionKey packing 과 별개)
+ */
+final class SsFilterOracle {
+    private final Set<String>  stateNames = new HashSet<>();
+    private final List<String> tokens     = new ArrayList<>();
+    private       int          position;
+
+    private SsFilterOracle(List<String> arguments) {
+        int i = 0;
+        while (i + 1 < arguments.size() && arguments.get(i)
+                                                    .equals("state")) {
+            stateNames.add(arguments.get(i + 1));
+            i += 2;
+        }
+        if (i < arguments.size()) {
+            tokens.addAll(Arrays.asList(arguments.get(i)
+                                                 .trim()
+                                                 .split("\\s+")));
+        }
+        if (i + 1 < arguments.size()) {
+            throw new IllegalArgumentException("trailing arguments : " + arguments);
+        }
+    }
+
+    /**
+     * @return `ss` 가 이 세션을 출력하는지
+     */
+    static boolean accept(List<String> arguments,
+                          SessionCollectedData session) {
+        SsFilterOracle oracle = new SsFilterOracle(arguments);
+        if (!oracle.stateNames.isEmpty() && !oracle.stateNames.contains(stateName(session.getState()))) {
+            return false;
+        }
+        if (oracle.tokens.isEmpty()) {
+            return true;
+        }
+        boolean result = oracle.expr(session);
+        if (oracle.position != oracle.tokens.size()) {
+            throw new IllegalArgumentException("unparsed : " + oracle.tokens.subList(oracle.position, oracle.tokens.size()));
+        }
+        return result;
+    }
+
+    private boolean expr(SessionCollectedData session) {
+        boolean result = term(session);
+        while (peek("or")) {
+            position++;
+            result |= term(session);
+        }
+        return result;
+    }
+
+    private boolean term(SessionCollectedData session) {
+        boolean result = factor(session);
+        while (peek("and")) {
+            position++;
+            result &= factor(session);
+        }
+        return result;
+    }
+
+    private boolean factor(SessionCollectedData session) {
+        String token = next();
+        switch (token) {
+            case "not":
+                return !factor(session);
+            case "(":
+                boolean result = expr(session);
+                expect(")");
+                return result;
+            case "sport":
+            case "dport":
+                expect("=");
+                String port = next();
+                if (!port.startsWith(":")) {
+                    throw new IllegalArgumentException("port : " + port);
+                }
+                SessionAddress address = token.equals("sport") ? session.getLocal() : session.getPeer();
+                int value = address != null && address.hasPort() ? address.getPortValue() : 0;
+                return value == Integer.parseInt(port.substring(1));
+            case "src":
+                return matchCidr(session.getLocal(), next());
+            case "dst":
+                return matchCidr(session.getPeer(), next());
+            default:
+                throw new IllegalArgumentException("unexpected token : " + token);
+        }
+    }
+
+    private boolean peek(String token) {
+        return position < tokens.size() && tokens.get(position)
+                                                 .equals(token);
+    }
+
+    private String next() {
+        if (position >= tokens.size()) {
+            throw new IllegalArgumentException("unexpected end : " + tokens);
+        }
+        return tokens.get(position++);
+    }
+
+    private void expect(String token) {
+        String actual = next();
+        if (!actual.equals(token)) {
+            throw new IllegalArgumentException("expected " + token + " but " + actual);
+        }
+    }
+
+    private static boolean matchCidr(SessionAddress address,
+                                     String cidr) {
+        int slash = cidr.lastIndexOf('/');
+        String text = slash < 0 ? cidr : cidr.substring(0, slash);
+        if (text.startsWith("[")) {
+            text = text.substring(1, text.length() - 1);
+        }
+        byte[] network = v6Bytes(text);
+        int prefix = slash < 0 ? 128 : Integer.parseInt(cidr.substring(slash + 1)) + (text.indexOf(':') < 0 ? 96 : 0);
+        byte[] bytes = v6Bytes(address != null ? address.getAddress() : null);
+        for (int bit = 0; bit < prefix; bit++) {
+            int mask = 0x80 >>> (bit & 7);
+            if ((bytes[bit >> 3] & mask) != (network[bit >> 3] & mask)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * IPv4 는 ::ffff:a.b.c.d, * 와 null 은 ::
+     */
+    private static byte[] v6Bytes(String address) {
+        if (address == null || address.equals("*")) {
+            return new byte[16];
+        }
+        byte[] bytes;
+        try {
+            bytes = InetAddress.getByName(address)
+                               .getAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException(address, e);
+        }
+        if (bytes.length == 16) {
+            return bytes;
+        }
+        byte[] mapped = new byte[16];
+        mapped[10] = (byte) 0xff;
+        mapped[11] = (byte) 0xff;
+        System.arraycopy(bytes, 0, mapped, 12, 4);
+        return mapped;
+    }
+
+    /**
+     * `ss` state filter 이름 (TCP_CLOSE 는 UNCONN 으로 출력되지만 filter 이름은 closed)
+     */
+    private static String stateName(PayloadState.SessionState state) {
+        switch (state) {
+            case ESTABLISHED:
+                return "established";
+            case SYN_SENT:
+                return "syn-sent";
+            case SYN_RECV:
+                return "syn-recv";
+            case FIN_WAIT_1:
+                return "fin-wait-1";
+            case FIN_WAIT_2:
+                return "fin-wait-2";
+            case TIME_WAIT:
+                return "time-wait";
+            case CLOSED:
+            case UNCONN:
+                return "closed";
+            case CLOSE_WAIT:
+                return "close-wait";
+            case LAST_ACK:
+                return "last-ack";
+            case LISTEN:
+                return "listening";
+            case CLOSING:
+                return "closing";
+            default:
+                throw new IllegalArgumentException("state : " + state);
+        }
+    }
+}
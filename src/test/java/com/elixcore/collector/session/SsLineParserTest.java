@@ -0,0 +1,224 @@
+package com.elixcore.collector.session;
+
+import com.elixcore.lib.protocol.message.payload.collect.state.PayloadState;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SsLineParser} tokenizer 와 예전 split 구현({@link SplitLineOracle}) 비교
+ */
+class SsLineParserTest {
+    private static final String[] STATES    = {
+        "ESTAB", "LISTEN", "UNCONN", "TIME-WAIT", "SYN-SENT", "SYN-RECV", "FIN-WAIT-1", "FIN-WAIT-2", "CLOSE-WAIT",
+        "LAST-ACK", "CLOSING", "CLOSE", "estab", "unconn", "NONE", "UNKNOWN"
+    };
+    private static final String[] ADDRESSES = {
+        "0.0.0.0:*", "*:*", "[::]:*", "10.0.0.1:22", "192.168.10.200:54321", "127.0.0.53%lo:53", "10.0.0.1%eth0:68",
+        "[::ffff:10.0.0.1]:443", "[::1]:631", "[fe80::1]%eth0:546", "[2001:db8::1]:8080", "*:80", "0.0.0.0:0"
+    };
+    private static final String[] COMMS     = {
+        "sshd", "nginx", "a,b", "x) y", "(sd-pam)", "my app", "pid=9", "fd=1,pid=2", ""
+    };
+    private static final String[] RTTS      = {"0.5", "12.345", "1", "0.0625", "250.123456", "0"};
+    private static final String[] RATES     = {"463.4Mbps", "12Kbps", "12kbps", "100bps", "1.25Gbps", "9.999kbps", "0bps", "44236.8Mbps"};
+    private static final String[] NOISE     = {
+        "sk:3c", "cubic", "rto:204", "ato:40", "mss:1448", "pmtu:1500", "rcvmss:536", "advmss:1448", "ssthresh:7",
+        "bytes_acked:1235", "data_segs_in:77", "data_segs_out:88", "lastsnd:100", "lastrcv:200", "lastack:300",
+        "send 1.2Mbps", "pacing_rate 2Mbps", "busy:10ms", "rcv_space:14600", "minrtt:0.1", "uid:1000", "timer:(keepalive,1min,0)"
+    };
+
+    /**
+     * 여러 형태의 `ss` 줄 (Netid 유무, 공백/tab, users 블록, key:value 항목 순서 섞음)
+     */
+    private static List<String> corpus(int size) {
+        Random random = new Random(7);
+        List<String> corpus = new ArrayList<>(size);
+        for (int n = 0; n < size; n++) {
+            StringBuilder line = new StringBuilder();
+            if (random.nextInt(4) == 0) {
+                line.append("   ");
+            }
+            switch (random.nextInt(3)) {
+                case 0:
+                    line.append("tcp").append(space(random));
+                    break;
+                case 1:
+                    line.append("udp").append(space(random));
+                    break;
+            }
+            line.append(STATES[random.nextInt(STATES.length)])
+                .append(space(random))
+                .append(random.nextInt(5000))
+                .append(space(random))
+                .append(random.nextInt(5000))
+                .append(space(random))
+                .append(ADDRESSES[random.nextInt(ADDRESSES.length)])
+                .append(space(random))
+                .append(ADDRESSES[random.nextInt(ADDRESSES.length)]);
+            if (random.nextInt(4) != 0) {
+                line.append(space(random))
+                    .append("users:(");
+                int owners = 1 + random.nextInt(random.nextInt(4) == 0 ? 4 : 1);
+                for (int o = 0; o < owners; o++) {
+                    if (o > 0) {
+                        line.append(',');
+                    }
+                    line.append("(\"")
+                        .append(COMMS[random.nextInt(COMMS.length)])
+                        .append("\",pid=")
+                        .append(1 + random.nextInt(65535))
+                        .append(",fd=")
+                        .append(random.nextInt(1024))
+                        .append(')');
+                }
+                line.append(')');
+            }
+            List<String> fields = new ArrayList<>();
+            if (random.nextBoolean()) {
+                fields.add("ino:" + random.nextInt(Integer.MAX_VALUE));
+            }
+            if (random.nextBoolean()) {
+                fields.add("rtt:" + RTTS[random.nextInt(RTTS.length)] + "/" + RTTS[random.nextInt(RTTS.length)]);
+            }
+            if (random.nextBoolean()) {
+                fields.add("retrans:" + random.nextInt(3) + "/" + random.nextInt(100_000));
+            }
+            if (random.nextBoolean()) {
+                fields.add("cwnd:" + random.nextInt(1000));
+            }
+            if (random.nextBoolean()) {
+                fields.add("delivery_rate " + RATES[random.nextInt(RATES.length)]);
+            }
+            if (random.nextBoolean()) {
+                fields.add("bytes_sent:" + (random.nextLong() >>> 24));
+                fields.add("bytes_received:" + (random.nextLong() >>> 24));
+                fields.add("segs_out:" + random.nextInt(Integer.MAX_VALUE));
+                fields.add("segs_in:" + random.nextInt(Integer.MAX_VALUE));
+            }
+            int noise = random.nextInt(6);
+            for (int k = 0; k < noise; k++) {
+                fields.add(NOISE[random.nextInt(NOISE.length)]);
+            }
+            Collections.shuffle(fields, random);
+            for (String field : fields) {
+                line.append(space(random))
+                    .append(field);
+            }
+            corpus.add(line.toString());
+        }
+        return corpus;
+    }
+
+    private static String space(Random random) {
+        switch (random.nextInt(6)) {
+            case 0:
+                return "\t";
+            case 1:
+                return "      ";
+            default:
+                return " ";
+        }
+    }
+
+    @Test
+    void matchesSplitParser() {
+        int shared = 0;
+        for (String line : corpus(100_000)) {
+            int protocol = line.length() % 2 == 0 ? SessionCollectedData.PROTOCOL_TCP : SessionCollectedData.PROTOCOL_UDP;
+            SessionCollectedData expected = SplitLineOracle.parse(line, protocol);
+            assertEquals(expected, SsLineParser.parse(line, protocol), () -> "'" + line + "'");
+            if (expected.isShared()) {
+                shared++;
+            }
+        }
+        assertTrue(shared > 1_000, "corpus had only " + shared + " shared sockets");
+    }
+
+    @Test
+    void netid() {
+        SessionCollectedData udp = SsLineParser.parse("udp   UNCONN 0      0      0.0.0.0:68   0.0.0.0:* users:((\"dhclient\",pid=812,fd=6))",
+                                                      SessionCollectedData.PROTOCOL_TCP);
+        assertEquals(SessionCollectedData.PROTOCOL_UDP, udp.getProtocol());
+        assertEquals(PayloadState.SessionState.UNCONN, udp.getState());
+        assertTrue(udp.isListen());
+        assertEquals(812, udp.getPid()
+                             .intValue());
+        assertEquals(68, udp.getLocal()
+                            .getPortValue());
+
+        SessionCollectedData tcp = SsLineParser.parse("ESTAB 0 0 10.0.0.1:22 10.0.0.2:5555", SessionCollectedData.PROTOCOL_UDP);
+        assertEquals(SessionCollectedData.PROTOCOL_UDP, tcp.getProtocol());
+        assertEquals(PayloadState.SessionState.ESTABLISHED, tcp.getState());
+        assertEquals(0, tcp.getPid()
+                           .intValue());
+    }
+
+    @Test
+    void tcpInfo() {
+        SessionCollectedData session = SsLineParser.parse("tcp ESTAB 0 0 10.0.0.1:22 10.0.0.2:5555 users:((\"sshd\",pid=123,fd=3)) ino:40211 sk:3c cubic"
+                                                          + " rto:204 rtt:0.5/0.25 cwnd:10 bytes_sent:1234 bytes_acked:1235 bytes_received:456"
+                                                          + " segs_out:10 segs_in:12 data_segs_in:7 send 1.2Mbps delivery_rate 463.4Mbps retrans:0/3",
+                                                          SessionCollectedData.PROTOCOL_TCP);
+        assertEquals(40211, session.getInode());
+        assertEquals(500, session.getRtt());
+        assertEquals(250, session.getRttVar());
+        assertEquals(10, session.getCwnd());
+        assertEquals(1234, session.getTxByte());
+        assertEquals(456, session.getRxByte());
+        assertEquals(10, session.getTxPacket());
+        assertEquals(12, session.getRxPacket());
+        assertEquals(463_400_000L, session.getDeliveryRate());
+        assertEquals(3, session.getRetrans());
+    }
+
+    @Test
+    void sharedSocketOwners() {
+        SessionCollectedData session = SsLineParser.parse("tcp   LISTEN 0      511    0.0.0.0:80   0.0.0.0:*"
+                                                          + " users:((\"nginx: worker\",pid=2012,fd=6),(\"a,b\",pid=2010,fd=6),(\"x) (y\",pid=2011,fd=7),"
+                                                          + "(\"nginx: worker\",pid=2012,fd=9)) ino:1234 sk:1",
+                                                          SessionCollectedData.PROTOCOL_TCP);
+        /*가장 작은 pid 가 소켓의 pid, 나머지도 pid 순 (같은 pid 는 출력 순서)으로 보관*/
+        assertEquals(2010, session.getPid()
+                                  .intValue());
+        assertTrue(session.isShared());
+        assertEquals(Arrays.asList(new SessionOwner(2010, "a,b", 6),
+                                   new SessionOwner(2011, "x) (y", 7),
+                                   new SessionOwner(2012, "nginx: worker", 6),
+                                   new SessionOwner(2012, "nginx: worker", 9)), session.getOwners());
+        /*users 블록 뒤 항목도 그대로 읽는다*/
+        assertEquals(1234, session.getInode());
+    }
+
+    @Test
+    void singleOwner() {
+        SessionCollectedData session = SsLineParser.parse("ESTAB 0 0 10.0.0.1:22 10.0.0.2:5555 users:((\"pid=1)\",pid=77,fd=3)) ino:5",
+                                                          SessionCollectedData.PROTOCOL_TCP);
+        assertEquals(77, session.getPid()
+                                .intValue());
+        assertNull(session.getOwners());
+        assertFalse(session.isShared());
+        assertEquals(5, session.getInode());
+    }
+
+    @Test
+    void deliveryRateUnits() {
+        assertEquals(100, deliveryRate("100bps"));
+        assertEquals(12_000, deliveryRate("12Kbps"));
+        assertEquals(12_000, deliveryRate("12kbps"));
+        assertEquals(9_999, deliveryRate("9.999kbps"));
+        assertEquals(1_250_000_000L, deliveryRate("1.25Gbps"));
+        assertEquals(44_236_800_000L, deliveryRate("44236.8Mbps"));
+    }
+
+    private static long deliveryRate(String rate) {
+        return SsLineParser.parse("ESTAB 0 0 10.0.0.1:22 10.0.0.2:5555 delivery_rate " + rate + " cwnd:1", SessionCollectedData.PROTOCOL_TCP)
+                           .getDeliveryRate();
+    }
+}
@@ -0,0 +1,167 @@
+package com.elixcore.collector.session;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SsRecorder} 로 기록한 파일을 {@link SsReplay} 로 재생해 줄이 그대로 나오는지 확인.
+ * chunk 크기를 작게 잡아 run 하나가 여러 chunk 로 나뉘게 한다.
+ */
+class SsReplayTest {
+    private static final int    CHUNK_BYTES = 256;
+    private static final String SESSION     = SsSessionSource.SESSION_COMMAND;
+    private static final String EVENT       = SessionRealtime.EVENT_COMMAND;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTrip() throws IOException {
+        Path path = dir.resolve("round-trip.ssr");
+        List<List<String>> sessionRuns = new ArrayList<>();
+        List<String> eventLines = new ArrayList<>();
+        try (SsRecorder recorder = new SsRecorder(path, CHUNK_BYTES)) {
+            /*이벤트 run 은 끝나지 않고 수집 run 과 chunk 가 섞인다*/
+            SsRecorder.Run event = recorder.begin(EVENT);
+            for (int cycle = 0; cycle < 3; cycle++) {
+                List<String> lines = new ArrayList<>();
+                try (SsRecorder.Run run = recorder.begin(SESSION)) {
+                    for (int i = 0; i < 40; i++) {
+                        String line = sessionLine(cycle, i);
+                        run.line(line);
+                        lines.add(line);
+                        if (i % 4 == 0) {
+                            String eventLine = "tcp   ESTAB 0 0 10.0.0.1:" + (40000 + cycle * 100 + i) + " 10.0.0.2:443 ino:" + (cycle * 100 + i);
+                            event.line(eventLine);
+                            eventLines.add(eventLine);
+                        }
+                    }
+                }
+                sessionRuns.add(lines);
+            }
+            event.close();
+        }
+
+        List<Integer> runIds = chunkRunIds(path);
+        assertTrue(runIds.size() > 4, "multi-chunk runs : " + runIds);
+        assertTrue(runIds.subList(runIds.indexOf(0), runIds.lastIndexOf(0))
+                         .stream()
+                         .anyMatch(runId -> runId != 0), "interleaved run ids : " + runIds);
+
+        try (SsReplay replay = new SsReplay(path, 0, false)) {
+            for (List<String> expected : sessionRuns) {
+                assertTrue(replay.hasNext(SESSION));
+                assertEquals(expected, play(replay, SESSION));
+            }
+            assertFalse(replay.hasNext(SESSION));
+            assertThrows(EOFException.class, () -> play(replay, SESSION));
+
+            assertEquals(eventLines, play(replay, EVENT));
+            assertFalse(replay.hasNext(EVENT));
+        }
+    }
+
+    @Test
+    void stopSkipsRestOfRun() throws IOException {
+        Path path = dir.resolve("stop.ssr");
+        try (SsRecorder recorder = new SsRecorder(path, CHUNK_BYTES)) {
+            for (int cycle = 0; cycle < 2; cycle++) {
+                try (SsRecorder.Run run = recorder.begin(SESSION)) {
+                    for (int i = 0; i < 40; i++) {
+                        run.line(sessionLine(cycle, i));
+                    }
+                }
+            }
+        }
+
+        try (SsReplay replay = new SsReplay(path, 0, false)) {
+            List<String> lines = new ArrayList<>();
+            replay.play(SESSION, line -> {
+                lines.add(line);
+                return lines.size() < 3;
+            });
+            assertEquals(Arrays.asList(sessionLine(0, 0), sessionLine(0, 1), sessionLine(0, 2)), lines);
+            assertEquals(sessionLine(1, 0), play(replay, SESSION).get(0));
+        }
+    }
+
+    @Test
+    void truncatedLastChunk() throws IOException {
+        Path path = dir.resolve("truncated.ssr");
+        List<String> expected = new ArrayList<>();
+        try (SsRecorder recorder = new SsRecorder(path, CHUNK_BYTES);
+             SsRecorder.Run run = recorder.begin(SESSION)) {
+            for (int i = 0; i < 40; i++) {
+                run.line(sessionLine(0, i));
+                expected.add(sessionLine(0, i));
+            }
+        }
+        int chunks = chunkRunIds(path).size();
+        assertTrue(chunks > 1);
+        /*기록 중 종료되어 마지막 chunk 의 압축 데이터가 잘린 파일*/
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 5);
+        }
+
+        try (SsReplay replay = new SsReplay(path, 0, false)) {
+            List<String> lines = play(replay, SESSION);
+            assertFalse(lines.isEmpty());
+            assertTrue(lines.size() < expected.size());
+            assertEquals(expected.subList(0, lines.size()), lines);
+            assertFalse(replay.hasNext(SESSION));
+        }
+    }
+
+    private static List<String> play(SsReplay replay,
+                                     String command) throws IOException {
+        List<String> lines = new ArrayList<>();
+        replay.play(command, line -> {
+            lines.add(line);
+            return true;
+        });
+        return lines;
+    }
+
+    private static String sessionLine(int cycle,
+                                      int i) {
+        return "tcp   ESTAB 0      0      10.0.0.1:" + (30000 + i) + "   10.0.1." + cycle + ":443 users:((\"svc\",pid=" + (1000 + cycle) + ",fd=" + i + "))";
+    }
+
+    /**
+     * 파일에 기록된 chunk 의 run id (기록 순)
+     */
+    private static List<Integer> chunkRunIds(Path path) throws IOException {
+        List<Integer> runIds = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            assertEquals(SsRecorder.MAGIC, input.readInt());
+            input.readLong();
+            while (true) {
+                int runId;
+                try {
+                    runId = input.readInt();
+                } catch (EOFException e) {
+                    return runIds;
+                }
+                input.readUTF();
+                input.readByte();
+                input.readLong();
+                input.readInt();
+                input.skipBytes(input.readInt());
+                runIds.add(runId);
+            }
+        }
+    }
+}
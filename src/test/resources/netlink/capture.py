@@ -0,0 +1,33 @@
+# netlink sock_diag fixture capture: tcp4, tcp6, udp4, udp6 dumps in that order
+import socket, struct, sys, os
+NETLINK_SOCK_DIAG=4; SOCK_DIAG_BY_FAMILY=20
+def dump(family, proto, out, seq):
+    s=socket.socket(socket.AF_NETLINK, socket.SOCK_RAW, NETLINK_SOCK_DIAG)
+    req=struct.pack('=BBBBI', family, proto, 1<<1, 0, 0xffffffff)+b'\0'*48
+    hdr=struct.pack('=IHHII', 16+len(req), SOCK_DIAG_BY_FAMILY, 0x301, seq, 0)
+    s.sendto(hdr+req,(0,0))
+    while True:
+        d=s.recv(65536); out.write(d)
+        done=False; off=0
+        while off < len(d):
+            l,t=struct.unpack_from('=IH',d,off)
+            if t in (2,3): done=True
+            off+=(l+3)&~3
+        if done: break
+    s.close()
+keep=[]
+for fam, host in ((socket.AF_INET,'127.0.0.1'),(socket.AF_INET6,'::1')):
+    ls=socket.socket(fam, socket.SOCK_STREAM); ls.bind((host,0)); ls.listen(8); keep.append(ls)
+    c=socket.socket(fam, socket.SOCK_STREAM); c.connect(ls.getsockname()[:2]); a,_=ls.accept(); keep+= [c,a]
+    c.sendall(b'x'*12345); a.recv(65536); a.sendall(b'y'*2345); c.recv(65536)
+    u=socket.socket(fam, socket.SOCK_DGRAM); u.bind((host,0)); keep.append(u)
+    uc=socket.socket(fam, socket.SOCK_DGRAM); uc.connect(u.getsockname()[:2]); uc.send(b'z'*100); keep.append(uc)
+m=socket.socket(socket.AF_INET6, socket.SOCK_STREAM); m.bind(('::',0)); m.listen(1); keep.append(m)
+mc=socket.socket(socket.AF_INET, socket.SOCK_STREAM); mc.connect(('127.0.0.1', m.getsockname()[1])); ma,_=m.accept(); keep+=[mc,ma]
+mc.sendall(b'q'*777); ma.recv(4096)
+with open(sys.argv[1],'wb') as f:
+    seq=1
+    for proto in (socket.IPPROTO_TCP, socket.IPPROTO_UDP):
+        for fam in (socket.AF_INET, socket.AF_INET6):
+            dump(fam, proto, f, seq); seq+=1
+print(os.path.getsize(sys.argv[1]))